@@ -0,0 +1,69 @@
+package com.norway.mastercard.ibpts.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.service.AccountService;
+
+/**
+ * Measures AccountService.getAccountBalance on one hot account and on random accounts out of many.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AccountBalanceBenchmark {
+
+    private static final int FIRST_ACCOUNT_ID = 10_000;
+
+    @Param({ "100000" })
+    public int accounts;
+
+    @Param({ "" })
+    public String profile;
+
+    ConfigurableApplicationContext context;
+    AccountService                 accountService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("spring.profiles.active=" + profile);
+        BenchmarkApplication.seedAccounts(context, FIRST_ACCOUNT_ID, accounts, BigDecimal.valueOf(1_000));
+        accountService = context.getBean(AccountService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AccountDetails hotAccount() {
+        return accountService.getAccountBalance(FIRST_ACCOUNT_ID);
+    }
+
+    @Benchmark
+    public AccountDetails randomAccount() {
+        return accountService.getAccountBalance(FIRST_ACCOUNT_ID + ThreadLocalRandom.current().nextInt(accounts));
+    }
+
+}
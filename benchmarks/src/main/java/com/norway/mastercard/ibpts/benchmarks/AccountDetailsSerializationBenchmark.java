@@ -0,0 +1,82 @@
+package com.norway.mastercard.ibpts.benchmarks;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.TransactionType;
+
+/**
+ * Measures the JSON serialization of AccountDetails as a balance response and as a statement of statementSize rows,
+ * using the same date settings as the Spring Boot ObjectMapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountDetailsSerializationBenchmark {
+
+    @Param({ "10", "500" })
+    public int statementSize;
+
+    ObjectWriter         objectWriter;
+    AccountDetails       balance;
+    List<AccountDetails> statement;
+
+    @Setup
+    public void setUp() {
+        objectWriter = JsonMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build()
+                .writer();
+        balance = AccountDetails.builder()
+                .accountId(111)
+                .balance(new BigDecimal("1234567.89"))
+                .currencyCode(BenchmarkApplication.CURRENCY)
+                .build();
+        statement = new ArrayList<>(statementSize);
+        for (int i = 0; i < statementSize; i++) {
+            statement.add(AccountDetails.builder()
+                    .accountId(111)
+                    .amount(BigDecimal.valueOf(i, 2))
+                    .currencyCode(BenchmarkApplication.CURRENCY)
+                    .type(i % 2 == 0 ? TransactionType.DEBIT : TransactionType.CREDIT)
+                    .transactionDate(LocalDateTime.of(2021, 10, 10, 0, 0).plusMinutes(i))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public byte[] balance() throws JsonProcessingException {
+        return objectWriter.writeValueAsBytes(balance);
+    }
+
+    @Benchmark
+    public byte[] statement() throws JsonProcessingException {
+        return objectWriter.writeValueAsBytes(statement);
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.norway.mastercard.ibpts.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.norway.mastercard.ibpts.IntraBankPaymentTransferSystem;
+import com.norway.mastercard.ibpts.service.internal.MinorUnits;
+
+/**
+ * The BenchmarkApplication starts the transfer system without the web layer against a fresh embedded h2 database and
+ * seeds it with benchmark data.
+ */
+public final class BenchmarkApplication {
+
+    public static final String CURRENCY   = "NOK";
+    private static final int   BATCH_SIZE = 10_000;
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Starts the application context.
+     *
+     * @param properties additional properties in key=value form.
+     * @return ConfigurableApplicationContext the started context, closed by the caller.
+     */
+    public static ConfigurableApplicationContext start(String... properties) {
+        return start(WebApplicationType.NONE, properties);
+    }
+
+    /**
+     * Starts the application context with the embedded web server on a random port, see localPort.
+     *
+     * @param properties additional properties in key=value form.
+     * @return ConfigurableApplicationContext the started context, closed by the caller.
+     */
+    public static ConfigurableApplicationContext startServer(String... properties) {
+        return start(WebApplicationType.SERVLET, Stream.concat(Stream.of("server.port=0"), Arrays.stream(properties)).toArray(String[]::new));
+    }
+
+    /**
+     * Reads the port the embedded web server listens on.
+     */
+    public static int localPort(ConfigurableApplicationContext context) {
+        return Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... properties) {
+        return new SpringApplicationBuilder(IntraBankPaymentTransferSystem.class)
+                .web(webApplicationType)
+                .bannerMode(Banner.Mode.OFF)
+                .properties("spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID(),
+                        "spring.h2.console.enabled=false",
+                        "logging.level.root=WARN")
+                .properties(properties)
+                .run();
+    }
+
+    /**
+     * Inserts the accounts firstAccountId until firstAccountId + count - 1.
+     */
+    public static void seedAccounts(ConfigurableApplicationContext context, int firstAccountId, int count, BigDecimal balance) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        long balanceMinor = MinorUnits.toMinor(balance, MinorUnits.scaleOf(CURRENCY));
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (int accountId = firstAccountId; accountId < firstAccountId + count; accountId++) {
+            rows.add(new Object[] { accountId, balanceMinor, CURRENCY });
+            if (rows.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate("insert into account(account_id, balance_minor, currency, version) values(?, ?, ?, 0)", rows);
+                rows.clear();
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into account(account_id, balance_minor, currency, version) values(?, ?, ?, 0)", rows);
+        }
+    }
+
+    /**
+     * Inserts count transactions of one day each into the history of the account.
+     */
+    public static void seedTransactions(ConfigurableApplicationContext context, int accountId, int counterpartAccountId, int count) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        LocalDateTime start = LocalDateTime.of(2000, 1, 1, 0, 0);
+        String insert = "insert into transaction(transaction_id, account_id, amount_minor, transaction_date, type, parent_account_id) "
+                + "values(" + nextTransactionId(jdbcTemplate) + ", ?, ?, ?, ?, ?)";
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[] { counterpartAccountId, 100L, Timestamp.valueOf(start.plusMinutes(i)), i % 2 == 0 ? "DEBIT" : "CREDIT",
+                    accountId });
+            if (rows.size() == BATCH_SIZE || i == count - 1) {
+                jdbcTemplate.batchUpdate(insert, rows);
+                rows.clear();
+            }
+        }
+    }
+
+    /**
+     * Reads the SQL expression of the next transactionId for rows inserted with JDBC: the sequence the highThroughput
+     * profile maps the ids to, which gives the column no default, or the default of the identity column otherwise.
+     */
+    static String nextTransactionId(JdbcTemplate jdbcTemplate) {
+        Integer sequences = jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.sequences where sequence_name = 'TRANSACTION_SEQ'", Integer.class);
+        return sequences != null && sequences > 0 ? "next value for transaction_seq" : "default";
+    }
+
+}
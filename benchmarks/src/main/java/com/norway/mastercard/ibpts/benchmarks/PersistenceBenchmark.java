@@ -0,0 +1,142 @@
+package com.norway.mastercard.ibpts.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.norway.mastercard.ibpts.exception.TransferConflictException;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.model.TransferInstruction;
+import com.norway.mastercard.ibpts.service.AccountService;
+
+/**
+ * Measures single transfers and batches of batchSize transfers between random accounts, with the highThroughput profile
+ * or against the baseline, which runs the default mapping with the JDBC batching of application.properties switched off.
+ * Every thread transfers within its own slice of the accounts, so the cost of writing is measured without the conflicts
+ * TransferBenchmark measures. settings overrides single properties, separated by semicolons, so every setting of the
+ * profile can be measured against its alternative:
+ * -p profile=highThroughput -p settings=spring.jpa.properties.hibernate.jdbc.batch_size=1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(16)
+public class PersistenceBenchmark {
+
+    private static final int      FIRST_ACCOUNT_ID = 10_000;
+    private static final String   BASELINE         = "baseline";
+    private static final String[] UNBATCHED        = { "spring.jpa.properties.hibernate.jdbc.batch_size=1",
+            "spring.jpa.properties.hibernate.order_inserts=false", "spring.jpa.properties.hibernate.order_updates=false",
+            "spring.jpa.properties.hibernate.jdbc.batch_versioned_data=false" };
+
+    @Param({ BASELINE, "highThroughput" })
+    public String profile;
+
+    @Param({ "" })
+    public String settings;
+
+    @Param({ "10000" })
+    public int accounts;
+
+    @Param({ "100" })
+    public int batchSize;
+
+    ConfigurableApplicationContext context;
+    AccountService                 accountService;
+    final AtomicInteger            nextSlice = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Stream<String> profileSettings = BASELINE.equals(profile) ? Stream.of(UNBATCHED) : Stream.of("spring.profiles.active=" + profile);
+        context = BenchmarkApplication.start(Stream.concat(profileSettings,
+                Stream.of(settings.split(";")).filter(setting -> !setting.isEmpty())).toArray(String[]::new));
+        BenchmarkApplication.seedAccounts(context, FIRST_ACCOUNT_ID, accounts, BigDecimal.valueOf(1_000_000_000));
+        accountService = context.getBean(AccountService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Slice {
+
+        int firstAccountId;
+        int size;
+
+        @Setup(Level.Trial)
+        public void setUp(PersistenceBenchmark benchmark, BenchmarkParams params) {
+            size = benchmark.accounts / params.getThreads();
+            firstAccountId = FIRST_ACCOUNT_ID + benchmark.nextSlice.getAndIncrement() * size;
+        }
+
+        int randomAccountId() {
+            return firstAccountId + ThreadLocalRandom.current().nextInt(size);
+        }
+
+        int counterpartOf(int accountId) {
+            return firstAccountId + (accountId - firstAccountId + 1) % size;
+        }
+    }
+
+    @Benchmark
+    public boolean transferAmount(Slice slice) {
+        int toAccountId = slice.randomAccountId();
+        try {
+            accountService.transferAmount(toAccountId, AccountDetails.builder()
+                    .accountId(slice.counterpartOf(toAccountId))
+                    .amount(BigDecimal.ONE)
+                    .type(TransactionType.CREDIT)
+                    .build());
+            return true;
+        } catch (TransferConflictException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public int transferAmounts(Slice slice) {
+        List<TransferInstruction> transfers = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            int toAccountId = slice.randomAccountId();
+            transfers.add(TransferInstruction.builder()
+                    .toAccountId(toAccountId)
+                    .accountId(slice.counterpartOf(toAccountId))
+                    .amount(BigDecimal.ONE)
+                    .type(TransactionType.CREDIT)
+                    .build());
+        }
+        try {
+            return accountService.transferAmounts(transfers).size();
+        } catch (TransferConflictException e) {
+            return 0;
+        }
+    }
+
+}
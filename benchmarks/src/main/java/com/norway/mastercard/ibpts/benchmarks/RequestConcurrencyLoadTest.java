@@ -0,0 +1,176 @@
+package com.norway.mastercard.ibpts.benchmarks;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.ConfigurableApplicationContext;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Closed-loop HTTP load test of the balance, mini statement and transfer endpoints, run once with the blocking and
+ * once with the async request execution of AccountResource.
+ * For every mode the number of concurrent clients is doubled until the p99 latency exceeds the target, the report
+ * shows the highest concurrency sustained within the target next to its throughput. The servlet container is given
+ * few threads on purpose, that is the limit the async mode lifts.
+ *
+ * Run with java -cp benchmarks/target/benchmarks.jar com.norway.mastercard.ibpts.benchmarks.RequestConcurrencyLoadTest
+ * and tune with -Dload.tomcatThreads=16 -Dload.asyncThreads=10 -Dload.p99TargetMs=50 -Dload.seconds=10
+ * -Dload.maxClients=1024. The admission control is off unless -Dload.admission=true, so neither mode sheds load.
+ */
+public final class RequestConcurrencyLoadTest {
+
+    private static final int FIRST_ACCOUNT_ID = 10_000;
+    private static final int ACCOUNTS         = 1_000;
+
+    private final int        tomcatThreads = Integer.getInteger("load.tomcatThreads", 16);
+    private final int        asyncThreads  = Integer.getInteger("load.asyncThreads", 10);
+    private final long       p99TargetMs   = Long.getLong("load.p99TargetMs", 50);
+    private final int        seconds       = Integer.getInteger("load.seconds", 10);
+    private final int        maxClients    = Integer.getInteger("load.maxClients", 1024);
+    private final boolean    admission     = Boolean.getBoolean("load.admission");
+    private final HttpClient httpClient    = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private RequestConcurrencyLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        RequestConcurrencyLoadTest loadTest = new RequestConcurrencyLoadTest();
+        List<String> report = new ArrayList<>();
+        report.add(loadTest.run(false));
+        report.add(loadTest.run(true));
+        System.out.println();
+        System.out.printf("p99 target %d ms, %d servlet threads%n", loadTest.p99TargetMs, loadTest.tomcatThreads);
+        report.forEach(System.out::println);
+    }
+
+    private String run(boolean async) throws Exception {
+        String mode = async ? "async" : "blocking";
+        try (ConfigurableApplicationContext context = BenchmarkApplication.startServer(
+                "server.tomcat.threads.max=" + tomcatThreads,
+                "server.tomcat.threads.min-spare=" + tomcatThreads,
+                "server.tomcat.accept-count=" + maxClients,
+                "server.tomcat.max-connections=" + (maxClients + tomcatThreads),
+                "ibpts.async.enabled=" + async,
+                "ibpts.async.max-threads=" + asyncThreads,
+                "ibpts.admission.enabled=" + admission)) {
+            BenchmarkApplication.seedAccounts(context, FIRST_ACCOUNT_ID, ACCOUNTS, BigDecimal.valueOf(1_000_000_000));
+            String baseUrl = "http://localhost:" + BenchmarkApplication.localPort(context) + "/accounts/";
+            measure(baseUrl, Math.min(8, maxClients));
+
+            int sustainedClients = 0;
+            double sustainedThroughput = 0;
+            long sustainedP99 = 0;
+            for (int clients = 8; clients <= maxClients; clients *= 2) {
+                Result result = measure(baseUrl, clients);
+                System.out.printf("%-8s clients=%5d throughput=%9.1f req/s p50=%6.1f ms p99=%6.1f ms errors=%d%n", mode, clients,
+                        result.throughput, result.p50Micros / 1000.0, result.p99Micros / 1000.0, result.errors);
+                if (result.p99Micros > p99TargetMs * 1000 || result.errors > 0) {
+                    break;
+                }
+                sustainedClients = clients;
+                sustainedThroughput = result.throughput;
+                sustainedP99 = result.p99Micros;
+            }
+            return String.format("%-8s sustained %5d clients at %9.1f req/s, p99 %6.1f ms", mode, sustainedClients, sustainedThroughput,
+                    sustainedP99 / 1000.0);
+        }
+    }
+
+    private Result measure(String baseUrl, int clients) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<Future<long[]>> futures = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            futures.add(executor.submit(() -> runClient(baseUrl, deadline, errors)));
+        }
+        List<long[]> perClient = new ArrayList<>(clients);
+        int total = 0;
+        for (Future<long[]> future : futures) {
+            long[] latencies = future.get();
+            perClient.add(latencies);
+            total += latencies.length;
+        }
+        executor.shutdown();
+
+        long[] latencies = new long[total];
+        int offset = 0;
+        for (long[] clientLatencies : perClient) {
+            System.arraycopy(clientLatencies, 0, latencies, offset, clientLatencies.length);
+            offset += clientLatencies.length;
+        }
+        Arrays.sort(latencies);
+        return new Result(total / (double) seconds, percentile(latencies, 0.50), percentile(latencies, 0.99), errors.get());
+    }
+
+    private long[] runClient(String baseUrl, long deadline, AtomicLong errors) {
+        long[] latencies = new long[1024];
+        int count = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            HttpRequest request = nextRequest(baseUrl, random);
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200) {
+                    errors.incrementAndGet();
+                }
+            } catch (Exception e) {
+                errors.incrementAndGet();
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = (System.nanoTime() - start) / 1_000;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private HttpRequest nextRequest(String baseUrl, ThreadLocalRandom random) {
+        int accountId = FIRST_ACCOUNT_ID + random.nextInt(ACCOUNTS);
+        int operation = random.nextInt(10);
+        if (operation < 6) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + accountId + "/balance")).GET().build();
+        } else if (operation < 9) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + accountId + "/statements/mini")).GET().build();
+        }
+        int fromAccountId = FIRST_ACCOUNT_ID + (accountId - FIRST_ACCOUNT_ID + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        return HttpRequest.newBuilder(URI.create(baseUrl + accountId))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"accountId\":" + fromAccountId + ",\"amount\":1,\"type\":\"CREDIT\"}"))
+                .build();
+    }
+
+    private static long percentile(long[] sortedLatencies, double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+        return sortedLatencies[(int) Math.min(sortedLatencies.length - 1, Math.ceil(percentile * sortedLatencies.length) - 1)];
+    }
+
+    @RequiredArgsConstructor
+    private static final class Result {
+
+        private final double throughput;
+        private final long   p50Micros;
+        private final long   p99Micros;
+        private final long   errors;
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.norway.mastercard.ibpts.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.service.internal.ColumnarWriter;
+
+/**
+ * Compares the encodings of a balance and of a statement page of statementSize rows as the controller writes them:
+ * JSON or application/x-ibpts-columnar, each with and without the gzip compression of the server. Every operation
+ * writes into the same reused buffer, as into a response, and returns the number of bytes sent; the sizes of all
+ * encodings are printed once per trial, the time per operation is the CPU cost of a response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseEncodingBenchmark {
+
+    @Param({ "10", "500" })
+    public int statementSize;
+
+    ObjectWriter          objectWriter;
+    AccountDetails        balance;
+    StatementPage         statement;
+    ByteArrayOutputStream response;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectWriter = JsonMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build()
+                .writer();
+        balance = AccountDetails.builder()
+                .accountId(111)
+                .balance(new BigDecimal("1234567.89"))
+                .currencyCode(BenchmarkApplication.CURRENCY)
+                .build();
+        List<AccountDetails> rows = new ArrayList<>(statementSize);
+        for (int i = 0; i < statementSize; i++) {
+            rows.add(AccountDetails.builder()
+                    .accountId(111)
+                    .amount(BigDecimal.valueOf(1 + i * 7919L % 100_000, 2))
+                    .currencyCode(BenchmarkApplication.CURRENCY)
+                    .type(i % 2 == 0 ? TransactionType.DEBIT : TransactionType.CREDIT)
+                    .transactionDate(LocalDateTime.of(2021, 10, 10, 0, 0).minusMinutes(i * 37L))
+                    .build());
+        }
+        statement = new StatementPage(rows, "MjAyMS0xMC0xMFQwMDowMF8xMjM0NQ");
+        response = new ByteArrayOutputStream(64 * 1024);
+
+        System.out.printf("%nbytes per response, statementSize %d: balance json %d columnar %d, statement json %d columnar %d, "
+                + "gzip json %d columnar %d%n", statementSize, jsonBalance(), columnarBalance(), jsonStatement(), columnarStatement(),
+                jsonStatementGzip(), columnarStatementGzip());
+    }
+
+    @Benchmark
+    public int jsonBalance() throws IOException {
+        response.reset();
+        objectWriter.writeValue(response, balance);
+        return response.size();
+    }
+
+    @Benchmark
+    public int columnarBalance() throws IOException {
+        response.reset();
+        ColumnarWriter.writeDetails(balance, response);
+        return response.size();
+    }
+
+    @Benchmark
+    public int jsonStatement() throws IOException {
+        response.reset();
+        objectWriter.writeValue(response, statement);
+        return response.size();
+    }
+
+    @Benchmark
+    public int columnarStatement() throws IOException {
+        response.reset();
+        ColumnarWriter.writePage(statement, response);
+        return response.size();
+    }
+
+    @Benchmark
+    public int jsonStatementGzip() throws IOException {
+        response.reset();
+        try (OutputStream gzip = new GZIPOutputStream(response, 8192)) {
+            objectWriter.writeValue(gzip, statement);
+        }
+        return response.size();
+    }
+
+    @Benchmark
+    public int columnarStatementGzip() throws IOException {
+        response.reset();
+        try (OutputStream gzip = new GZIPOutputStream(response, 8192)) {
+            ColumnarWriter.writePage(statement, gzip);
+        }
+        return response.size();
+    }
+
+}
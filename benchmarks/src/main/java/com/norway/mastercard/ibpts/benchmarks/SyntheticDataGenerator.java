@@ -0,0 +1,219 @@
+package com.norway.mastercard.ibpts.benchmarks;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.norway.mastercard.ibpts.model.TransactionType;
+
+import lombok.Getter;
+
+/**
+ * The SyntheticDataGenerator bulk loads a database with accounts and a skewed transaction history between them.
+ * Both accounts of a transaction are drawn from a Zipf distribution, the account with rank 1 is firstAccountId, so the
+ * lowest accountIds get the longest histories, as the few busy accounts of a real bank do. Every transaction carries
+ * the running balances of both accounts, and no balance drops below the amount it pays, so statements and
+ * balance?asOf= see a consistent history. The daily and monthly statement buckets of the accounts are loaded along,
+ * each one once its day or month is over, as the transactions are generated in date order.
+ * The history is simulated twice from the same seed: the first pass computes the final balances the accounts are
+ * inserted with, the second inserts the transactions in batches, so only the balances stay in memory.
+ */
+public final class SyntheticDataGenerator {
+
+    private static final int    BATCH_SIZE         = 10_000;
+    private static final String INSERT_ACCOUNT     = "insert into account(account_id, balance_minor, currency, version) values(?, ?, ?, 0)";
+    private static final String INSERT_TRANSACTION = "insert into transaction(transaction_id, account_id, amount_minor, balance_minor, "
+            + "counterpart_balance_minor, transaction_date, booking_date, type, parent_account_id) values(%s, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_BUCKET      = "insert into statement_bucket(account_id, granularity, period_start, slot, "
+            + "debit_count, debit_minor, credit_count, credit_minor) values(?, ?, ?, 0, ?, ?, ?, ?)";
+
+    @Getter
+    private final int           firstAccountId;
+    @Getter
+    private final int           accounts;
+    private final long          transactions;
+    private final long          initialBalanceMinor;
+    private final long          maxAmountMinor;
+    private final long          seed;
+    private final ZipfSampler   sampler;
+    @Getter
+    private final LocalDateTime historyStart;
+    @Getter
+    private final LocalDateTime historyEnd;
+
+    /**
+     * @param firstAccountId accountId of the first account.
+     * @param accounts number of accounts.
+     * @param transactions number of transactions.
+     * @param zipfExponent skew of the transactions over the accounts, 0 spreads them evenly.
+     * @param initialBalanceMinor balance of every account before its history, in minor units.
+     * @param maxAmountMinor largest transaction amount in minor units.
+     * @param historyDays number of days up to now the transactions are spread over.
+     * @param seed seed of the random history, the same seed generates the same data.
+     */
+    public SyntheticDataGenerator(int firstAccountId, int accounts, long transactions, double zipfExponent, long initialBalanceMinor,
+            long maxAmountMinor, int historyDays, long seed) {
+        if (accounts < 2)
+            throw new IllegalArgumentException("At least two accounts are required");
+        this.firstAccountId = firstAccountId;
+        this.accounts = accounts;
+        this.transactions = transactions;
+        this.initialBalanceMinor = initialBalanceMinor;
+        this.maxAmountMinor = maxAmountMinor;
+        this.seed = seed;
+        this.sampler = zipfExponent > 0 ? new ZipfSampler(accounts, zipfExponent) : null;
+        this.historyEnd = LocalDateTime.now().withNano(0);
+        this.historyStart = historyEnd.minusDays(historyDays);
+    }
+
+    /**
+     * Draws an accountId with the skew of the history, for load which hits the same accounts.
+     *
+     * @param random source of randomness.
+     * @return int the accountId.
+     */
+    public int nextAccountId(SplittableRandom random) {
+        return firstAccountId + nextIndex(random);
+    }
+
+    /**
+     * Inserts the accounts and their transactions.
+     *
+     * @param jdbcTemplate jdbcTemplate of the database to load.
+     * @return long the number of transactions inserted, a transaction neither account can pay is skipped.
+     */
+    public long generate(JdbcTemplate jdbcTemplate) {
+        long[] balances = new long[accounts];
+        Arrays.fill(balances, initialBalanceMinor);
+        simulate(balances, (toIndex, fromIndex, amount, type, toBalance, fromBalance, date) -> {
+        });
+
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (int index = 0; index < accounts; index++) {
+            rows.add(new Object[] { firstAccountId + index, balances[index], BenchmarkApplication.CURRENCY });
+            if (rows.size() == BATCH_SIZE || index == accounts - 1) {
+                jdbcTemplate.batchUpdate(INSERT_ACCOUNT, rows);
+                rows.clear();
+            }
+        }
+
+        Arrays.fill(balances, initialBalanceMinor);
+        String insertTransaction = String.format(INSERT_TRANSACTION, BenchmarkApplication.nextTransactionId(jdbcTemplate));
+        Buckets days = new Buckets(jdbcTemplate, "DAY");
+        Buckets months = new Buckets(jdbcTemplate, "MONTH");
+        long inserted = simulate(balances, (toIndex, fromIndex, amount, type, toBalance, fromBalance, date) -> {
+            rows.add(new Object[] { firstAccountId + fromIndex, amount, toBalance, fromBalance, Timestamp.valueOf(date),
+                    Timestamp.valueOf(date), type.name(), firstAccountId + toIndex });
+            if (rows.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(insertTransaction, rows);
+                rows.clear();
+            }
+            long toChange = type == TransactionType.CREDIT ? amount : -amount;
+            days.add(date.toLocalDate(), firstAccountId + toIndex, toChange);
+            days.add(date.toLocalDate(), firstAccountId + fromIndex, -toChange);
+            months.add(date.toLocalDate().withDayOfMonth(1), firstAccountId + toIndex, toChange);
+            months.add(date.toLocalDate().withDayOfMonth(1), firstAccountId + fromIndex, -toChange);
+        });
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(insertTransaction, rows);
+        }
+        days.flush();
+        months.flush();
+        return inserted;
+    }
+
+    private long simulate(long[] balances, TransactionSink sink) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long stepNanos = transactions > 0 ? Duration.between(historyStart, historyEnd).toNanos() / transactions : 0;
+        long simulated = 0;
+        for (long i = 0; i < transactions; i++) {
+            int toIndex = nextIndex(random);
+            int fromIndex = nextIndex(random);
+            if (fromIndex == toIndex) {
+                fromIndex = (toIndex + 1 + random.nextInt(accounts - 1)) % accounts;
+            }
+            long amount = 1 + random.nextLong(maxAmountMinor);
+            TransactionType type = random.nextBoolean() ? TransactionType.CREDIT : TransactionType.DEBIT;
+            // a CREDIT is paid by the fromAccount, a DEBIT by the toAccount, turn it around when the payer is short
+            if (balances[type == TransactionType.CREDIT ? fromIndex : toIndex] <= amount) {
+                type = type == TransactionType.CREDIT ? TransactionType.DEBIT : TransactionType.CREDIT;
+                if (balances[type == TransactionType.CREDIT ? fromIndex : toIndex] <= amount) {
+                    continue;
+                }
+            }
+            long toDelta = type == TransactionType.CREDIT ? amount : -amount;
+            balances[toIndex] += toDelta;
+            balances[fromIndex] -= toDelta;
+            sink.accept(toIndex, fromIndex, amount, type, balances[toIndex], balances[fromIndex],
+                    historyStart.plusNanos(stepNanos * i).withNano(0));
+            simulated++;
+        }
+        return simulated;
+    }
+
+    private int nextIndex(SplittableRandom random) {
+        return sampler != null ? sampler.sample(random::nextDouble) - 1 : random.nextInt(accounts);
+    }
+
+    /**
+     * The totals of the accounts in the current period, debit count and amount followed by credit count and amount,
+     * inserted when the next period starts.
+     */
+    private static final class Buckets {
+
+        private final JdbcTemplate         jdbcTemplate;
+        private final String               granularity;
+        private final Map<Integer, long[]> totals = new HashMap<>();
+        private LocalDate                  periodStart;
+
+        private Buckets(JdbcTemplate jdbcTemplate, String granularity) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.granularity = granularity;
+        }
+
+        private void add(LocalDate period, int accountId, long change) {
+            if (!period.equals(periodStart)) {
+                flush();
+                periodStart = period;
+            }
+            long[] accountTotals = totals.computeIfAbsent(accountId, id -> new long[4]);
+            int offset = change < 0 ? 0 : 2;
+            accountTotals[offset]++;
+            accountTotals[offset + 1] += Math.abs(change);
+        }
+
+        private void flush() {
+            List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+            for (Map.Entry<Integer, long[]> entry : totals.entrySet()) {
+                long[] accountTotals = entry.getValue();
+                rows.add(new Object[] { entry.getKey(), granularity, Date.valueOf(periodStart), accountTotals[0], accountTotals[1],
+                        accountTotals[2], accountTotals[3] });
+                if (rows.size() == BATCH_SIZE) {
+                    jdbcTemplate.batchUpdate(INSERT_BUCKET, rows);
+                    rows.clear();
+                }
+            }
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_BUCKET, rows);
+            }
+            totals.clear();
+        }
+    }
+
+    @FunctionalInterface
+    private interface TransactionSink {
+
+        void accept(int toIndex, int fromIndex, long amount, TransactionType type, long toBalance, long fromBalance, LocalDateTime date);
+    }
+
+}
@@ -0,0 +1,300 @@
+package com.norway.mastercard.ibpts.benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * HTTP load test of the AccountResource endpoints against an embedded h2 database seeded by the
+ * SyntheticDataGenerator, entirely in-process and offline. The requests pick their accounts with the skew of the
+ * generated history, so the busy accounts get most of the load and have the longest statements.
+ * In the closed loop load.clients clients send their next request as soon as the previous one is answered, the
+ * throughput is what the system sustains. In the open loop requests are sent at load.rate per second whatever the
+ * answers, and the latency is measured from the moment a request was due, so a stalled server shows in the
+ * percentiles instead of slowing down the load.
+ * After load.warmupSeconds the latencies of load.seconds are recorded in HdrHistograms, one per operation, and
+ * reported with the throughput. Requests the admission control rejects with 429 or 503 are counted apart and left out
+ * of the latencies, which are those of the admitted requests, a rejected client of the closed loop waits for the
+ * Retry-After of the response before its next request. -Dload.admission=false turns the admission control off.
+ *
+ * Run with java -Xmx4g -cp benchmarks/target/benchmarks.jar com.norway.mastercard.ibpts.benchmarks.SyntheticLoadTest
+ * and tune with -Dload.accounts=1000000 -Dload.transactions=2000000 -Dload.zipfExponent=1.0 -Dload.historyDays=365
+ * -Dload.seed=42 -Dload.mode=closed|open -Dload.clients=64 -Dload.rate=2000 -Dload.maxInFlight=4096
+ * -Dload.warmupSeconds=10 -Dload.seconds=30 -Dload.batchSize=100 -Dload.profile= -Dload.admission=true
+ * -Dload.mix=BALANCE:40,BALANCE_AS_OF:5,BALANCES:5,MINI_STATEMENT:20,STATEMENT:5,SUMMARY:5,TRANSFER:20.
+ */
+public final class SyntheticLoadTest {
+
+    private static final int    FIRST_ACCOUNT_ID = 10_000;
+    private static final String DEFAULT_MIX      = "BALANCE:40,BALANCE_AS_OF:5,BALANCES:5,MINI_STATEMENT:20,STATEMENT:5,SUMMARY:5,TRANSFER:20";
+
+    private final int                     accounts       = Integer.getInteger("load.accounts", 1_000_000);
+    private final long                    transactions   = Long.getLong("load.transactions", 2_000_000);
+    private final double                  zipfExponent   = Double.parseDouble(System.getProperty("load.zipfExponent", "1.0"));
+    private final int                     historyDays    = Integer.getInteger("load.historyDays", 365);
+    private final long                    seed           = Long.getLong("load.seed", 42);
+    private final boolean                 openLoop       = "open".equals(System.getProperty("load.mode", "closed"));
+    private final int                     clients        = Integer.getInteger("load.clients", 64);
+    private final int                     rate           = Integer.getInteger("load.rate", 2_000);
+    private final int                     maxInFlight    = Integer.getInteger("load.maxInFlight", 4_096);
+    private final int                     warmupSeconds  = Integer.getInteger("load.warmupSeconds", 10);
+    private final int                     seconds        = Integer.getInteger("load.seconds", 30);
+    private final int                     batchSize      = Integer.getInteger("load.batchSize", 100);
+    private final String                  profile        = System.getProperty("load.profile", "");
+    private final boolean                 admission      = Boolean.parseBoolean(System.getProperty("load.admission", "true"));
+    private final Operation[]             operationTable = operationTable(System.getProperty("load.mix", DEFAULT_MIX));
+    private final HttpClient              httpClient     = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private SyntheticDataGenerator        generator;
+    private String                        baseUrl;
+
+    private SyntheticLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        new SyntheticLoadTest().run();
+    }
+
+    private void run() throws Exception {
+        try (ConfigurableApplicationContext context = BenchmarkApplication.startServer("spring.profiles.active=" + profile,
+                "ibpts.admission.enabled=" + admission,
+                "server.tomcat.accept-count=" + Math.max(clients, maxInFlight),
+                "server.tomcat.max-connections=" + Math.max(clients, maxInFlight))) {
+            generator = new SyntheticDataGenerator(FIRST_ACCOUNT_ID, accounts, transactions, zipfExponent, 100_000_000L, 100_000L,
+                    historyDays, seed);
+            long start = System.nanoTime();
+            long inserted = generator.generate(context.getBean(JdbcTemplate.class));
+            double loadSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("seeded %d accounts and %d transactions in %.1f s, %.0f rows/s%n", accounts, inserted, loadSeconds,
+                    (accounts + inserted) / loadSeconds);
+
+            baseUrl = "http://localhost:" + BenchmarkApplication.localPort(context) + "/accounts/";
+            String mode = openLoop ? "open loop at " + rate + " req/s" : "closed loop with " + clients + " clients";
+            System.out.printf("warming up for %d s, %s%n", warmupSeconds, mode);
+            measure(warmupSeconds, newStats());
+            System.out.printf("measuring for %d s, %s%n", seconds, mode);
+            Map<Operation, Stats> stats = newStats();
+            report(stats, measure(seconds, stats));
+        }
+    }
+
+    private static Map<Operation, Stats> newStats() {
+        Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+        return stats;
+    }
+
+    private double measure(int durationSeconds, Map<Operation, Stats> stats) throws Exception {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        if (openLoop) {
+            runOpenLoop(deadline, stats);
+        } else {
+            runClosedLoop(deadline, stats);
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private void runClosedLoop(long deadline, Map<Operation, Stats> stats) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<?>> futures = new ArrayList<>(clients);
+        for (int client = 0; client < clients; client++) {
+            SplittableRandom random = new SplittableRandom(seed + client + 1);
+            futures.add(executor.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    Operation operation = nextOperation(random);
+                    HttpRequest request = nextRequest(operation, random);
+                    long sent = System.nanoTime();
+                    int status;
+                    long retryAfterSeconds = 0;
+                    try {
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        status = response.statusCode();
+                        retryAfterSeconds = response.headers().firstValueAsLong("Retry-After").orElse(0);
+                    } catch (Exception e) {
+                        status = -1;
+                    }
+                    stats.get(operation).record(sent, status);
+                    // a rejected client waits as told, like a well-behaved client of the service would
+                    if (retryAfterSeconds > 0) {
+                        LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(retryAfterSeconds));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    private void runOpenLoop(long deadline, Map<Operation, Stats> stats) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        SplittableRandom random = new SplittableRandom(seed);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long due = System.nanoTime();
+        while (due < deadline) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = nextOperation(random);
+            HttpRequest request = nextRequest(operation, random);
+            // a late request still counts from when it was due, that is the wait the user saw
+            long sent = due;
+            inFlight.acquire();
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                stats.get(operation).record(sent, failure != null ? -1 : response.statusCode());
+                inFlight.release();
+            });
+            due += intervalNanos;
+        }
+        if (!inFlight.tryAcquire(maxInFlight, 1, TimeUnit.MINUTES)) {
+            System.out.println("requests still in flight after one minute");
+        }
+    }
+
+    private Operation nextOperation(SplittableRandom random) {
+        return operationTable[random.nextInt(operationTable.length)];
+    }
+
+    private HttpRequest nextRequest(Operation operation, SplittableRandom random) {
+        int accountId = generator.nextAccountId(random);
+        switch (operation) {
+        case BALANCE:
+            return get(accountId + "/balance");
+        case BALANCE_AS_OF:
+            LocalDateTime start = generator.getHistoryStart();
+            long historySeconds = ChronoUnit.SECONDS.between(start, generator.getHistoryEnd());
+            return get(accountId + "/balance?asOf=" + start.plusSeconds(random.nextLong(historySeconds + 1)));
+        case BALANCES:
+            String accountIds = IntStream.range(0, batchSize)
+                    .mapToObj(i -> String.valueOf(generator.nextAccountId(random)))
+                    .collect(Collectors.joining(",", "[", "]"));
+            return post("balances", accountIds);
+        case MINI_STATEMENT:
+            return get(accountId + "/statements/mini");
+        case STATEMENT:
+            return get(accountId + "/statements?limit=50");
+        case SUMMARY:
+            LocalDate to = generator.getHistoryEnd().toLocalDate().minusDays(random.nextInt(historyDays + 1));
+            return get(accountId + "/statements/summary?from=" + to.minusDays(random.nextInt(historyDays + 1)) + "&to=" + to);
+        default:
+            int fromAccountId = generator.nextAccountId(random);
+            if (fromAccountId == accountId) {
+                fromAccountId = FIRST_ACCOUNT_ID + (accountId - FIRST_ACCOUNT_ID + 1) % accounts;
+            }
+            return post(String.valueOf(accountId), "{\"accountId\":" + fromAccountId + ",\"amount\":1,\"type\":\"CREDIT\"}");
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static void report(Map<Operation, Stats> stats, double elapsedSeconds) {
+        Histogram total = new Histogram(3);
+        long totalErrors = 0;
+        long totalRejected = 0;
+        System.out.printf("%-15s %9s %10s %9s %9s %9s %9s %9s %7s %9s%n", "operation", "requests", "req/s", "p50 ms", "p90 ms", "p99 ms",
+                "p99.9 ms", "max ms", "errors", "rejected");
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Histogram histogram = entry.getValue().latencies;
+            long rejected = entry.getValue().rejected.get();
+            if (histogram.getTotalCount() == 0 && rejected == 0) {
+                continue;
+            }
+            total.add(histogram);
+            totalErrors += entry.getValue().errors.get();
+            totalRejected += rejected;
+            printRow(entry.getKey().name(), histogram, elapsedSeconds, entry.getValue().errors.get(), rejected);
+        }
+        printRow("TOTAL", total, elapsedSeconds, totalErrors, totalRejected);
+    }
+
+    private static void printRow(String name, Histogram histogram, double elapsedSeconds, long errors, long rejected) {
+        System.out.printf("%-15s %9d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %7d %9d%n", name, histogram.getTotalCount(),
+                histogram.getTotalCount() / elapsedSeconds, millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()), errors, rejected);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    /**
+     * Expands the weights of the mix, e.g. BALANCE:3,TRANSFER:1, to a table drawn from uniformly.
+     */
+    private static Operation[] operationTable(String mix) {
+        List<Operation> table = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.trim().split(":");
+            Operation operation = Operation.valueOf(weight[0].trim());
+            for (int i = Integer.parseInt(weight[1].trim()); i > 0; i--) {
+                table.add(operation);
+            }
+        }
+        if (table.isEmpty())
+            throw new IllegalArgumentException("load.mix needs at least one operation with a positive weight");
+        return table.toArray(new Operation[0]);
+    }
+
+    private enum Operation {
+        BALANCE, BALANCE_AS_OF, BALANCES, MINI_STATEMENT, STATEMENT, SUMMARY, TRANSFER
+    }
+
+    private static final class Stats {
+
+        private final Histogram  latencies = new ConcurrentHistogram(3);
+        private final AtomicLong errors    = new AtomicLong();
+        private final AtomicLong rejected  = new AtomicLong();
+
+        void record(long sentNanos, int status) {
+            if (status == 429 || status == 503) {
+                rejected.incrementAndGet();
+                return;
+            }
+            latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentNanos));
+            if (status != 200) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.norway.mastercard.ibpts.benchmarks;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.norway.mastercard.ibpts.exception.TransferConflictException;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.service.AccountService;
+
+/**
+ * Measures AccountService.transferAmount with every thread on its own account pair (uncontended), every thread on the
+ * same pair (hotPair) and every thread picking random pairs out of many accounts (random).
+ * Transfers conflicting past the retry budget are counted as completed operations, the conflict rate shows in the
+ * profilers or in the retry counters of the service.
+ * With -p profile=ledgerService -p journal=true the ledger journals every transfer into a temporary directory, with
+ * -p sequencer=true it applies them on the single writer of the TransferSequencer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class TransferBenchmark {
+
+    private static final int FIRST_ACCOUNT_ID = 10_000;
+
+    @Param({ "uncontended", "hotPair", "random" })
+    public String scenario;
+
+    @Param({ "10000" })
+    public int accounts;
+
+    @Param({ "" })
+    public String profile;
+
+    @Param({ "false" })
+    public boolean journal;
+
+    @Param({ "false" })
+    public boolean sequencer;
+
+    ConfigurableApplicationContext context;
+    AccountService                 accountService;
+    final AtomicInteger            nextPair = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkApplication.start("spring.profiles.active=" + profile, "ibpts.journal.enabled=" + journal,
+                "ibpts.journal.dir=" + Files.createTempDirectory("ibpts-journal"), "ibpts.ledger.sequencer.enabled=" + sequencer);
+        BenchmarkApplication.seedAccounts(context, FIRST_ACCOUNT_ID, accounts, BigDecimal.valueOf(1_000_000_000));
+        accountService = context.getBean(AccountService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class AccountPair {
+
+        int     toAccountId;
+        int     fromAccountId;
+        boolean reverse;
+
+        @Setup(Level.Trial)
+        public void setUp(TransferBenchmark benchmark) {
+            int pair = benchmark.nextPair.getAndIncrement();
+            toAccountId = FIRST_ACCOUNT_ID + 2 * pair;
+            fromAccountId = toAccountId + 1;
+        }
+    }
+
+    @Benchmark
+    public boolean transferAmount(AccountPair pair) {
+        int toAccountId;
+        int fromAccountId;
+        switch (scenario) {
+        case "hotPair":
+            toAccountId = FIRST_ACCOUNT_ID;
+            fromAccountId = FIRST_ACCOUNT_ID + 1;
+            break;
+        case "random":
+            toAccountId = FIRST_ACCOUNT_ID + ThreadLocalRandom.current().nextInt(accounts);
+            fromAccountId = FIRST_ACCOUNT_ID + ThreadLocalRandom.current().nextInt(accounts);
+            break;
+        default:
+            toAccountId = pair.toAccountId;
+            fromAccountId = pair.fromAccountId;
+        }
+        pair.reverse = !pair.reverse;
+        try {
+            accountService.transferAmount(pair.reverse ? fromAccountId : toAccountId, AccountDetails.builder()
+                    .accountId(pair.reverse ? toAccountId : fromAccountId)
+                    .amount(BigDecimal.ONE)
+                    .type(TransactionType.CREDIT)
+                    .build());
+            return true;
+        } catch (TransferConflictException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.norway.mastercard.ibpts.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.service.AccountService;
+
+/**
+ * Measures AccountService.transferAmount between two accounts with a growing transaction history, the time per
+ * transfer should not depend on historySize.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransferHistoryBenchmark {
+
+    private static final int ACCOUNT_ID             = 10_000;
+    private static final int COUNTERPART_ACCOUNT_ID = 10_001;
+
+    @Param({ "10", "1000", "100000" })
+    public int historySize;
+
+    @Param({ "" })
+    public String profile;
+
+    ConfigurableApplicationContext context;
+    AccountService                 accountService;
+    boolean                        reverse;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("spring.profiles.active=" + profile);
+        BenchmarkApplication.seedAccounts(context, ACCOUNT_ID, 2, BigDecimal.valueOf(1_000_000_000));
+        BenchmarkApplication.seedTransactions(context, ACCOUNT_ID, COUNTERPART_ACCOUNT_ID, historySize);
+        BenchmarkApplication.seedTransactions(context, COUNTERPART_ACCOUNT_ID, ACCOUNT_ID, historySize);
+        accountService = context.getBean(AccountService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void transferAmount() {
+        reverse = !reverse;
+        accountService.transferAmount(reverse ? COUNTERPART_ACCOUNT_ID : ACCOUNT_ID, AccountDetails.builder()
+                .accountId(reverse ? ACCOUNT_ID : COUNTERPART_ACCOUNT_ID)
+                .amount(BigDecimal.ONE)
+                .type(TransactionType.CREDIT)
+                .build());
+    }
+
+}
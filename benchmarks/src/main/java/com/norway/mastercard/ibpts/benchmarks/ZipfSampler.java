@@ -0,0 +1,75 @@
+package com.norway.mastercard.ibpts.benchmarks;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * The ZipfSampler draws ranks 1 to numberOfElements with a probability proportional to 1 / rank^exponent, by the
+ * rejection-inversion method of Hörmann and Derflinger. It needs constant memory and time whatever the number of
+ * elements, so it can pick among millions of accounts, and it is immutable, so threads can share it.
+ */
+final class ZipfSampler {
+
+    private final int    numberOfElements;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralNumberOfElements;
+    private final double s;
+
+    ZipfSampler(int numberOfElements, double exponent) {
+        if (numberOfElements < 1)
+            throw new IllegalArgumentException("At least one element is required");
+        if (exponent <= 0)
+            throw new IllegalArgumentException("The exponent must be positive");
+        this.numberOfElements = numberOfElements;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralNumberOfElements = hIntegral(numberOfElements + 0.5);
+        this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    /**
+     * Draws a rank.
+     *
+     * @param uniform source of uniform doubles in [0, 1).
+     * @return int the rank, 1 is the most frequent.
+     */
+    int sample(DoubleSupplier uniform) {
+        while (true) {
+            double u = hIntegralNumberOfElements + uniform.getAsDouble() * (hIntegralX1 - hIntegralNumberOfElements);
+            double x = hIntegralInverse(u);
+            int k = (int) Math.min(numberOfElements, Math.max(1, Math.round(x)));
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1 - exponent) * logX) * logX;
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = Math.max(-1, x * (1 - exponent));
+        return Math.exp(helper1(t) * x);
+    }
+
+    /**
+     * log(1 + x) / x, precise for x near 0.
+     */
+    private static double helper1(double x) {
+        return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1 / 3.0 - 0.25 * x));
+    }
+
+    /**
+     * (exp(x) - 1) / x, precise for x near 0.
+     */
+    private static double helper2(double x) {
+        return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+
+}
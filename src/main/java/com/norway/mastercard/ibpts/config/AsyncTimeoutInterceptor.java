@@ -0,0 +1,39 @@
+package com.norway.mastercard.ibpts.config;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+/**
+ * The AsyncTimeoutInterceptor lets a single handler give its async request a timeout of its own, e.g. the streamed
+ * statement export, while every other async request keeps the short spring.mvc.async.request-timeout.
+ * StreamingResponseBody has no timeout of its own, so the handler stores it on the request and it is applied just
+ * before the async processing starts.
+ */
+public class AsyncTimeoutInterceptor implements CallableProcessingInterceptor {
+
+    private static final String TIMEOUT_ATTRIBUTE = AsyncTimeoutInterceptor.class.getName() + ".timeout";
+
+    /**
+     * Sets the timeout of the async processing the handler is about to start.
+     *
+     * @param request request of the handler.
+     * @param timeout timeout of the request.
+     */
+    public static void setTimeout(NativeWebRequest request, Duration timeout) {
+        request.setAttribute(TIMEOUT_ATTRIBUTE, timeout, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    @Override
+    public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+        Object timeout = request.getAttribute(TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (timeout instanceof Duration && request instanceof AsyncWebRequest) {
+            ((AsyncWebRequest) request).setTimeout(((Duration) timeout).toMillis());
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.norway.mastercard.ibpts.config;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.service.internal.ColumnarWriter;
+
+/**
+ * The ColumnarHttpMessageConverter writes AccountDetails, lists of them and StatementPages as
+ * application/x-ibpts-columnar for clients which ask for it in the Accept header, see ColumnarWriter.
+ * The message is written straight into the response body, requests are still read as JSON.
+ */
+public class ColumnarHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType COLUMNAR = MediaType.parseMediaType(ColumnarWriter.MEDIA_TYPE);
+
+    public ColumnarHttpMessageConverter() {
+        super(COLUMNAR);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return AccountDetails.class == clazz || StatementPage.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(mediaType))
+            return false;
+        if (supports(clazz))
+            return true;
+        // lists are only written when they are declared as lists of AccountDetails
+        ResolvableType resolvableType = type != null ? ResolvableType.forType(type) : ResolvableType.forClass(clazz);
+        return Collection.class.isAssignableFrom(resolvableType.toClass())
+                && AccountDetails.class == resolvableType.asCollection().resolveGeneric(0);
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        return supports(clazz) || Collection.class.isAssignableFrom(clazz) ? getSupportedMediaTypes() : Collections.emptyList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        if (value instanceof AccountDetails) {
+            ColumnarWriter.writeDetails((AccountDetails) value, outputMessage.getBody());
+        } else if (value instanceof StatementPage) {
+            ColumnarWriter.writePage((StatementPage) value, outputMessage.getBody());
+        } else {
+            ColumnarWriter.writeList(((Collection<AccountDetails>) value).iterator(), outputMessage.getBody());
+        }
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Requests are not read as " + ColumnarWriter.MEDIA_TYPE, inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<? extends Object> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Requests are not read as " + ColumnarWriter.MEDIA_TYPE, inputMessage);
+    }
+
+}
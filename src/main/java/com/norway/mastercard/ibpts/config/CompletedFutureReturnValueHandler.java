@@ -0,0 +1,88 @@
+package com.norway.mastercard.ibpts.config;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * The CompletedFutureReturnValueHandler writes a CompletableFuture which is already complete when the handler returns
+ * like a plain return value, a failed one like an exception thrown by the handler. Without it Spring MVC starts async
+ * processing and dispatches the request a second time even for a future completed inline, which is every future of
+ * AccountResource unless ibpts.async.enabled=true. Futures still running are handed to the async processing as before.
+ */
+public class CompletedFutureReturnValueHandler implements HandlerMethodReturnValueHandler {
+
+    private final HandlerMethodReturnValueHandler delegate;
+
+    /**
+     * @param delegate handlers of the return values, the async one included.
+     */
+    public CompletedFutureReturnValueHandler(HandlerMethodReturnValueHandler delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean supportsReturnType(MethodParameter returnType) {
+        return CompletableFuture.class.isAssignableFrom(returnType.getParameterType());
+    }
+
+    @Override
+    public void handleReturnValue(Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer,
+            NativeWebRequest webRequest) throws Exception {
+        CompletableFuture<?> future = (CompletableFuture<?>) returnValue;
+        if (future == null || !future.isDone()) {
+            delegate.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+            return;
+        }
+        Object result;
+        try {
+            result = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        }
+        delegate.handleReturnValue(result, new ResultParameter(returnType), mavContainer, webRequest);
+    }
+
+    /**
+     * The return type of the handler with the CompletableFuture taken off, e.g. List&lt;AccountDetails&gt; for
+     * CompletableFuture&lt;List&lt;AccountDetails&gt;&gt;.
+     */
+    private static final class ResultParameter extends MethodParameter {
+
+        private final ResolvableType resultType;
+
+        private ResultParameter(MethodParameter futureType) {
+            super(futureType);
+            this.resultType = ResolvableType.forType(futureType.getGenericParameterType()).as(CompletableFuture.class).getGeneric();
+        }
+
+        private ResultParameter(ResultParameter original) {
+            super(original);
+            this.resultType = original.resultType;
+        }
+
+        @Override
+        public Class<?> getParameterType() {
+            return resultType.toClass();
+        }
+
+        @Override
+        public Type getGenericParameterType() {
+            return resultType.getType();
+        }
+
+        @Override
+        public ResultParameter clone() {
+            return new ResultParameter(this);
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.norway.mastercard.ibpts.config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * The ShardSecretFilter restricts the endpoints of ShardResource to the other nodes of a sharded deployment. Their
+ * participant endpoints change balances without a counterpart, so a request under /shards/ is only passed on when it
+ * carries the shared secret ibpts.shards.secret in the X-Shard-Secret header, and answered with 403 otherwise. Without
+ * a configured secret every such request is rejected, which leaves a node serving only local shards unaffected.
+ */
+@Component
+@Profile("shardedService")
+public class ShardSecretFilter extends OncePerRequestFilter {
+
+    public static final String  HEADER      = "X-Shard-Secret";
+    private static final String SHARDS_PATH = "/shards/";
+
+    private final byte[] secret;
+
+    public ShardSecretFilter(@Value("${ibpts.shards.secret:}") String secret) {
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().substring(request.getContextPath().length()).startsWith(SHARDS_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HEADER);
+        if (secret.length == 0 || header == null || !MessageDigest.isEqual(secret, header.getBytes(StandardCharsets.UTF_8))) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "Missing or wrong " + HEADER + " header");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+}
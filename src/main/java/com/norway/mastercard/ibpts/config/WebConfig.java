@@ -0,0 +1,56 @@
+package com.norway.mastercard.ibpts.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandlerComposite;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+/**
+ * The class is used to add the compact response encodings, the per-handler async timeouts and the synchronous
+ * handling of completed futures to Spring MVC.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // added last, so JSON stays the encoding of clients which accept anything
+        converters.add(new ColumnarHttpMessageConverter());
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new AsyncTimeoutInterceptor());
+    }
+
+    @Bean
+    public WebMvcRegistrations completedFutureRegistrations() {
+        return new WebMvcRegistrations() {
+
+            @Override
+            public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+                return new RequestMappingHandlerAdapter() {
+
+                    @Override
+                    public void afterPropertiesSet() {
+                        super.afterPropertiesSet();
+                        // first, the handler of CompletableFuture which starts the async processing would win otherwise
+                        List<HandlerMethodReturnValueHandler> handlers = new ArrayList<>(getReturnValueHandlers());
+                        handlers.add(0, new CompletedFutureReturnValueHandler(new HandlerMethodReturnValueHandlerComposite()
+                                .addHandlers(getReturnValueHandlers())));
+                        setReturnValueHandlers(handlers);
+                    }
+                };
+            }
+        };
+    }
+
+}
@@ -1,17 +1,41 @@
 package com.norway.mastercard.ibpts.controller;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.norway.mastercard.ibpts.config.AsyncTimeoutInterceptor;
+import com.norway.mastercard.ibpts.exception.TooManyRequestsException;
 import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementFormat;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.StatementSummary;
+import com.norway.mastercard.ibpts.model.TransferInstruction;
+import com.norway.mastercard.ibpts.model.TransferResult;
 import com.norway.mastercard.ibpts.service.AccountService;
+import com.norway.mastercard.ibpts.service.internal.IdempotencyStore;
 
 import lombok.RequiredArgsConstructor;
 
@@ -23,22 +47,137 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class AccountResource {
 
-    private final AccountService accountService;
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
 
+    private final AccountService   accountService;
+    private final RequestExecutor  requestExecutor;
+    private final IdempotencyStore idempotencyStore;
+    private final AdmissionControl admissionControl;
+    @Value("${ibpts.statement.export.timeout:1h}")
+    private Duration               exportTimeout    = Duration.ofHours(1);
+
+    /**
+     * Performs a transfer. Requests carrying an Idempotency-Key header are applied once per key, repeats get the
+     * outcome of the first request. Others are submitted to the service, the response completes when the transfer
+     * engine completes the transfer. Requests over the concurrency limit of the endpoint are rejected with 429, see
+     * AdmissionControl.
+     */
     @PostMapping("/{accountId}")
-    public ResponseEntity<Void> transferAmount(@PathVariable("accountId") int toAccountId, @RequestBody AccountDetails accountDetails) {
-        accountService.transferAmount(toAccountId, accountDetails);
-        return ResponseEntity.ok().build();
+    public CompletableFuture<ResponseEntity<Void>> transferAmount(@PathVariable("accountId") int toAccountId,
+            @RequestBody AccountDetails accountDetails, @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return admissionControl.admitAsync(AdmissionControl.TRANSFER, () -> requestExecutor
+                    .supply(() -> accountService.submitTransfer(toAccountId, accountDetails))
+                    .thenCompose(transfer -> transfer)
+                    .thenApply(done -> ResponseEntity.ok().<Void>build()));
+        }
+        return admissionControl.admitAsync(AdmissionControl.TRANSFER, () -> requestExecutor.supply(() -> {
+            idempotencyStore.execute(idempotencyKey, fingerprintOf(toAccountId, accountDetails),
+                    () -> accountService.transferAmount(toAccountId, accountDetails));
+            return ResponseEntity.ok().build();
+        }));
+    }
+
+    @PostMapping("/transfers/batch")
+    public List<TransferResult> transferAmounts(@RequestBody List<TransferInstruction> transfers) {
+        return admissionControl.admit(AdmissionControl.TRANSFER_BATCH, () -> accountService.transferAmounts(transfers));
     }
 
+    /**
+     * Reads the current balance, or with asOf the balance the account had at that moment.
+     */
     @GetMapping("/{accountId}/balance")
-    public AccountDetails getAccountBalance(@PathVariable int accountId) {
-        return accountService.getAccountBalance(accountId);
+    public CompletableFuture<AccountDetails> getAccountBalance(@PathVariable int accountId,
+            @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime asOf) {
+        if (asOf != null) {
+            return requestExecutor.supply(() -> accountService.getAccountBalance(accountId, asOf));
+        }
+        return requestExecutor.supply(() -> accountService.getAccountBalance(accountId));
+    }
+
+    /**
+     * Reads the balances of many accounts in one request, accounts which do not exist are left out of the response.
+     */
+    @PostMapping("/balances")
+    public CompletableFuture<List<AccountDetails>> getAccountBalances(@RequestBody List<Integer> accountIds) {
+        return requestExecutor.supply(() -> accountService.getAccountBalances(accountIds));
     }
 
     @GetMapping("/{accountId}/statements/mini")
-    public List<AccountDetails> getMiniStatement(@PathVariable int accountId) {
-        return accountService.getMiniStatement(accountId);
+    public CompletableFuture<List<AccountDetails>> getMiniStatement(@PathVariable int accountId) {
+        return admissionControl.admitAsync(AdmissionControl.MINI_STATEMENT,
+                () -> requestExecutor.supply(() -> accountService.getMiniStatement(accountId)));
+    }
+
+    @GetMapping("/{accountId}/statements")
+    public StatementPage getStatement(@PathVariable int accountId, @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        return admissionControl.admit(AdmissionControl.STATEMENT, () -> accountService.getStatement(accountId, cursor, limit));
+    }
+
+    /**
+     * Reads the number and the total amount of the debits and credits of the account between two days, both inclusive.
+     */
+    @GetMapping("/{accountId}/statements/summary")
+    public CompletableFuture<StatementSummary> getStatementSummary(@PathVariable int accountId,
+            @RequestParam @DateTimeFormat(iso = ISO.DATE) LocalDate from, @RequestParam @DateTimeFormat(iso = ISO.DATE) LocalDate to) {
+        return admissionControl.admitAsync(AdmissionControl.STATEMENT_SUMMARY,
+                () -> requestExecutor.supply(() -> accountService.getStatementSummary(accountId, from, to)));
+    }
+
+    /**
+     * Streams the whole statement. The stream may run for far longer than spring.mvc.async.request-timeout, so it gets
+     * the timeout ibpts.statement.export.timeout of its own.
+     */
+    @GetMapping("/{accountId}/statements/export")
+    public ResponseEntity<StreamingResponseBody> exportStatement(@PathVariable int accountId,
+            @RequestParam(defaultValue = "NDJSON") StatementFormat format, NativeWebRequest webRequest) {
+        // the export holds its admission until the whole statement is streamed
+        Runnable release = admissionControl.acquire(AdmissionControl.STATEMENT_EXPORT);
+        try {
+            // unknown accounts are rejected with 404 before the streamed response is committed
+            accountService.getAccountBalance(accountId);
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+        AsyncTimeoutInterceptor.setTimeout(webRequest, exportTimeout);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"statement-" + accountId + "." + format.getFileExtension() + "\"")
+                .body(outputStream -> {
+                    try {
+                        accountService.exportStatement(accountId, format, outputStream);
+                    } finally {
+                        release.run();
+                    }
+                });
+    }
+
+    /**
+     * Answers a request over the concurrency limit of its endpoint right away, without the error page of the container,
+     * so rejecting costs little when rejecting is all the service can afford.
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<Map<String, String>> rejected(TooManyRequestsException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(Map.of("message", e.getMessage()));
+    }
+
+    /**
+     * Answers a transfer which failed validation, e.g. insufficient funds, with 400, the status IdempotencyStore replays
+     * for repeats of it.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> rejected(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+    }
+
+    private static String fingerprintOf(int toAccountId, AccountDetails accountDetails) {
+        return toAccountId + "|" + accountDetails.getAccountId() + "|" + accountDetails.getType() + "|"
+                + (accountDetails.getAmount() == null ? null : accountDetails.getAmount().stripTrailingZeros().toPlainString()) + "|"
+                + accountDetails.getTransactionDate();
     }
 
 }
@@ -0,0 +1,138 @@
+package com.norway.mastercard.ibpts.controller;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.norway.mastercard.ibpts.exception.TooManyRequestsException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * The AdmissionControl puts a ConcurrencyLimit in front of every transfer and statement endpoint of AccountResource,
+ * so each endpoint adapts its own budget to its own latency and an overloaded export does not starve the transfers.
+ * A request over the limit of its endpoint is rejected with 429 and a Retry-After header before it takes a thread
+ * or a connection. The limits start at ibpts.admission.initial-limit and stay between ibpts.admission.min-limit and
+ * ibpts.admission.max-limit, ibpts.admission.max-limits overrides the maximum per endpoint.
+ */
+@Component
+public class AdmissionControl implements MeterBinder {
+
+    public static final String TRANSFER          = "transfer";
+    public static final String TRANSFER_BATCH    = "transfer-batch";
+    public static final String MINI_STATEMENT    = "statement-mini";
+    public static final String STATEMENT         = "statement";
+    public static final String STATEMENT_SUMMARY = "statement-summary";
+    public static final String STATEMENT_EXPORT  = "statement-export";
+
+    private static final Runnable NO_RELEASE = () -> {
+    };
+
+    private final Map<String, ConcurrencyLimit> limits;
+    private final long                          retryAfterSeconds;
+
+    public AdmissionControl(@Value("${ibpts.admission.enabled:true}") boolean enabled,
+            @Value("${ibpts.admission.initial-limit:20}") int initialLimit,
+            @Value("${ibpts.admission.min-limit:2}") int minLimit,
+            @Value("${ibpts.admission.max-limit:200}") int maxLimit,
+            @Value("#{${ibpts.admission.max-limits:{:}}}") Map<String, Integer> maxLimits,
+            @Value("${ibpts.admission.window:100ms}") Duration window,
+            @Value("${ibpts.admission.retry-after:1s}") Duration retryAfter) {
+        Map<String, ConcurrencyLimit> endpointLimits = new LinkedHashMap<>();
+        if (enabled) {
+            for (String endpoint : List.of(TRANSFER, TRANSFER_BATCH, MINI_STATEMENT, STATEMENT, STATEMENT_SUMMARY, STATEMENT_EXPORT)) {
+                endpointLimits.put(endpoint, new ConcurrencyLimit(initialLimit, minLimit, maxLimits.getOrDefault(endpoint, maxLimit),
+                        window.toNanos(), System::nanoTime));
+            }
+        }
+        this.limits = Collections.unmodifiableMap(endpointLimits);
+        this.retryAfterSeconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+
+    /**
+     * Admits a request to the endpoint.
+     *
+     * @param endpoint endpoint of the request.
+     * @return Runnable to run once the request completed, its latency adapts the limit.
+     * @throws TooManyRequestsException when the endpoint is at its limit.
+     */
+    public Runnable acquire(String endpoint) {
+        ConcurrencyLimit limit = limits.get(endpoint);
+        if (limit == null) {
+            return NO_RELEASE;
+        }
+        long start = limit.tryAcquire();
+        if (start < 0)
+            throw new TooManyRequestsException("Too many " + endpoint + " requests in progress, retry later", retryAfterSeconds);
+        return () -> limit.release(start);
+    }
+
+    /**
+     * Runs a request which completes when it returns.
+     *
+     * @param endpoint endpoint of the request.
+     * @param request request to run.
+     * @return T the result of the request.
+     */
+    public <T> T admit(String endpoint, Supplier<T> request) {
+        Runnable release = acquire(endpoint);
+        try {
+            return request.get();
+        } finally {
+            release.run();
+        }
+    }
+
+    /**
+     * Runs a request which completes with the future it returns.
+     *
+     * @param endpoint endpoint of the request.
+     * @param request request to run.
+     * @return CompletableFuture<T> the result of the request.
+     */
+    public <T> CompletableFuture<T> admitAsync(String endpoint, Supplier<CompletableFuture<T>> request) {
+        Runnable release = acquire(endpoint);
+        CompletableFuture<T> result;
+        try {
+            result = request.get();
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+        return result.whenComplete((value, failure) -> release.run());
+    }
+
+    /**
+     * Publishes the limit, the requests in progress and the rejected requests of every endpoint.
+     *
+     * @param meterRegistry registry to publish to.
+     */
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        limits.forEach((endpoint, limit) -> {
+            Gauge.builder("ibpts.admission.limit", limit, ConcurrencyLimit::getLimit)
+                    .description("Requests an endpoint admits at the same time")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            Gauge.builder("ibpts.admission.in.flight", limit, ConcurrencyLimit::getInFlight)
+                    .description("Admitted requests in progress")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            FunctionCounter.builder("ibpts.admission.rejected", limit, ConcurrencyLimit::getRejected)
+                    .description("Requests rejected at the concurrency limit of an endpoint")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+        });
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.norway.mastercard.ibpts.controller;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The ConcurrencyLimit caps the requests of one endpoint in progress and adapts the cap to their latency, in the
+ * manner of a gradient limiter: the average latency of every window of requests is compared with the baseline, a slow
+ * moving average of the windows. A window slower than tolerance times the baseline shrinks the limit by their ratio, at
+ * most by half, a window within it grows the limit by its square root. The limit only grows while at least half of it
+ * is in use, so an idle endpoint does not build up a limit it never tested. The baseline falls to faster windows
+ * quickly but rises over about BASELINE_WINDOWS windows only, so a latency step keeps the limit reduced for as long as
+ * it takes an overloaded endpoint to recover, while a lasting change of the latency, e.g. a slower database, still
+ * becomes the new baseline instead of shrinking the limit for ever.
+ * The limit settles where the latency of the admitted requests stays within tolerance of the baseline, the requests
+ * beyond it are rejected at once instead of queueing on the servlet and connection pools.
+ */
+final class ConcurrencyLimit {
+
+    static final int            BASELINE_WINDOWS = 600;
+    private static final double TOLERANCE        = 1.5;
+    private static final double BASELINE_RISE    = 2.0 / (BASELINE_WINDOWS + 1);
+    private static final double BASELINE_FALL    = 0.5;
+    private static final double MIN_GRADIENT     = 0.5;
+    private static final int    MIN_SAMPLES      = 10;
+
+    private final int           minLimit;
+    private final int           maxLimit;
+    private final long          windowNanos;
+    private final LongSupplier  nanoClock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder     rejected = new LongAdder();
+    private volatile int        limit;
+
+    private double              estimatedLimit;
+    private double              baselineNanos;
+    private long                windowStart;
+    private long                windowSamples;
+    private long                windowSumNanos;
+    private int                 windowMaxInFlight;
+
+    ConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long windowNanos, LongSupplier nanoClock) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.windowNanos = windowNanos;
+        this.nanoClock = nanoClock;
+        this.estimatedLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+        this.windowStart = nanoClock.getAsLong();
+    }
+
+    /**
+     * Admits a request while the requests in progress are below the limit.
+     *
+     * @return long the start of the request to pass to release, or -1 when the request is rejected.
+     */
+    long tryAcquire() {
+        for (int current = inFlight.get(); current < limit; current = inFlight.get()) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return nanoClock.getAsLong();
+            }
+        }
+        rejected.increment();
+        return -1;
+    }
+
+    /**
+     * Completes an admitted request and counts its latency.
+     *
+     * @param start value tryAcquire returned for the request.
+     */
+    void release(long start) {
+        long now = nanoClock.getAsLong();
+        int current = inFlight.getAndDecrement();
+        synchronized (this) {
+            windowSamples++;
+            windowSumNanos += now - start;
+            windowMaxInFlight = Math.max(windowMaxInFlight, current);
+            if (windowSamples >= MIN_SAMPLES && now - windowStart >= windowNanos) {
+                adapt(windowSumNanos / (double) windowSamples);
+                windowStart = now;
+                windowSamples = 0;
+                windowSumNanos = 0;
+                windowMaxInFlight = 0;
+            }
+        }
+    }
+
+    private void adapt(double averageNanos) {
+        if (baselineNanos == 0) {
+            baselineNanos = averageNanos;
+        } else {
+            baselineNanos += (averageNanos - baselineNanos) * (averageNanos < baselineNanos ? BASELINE_FALL : BASELINE_RISE);
+        }
+        if (averageNanos > TOLERANCE * baselineNanos) {
+            estimatedLimit *= Math.max(MIN_GRADIENT, TOLERANCE * baselineNanos / averageNanos);
+        } else if (windowMaxInFlight >= estimatedLimit / 2) {
+            estimatedLimit += Math.sqrt(estimatedLimit);
+        }
+        estimatedLimit = Math.min(maxLimit, Math.max(minLimit, estimatedLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    long getRejected() {
+        return rejected.sum();
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.norway.mastercard.ibpts.controller;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.norway.mastercard.ibpts.exception.ServiceBusyException;
+
+/**
+ * The RequestExecutor decides on which thread the blocking service calls of AccountResource run.
+ * By default they run inline on the servlet thread and the completed future is written like a plain return value, see
+ * CompletedFutureReturnValueHandler. With ibpts.async.enabled=true they run on a dedicated pool of
+ * ibpts.async.max-threads threads, so the servlet thread is handed back to the container while the JDBC calls are in
+ * flight and the number of requests in progress is no longer capped by the container thread pool. The pool defaults
+ * to the size of the connection pool, more threads would only queue on Hikari for a connection.
+ */
+@Component
+public class RequestExecutor {
+
+    private final ExecutorService executor;
+
+    public RequestExecutor(@Value("${ibpts.async.enabled:false}") boolean enabled, @Value("${ibpts.async.max-threads:${spring.datasource.hikari.maximum-pool-size:10}}") int maxThreads,
+            @Value("${ibpts.async.queue-capacity:10000}") int queueCapacity) {
+        if (enabled) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("account-request-"));
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * Runs the service call.
+     *
+     * @param call service call to run.
+     * @return CompletableFuture<T> the result, already completed when the async mode is off.
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> call) {
+        if (executor == null) {
+            try {
+                return CompletableFuture.completedFuture(call.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        try {
+            return CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new ServiceBusyException("Too many requests in progress, retry later"));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.norway.mastercard.ibpts.controller;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.TransferLeg;
+import com.norway.mastercard.ibpts.service.internal.AccountServiceImpl;
+import com.norway.mastercard.ibpts.service.internal.TransferParticipant;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The ShardResource is called by the other nodes of a sharded deployment to perform transfers on the accounts of this
+ * node, both within its shard and as a participant of transfers between shards. Rejections are answered with 400 and
+ * their message.
+ */
+@RestController
+@RequestMapping("/shards")
+@RequiredArgsConstructor
+@Profile("shardedService")
+public class ShardResource {
+
+    private final AccountServiceImpl  accountService;
+    private final TransferParticipant transferParticipant;
+
+    @PostMapping("/accounts/{accountId}/transfers")
+    public void transferAmount(@PathVariable("accountId") int toAccountId, @RequestBody AccountDetails accountDetails) {
+        accountService.transferAmount(toAccountId, accountDetails);
+    }
+
+    @PostMapping("/balances")
+    public List<AccountDetails> getAccountBalances(@RequestBody List<Integer> accountIds) {
+        return accountService.getAccountBalances(accountIds);
+    }
+
+    @PostMapping("/transfers")
+    public void prepare(@RequestBody TransferLeg leg) {
+        transferParticipant.prepare(leg);
+    }
+
+    @PostMapping("/transfers/{transferId}/commit")
+    public Long commit(@PathVariable String transferId, @RequestParam(required = false) Long counterpartBalance) {
+        return transferParticipant.commit(transferId, counterpartBalance);
+    }
+
+    @PostMapping("/transfers/{transferId}/abort")
+    public void abort(@PathVariable String transferId) {
+        transferParticipant.abort(transferId);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> rejected(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+    }
+
+}
@@ -1,6 +1,5 @@
 package com.norway.mastercard.ibpts.dao;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -9,6 +8,7 @@ import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.Version;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -18,6 +18,7 @@ import lombok.Setter;
 
 /**
  * The is a Account Entity class which is used to perform account specific sql operations.
+ * The balance is stored in minor units of the account currency.
  */
 @Entity
 @Getter
@@ -29,8 +30,10 @@ public class Account {
 
     @Id
     private Integer           accountId;
-    private BigDecimal        balance;
+    private long              balanceMinor;
     private String            currency;
+    @Version
+    private Long              version;
     @OneToMany(mappedBy = "account", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Transaction> transactions = new ArrayList<>();
 
@@ -0,0 +1,50 @@
+package com.norway.mastercard.ibpts.dao;
+
+import java.io.Serializable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * The is a AccountSlot Entity class which holds one of the sub-balances of a hot account, in minor units of the
+ * account currency. Credits to a hot account are added to one of its slots instead of the Account row, so concurrent
+ * credits lock different rows. The balance of the account is the balance of the Account row plus those of its slots.
+ */
+@Entity
+@Getter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@IdClass(AccountSlot.Key.class)
+public class AccountSlot {
+
+    @Id
+    private Integer accountId;
+    @Id
+    private Integer slot;
+    private long    balanceMinor;
+
+    /**
+     * The primary key of a AccountSlot.
+     */
+    @Getter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Integer accountId;
+        private Integer slot;
+
+    }
+
+}
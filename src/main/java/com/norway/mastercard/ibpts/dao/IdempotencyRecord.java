@@ -0,0 +1,36 @@
+package com.norway.mastercard.ibpts.dao;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * The is a IdempotencyRecord Entity class which keeps the outcome of a transfer request under its idempotency key.
+ * The status is the http status of the original response, the message its error message if any.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(indexes = @Index(name = "idx_idempotency_record_created", columnList = "createdAt"))
+public class IdempotencyRecord {
+
+    @Id
+    private String        idempotencyKey;
+    private String        fingerprint;
+    private int           status;
+    private String        message;
+    private LocalDateTime createdAt;
+
+}
@@ -0,0 +1,30 @@
+package com.norway.mastercard.ibpts.dao;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * The is a LedgerCheckpoint Entity class which keeps the journal sequence up to which the write-behind of the
+ * AccountLedger persisted every transfer. Its single row is written in the database transaction of every flush.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LedgerCheckpoint {
+
+    public static final int LEDGER = 1;
+
+    @Id
+    private Integer checkpointId;
+    private long    journalSequence;
+
+}
@@ -0,0 +1,68 @@
+package com.norway.mastercard.ibpts.dao;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * The is a StatementBucket Entity class which holds the totals of the transactions of one account in one day or one
+ * month, the granularity being DAY or MONTH and periodStart the first day of the period.
+ * Amounts are stored in minor units of the account currency, from the point of view of the account: money it received
+ * counts as credit and money it paid as debit, whichever side of the transfer it was on.
+ * The credits a hot account receives in its AccountSlots are counted in buckets of the same slot, so they do not wait
+ * on one bucket row either, slot 0 holds everything else. A summary adds up the buckets of all slots.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@IdClass(StatementBucket.Key.class)
+public class StatementBucket {
+
+    public static final String DAY   = "DAY";
+    public static final String MONTH = "MONTH";
+
+    @Id
+    private Integer   accountId;
+    @Id
+    private String    granularity;
+    @Id
+    private LocalDate periodStart;
+    @Id
+    private int       slot;
+    private long      debitCount;
+    private long      debitMinor;
+    private long      creditCount;
+    private long      creditMinor;
+
+    /**
+     * The primary key of a StatementBucket.
+     */
+    @Getter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Integer   accountId;
+        private String    granularity;
+        private LocalDate periodStart;
+        private int       slot;
+
+    }
+
+}
@@ -1,14 +1,15 @@
 package com.norway.mastercard.ibpts.dao;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -17,8 +18,18 @@ import lombok.NoArgsConstructor;
 
 /**
  * The is a Transaction Entity class which is used to perform transaction specific sql operations.
+ * The amount is stored in minor units of the currency of the parent account, balanceMinor is the balance of the
+ * parent account right after the transaction and counterpartBalanceMinor the one of the account accountId, so the
+ * balance of an account at any date is read from a single row. The transactionDate is the one given with the transfer,
+ * the bookingDate is set by the service when the balances were changed, so the running balances follow the bookingDate
+ * and the balances at a date are looked up by it. journalSequence is the sequence of the transfer in the
+ * TransferJournal of the ledger, null for transfers which were not journaled.
  */
 @Entity
+@Table(indexes = { @Index(name = "idx_transaction_account_date", columnList = "parentAccountId, transactionDate, transactionId"),
+        @Index(name = "idx_transaction_account_booking", columnList = "parentAccountId, bookingDate, transactionId"),
+        @Index(name = "idx_transaction_counterpart_booking", columnList = "accountId, bookingDate, transactionId"),
+        @Index(name = "idx_transaction_journal_sequence", columnList = "journalSequence") })
 @Getter
 @Builder
 @AllArgsConstructor
@@ -29,9 +40,13 @@ public class Transaction {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer       transactionId;
     private Integer       accountId;
-    private BigDecimal    amount;
+    private long          amountMinor;
     private String        type;
+    private Long          balanceMinor;
+    private Long          counterpartBalanceMinor;
     private LocalDateTime transactionDate;
+    private LocalDateTime bookingDate;
+    private Long          journalSequence;
     @ManyToOne(targetEntity = Account.class)
     @JoinColumn(name = "parentAccountId")
     private Account       account;
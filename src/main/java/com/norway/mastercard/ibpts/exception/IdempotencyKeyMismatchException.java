@@ -0,0 +1,17 @@
+package com.norway.mastercard.ibpts.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * The class is used to handle the IdempotencyKeyMismatchException thrown when an idempotency key is reused for a
+ * different request.
+ */
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class IdempotencyKeyMismatchException extends RuntimeException {
+
+    public IdempotencyKeyMismatchException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.norway.mastercard.ibpts.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * The class is used to handle the InvalidDateRangeException thrown when a date range ends before it starts.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidDateRangeException extends RuntimeException {
+
+    public InvalidDateRangeException(String message) {
+        super(message);
+    }
+
+}
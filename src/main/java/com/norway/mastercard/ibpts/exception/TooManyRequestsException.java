@@ -0,0 +1,23 @@
+package com.norway.mastercard.ibpts.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import lombok.Getter;
+
+/**
+ * The class is used to handle the TooManyRequestsException thrown when an endpoint is at its concurrency limit.
+ * AccountResource answers it with a Retry-After header of retryAfterSeconds.
+ */
+@Getter
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+}
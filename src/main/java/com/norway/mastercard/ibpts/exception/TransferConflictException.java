@@ -0,0 +1,16 @@
+package com.norway.mastercard.ibpts.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * The class is used to handle the TransferConflictException thrown when a transfer keeps losing concurrent updates.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class TransferConflictException extends RuntimeException {
+
+    public TransferConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.norway.mastercard.ibpts.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import lombok.Getter;
+
+/**
+ * The class is used to handle the TransferIncompleteException thrown when a transfer between shards is applied to the
+ * fromAccount but its leg of the toAccount could not be committed. The transferId identifies it in the logs of the
+ * coordinator, which keeps retrying the commit.
+ */
+@Getter
+@ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+public class TransferIncompleteException extends RuntimeException {
+
+    private final String transferId;
+
+    public TransferIncompleteException(String transferId, String message, Throwable cause) {
+        super(message, cause);
+        this.transferId = transferId;
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.norway.mastercard.ibpts.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * The class is used to handle the TransferNotPreparedException thrown when a leg of a transfer between shards is
+ * committed which is neither prepared nor recently committed on the node, e.g. after a restart of the node.
+ */
+@ResponseStatus(HttpStatus.GONE)
+public class TransferNotPreparedException extends RuntimeException {
+
+    public TransferNotPreparedException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.norway.mastercard.ibpts.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * This enumeration class provides the formats in which a full statement can be exported.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum StatementFormat {
+    NDJSON("application/x-ndjson", "ndjson"), CSV("text/csv", "csv"), COLUMNAR("application/x-ibpts-columnar", "ibpts");
+
+    private final String mediaType;
+    private final String fileExtension;
+}
@@ -0,0 +1,27 @@
+package com.norway.mastercard.ibpts.model;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * The StatementPage is a model returned by the paginated statement operation.
+ * Holds one page of transactions, newest first, and the cursor to read the next older page when there is one.
+ */
+@Builder
+@Getter
+@JsonInclude(value = Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatementPage {
+
+    private List<AccountDetails> transactions;
+    private String               nextCursor;
+
+}
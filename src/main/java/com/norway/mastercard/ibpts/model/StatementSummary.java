@@ -0,0 +1,35 @@
+package com.norway.mastercard.ibpts.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * The StatementSummary is a model returned by the statement summary operation.
+ * Holds the number and the total amount of the debits and credits of an account between from and to, both inclusive.
+ */
+@Builder
+@Getter
+@JsonInclude(value = Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatementSummary {
+
+    private Integer    accountId;
+    private String     currencyCode;
+    private LocalDate  from;
+    private LocalDate  to;
+    private long       transactionCount;
+    private long       debitCount;
+    private BigDecimal debitAmount;
+    private long       creditCount;
+    private BigDecimal creditAmount;
+
+}
@@ -0,0 +1,27 @@
+package com.norway.mastercard.ibpts.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * The TransferInstruction is a model used by the batch transfer operation.
+ * Holds one transfer from the account accountId to the account toAccountId.
+ */
+@Builder
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferInstruction {
+
+    private int             toAccountId;
+    private int             accountId;
+    private BigDecimal      amount;
+    private TransactionType type;
+    private LocalDateTime   transactionDate;
+
+}
@@ -0,0 +1,30 @@
+package com.norway.mastercard.ibpts.model;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * The TransferLeg is a model used by the two-phase transfer between shards.
+ * Holds the signed change in minor units of one account of the transfer transferId, the leg of the toAccount also
+ * records the transaction.
+ */
+@Builder
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferLeg {
+
+    private String          transferId;
+    private int             accountId;
+    private int             counterpartAccountId;
+    private long            amountMinor;
+    private String          currencyCode;
+    private TransactionType type;
+    private LocalDateTime   transactionDate;
+    private boolean         recordTransaction;
+
+}
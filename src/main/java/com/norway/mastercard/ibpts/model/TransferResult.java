@@ -0,0 +1,30 @@
+package com.norway.mastercard.ibpts.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * The TransferResult is a model returned by the batch transfer operation for every TransferInstruction.
+ * Holds the position of the instruction in the batch, its status and the reason when it was not completed, and the
+ * transferId of an incomplete transfer between shards.
+ */
+@Builder
+@Getter
+@JsonInclude(value = Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferResult {
+
+    private int            index;
+    private int            toAccountId;
+    private int            accountId;
+    private TransferStatus status;
+    private String         message;
+    private String         transferId;
+
+}
@@ -0,0 +1,10 @@
+package com.norway.mastercard.ibpts.model;
+
+/**
+ * This enumeration class provides the outcome of a single transfer in a batch. FAILED transfers were not applied and
+ * may be retried, INCOMPLETE transfers between shards are applied to the fromAccount and their toAccount is completed
+ * later.
+ */
+public enum TransferStatus {
+    COMPLETED, REJECTED, FAILED, INCOMPLETE
+}
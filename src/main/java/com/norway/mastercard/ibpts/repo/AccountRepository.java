@@ -1,6 +1,12 @@
 package com.norway.mastercard.ibpts.repo;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.norway.mastercard.ibpts.dao.Account;
@@ -8,4 +14,48 @@ import com.norway.mastercard.ibpts.dao.Account;
 @Repository
 public interface AccountRepository extends JpaRepository<Account, Integer> {
 
+    int ID_CHUNK_SIZE = 1000;
+
+    /**
+     * Adds to the balance of an account with a single UPDATE statement, without loading the account or its
+     * transactions into the persistence context. The version is checked and incremented like an entity update does.
+     *
+     * @param accountId accountId of the account.
+     * @param delta amount in minor units to add, negative to take money away.
+     * @param version version of the account the change was calculated from.
+     * @return int 1 when the balance changed, 0 when the account changed since it was read.
+     */
+    @Modifying
+    @Query("update Account a set a.balanceMinor = a.balanceMinor + :delta, a.version = a.version + 1 "
+            + "where a.accountId = :accountId and a.version = :version")
+    int addToBalance(@Param("accountId") int accountId, @Param("delta") long delta, @Param("version") Long version);
+
+    /**
+     * Sets the balance of an account with a single UPDATE statement, without loading the account or its transactions
+     * into the persistence context. Used by the write-behind of the AccountLedger, which owns the balance, so the version
+     * is incremented but not checked.
+     *
+     * @param accountId accountId of the account.
+     * @param balance balance in minor units.
+     * @return int 1 when the balance was set, 0 when the account does not exist.
+     */
+    @Modifying
+    @Query("update Account a set a.balanceMinor = :balance, a.version = a.version + 1 where a.accountId = :accountId")
+    int setBalance(@Param("accountId") int accountId, @Param("balance") long balance);
+
+    /**
+     * Reads accounts with one IN query per ID_CHUNK_SIZE ids, so long lists stay within the parameter limits of the
+     * database.
+     *
+     * @param accountIds accountIds to read.
+     * @return List<Account> the accounts found, in no particular order.
+     */
+    default List<Account> findAllByIdInChunks(List<Integer> accountIds) {
+        List<Account> accounts = new ArrayList<>(accountIds.size());
+        for (int from = 0; from < accountIds.size(); from += ID_CHUNK_SIZE) {
+            accounts.addAll(findAllById(accountIds.subList(from, Math.min(accountIds.size(), from + ID_CHUNK_SIZE))));
+        }
+        return accounts;
+    }
+
 }
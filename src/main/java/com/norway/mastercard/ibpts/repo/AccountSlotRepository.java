@@ -0,0 +1,51 @@
+package com.norway.mastercard.ibpts.repo;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.norway.mastercard.ibpts.dao.AccountSlot;
+
+@Repository
+public interface AccountSlotRepository extends JpaRepository<AccountSlot, AccountSlot.Key> {
+
+    /**
+     * Adds to the balance of a slot with a single UPDATE statement. Slots only ever grow, so no version is checked.
+     *
+     * @param accountId accountId of the slot.
+     * @param slot number of the slot.
+     * @param delta amount in minor units to add.
+     * @return int 1 when the balance changed, 0 when the slot does not exist.
+     */
+    @Modifying
+    @Query("update AccountSlot s set s.balanceMinor = s.balanceMinor + :delta where s.accountId = :accountId and s.slot = :slot")
+    int addToSlot(@Param("accountId") int accountId, @Param("slot") int slot, @Param("delta") long delta);
+
+    /**
+     * Sums the balances of the slots of an account.
+     *
+     * @param accountId accountId to read.
+     * @return long the sum in minor units, 0 without slots.
+     */
+    @Query("select coalesce(sum(s.balanceMinor), 0) from AccountSlot s where s.accountId = :accountId")
+    long sumBalances(@Param("accountId") int accountId);
+
+    /**
+     * Reads the balance of the Account row and its slots with one statement, so the sum is taken from one snapshot.
+     *
+     * @param accountId accountId to read.
+     * @return Optional<Long> the total balance in minor units, empty when the account does not exist.
+     */
+    @Query("select a.balanceMinor + (select coalesce(sum(s.balanceMinor), 0) from AccountSlot s where s.accountId = a.accountId) "
+            + "from Account a where a.accountId = :accountId")
+    Optional<Long> findTotalBalance(@Param("accountId") int accountId);
+
+    @Query("select distinct s.accountId from AccountSlot s")
+    List<Integer> findSplitAccountIds();
+
+}
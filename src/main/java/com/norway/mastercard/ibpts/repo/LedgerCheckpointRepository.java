@@ -0,0 +1,11 @@
+package com.norway.mastercard.ibpts.repo;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.norway.mastercard.ibpts.dao.LedgerCheckpoint;
+
+@Repository
+public interface LedgerCheckpointRepository extends JpaRepository<LedgerCheckpoint, Integer> {
+
+}
@@ -0,0 +1,52 @@
+package com.norway.mastercard.ibpts.repo;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.norway.mastercard.ibpts.dao.StatementBucket;
+
+@Repository
+public interface StatementBucketRepository extends JpaRepository<StatementBucket, StatementBucket.Key> {
+
+    /**
+     * Adds to the totals of a bucket with a single UPDATE statement.
+     *
+     * @param accountId accountId of the bucket.
+     * @param granularity granularity of the bucket.
+     * @param periodStart first day of the period of the bucket.
+     * @param slot slot of the bucket.
+     * @param debitCount number of debits to add.
+     * @param debitMinor debited amount in minor units to add.
+     * @param creditCount number of credits to add.
+     * @param creditMinor credited amount in minor units to add.
+     * @return int 1 when the bucket changed, 0 when it does not exist yet.
+     */
+    @Modifying
+    @Query("update StatementBucket b set b.debitCount = b.debitCount + :debitCount, b.debitMinor = b.debitMinor + :debitMinor, "
+            + "b.creditCount = b.creditCount + :creditCount, b.creditMinor = b.creditMinor + :creditMinor "
+            + "where b.accountId = :accountId and b.granularity = :granularity and b.periodStart = :periodStart and b.slot = :slot")
+    int addToBucket(@Param("accountId") int accountId, @Param("granularity") String granularity,
+            @Param("periodStart") LocalDate periodStart, @Param("slot") int slot, @Param("debitCount") long debitCount, @Param("debitMinor") long debitMinor,
+            @Param("creditCount") long creditCount, @Param("creditMinor") long creditMinor);
+
+    /**
+     * Reads the buckets of an account whose period starts in the given range, through the primary key.
+     *
+     * @param accountId accountId to read.
+     * @param granularity granularity of the buckets.
+     * @param from first periodStart to read.
+     * @param until periodStart to stop before.
+     * @return List<StatementBucket> the buckets found.
+     */
+    @Query("select b from StatementBucket b where b.accountId = :accountId and b.granularity = :granularity "
+            + "and b.periodStart >= :from and b.periodStart < :until")
+    List<StatementBucket> findBuckets(@Param("accountId") int accountId, @Param("granularity") String granularity,
+            @Param("from") LocalDate from, @Param("until") LocalDate until);
+
+}
@@ -0,0 +1,87 @@
+package com.norway.mastercard.ibpts.repo;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.norway.mastercard.ibpts.dao.Transaction;
+
+@Repository
+public interface TransactionRepository extends JpaRepository<Transaction, Integer> {
+
+    @Query("select t from Transaction t where t.account.accountId = :accountId "
+            + "order by t.transactionDate desc, t.transactionId desc")
+    List<Transaction> findLatest(@Param("accountId") int accountId, Pageable pageable);
+
+    @Query("select t from Transaction t where t.account.accountId = :accountId "
+            + "and (t.transactionDate < :transactionDate or (t.transactionDate = :transactionDate and t.transactionId < :transactionId)) "
+            + "order by t.transactionDate desc, t.transactionId desc")
+    List<Transaction> findLatestBefore(@Param("accountId") int accountId, @Param("transactionDate") LocalDateTime transactionDate,
+            @Param("transactionId") int transactionId, Pageable pageable);
+
+    /**
+     * Reads the latest transaction booked on the account until the moment, the running balances follow the booking order
+     * and not the transactionDate given with the transfer. The Counterpart and After variants work the same way.
+     *
+     * @param accountId accountId of the parent account.
+     * @param asOf moment to read.
+     * @param pageable the first row.
+     * @return List<Transaction> the transaction, empty when none was booked until then.
+     */
+    @Query("select t from Transaction t where t.account.accountId = :accountId and t.balanceMinor is not null and t.bookingDate <= :asOf "
+            + "order by t.bookingDate desc, t.transactionId desc")
+    List<Transaction> findLatestUntil(@Param("accountId") int accountId, @Param("asOf") LocalDateTime asOf, Pageable pageable);
+
+    @Query("select t from Transaction t where t.accountId = :accountId and t.counterpartBalanceMinor is not null and t.bookingDate <= :asOf "
+            + "order by t.bookingDate desc, t.transactionId desc")
+    List<Transaction> findLatestCounterpartUntil(@Param("accountId") int accountId, @Param("asOf") LocalDateTime asOf, Pageable pageable);
+
+    @Query("select t from Transaction t where t.account.accountId = :accountId and t.balanceMinor is not null and t.bookingDate > :asOf "
+            + "order by t.bookingDate, t.transactionId")
+    List<Transaction> findEarliestAfter(@Param("accountId") int accountId, @Param("asOf") LocalDateTime asOf, Pageable pageable);
+
+    @Query("select t from Transaction t where t.accountId = :accountId and t.counterpartBalanceMinor is not null and t.bookingDate > :asOf "
+            + "order by t.bookingDate, t.transactionId")
+    List<Transaction> findEarliestCounterpartAfter(@Param("accountId") int accountId, @Param("asOf") LocalDateTime asOf, Pageable pageable);
+
+    /**
+     * Sums the changes of the balance of the parent account booked after the moment, a CREDIT adds to it and a DEBIT
+     * takes away. Together with sumCounterpartChangesAfter it reads the balance of accounts whose transactions record
+     * no running balance.
+     *
+     * @param accountId accountId of the parent account.
+     * @param asOf moment after which the changes are summed.
+     * @return long the sum in minor units, 0 when nothing was booked after it.
+     */
+    @Query("select coalesce(sum(case when t.type = 'CREDIT' then t.amountMinor else -t.amountMinor end), 0) from Transaction t "
+            + "where t.account.accountId = :accountId and t.bookingDate > :asOf")
+    long sumChangesAfter(@Param("accountId") int accountId, @Param("asOf") LocalDateTime asOf);
+
+    @Query("select coalesce(sum(case when t.type = 'CREDIT' then -t.amountMinor else t.amountMinor end), 0) from Transaction t "
+            + "where t.accountId = :accountId and t.bookingDate > :asOf")
+    long sumCounterpartChangesAfter(@Param("accountId") int accountId, @Param("asOf") LocalDateTime asOf);
+
+    /**
+     * Reads the journal sequences of the journaled transfers stored after the given one. The ledger stores the
+     * transactions of an account read in between two flushes ahead of the flush, recovery skips them.
+     *
+     * @param sequence journal sequence to start after.
+     * @return List<Long> the sequences, in no particular order.
+     */
+    @Query("select t.journalSequence from Transaction t where t.journalSequence > :sequence")
+    List<Long> findJournalSequencesAfter(@Param("sequence") long sequence);
+
+    @QueryHints({ @QueryHint(name = "org.hibernate.fetchSize", value = "500"), @QueryHint(name = "org.hibernate.readOnly", value = "true") })
+    @Query("select t from Transaction t where t.account.accountId = :accountId order by t.transactionDate, t.transactionId")
+    Stream<Transaction> streamByAccountId(@Param("accountId") int accountId);
+
+}
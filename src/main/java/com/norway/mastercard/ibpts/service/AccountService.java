@@ -1,15 +1,53 @@
 package com.norway.mastercard.ibpts.service;
 
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementFormat;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.StatementSummary;
+import com.norway.mastercard.ibpts.model.TransferInstruction;
+import com.norway.mastercard.ibpts.model.TransferResult;
 
 public interface AccountService {
 
     AccountDetails getAccountBalance(int accountId);
 
+    AccountDetails getAccountBalance(int accountId, LocalDateTime asOf);
+
+    List<AccountDetails> getAccountBalances(List<Integer> accountIds);
+
     List<AccountDetails> getMiniStatement(int accountId);
 
+    StatementPage getStatement(int accountId, String cursor, int limit);
+
+    void exportStatement(int accountId, StatementFormat format, OutputStream outputStream);
+
+    StatementSummary getStatementSummary(int accountId, LocalDate from, LocalDate to);
+
     void transferAmount(int toAccountId, AccountDetails accountDetails);
 
+    /**
+     * Performs a transfer without waiting for it where the implementation has an asynchronous transfer engine, by
+     * default it runs transferAmount on the calling thread.
+     *
+     * @param toAccountId accountId to read.
+     * @param accountDetails fromAccount details to read.
+     * @return CompletableFuture<Void> completed once the transfer is done, or failed with its rejection.
+     */
+    default CompletableFuture<Void> submitTransfer(int toAccountId, AccountDetails accountDetails) {
+        try {
+            transferAmount(toAccountId, accountDetails);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    List<TransferResult> transferAmounts(List<TransferInstruction> transfers);
+
 }
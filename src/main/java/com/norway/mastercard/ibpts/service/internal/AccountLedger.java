@@ -0,0 +1,496 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.norway.mastercard.ibpts.exception.AccountNotFoundException;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.repo.AccountRepository;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
+/**
+ * The AccountLedger keeps the balances of the accounts touched by transfers in memory.
+ * Balances and currencies live in an OffHeapAccountIndex keyed by the primitive accountId, so reading a balance or
+ * validating a transfer allocates nothing and millions of accounts stay out of the garbage collected heap. Only the
+ * transactions not yet persisted by the write-behind are kept on the heap, listed under both of their accounts, so the
+ * ones of a single account can be persisted ahead of the next flush.
+ * Every account is guarded by one lock out of a fixed set of stripes, so transfers between disjoint account pairs run
+ * in parallel while transfers sharing an account serialize. Locks are always taken in ascending stripe order, the
+ * stripe being derived from the accountId, which keeps two-account transfers free of deadlocks. Adding an account
+ * takes the insert lock, growing the index additionally takes every stripe lock.
+ */
+@Component
+@Profile("ledgerService")
+public class AccountLedger {
+
+    private final AccountRepository                                accountRepository;
+    private final ReentrantLock[]                                  stripes;
+    private final int                                              mask;
+    private final OffHeapAccountIndex                              index;
+    private final Object                                           insertLock          = new Object();
+    private final List<CurrencyUnit>                               currencies          = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<Integer, List<PendingTransaction>> pendingTransactions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, List<PendingTransaction>> pendingCounterparts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, StatementBucketChanges>   pendingBuckets      = new ConcurrentHashMap<>();
+    private final Set<Integer>                                     dirtyAccounts       = ConcurrentHashMap.newKeySet();
+    private final AtomicLong                                       lastBooking         = new AtomicLong();
+
+    public AccountLedger(AccountRepository accountRepository, @Value("${ibpts.ledger.stripes:64}") int stripeCount,
+            @Value("${ibpts.ledger.initial-capacity:65536}") int initialCapacity) {
+        this.accountRepository = accountRepository;
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+        this.index = new OffHeapAccountIndex(initialCapacity);
+    }
+
+    /**
+     * Makes sure the ledger holds an account, loading it from the repository on first access.
+     *
+     * @param accountId accountId to load.
+     */
+    void ensureLoaded(int accountId) {
+        if (index.contains(accountId)) {
+            return;
+        }
+        val account = accountRepository.findById(accountId)
+                .orElseThrow(() -> new AccountNotFoundException("Invalid Account ID " + accountId));
+        synchronized (insertLock) {
+            if (!index.contains(accountId)) {
+                insert(accountId, account.getCurrency(), account.getBalanceMinor());
+            }
+        }
+    }
+
+    /**
+     * Loads the accounts not in the ledger yet with one IN query per AccountRepository.ID_CHUNK_SIZE accounts, unknown
+     * accounts are skipped.
+     *
+     * @param accountIds accountIds to load.
+     */
+    void ensureLoaded(Collection<Integer> accountIds) {
+        List<Integer> missingIds = new ArrayList<>();
+        for (Integer accountId : accountIds) {
+            if (!index.contains(accountId)) {
+                missingIds.add(accountId);
+            }
+        }
+        if (missingIds.isEmpty()) {
+            return;
+        }
+        val accounts = accountRepository.findAllByIdInChunks(missingIds);
+        synchronized (insertLock) {
+            for (val account : accounts) {
+                if (!index.contains(account.getAccountId())) {
+                    insert(account.getAccountId(), account.getCurrency(), account.getBalanceMinor());
+                }
+            }
+        }
+    }
+
+    boolean contains(int accountId) {
+        return index.contains(accountId);
+    }
+
+    /**
+     * Reads the balance of a loaded account.
+     *
+     * @param accountId accountId to read.
+     * @return long balance in minor units.
+     */
+    long balance(int accountId) {
+        return index.balance(accountId);
+    }
+
+    String currency(int accountId) {
+        return currencies.get(index.currencyId(accountId) - 1).code;
+    }
+
+    int scale(int accountId) {
+        return currencies.get(index.currencyId(accountId) - 1).scale;
+    }
+
+    /**
+     * Writes the balance of an account.
+     * Must be called while holding the stripe lock of the account.
+     */
+    void setBalance(int accountId, long balance) {
+        index.setBalance(accountId, balance);
+    }
+
+    /**
+     * Adds a transaction to be persisted by the write-behind with the balances both accounts reached by it, booked now.
+     * Must be called while holding the stripe locks of both accounts.
+     */
+    void addTransaction(int accountId, AccountDetails accountDetails, long balance, long counterpartBalance, long journalSequence) {
+        val pending = new PendingTransaction(accountId, accountDetails, balance, counterpartBalance, journalSequence, nextBookingDate());
+        pendingTransactions.computeIfAbsent(accountId, id -> new ArrayList<>()).add(pending);
+        pendingCounterparts.computeIfAbsent(accountDetails.getAccountId(), id -> new ArrayList<>()).add(pending);
+    }
+
+    /**
+     * Books a change of the balance into the statement buckets to be persisted by the write-behind.
+     * Must be called while holding the stripe lock of the account.
+     */
+    void addBucketChange(int accountId, LocalDateTime transactionDate, long change) {
+        pendingBuckets.computeIfAbsent(accountId, id -> new StatementBucketChanges()).add(accountId, transactionDate, change);
+    }
+
+    /**
+     * Runs the action while holding the stripe locks of both accounts.
+     *
+     * @param firstAccountId accountId of one side of the transfer.
+     * @param secondAccountId accountId of the other side of the transfer.
+     * @param action action to run.
+     * @return T the result of the action.
+     */
+    <T> T lockAccounts(int firstAccountId, int secondAccountId, Supplier<T> action) {
+        int first = stripeOf(firstAccountId);
+        int second = stripeOf(secondAccountId);
+        ReentrantLock lower = stripes[Math.min(first, second)];
+        ReentrantLock upper = stripes[Math.max(first, second)];
+        lower.lock();
+        try {
+            if (upper != lower) {
+                upper.lock();
+            }
+            try {
+                return action.get();
+            } finally {
+                if (upper != lower) {
+                    upper.unlock();
+                }
+            }
+        } finally {
+            lower.unlock();
+        }
+    }
+
+    /**
+     * Copies the balances of all accounts while holding every stripe lock, so no transfer is half applied.
+     *
+     * @param sequence reads the journal sequence matching the copied balances.
+     * @return Balances the balances and the sequence.
+     */
+    Balances capture(LongSupplier sequence) {
+        synchronized (insertLock) {
+            return lockAll(() -> {
+                int size = index.size();
+                int[] accountIds = new int[size];
+                long[] balances = new long[size];
+                String[] codes = new String[size];
+                int[] position = new int[1];
+                index.forEach((accountId, currencyId, balance) -> {
+                    accountIds[position[0]] = accountId;
+                    balances[position[0]] = balance;
+                    codes[position[0]] = currencies.get(currencyId - 1).code;
+                    position[0]++;
+                });
+                return new Balances(sequence.getAsLong(), accountIds, balances, codes);
+            });
+        }
+    }
+
+    /**
+     * Puts the balance of an account read from a snapshot into the ledger, replacing the balance of the repository.
+     * Only called during recovery, before any transfer.
+     *
+     * @param accountId accountId of the entry.
+     * @param currency currency of the account.
+     * @param balance balance in minor units.
+     */
+    void load(int accountId, String currency, long balance) {
+        synchronized (insertLock) {
+            insert(accountId, currency, balance);
+        }
+        dirtyAccounts.add(accountId);
+    }
+
+    /**
+     * Marks an account as changed so the write-behind picks it up.
+     * Must be called while holding the stripe lock of the account.
+     */
+    void markDirty(int accountId) {
+        dirtyAccounts.add(accountId);
+    }
+
+    /**
+     * Takes the changes of all accounts which are not persisted yet while holding every stripe lock, so no transfer is
+     * half taken and the changes handed over are exactly the ones of the transfers up to one journal sequence.
+     * Transactions already taken by drainTransactions are left out.
+     *
+     * @param sequence reads the journal sequence matching the taken changes.
+     * @return Changes the balance and the pending changes of every changed account and the sequence.
+     */
+    Changes drainAll(LongSupplier sequence) {
+        return lockAll(() -> {
+            List<Snapshot> snapshots = new ArrayList<>(dirtyAccounts.size());
+            for (Integer accountId : dirtyAccounts) {
+                StatementBucketChanges bucketChanges = pendingBuckets.remove(accountId);
+                snapshots.add(new Snapshot(accountId, index.balance(accountId), claim(pendingTransactions.remove(accountId)),
+                        bucketChanges != null ? bucketChanges : new StatementBucketChanges()));
+            }
+            dirtyAccounts.clear();
+            pendingCounterparts.clear();
+            return new Changes(sequence.getAsLong(), snapshots);
+        });
+    }
+
+    /**
+     * Puts back the pending changes which could not be persisted while holding every stripe lock.
+     *
+     * @param changes changes returned by drainAll.
+     */
+    void restoreAll(Changes changes) {
+        lockAll(() -> {
+            for (Snapshot snapshot : changes.getSnapshots()) {
+                int accountId = snapshot.getAccountId();
+                for (PendingTransaction pending : snapshot.getTransactions()) {
+                    pending.release();
+                    prepend(pendingCounterparts, pending.getTransaction().getAccountId(), List.of(pending));
+                }
+                prepend(pendingTransactions, accountId, snapshot.getTransactions());
+                StatementBucketChanges bucketChanges = new StatementBucketChanges();
+                bucketChanges.addAll(snapshot.getBucketChanges());
+                bucketChanges.addAll(pendingBuckets.getOrDefault(accountId, new StatementBucketChanges()));
+                pendingBuckets.put(accountId, bucketChanges);
+                dirtyAccounts.add(accountId);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Takes the pending transactions of one account, its own ones and the ones it is the counterpart of, while holding
+     * its stripe lock only. The balances and bucket changes stay for the next drainAll, which skips the transactions
+     * taken here.
+     *
+     * @param accountId accountId of the account.
+     * @return List<PendingTransaction> the transactions not taken before, in the order they were booked per list.
+     */
+    List<PendingTransaction> drainTransactions(int accountId) {
+        ReentrantLock lock = stripes[stripeOf(accountId)];
+        lock.lock();
+        try {
+            List<PendingTransaction> transactions = new ArrayList<>(claim(pendingTransactions.remove(accountId)));
+            transactions.addAll(claim(pendingCounterparts.remove(accountId)));
+            return transactions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts back transactions taken by drainTransactions which could not be persisted.
+     *
+     * @param accountId accountId the transactions were taken for.
+     * @param transactions transactions returned by drainTransactions.
+     */
+    void restoreTransactions(int accountId, List<PendingTransaction> transactions) {
+        ReentrantLock lock = stripes[stripeOf(accountId)];
+        lock.lock();
+        try {
+            List<PendingTransaction> own = new ArrayList<>();
+            List<PendingTransaction> counterparts = new ArrayList<>();
+            for (PendingTransaction pending : transactions) {
+                pending.release();
+                (pending.getAccountId() == accountId ? own : counterparts).add(pending);
+            }
+            prepend(pendingTransactions, accountId, own);
+            prepend(pendingCounterparts, accountId, counterparts);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies the bucket changes of an account which are not persisted yet.
+     *
+     * @param accountId accountId of the account.
+     * @return StatementBucketChanges the pending changes, empty when there are none.
+     */
+    StatementBucketChanges pendingBucketChanges(int accountId) {
+        ReentrantLock lock = stripes[stripeOf(accountId)];
+        lock.lock();
+        try {
+            StatementBucketChanges bucketChanges = new StatementBucketChanges();
+            bucketChanges.addAll(pendingBuckets.getOrDefault(accountId, new StatementBucketChanges()));
+            return bucketChanges;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Books at the current time, but one microsecond after the previous booking at the earliest, so the transactions of
+     * an account are ordered by their bookingDate whichever flush persists them.
+     */
+    private LocalDateTime nextBookingDate() {
+        Instant now = Instant.now();
+        long micros = lastBooking.accumulateAndGet(now.getEpochSecond() * 1_000_000 + now.getNano() / 1_000,
+                (last, next) -> Math.max(last + 1, next));
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(0, micros * 1_000), ZoneId.systemDefault());
+    }
+
+    private static List<PendingTransaction> claim(List<PendingTransaction> transactions) {
+        List<PendingTransaction> claimed = new ArrayList<>();
+        if (transactions != null) {
+            for (PendingTransaction pending : transactions) {
+                if (pending.claim()) {
+                    claimed.add(pending);
+                }
+            }
+        }
+        return claimed;
+    }
+
+    private static void prepend(ConcurrentMap<Integer, List<PendingTransaction>> lists, int accountId, List<PendingTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        List<PendingTransaction> pending = new ArrayList<>(transactions);
+        pending.addAll(lists.getOrDefault(accountId, List.of()));
+        lists.put(accountId, pending);
+    }
+
+    private int stripeOf(int accountId) {
+        int hash = accountId * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Adds an account to the index or replaces its balance, growing the index first when it is full.
+     * Must be called while holding the insert lock.
+     */
+    private void insert(int accountId, String currency, long balance) {
+        if (index.isFull()) {
+            lockAll(() -> {
+                index.grow();
+                return null;
+            });
+        }
+        index.put(accountId, currencyIdOf(currency), balance);
+    }
+
+    private int currencyIdOf(String currency) {
+        for (int i = 0; i < currencies.size(); i++) {
+            if (currencies.get(i).code.equals(currency)) {
+                return i + 1;
+            }
+        }
+        currencies.add(new CurrencyUnit(currency, MinorUnits.scaleOf(currency)));
+        return currencies.size();
+    }
+
+    private <T> T lockAll(Supplier<T> action) {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+        try {
+            return action.get();
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * A currency of the ledger, accounts refer to it by its position.
+     */
+    @RequiredArgsConstructor
+    private static final class CurrencyUnit {
+
+        private final String code;
+        private final int    scale;
+    }
+
+    /**
+     * The balances of all accounts at one journal sequence, the arrays are indexed alike.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+    static final class Balances {
+
+        private final long     sequence;
+        private final int[]    accountIds;
+        private final long[]   balances;
+        private final String[] currencies;
+    }
+
+    /**
+     * The changes of all accounts up to one journal sequence handed over to the write-behind.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+    static final class Changes {
+
+        private final long           sequence;
+        private final List<Snapshot> snapshots;
+    }
+
+    /**
+     * The changes of one account handed over to the write-behind.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+    static final class Snapshot {
+
+        private final int                      accountId;
+        private final long                     balance;
+        private final List<PendingTransaction> transactions;
+        private final StatementBucketChanges   bucketChanges;
+    }
+
+    /**
+     * A transaction of the account accountId not persisted yet, with the balances of its account and of the counterpart account right after it
+     * and the journal sequence of its transfer, 0 when the journal is disabled. It is listed under both accounts and
+     * claimed by the first drain taking it.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+    static final class PendingTransaction {
+
+        private final int            accountId;
+        private final AccountDetails transaction;
+        private final long           balance;
+        private final long           counterpartBalance;
+        private final long           journalSequence;
+        private final LocalDateTime  bookingDate;
+        @Getter(AccessLevel.NONE)
+        private final AtomicBoolean  claimed = new AtomicBoolean();
+
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        private void release() {
+            claimed.set(false);
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import com.norway.mastercard.ibpts.dao.Account;
+import com.norway.mastercard.ibpts.dao.Transaction;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.model.TransferInstruction;
+import com.norway.mastercard.ibpts.model.TransferResult;
+import com.norway.mastercard.ibpts.model.TransferStatus;
+
+/**
+ * The AccountMapper converts between the repository entities and the AccountDetails model used by the services.
+ */
+final class AccountMapper {
+
+    private AccountMapper() {
+    }
+
+    static AccountDetails mapTransaction(Transaction transaction, Account account) {
+        return AccountDetails.builder()
+                .accountId(account.getAccountId())
+                .currencyCode(account.getCurrency())
+                .transactionDate(transaction.getTransactionDate())
+                .amount(MinorUnits.toDecimal(transaction.getAmountMinor(), MinorUnits.scaleOf(account.getCurrency())))
+                .type(TransactionType.valueOf(transaction.getType()))
+                .build();
+    }
+
+    static Transaction prepareNewTransaction(AccountDetails accountDetails, long amount, Account account, Long balance,
+            Long counterpartBalance) {
+        return prepareNewTransaction(accountDetails, amount, account, balance, counterpartBalance, null,
+                LocalDateTime.now(ZoneId.systemDefault()));
+    }
+
+    /**
+     * Creates the transaction of a transfer, the bookingDate is the moment the balances were changed.
+     */
+    static Transaction prepareNewTransaction(AccountDetails accountDetails, long amount, Account account, Long balance,
+            Long counterpartBalance, Long journalSequence, LocalDateTime bookingDate) {
+        return Transaction.builder()
+                .amountMinor(amount)
+                .balanceMinor(balance)
+                .counterpartBalanceMinor(counterpartBalance)
+                .accountId(accountDetails.getAccountId())
+                .transactionDate(accountDetails.getTransactionDate() != null ? accountDetails.getTransactionDate()
+                        : bookingDate)
+                .bookingDate(bookingDate)
+                .type(accountDetails.getType().name())
+                .journalSequence(journalSequence)
+                .account(account)
+                .build();
+    }
+
+    /**
+     * Copies an account as it is after AccountRepository.addToBalance changed it, without touching the managed entity.
+     */
+    static Account updatedCopyOf(Account account, long balance) {
+        return Account.builder()
+                .accountId(account.getAccountId())
+                .currency(account.getCurrency())
+                .balanceMinor(balance)
+                .version(account.getVersion() + 1)
+                .build();
+    }
+
+    static AccountDetails mapInstruction(TransferInstruction transfer) {
+        return AccountDetails.builder()
+                .accountId(transfer.getAccountId())
+                .amount(transfer.getAmount())
+                .type(transfer.getType())
+                .transactionDate(transfer.getTransactionDate())
+                .build();
+    }
+
+    static TransferResult mapTransferResult(int index, TransferInstruction transfer, String rejectionMessage) {
+        return mapTransferResult(index, transfer, rejectionMessage == null ? TransferStatus.COMPLETED : TransferStatus.REJECTED,
+                rejectionMessage, null);
+    }
+
+    static TransferResult mapTransferResult(int index, TransferInstruction transfer, TransferStatus status, String message,
+            String transferId) {
+        return TransferResult.builder()
+                .index(index)
+                .toAccountId(transfer.getToAccountId())
+                .accountId(transfer.getAccountId())
+                .status(status)
+                .message(message)
+                .transferId(transferId)
+                .build();
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.norway.mastercard.ibpts.exception.AccountNotFoundException;
+import com.norway.mastercard.ibpts.exception.TransferConflictException;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The AccountMetrics holds the timers and counters of the account service.
+ * Every meter is registered once up front, recording on the transfer path is a lookup-free call on the meter.
+ * Timers publish percentile histograms, so the percentiles can be aggregated across instances in Prometheus.
+ */
+@Component
+public class AccountMetrics {
+
+    private final MeterRegistry       meterRegistry;
+    private final Timer               transferCompleted;
+    private final Timer               transferRejected;
+    private final Timer               transferConflict;
+    private final Timer               transferFailed;
+    private final Timer               accountLookup;
+    private final Timer               miniStatement;
+    private final DistributionSummary miniStatementRows;
+    private final Timer               accountSave;
+    private final Timer               accountSaveAll;
+    private final Counter             accountNotFound;
+    private final Counter             insufficientFunds;
+
+    public AccountMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.transferCompleted = transferTimer("completed");
+        this.transferRejected = transferTimer("rejected");
+        this.transferConflict = transferTimer("conflict");
+        this.transferFailed = transferTimer("failed");
+        this.accountLookup = timer("ibpts.account.lookup", "Time to read an account by id");
+        this.miniStatement = timer("ibpts.statement.mini", "Time to read the mini statement of an account");
+        this.miniStatementRows = DistributionSummary.builder("ibpts.statement.mini.rows")
+                .description("Transactions returned by a mini statement")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.accountSave = Timer.builder("ibpts.repository.account.save")
+                .description("Time to save accounts through the repository")
+                .tag("operation", "save")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.accountSaveAll = Timer.builder("ibpts.repository.account.save")
+                .description("Time to save accounts through the repository")
+                .tag("operation", "saveAll")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.accountNotFound = Counter.builder("ibpts.account.not.found")
+                .description("Requests referring to an account which does not exist")
+                .register(meterRegistry);
+        this.insufficientFunds = Counter.builder("ibpts.transfer.insufficient.funds")
+                .description("Transfers rejected because the debited account does not hold enough funds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Times a single transfer, tagged by its outcome.
+     *
+     * @param transfer transfer to run.
+     * @return T the result of the transfer.
+     */
+    public <T> T timeTransfer(Supplier<T> transfer) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            T result = transfer.get();
+            sample.stop(transferCompleted);
+            return result;
+        } catch (AccountNotFoundException | IllegalArgumentException e) {
+            sample.stop(transferRejected);
+            countRejection(e);
+            throw e;
+        } catch (TransferConflictException e) {
+            sample.stop(transferConflict);
+            throw e;
+        } catch (RuntimeException e) {
+            sample.stop(transferFailed);
+            throw e;
+        }
+    }
+
+    /**
+     * Counts a rejected transfer, used by the batch transfers which report rejections instead of throwing them.
+     *
+     * @param rejection the reason of the rejection.
+     */
+    public void countRejection(RuntimeException rejection) {
+        if (rejection instanceof InsufficientFundsException) {
+            insufficientFunds.increment();
+        }
+    }
+
+    public void countAccountNotFound() {
+        accountNotFound.increment();
+    }
+
+    public <T> T timeLookup(Supplier<T> lookup) {
+        return accountLookup.record(lookup);
+    }
+
+    public List<AccountDetails> timeMiniStatement(Supplier<List<AccountDetails>> read) {
+        List<AccountDetails> rows = miniStatement.record(read);
+        miniStatementRows.record(rows.size());
+        return rows;
+    }
+
+    public <T> T timeSave(Supplier<T> save) {
+        return accountSave.record(save);
+    }
+
+    public <T> T timeSaveAll(Supplier<T> saveAll) {
+        return accountSaveAll.record(saveAll);
+    }
+
+    private Timer transferTimer(String outcome) {
+        return Timer.builder("ibpts.transfer")
+                .description("Time to perform a single transfer")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Timer timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+}
@@ -1,23 +1,46 @@
 package com.norway.mastercard.ibpts.service.internal;
 
-import static com.norway.mastercard.ibpts.model.TransactionType.CREDIT;
-import static com.norway.mastercard.ibpts.model.TransactionType.DEBIT;
-import static java.math.BigDecimal.ZERO;
+import static com.norway.mastercard.ibpts.service.internal.AccountMapper.mapInstruction;
+import static com.norway.mastercard.ibpts.service.internal.AccountMapper.mapTransferResult;
+import static com.norway.mastercard.ibpts.service.internal.AccountMapper.prepareNewTransaction;
+import static com.norway.mastercard.ibpts.service.internal.AccountMapper.updatedCopyOf;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.amountOf;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.hasAmount;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.setAccountBalance;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.validateCurrencies;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.validateFunds;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.validateRequired;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
 
-import java.math.BigDecimal;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Component;
 
 import com.norway.mastercard.ibpts.dao.Account;
 import com.norway.mastercard.ibpts.dao.Transaction;
 import com.norway.mastercard.ibpts.exception.AccountNotFoundException;
 import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementFormat;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.StatementSummary;
 import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.model.TransferInstruction;
+import com.norway.mastercard.ibpts.model.TransferResult;
 import com.norway.mastercard.ibpts.repo.AccountRepository;
+import com.norway.mastercard.ibpts.repo.TransactionRepository;
 import com.norway.mastercard.ibpts.service.AccountService;
 
 import lombok.RequiredArgsConstructor;
@@ -28,29 +51,78 @@ import lombok.val;
  */
 @Component
 @RequiredArgsConstructor
-@Profile("!mockService")
+@Profile("!mockService & !ledgerService")
 public class AccountServiceImpl implements AccountService {
 
-    private final AccountRepository accountRepository;
+    private final AccountRepository          accountRepository;
+    private final TransactionRepository      transactionRepository;
+    private final OptimisticTransferExecutor transferExecutor;
+    private final StatementReader            statementReader;
+    private final StatementExporter          statementExporter;
+    private final BalanceCache               balanceCache;
+    private final AccountMetrics             accountMetrics;
+    private final TransferParticipant        transferParticipant;
+    private final StatementAggregator        statementAggregator;
+    private final SubLedgers                 subLedgers;
+    private final HotAccountDetector         hotAccountDetector;
+    @Value("${ibpts.transfer.batch.max-size:10000}")
+    private int                              maxBatchSize = 10000;
+    @Value("${ibpts.balances.max-size:10000}")
+    private int                              maxBalancesSize = 10000;
 
     /**
-     * Reads account balance.
+     * Reads account balance through the balance cache, the balance of a split account is summed from its Account row
+     * and its slots instead.
      *
      * @param accountId accountId to read.
      * @return AccountDetails details of the account.
      */
     @Override
     public AccountDetails getAccountBalance(int accountId) {
+        if (subLedgers.isSplit(accountId)) {
+            return getSplitAccountBalance(accountId);
+        }
+        return balanceCache.get(accountId, this::getAccountById);
+    }
+
+    /**
+     * Reads the balances of several accounts through the balance cache, the accounts missing in the cache are read
+     * with one IN query per AccountRepository.ID_CHUNK_SIZE accounts.
+     *
+     * @param accountIds accountIds to read.
+     * @return List<AccountDetails> details of the known accounts in the order of accountIds, unknown ones are left out.
+     */
+    @Override
+    public List<AccountDetails> getAccountBalances(List<Integer> accountIds) {
+        if (accountIds.size() > maxBalancesSize)
+            throw new IllegalArgumentException("Lookup exceeds the limit of " + maxBalancesSize + " accounts");
+        val balances = balanceCache.getAll(new LinkedHashSet<>(accountIds),
+                missingIds -> accountMetrics.timeLookup(() -> accountRepository.findAllByIdInChunks(missingIds)));
+        balances.replaceAll(balance -> subLedgers.isSplit(balance.getAccountId()) ? getSplitAccountBalance(balance.getAccountId()) : balance);
+        return balances;
+    }
+
+    /**
+     * Reads account and its balance at the given moment from the running balances of its transactions, for a split
+     * account from its current balance and the changes booked since.
+     *
+     * @param accountId accountId to read.
+     * @param asOf moment to read the balance at.
+     * @return AccountDetails details of the account.
+     */
+    @Override
+    public AccountDetails getAccountBalance(int accountId, LocalDateTime asOf) {
         val account = getAccountById(accountId);
-        return AccountDetails.builder()
-                .balance(account.getBalance())
-                .accountId(account.getAccountId())
-                .currencyCode(account.getCurrency())
-                .build();
+        if (subLedgers.isSplit(accountId)) {
+            long balance = subLedgers.totalBalanceOf(accountId)
+                    .orElseThrow(() -> new AccountNotFoundException("Invalid Account ID " + accountId));
+            return statementReader.readSplitBalance(account, balance, asOf);
+        }
+        return statementReader.readBalance(account, asOf);
     }
 
     /**
-     * Reads account and transactions.
+     * Reads account and its latest transactions.
      * 
      * @param accountId accountId to read.
      * @return List<AccountDetails> details of the account transaction.
@@ -58,81 +130,270 @@ public class AccountServiceImpl implements AccountService {
     @Override
     public List<AccountDetails> getMiniStatement(int accountId) {
         val account = getAccountById(accountId);
-        return mapRepositoryToService(account);
+        return accountMetrics.timeMiniStatement(() -> statementReader.readMiniStatement(account));
+    }
+
+    /**
+     * Reads account and one page of its transactions.
+     *
+     * @param accountId accountId to read.
+     * @param cursor nextCursor of the previous page, or null for the first page.
+     * @param limit maximum number of transactions in the page.
+     * @return StatementPage details of the account transactions and the cursor of the next page.
+     */
+    @Override
+    public StatementPage getStatement(int accountId, String cursor, int limit) {
+        val account = getAccountById(accountId);
+        return statementReader.readStatement(account, cursor, limit);
+    }
+
+    /**
+     * Reads account and the totals of its debits and credits between two days from the daily and monthly buckets.
+     *
+     * @param accountId accountId to read.
+     * @param from first day of the range.
+     * @param to last day of the range.
+     * @return StatementSummary the totals of the account in the range.
+     */
+    @Override
+    public StatementSummary getStatementSummary(int accountId, LocalDate from, LocalDate to) {
+        val account = getAccountById(accountId);
+        return statementAggregator.summarize(account, from, to);
+    }
+
+    /**
+     * Reads account and streams all of its transactions.
+     *
+     * @param accountId accountId to read.
+     * @param format format of the rows.
+     * @param outputStream stream to write the rows to.
+     */
+    @Override
+    public void exportStatement(int accountId, StatementFormat format, OutputStream outputStream) {
+        val account = getAccountById(accountId);
+        statementExporter.export(account, format, outputStream);
     }
 
     /**
      * Reads account balance of toAccountId and fromAccountId validates and performs transfer of amount from one account to another.
+     * Both balance updates and the new transaction are committed together and the whole transfer is repeated when a
+     * concurrent transfer changed one of the accounts in between. Only committed credits count towards the detection
+     * of hot accounts, an account detected hot is split for the transfers after it, see SubLedgers.
      *
      * @param toAccountId accountId to read.
      * @param accountDetails fromAccount details to read.
      */
     @Override
     public void transferAmount(int toAccountId, AccountDetails accountDetails) {
-        val toAccount = getAccountById(toAccountId);
-        val fromAccount = getAccountById(accountDetails.getAccountId());
-        validateFunds(accountDetails, fromAccount, toAccount.getBalance());
-        if (isGreater(accountDetails.getAmount(), ZERO)) {
-            performTransactionOfAmount(accountDetails, toAccount, fromAccount);
+        boolean transferred = accountMetrics.timeTransfer(() -> transferExecutor.execute(() -> {
+            val toAccount = getAccountById(toAccountId);
+            val fromAccount = getAccountById(accountDetails.getAccountId());
+            validateRequired(accountDetails);
+            validateCurrencies(toAccount.getCurrency(), fromAccount.getCurrency());
+            long amount = amountOf(accountDetails, toAccount.getCurrency());
+            long toSlotBalance = subLedgers.slotBalanceOf(toAccount.getAccountId());
+            long fromSlotBalance = subLedgers.slotBalanceOf(fromAccount.getAccountId());
+            validateFunds(accountDetails.getType(), amount, available(fromAccount, fromSlotBalance), available(toAccount, toSlotBalance));
+            if (hasAmount(amount)) {
+                performTransactionOfAmount(accountDetails, amount, toAccount, fromAccount, toSlotBalance, fromSlotBalance);
+                return true;
+            }
+            return false;
+        }));
+        if (transferred) {
+            splitIfHot(receiverOf(toAccountId, accountDetails));
         }
     }
 
-    private void performTransactionOfAmount(AccountDetails accountDetails, Account toAccount, Account fromAccount) {
-        toAccount.setBalance(setAccountBalance(accountDetails, toAccount.getBalance(), true));
-        List<Transaction> transactions = new ArrayList<>(toAccount.getTransactions());
-        transactions.add(prepareNewTransaction(accountDetails, toAccount));
-        toAccount.setTransactions(transactions);
-        accountRepository.save(toAccount);
-        fromAccount.setBalance(setAccountBalance(accountDetails, fromAccount.getBalance(), false));
-        accountRepository.save(fromAccount);
+    /**
+     * Validates and performs a batch of transfers in one database transaction.
+     * Balances are netted in memory in the order of the batch, so a transfer may spend funds received earlier in the
+     * same batch, and the new transactions and changed accounts are written with batched statements at the end.
+     * A credit to a split account goes to one of its slots instead of its Account row, like in a single transfer.
+     *
+     * @param transfers transfers to perform.
+     * @return List<TransferResult> outcome of every transfer in the order of the batch.
+     */
+    @Override
+    public List<TransferResult> transferAmounts(List<TransferInstruction> transfers) {
+        if (transfers.size() > maxBatchSize)
+            throw new IllegalArgumentException("Batch exceeds the limit of " + maxBatchSize + " transfers");
+        return transferExecutor.execute(() -> performBatchOfTransfers(transfers));
     }
 
-    private void validateFunds(AccountDetails accountDetails, Account fromAccount, BigDecimal balance) {
-        if (CREDIT.equals(accountDetails.getType()) && !isGreater(fromAccount.getBalance(), accountDetails.getAmount())
-                || DEBIT.equals(accountDetails.getType()) && !isGreater(balance, accountDetails.getAmount()))
-            throw new IllegalArgumentException("Insufficient funds available");
+    private List<TransferResult> performBatchOfTransfers(List<TransferInstruction> transfers) {
+        Set<Integer> accountIds = new HashSet<>();
+        transfers.forEach(transfer -> {
+            accountIds.add(transfer.getToAccountId());
+            accountIds.add(transfer.getAccountId());
+        });
+        Map<Integer, Account> accounts = accountRepository.findAllById(accountIds).stream()
+                .collect(toMap(Account::getAccountId, identity()));
+        Map<Integer, Account> changedAccounts = new LinkedHashMap<>();
+        List<Transaction> newTransactions = new ArrayList<>();
+        val bucketChanges = new StatementBucketChanges();
+        List<TransferResult> results = new ArrayList<>(transfers.size());
+        for (int index = 0; index < transfers.size(); index++) {
+            val transfer = transfers.get(index);
+            results.add(mapTransferResult(index, transfer, applyTransfer(transfer, accounts, changedAccounts, newTransactions, bucketChanges)));
+        }
+        transactionRepository.saveAll(newTransactions);
+        accountMetrics.timeSaveAll(() -> accountRepository.saveAll(changedAccounts.values()));
+        // the account rows are locked before their buckets are touched, like in a single transfer
+        accountRepository.flush();
+        statementAggregator.apply(bucketChanges);
+        changedAccounts.values().forEach(this::updateCache);
+        return results;
     }
 
-    private List<AccountDetails> mapRepositoryToService(Account account) {
-        return account.getTransactions().stream().map(transaction -> mapTransaction(transaction, account)).collect(Collectors.toList());
+    private String applyTransfer(TransferInstruction transfer, Map<Integer, Account> accounts, Map<Integer, Account> changedAccounts,
+            List<Transaction> newTransactions, StatementBucketChanges bucketChanges) {
+        val toAccount = accounts.get(transfer.getToAccountId());
+        val fromAccount = accounts.get(transfer.getAccountId());
+        if (toAccount == null || fromAccount == null) {
+            accountMetrics.countAccountNotFound();
+            return "Invalid Account ID " + (toAccount == null ? transfer.getToAccountId() : transfer.getAccountId());
+        }
+        val accountDetails = mapInstruction(transfer);
+        try {
+            validateRequired(accountDetails);
+            validateCurrencies(toAccount.getCurrency(), fromAccount.getCurrency());
+            long amount = amountOf(accountDetails, toAccount.getCurrency());
+            long toSlotBalance = subLedgers.slotBalanceOf(toAccount.getAccountId());
+            long fromSlotBalance = subLedgers.slotBalanceOf(fromAccount.getAccountId());
+            validateFunds(accountDetails.getType(), amount, available(fromAccount, fromSlotBalance), available(toAccount, toSlotBalance));
+            if (hasAmount(amount)) {
+                long toBalance = setAccountBalance(accountDetails.getType(), amount, toAccount.getBalanceMinor(), true);
+                long fromBalance = setAccountBalance(accountDetails.getType(), amount, fromAccount.getBalanceMinor(), false);
+                // the slots are written right away and the rows at the end of the batch, so slots are still taken first
+                int toSlot = toBalance > toAccount.getBalanceMinor() ? creditSlot(toAccount, amount) : SubLedgers.MAIN;
+                int fromSlot = fromBalance > fromAccount.getBalanceMinor() ? creditSlot(fromAccount, amount) : SubLedgers.MAIN;
+                val transaction = prepareNewTransaction(accountDetails, amount, toAccount, recordedBalance(toBalance, toSlotBalance, toSlot),
+                        recordedBalance(fromBalance, fromSlotBalance, fromSlot));
+                newTransactions.add(transaction);
+                bucketChanges.add(toAccount.getAccountId(), toSlot, transaction.getTransactionDate(), toBalance - toAccount.getBalanceMinor());
+                bucketChanges.add(fromAccount.getAccountId(), fromSlot, transaction.getTransactionDate(),
+                        fromBalance - fromAccount.getBalanceMinor());
+                applyToRow(toAccount, toBalance, toSlot, changedAccounts);
+                applyToRow(fromAccount, fromBalance, fromSlot, changedAccounts);
+            }
+            return null;
+        } catch (IllegalArgumentException e) {
+            accountMetrics.countRejection(e);
+            return e.getMessage();
+        }
     }
 
-    private AccountDetails mapTransaction(Transaction transaction, Account account) {
-        return AccountDetails.builder()
-                .accountId(account.getAccountId())
-                .currencyCode(account.getCurrency())
-                .transactionDate(transaction.getTransactionDate())
-                .amount(transaction.getAmount())
-                .type(TransactionType.valueOf(transaction.getType()))
-                .build();
+    /**
+     * Writes the transfer with two targeted balance updates and one insert, the accounts stay unchanged in the
+     * persistence context and their transactions are never loaded, so the cost does not grow with the history.
+     * A credit to a split account goes to one of its slots instead of its Account row.
+     */
+    private void performTransactionOfAmount(AccountDetails accountDetails, long amount, Account toAccount, Account fromAccount,
+            long toSlotBalance, long fromSlotBalance) {
+        long toBalance = setAccountBalance(accountDetails.getType(), amount, toAccount.getBalanceMinor(), true);
+        long fromBalance = setAccountBalance(accountDetails.getType(), amount, fromAccount.getBalanceMinor(), false);
+        // slots are taken before the rows, so no transfer holding a row ever waits for a slot
+        int toSlot = toBalance > toAccount.getBalanceMinor() ? creditSlot(toAccount, amount) : SubLedgers.MAIN;
+        int fromSlot = fromBalance > fromAccount.getBalanceMinor() ? creditSlot(fromAccount, amount) : SubLedgers.MAIN;
+        // rows are updated in accountId order, so two transfers between the same accounts never wait on each other
+        if (toAccount.getAccountId() < fromAccount.getAccountId()) {
+            updateBalance(toAccount, toBalance, toSlot);
+            updateBalance(fromAccount, fromBalance, fromSlot);
+        } else {
+            updateBalance(fromAccount, fromBalance, fromSlot);
+            updateBalance(toAccount, toBalance, toSlot);
+        }
+        val transaction = prepareNewTransaction(accountDetails, amount, toAccount, recordedBalance(toBalance, toSlotBalance, toSlot),
+                recordedBalance(fromBalance, fromSlotBalance, fromSlot));
+        transactionRepository.save(transaction);
+        val bucketChanges = new StatementBucketChanges();
+        bucketChanges.add(toAccount.getAccountId(), toSlot, transaction.getTransactionDate(), toBalance - toAccount.getBalanceMinor());
+        bucketChanges.add(fromAccount.getAccountId(), fromSlot, transaction.getTransactionDate(), fromBalance - fromAccount.getBalanceMinor());
+        statementAggregator.apply(bucketChanges);
+        updateCache(updatedCopyOf(toAccount, toBalance));
+        updateCache(updatedCopyOf(fromAccount, fromBalance));
     }
 
-    private Account getAccountById(int accountId) {
-        return accountRepository.findById(accountId)
-                .orElseThrow(() -> new AccountNotFoundException("Invalid Account ID " + accountId));
+    private static void applyToRow(Account account, long balance, int slot, Map<Integer, Account> changedAccounts) {
+        if (slot == SubLedgers.MAIN) {
+            account.setBalanceMinor(balance);
+            changedAccounts.put(account.getAccountId(), account);
+        }
     }
 
-    private Transaction prepareNewTransaction(AccountDetails accountDetails, Account account) {
-        return Transaction.builder()
-                .amount(accountDetails.getAmount())
-                .accountId(accountDetails.getAccountId())
-                .transactionDate(accountDetails.getTransactionDate())
-                .type(accountDetails.getType().name())
-                .account(account)
-                .build();
+    private int creditSlot(Account account, long amount) {
+        return subLedgers.isSplit(account.getAccountId()) ? subLedgers.credit(account.getAccountId(), amount) : SubLedgers.MAIN;
     }
 
-    private BigDecimal setAccountBalance(AccountDetails accountDetails, BigDecimal balance, boolean isToAccount) {
-        if (TransactionType.DEBIT.equals(accountDetails.getType()))
-            return isToAccount ? balance.subtract(accountDetails.getAmount()) : balance.add(accountDetails.getAmount());
-        else if (CREDIT.equals(accountDetails.getType()))
-            return isToAccount ? balance.add(accountDetails.getAmount()) : balance.subtract(accountDetails.getAmount());
-        else
-            throw new IllegalArgumentException("Not a valid transaction type");
+    /**
+     * Reads the balance to record with the transaction: the Account row plus the slots read by the transfer, or null
+     * after a credit to a slot, as its order among the concurrent credits to the other slots is unknown. Balances of
+     * split accounts at a moment are therefore read with StatementReader.readSplitBalance.
+     */
+    private static Long recordedBalance(long balance, long slotBalance, int slot) {
+        return slot == SubLedgers.MAIN ? balance + slotBalance : null;
     }
 
-    private static <T extends Comparable<T>> boolean isGreater(T t1, T t2) {
-        return t1.compareTo(t2) > 0;
+    private void updateBalance(Account account, long balance, int slot) {
+        if (slot != SubLedgers.MAIN) {
+            return;
+        }
+        int updated = accountMetrics.timeSave(() -> accountRepository.addToBalance(account.getAccountId(),
+                MinorUnits.subtract(balance, account.getBalanceMinor()), account.getVersion()));
+        if (updated == 0)
+            throw new ObjectOptimisticLockingFailureException(Account.class, account.getAccountId());
+    }
+
+
+    /**
+     * Reads the balance of the account which is not held by transfers between shards.
+     */
+    private long available(Account account, long slotBalance) {
+        return transferParticipant.available(account.getAccountId(), account.getBalanceMinor() + slotBalance);
+    }
+
+    /**
+     * Puts the balance of an account into the cache, which never holds split accounts.
+     */
+    private void updateCache(Account account) {
+        if (!subLedgers.isSplit(account.getAccountId())) {
+            balanceCache.updateAfterCommit(account);
+        }
+    }
+
+    /**
+     * Reads which account of a transfer receives the money, the toAccount of a CREDIT and the fromAccount of a DEBIT.
+     */
+    private static Integer receiverOf(int toAccountId, AccountDetails accountDetails) {
+        if (accountDetails == null || accountDetails.getType() == null) {
+            return null;
+        }
+        return accountDetails.getType() == TransactionType.CREDIT ? toAccountId : accountDetails.getAccountId();
+    }
+
+    private void splitIfHot(Integer accountId) {
+        if (accountId != null && !subLedgers.isSplit(accountId) && hotAccountDetector.recordCredit(accountId)) {
+            subLedgers.split(accountId);
+        }
+    }
+
+    private AccountDetails getSplitAccountBalance(int accountId) {
+        val account = getAccountById(accountId);
+        long balance = subLedgers.totalBalanceOf(accountId)
+                .orElseThrow(() -> new AccountNotFoundException("Invalid Account ID " + accountId));
+        return AccountDetails.builder()
+                .balance(MinorUnits.toDecimal(balance, MinorUnits.scaleOf(account.getCurrency())))
+                .accountId(accountId)
+                .currencyCode(account.getCurrency())
+                .build();
+    }
+
+    private Account getAccountById(int accountId) {
+        return accountMetrics.timeLookup(() -> accountRepository.findById(accountId)).orElseThrow(() -> {
+            accountMetrics.countAccountNotFound();
+            return new AccountNotFoundException("Invalid Account ID " + accountId);
+        });
     }
 
 }
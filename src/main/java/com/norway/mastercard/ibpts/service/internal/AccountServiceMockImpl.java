@@ -3,23 +3,36 @@ package com.norway.mastercard.ibpts.service.internal;
 import static java.math.BigDecimal.ONE;
 import static java.math.BigDecimal.TEN;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementFormat;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.StatementSummary;
 import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.model.TransferInstruction;
+import com.norway.mastercard.ibpts.model.TransferResult;
 import com.norway.mastercard.ibpts.service.AccountService;
 
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
 /**
  * This class is the mock implementation class for AccountService interface which returs mock data when profile is activated.
  */
 @Component
+@RequiredArgsConstructor
 @Profile("mockService")
 public class AccountServiceMockImpl implements AccountService {
 
@@ -27,6 +40,8 @@ public class AccountServiceMockImpl implements AccountService {
     public static final String CURRENCY        = "NOK";
     public static final int    FROM_ACCOUNT_ID = 222;
 
+    private final StatementExporter statementExporter;
+
     /**
      * Generates mock data.
      *
@@ -45,6 +60,29 @@ public class AccountServiceMockImpl implements AccountService {
         return AccountDetails.builder().build();
     }
 
+    /**
+     * Generates mock data.
+     *
+     * @param accountIds accountIds to read.
+     * @return List<AccountDetails> details of the mock account when it is asked for.
+     */
+    @Override
+    public List<AccountDetails> getAccountBalances(List<Integer> accountIds) {
+        return accountIds.contains(ACCOUNT_ID) ? List.of(getAccountBalance(ACCOUNT_ID)) : List.of();
+    }
+
+    /**
+     * Generates mock data, the mock balance never changes.
+     *
+     * @param accountId accountId to read.
+     * @param asOf moment to read the balance at.
+     * @return AccountDetails details of the account.
+     */
+    @Override
+    public AccountDetails getAccountBalance(int accountId, LocalDateTime asOf) {
+        return getAccountBalance(accountId);
+    }
+
     /**
      * Generates mock data.
      *
@@ -59,6 +97,55 @@ public class AccountServiceMockImpl implements AccountService {
         return Collections.emptyList();
     }
 
+    /**
+     * Generates mock data.
+     *
+     * @param accountId accountId to read.
+     * @param cursor nextCursor of the previous page, ignored.
+     * @param limit maximum number of transactions in the page, ignored.
+     * @return StatementPage details of the account transaction.
+     */
+    @Override
+    public StatementPage getStatement(int accountId, String cursor, int limit) {
+        return StatementPage.builder().transactions(getMiniStatement(accountId)).build();
+    }
+
+    /**
+     * Writes the mock data.
+     *
+     * @param accountId accountId to read.
+     * @param format format of the rows.
+     * @param outputStream stream to write the rows to.
+     */
+    @Override
+    public void exportStatement(int accountId, StatementFormat format, OutputStream outputStream) {
+        statementExporter.write(getMiniStatement(accountId).iterator(), format, outputStream);
+    }
+
+    /**
+     * Generates mock data summing up the mock transactions.
+     *
+     * @param accountId accountId to read.
+     * @param from first day of the range.
+     * @param to last day of the range.
+     * @return StatementSummary the totals of the account in the range.
+     */
+    @Override
+    public StatementSummary getStatementSummary(int accountId, LocalDate from, LocalDate to) {
+        val transactions = getMiniStatement(accountId);
+        return StatementSummary.builder()
+                .accountId(accountId)
+                .currencyCode(CURRENCY)
+                .from(from)
+                .to(to)
+                .transactionCount(transactions.size())
+                .debitCount(transactions.size())
+                .debitAmount(transactions.stream().map(AccountDetails::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add))
+                .creditCount(0)
+                .creditAmount(BigDecimal.ZERO)
+                .build();
+    }
+
     private AccountDetails transactionDetails(BigDecimal amount) {
         return AccountDetails.builder()
                 .accountId(FROM_ACCOUNT_ID)
@@ -79,4 +166,17 @@ public class AccountServiceMockImpl implements AccountService {
     public void transferAmount(int toAccountId, AccountDetails accountDetails) {
         // mock implementation no need to perform operation for void.
     }
+
+    /**
+     * When called will just report every transfer as completed.
+     *
+     * @param transfers transfers to perform.
+     * @return List<TransferResult> outcome of every transfer in the order of the batch.
+     */
+    @Override
+    public List<TransferResult> transferAmounts(List<TransferInstruction> transfers) {
+        return IntStream.range(0, transfers.size())
+                .mapToObj(index -> AccountMapper.mapTransferResult(index, transfers.get(index), null))
+                .collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,43 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementFormat;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.StatementSummary;
+import com.norway.mastercard.ibpts.model.TransferLeg;
+
+/**
+ * The AccountShard is one partition of the accounts, served in-process or by another node.
+ * Transfers within the shard go through transferAmount, transfers between shards through the two phases prepare and
+ * commit or abort of each leg.
+ */
+interface AccountShard {
+
+    AccountDetails getAccountBalance(int accountId);
+
+    AccountDetails getAccountBalance(int accountId, LocalDateTime asOf);
+
+    List<AccountDetails> getAccountBalances(List<Integer> accountIds);
+
+    List<AccountDetails> getMiniStatement(int accountId);
+
+    StatementPage getStatement(int accountId, String cursor, int limit);
+
+    void exportStatement(int accountId, StatementFormat format, OutputStream outputStream);
+
+    StatementSummary getStatementSummary(int accountId, LocalDate from, LocalDate to);
+
+    void transferAmount(int toAccountId, AccountDetails accountDetails);
+
+    void prepare(TransferLeg leg);
+
+    Long commit(String transferId, Long counterpartBalance);
+
+    void abort(String transferId);
+
+}
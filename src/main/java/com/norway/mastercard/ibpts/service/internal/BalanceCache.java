@@ -0,0 +1,150 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.norway.mastercard.ibpts.dao.Account;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The BalanceCache is a bounded read-through cache of account balances evicting by size and age.
+ * Transfers put the committed balances right after their commit, and an entry is only ever replaced by one with a
+ * higher account version, so a late read-through load can never overwrite a newer balance.
+ */
+@Component
+public class BalanceCache implements MeterBinder {
+
+    private final Cache<Integer, CachedBalance> cache;
+
+    public BalanceCache(@Value("${ibpts.balance-cache.max-size:100000}") long maxSize,
+            @Value("${ibpts.balance-cache.ttl:30s}") Duration timeToLive) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Reads the balance of an account, loading the account on a miss.
+     *
+     * @param accountId accountId to read.
+     * @param loader loads the account from the repository.
+     * @return AccountDetails details of the account.
+     */
+    public AccountDetails get(int accountId, IntFunction<Account> loader) {
+        CachedBalance cachedBalance = cache.get(accountId, id -> CachedBalance.of(loader.apply(id)));
+        return AccountDetails.builder()
+                .balance(MinorUnits.toDecimal(cachedBalance.balance, cachedBalance.scale))
+                .accountId(accountId)
+                .currencyCode(cachedBalance.currency)
+                .build();
+    }
+
+    /**
+     * Reads the balances of several accounts, loading all misses at once.
+     *
+     * @param accountIds accountIds to read.
+     * @param loader loads the missing accounts from the repository, unknown accounts are left out.
+     * @return List<AccountDetails> details of the known accounts in the order of accountIds.
+     */
+    public List<AccountDetails> getAll(Collection<Integer> accountIds, Function<List<Integer>, List<Account>> loader) {
+        Map<Integer, CachedBalance> cachedBalances = cache.getAll(accountIds, missing -> {
+            List<Integer> missingIds = new ArrayList<>();
+            missing.forEach(missingIds::add);
+            return loader.apply(missingIds).stream().collect(Collectors.toMap(Account::getAccountId, CachedBalance::of));
+        });
+        List<AccountDetails> balances = new ArrayList<>(cachedBalances.size());
+        for (Integer accountId : accountIds) {
+            CachedBalance cachedBalance = cachedBalances.get(accountId);
+            if (cachedBalance != null) {
+                balances.add(AccountDetails.builder()
+                        .balance(MinorUnits.toDecimal(cachedBalance.balance, cachedBalance.scale))
+                        .accountId(accountId)
+                        .currencyCode(cachedBalance.currency)
+                        .build());
+            }
+        }
+        return balances;
+    }
+
+    /**
+     * Puts the balance of an account once the surrounding transaction committed, or right away without one.
+     *
+     * @param account account whose balance changed.
+     */
+    public void updateAfterCommit(Account account) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update(account);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+            @Override
+            public void afterCommit() {
+                update(account);
+            }
+        });
+    }
+
+    private void update(Account account) {
+        cache.asMap().merge(account.getAccountId(), CachedBalance.of(account),
+                (cached, committed) -> committed.version >= cached.version ? committed : cached);
+    }
+
+    /**
+     * Publishes the hit, miss, eviction and size metrics of the cache under the name balances.
+     *
+     * @param meterRegistry registry to publish to.
+     */
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "balances");
+    }
+
+    public void invalidate(int accountId) {
+        cache.invalidate(accountId);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    @RequiredArgsConstructor
+    private static final class CachedBalance {
+
+        private final long   balance;
+        private final int    scale;
+        private final String currency;
+        private final long   version;
+
+        private static CachedBalance of(Account account) {
+            return new CachedBalance(account.getBalanceMinor(), MinorUnits.scaleOf(account.getCurrency()), account.getCurrency(),
+                    account.getVersion() == null ? 0 : account.getVersion());
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+/**
+ * The BalanceSnapshotter periodically writes the balances of the AccountLedger together with the journal sequence they
+ * include, so recovery loads the snapshot and replays only the newer part of the TransferJournal.
+ * A snapshot file holds a header (magic, sequence, count), one row per account (accountId, balance in minor units,
+ * currency) and a CRC32 of everything before it. It is written to a temporary file, forced and renamed, so the latest
+ * snapshot-&lt;sequence&gt;.bin in ibpts.journal.dir is always complete. Once it is in place the older snapshot is
+ * deleted, and so are the journal segments covered both by it and by the persisted sequence of the LedgerWriteBehind,
+ * as the transactions of the newer transfers are still to be written to the database after a crash.
+ * Capturing the balances holds every ledger lock for the time of copying the balances into arrays, writing the file
+ * runs without any lock. Active only with the journal enabled.
+ */
+@Slf4j
+@Component
+@Profile("ledgerService")
+public class BalanceSnapshotter {
+
+    private static final int    MAGIC           = 0x4942534E;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private final AccountLedger     accountLedger;
+    private final TransferJournal   transferJournal;
+    private final LedgerWriteBehind ledgerWriteBehind;
+    private final Path              directory;
+    private long                    snapshotSequence;
+
+    public BalanceSnapshotter(AccountLedger accountLedger, TransferJournal transferJournal, LedgerWriteBehind ledgerWriteBehind,
+            @Value("${ibpts.journal.dir:${user.home}/.ibpts/journal}") String directory) {
+        this.accountLedger = accountLedger;
+        this.transferJournal = transferJournal;
+        this.ledgerWriteBehind = ledgerWriteBehind;
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Loads the balances of the latest snapshot into the ledger.
+     *
+     * @return long the journal sequence included in the snapshot, 0 when there is none.
+     */
+    public synchronized long load() {
+        if (!transferJournal.isEnabled()) {
+            return 0;
+        }
+        try {
+            List<Path> snapshots = snapshots();
+            if (snapshots.isEmpty()) {
+                return 0;
+            }
+            Path latest = snapshots.get(snapshots.size() - 1);
+            val balances = read(latest);
+            for (int i = 0; i < balances.getAccountIds().length; i++) {
+                accountLedger.load(balances.getAccountIds()[i], balances.getCurrencies()[i], balances.getBalances()[i]);
+            }
+            log.info("Loaded {} balances at journal sequence {} from {}", balances.getAccountIds().length, balances.getSequence(), latest);
+            snapshotSequence = balances.getSequence();
+            return snapshotSequence;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Balance snapshot could not be loaded from " + directory, e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the ledger when transfers were journaled since the previous one.
+     */
+    @Scheduled(fixedDelayString = "${ibpts.snapshot.interval-ms:60000}", initialDelayString = "${ibpts.snapshot.interval-ms:60000}")
+    public synchronized void snapshot() {
+        if (!transferJournal.isEnabled() || transferJournal.getWrittenSequence() == snapshotSequence) {
+            return;
+        }
+        val balances = accountLedger.capture(transferJournal::getWrittenSequence);
+        transferJournal.awaitDurable(balances.getSequence());
+        Path path = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, balances.getSequence(), SNAPSHOT_SUFFIX));
+        try {
+            write(balances, path);
+            for (Path older : snapshots()) {
+                if (!older.equals(path)) {
+                    Files.delete(older);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Balance snapshot at journal sequence {} failed", balances.getSequence(), e);
+            return;
+        }
+        snapshotSequence = balances.getSequence();
+        long truncateSequence = Math.min(snapshotSequence, ledgerWriteBehind.getPersistedSequence());
+        int truncated = transferJournal.truncate(truncateSequence);
+        log.debug("Wrote {} balances at journal sequence {}, deleted {} journal segments up to {}", balances.getAccountIds().length,
+                snapshotSequence, truncated, truncateSequence);
+    }
+
+    private void write(AccountLedger.Balances balances, Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            CRC32 crc = new CRC32();
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), 1 << 16));
+            output.writeInt(MAGIC);
+            output.writeLong(balances.getSequence());
+            output.writeInt(balances.getAccountIds().length);
+            for (int i = 0; i < balances.getAccountIds().length; i++) {
+                output.writeInt(balances.getAccountIds()[i]);
+                output.writeLong(balances.getBalances()[i]);
+                output.writeUTF(balances.getCurrencies()[i]);
+            }
+            output.flush();
+            new DataOutputStream(file).writeLong(crc.getValue());
+            file.getFD().sync();
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static AccountLedger.Balances read(Path path) throws IOException {
+        try (DataInputStream file = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            CRC32 crc = new CRC32();
+            DataInputStream input = new DataInputStream(new CheckedInputStream(file, crc));
+            if (input.readInt() != MAGIC) {
+                throw new IOException(path + " is not a balance snapshot");
+            }
+            long sequence = input.readLong();
+            int count = input.readInt();
+            int[] accountIds = new int[count];
+            long[] balances = new long[count];
+            String[] currencies = new String[count];
+            for (int i = 0; i < count; i++) {
+                accountIds[i] = input.readInt();
+                balances[i] = input.readLong();
+                currencies[i] = input.readUTF().intern();
+            }
+            if (file.readLong() != crc.getValue()) {
+                throw new IOException(path + " has a bad checksum");
+            }
+            return new AccountLedger.Balances(sequence, accountIds, balances, currencies);
+        }
+    }
+
+    private List<Path> snapshots() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import static com.norway.mastercard.ibpts.service.internal.ColumnarWriter.CREDIT;
+import static com.norway.mastercard.ibpts.service.internal.ColumnarWriter.HAS_AMOUNT;
+import static com.norway.mastercard.ibpts.service.internal.ColumnarWriter.HAS_BALANCE;
+import static com.norway.mastercard.ibpts.service.internal.ColumnarWriter.HAS_DATE;
+import static com.norway.mastercard.ibpts.service.internal.ColumnarWriter.HAS_TYPE;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.TransactionType;
+
+/**
+ * The ColumnarReader decodes the messages of the ColumnarWriter, for Java clients of the application/x-ibpts-columnar
+ * responses and the tests. Instances are not thread-safe.
+ */
+public final class ColumnarReader {
+
+    private final InputStream   inputStream;
+    private final List<String>  currencies = new ArrayList<>();
+    private final List<Integer> scales     = new ArrayList<>();
+    private final int           kind;
+    private int                 previousAccountId;
+    private long                previousSecond;
+
+    /**
+     * Reads the header of a message.
+     *
+     * @param inputStream stream to read from.
+     * @throws IOException when the stream fails or is not a message of a known version.
+     */
+    public ColumnarReader(InputStream inputStream) throws IOException {
+        this.inputStream = inputStream;
+        if (readByte() != ColumnarWriter.MAGIC)
+            throw new IOException("Not a columnar message");
+        int version = readByte();
+        if (version != ColumnarWriter.VERSION)
+            throw new IOException("Unsupported columnar message version " + version);
+        this.kind = readByte();
+    }
+
+    public static AccountDetails readDetails(InputStream inputStream) throws IOException {
+        List<AccountDetails> rows = new ColumnarReader(inputStream).expect(ColumnarWriter.KIND_DETAILS).readRows();
+        if (rows.size() != 1)
+            throw new IOException("Expected one row but read " + rows.size());
+        return rows.get(0);
+    }
+
+    public static List<AccountDetails> readList(InputStream inputStream) throws IOException {
+        return new ColumnarReader(inputStream).expect(ColumnarWriter.KIND_LIST).readRows();
+    }
+
+    public static StatementPage readPage(InputStream inputStream) throws IOException {
+        ColumnarReader reader = new ColumnarReader(inputStream).expect(ColumnarWriter.KIND_PAGE);
+        List<AccountDetails> transactions = reader.readRows();
+        int cursorLength = (int) reader.readVarint();
+        String nextCursor = cursorLength == 0 ? null : new String(reader.readBytes(cursorLength - 1), StandardCharsets.UTF_8);
+        return StatementPage.builder()
+                .transactions(transactions)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private ColumnarReader expect(int expectedKind) throws IOException {
+        if (kind != expectedKind)
+            throw new IOException("Expected a message of kind " + expectedKind + " but read " + kind);
+        return this;
+    }
+
+    private List<AccountDetails> readRows() throws IOException {
+        List<AccountDetails> result = new ArrayList<>();
+        for (int rows = (int) readVarint(); rows > 0; rows = (int) readVarint()) {
+            int[] accountIds = new int[rows];
+            int[] currencyIndexes = new int[rows];
+            int[] flags = new int[rows];
+            for (int i = 0; i < rows; i++) {
+                previousAccountId += (int) unzigzag(readVarint());
+                accountIds[i] = previousAccountId;
+            }
+            for (int i = 0; i < rows; i++) {
+                currencyIndexes[i] = readCurrency();
+            }
+            for (int i = 0; i < rows; i++) {
+                flags[i] = readByte();
+            }
+            long[] balances = new long[rows];
+            for (int i = 0; i < rows; i++) {
+                if ((flags[i] & HAS_BALANCE) != 0) {
+                    balances[i] = unzigzag(readVarint());
+                }
+            }
+            long[] amounts = new long[rows];
+            for (int i = 0; i < rows; i++) {
+                if ((flags[i] & HAS_AMOUNT) != 0) {
+                    amounts[i] = unzigzag(readVarint());
+                }
+            }
+            for (int i = 0; i < rows; i++) {
+                int scale = scales.get(currencyIndexes[i]);
+                LocalDateTime date = null;
+                if ((flags[i] & HAS_DATE) != 0) {
+                    previousSecond += unzigzag(readVarint());
+                    date = LocalDateTime.ofEpochSecond(previousSecond, (int) readVarint(), ZoneOffset.UTC);
+                }
+                result.add(AccountDetails.builder()
+                        .accountId(accountIds[i])
+                        .currencyCode(currencies.get(currencyIndexes[i]))
+                        .balance((flags[i] & HAS_BALANCE) != 0 ? MinorUnits.toDecimal(balances[i], scale) : null)
+                        .amount((flags[i] & HAS_AMOUNT) != 0 ? MinorUnits.toDecimal(amounts[i], scale) : null)
+                        .type((flags[i] & HAS_TYPE) == 0 ? null : (flags[i] & CREDIT) != 0 ? TransactionType.CREDIT : TransactionType.DEBIT)
+                        .transactionDate(date)
+                        .build());
+            }
+        }
+        return result;
+    }
+
+    private int readCurrency() throws IOException {
+        int index = (int) readVarint();
+        if (index == currencies.size()) {
+            currencies.add(new String(readBytes((int) readVarint()), StandardCharsets.US_ASCII));
+            scales.add((int) readVarint());
+        } else if (index > currencies.size()) {
+            throw new IOException("Undefined currency index " + index);
+        }
+        return index;
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private int readByte() throws IOException {
+        int b = inputStream.read();
+        if (b < 0)
+            throw new EOFException("Truncated columnar message");
+        return b;
+    }
+
+    private byte[] readBytes(int length) throws IOException {
+        byte[] bytes = inputStream.readNBytes(length);
+        if (bytes.length != length)
+            throw new EOFException("Truncated columnar message");
+        return bytes;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
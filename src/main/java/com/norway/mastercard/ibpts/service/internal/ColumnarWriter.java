@@ -0,0 +1,334 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.TransactionType;
+
+/**
+ * The ColumnarWriter encodes AccountDetails in the compact binary format served as application/x-ibpts-columnar, for
+ * clients which read many rows. A message starts with the magic byte, the version and the kind of the message: a
+ * single AccountDetails, a list of them or a StatementPage. The rows follow in blocks, each block a varint row count
+ * and then the columns of its rows one after the other, a block with no rows ends the list. A StatementPage adds the
+ * nextCursor after the last block.
+ * <ul>
+ * <li>accountId: zigzag varint delta to the accountId of the previous row, one byte for the rows of a statement</li>
+ * <li>currencyCode: varint index into the currencies seen so far, the next free index is followed by the code and
+ * its number of decimals, so the code is written once per message</li>
+ * <li>flags: one byte per row, which of balance, amount, type and transactionDate are present, and CREDIT or DEBIT</li>
+ * <li>balance and amount: zigzag varint of the minor units, for the rows which have one</li>
+ * <li>transactionDate: zigzag varint delta of the epoch seconds to the previous date and varint nanoseconds</li>
+ * </ul>
+ * Rows are buffered in primitive columns until the block is full, then written to the stream, so any number of rows
+ * is written with the memory of one block. Instances are not thread-safe.
+ */
+public final class ColumnarWriter implements Flushable {
+
+    public static final String MEDIA_TYPE   = "application/x-ibpts-columnar";
+    public static final int    MAGIC        = 0xC1;
+    public static final int    VERSION      = 1;
+    public static final int    KIND_DETAILS = 1;
+    public static final int    KIND_LIST    = 2;
+    public static final int    KIND_PAGE    = 3;
+
+    static final int HAS_BALANCE = 1;
+    static final int HAS_AMOUNT  = 1 << 1;
+    static final int HAS_TYPE    = 1 << 2;
+    static final int CREDIT      = 1 << 3;
+    static final int HAS_DATE    = 1 << 4;
+
+    private static final int DEFAULT_BLOCK_SIZE = 256;
+    private static final int MAX_BUFFER_SIZE    = 8192;
+
+    private final OutputStream         outputStream;
+    private final byte[]               buffer;
+    private final Map<String, Integer> currencies = new HashMap<>();
+    private final int[]                accountIds;
+    private final String[]             currencyCodes;
+    private final byte[]               flags;
+    private final long[]               balances;
+    private final long[]               amounts;
+    private final long[]               seconds;
+    private final int[]                nanos;
+    private int                        position;
+    private int                        rows;
+    private int                        previousAccountId;
+    private long                       previousSecond;
+    private boolean                    ended;
+
+    /**
+     * Starts a message.
+     *
+     * @param outputStream stream to write to, left open.
+     * @param kind KIND_DETAILS, KIND_LIST or KIND_PAGE.
+     * @param blockSize number of rows buffered before they are written to the stream.
+     * @throws IOException when the stream fails.
+     */
+    public ColumnarWriter(OutputStream outputStream, int kind, int blockSize) throws IOException {
+        if (kind < KIND_DETAILS || kind > KIND_PAGE)
+            throw new IllegalArgumentException("Unknown kind " + kind);
+        this.outputStream = outputStream;
+        int capacity = Math.max(1, blockSize);
+        // room for a block of typical rows, a single balance does not need more than a few dozen bytes
+        this.buffer = new byte[Math.min(MAX_BUFFER_SIZE, 64 + 32 * capacity)];
+        this.accountIds = new int[capacity];
+        this.currencyCodes = new String[capacity];
+        this.flags = new byte[capacity];
+        this.balances = new long[capacity];
+        this.amounts = new long[capacity];
+        this.seconds = new long[capacity];
+        this.nanos = new int[capacity];
+        writeByte(MAGIC);
+        writeByte(VERSION);
+        writeByte(kind);
+    }
+
+    /**
+     * Writes an AccountDetails message.
+     *
+     * @param accountDetails accountDetails to write.
+     * @param outputStream stream to write to, left open.
+     * @throws IOException when the stream fails.
+     */
+    public static void writeDetails(AccountDetails accountDetails, OutputStream outputStream) throws IOException {
+        ColumnarWriter writer = new ColumnarWriter(outputStream, KIND_DETAILS, 1);
+        writer.write(accountDetails);
+        writer.end();
+    }
+
+    /**
+     * Writes a list message.
+     *
+     * @param rows rows to write.
+     * @param outputStream stream to write to, left open.
+     * @throws IOException when the stream fails.
+     */
+    public static void writeList(Iterator<AccountDetails> rows, OutputStream outputStream) throws IOException {
+        ColumnarWriter writer = new ColumnarWriter(outputStream, KIND_LIST, DEFAULT_BLOCK_SIZE);
+        while (rows.hasNext()) {
+            writer.write(rows.next());
+        }
+        writer.end();
+    }
+
+    /**
+     * Writes a StatementPage message.
+     *
+     * @param page page to write.
+     * @param outputStream stream to write to, left open.
+     * @throws IOException when the stream fails.
+     */
+    public static void writePage(StatementPage page, OutputStream outputStream) throws IOException {
+        ColumnarWriter writer = new ColumnarWriter(outputStream, KIND_PAGE, DEFAULT_BLOCK_SIZE);
+        for (AccountDetails row : page.getTransactions()) {
+            writer.write(row);
+        }
+        writer.endPage(page.getNextCursor());
+    }
+
+    /**
+     * Adds a row, writing the block when it is full.
+     *
+     * @param row row to add.
+     * @throws IOException when the stream fails.
+     */
+    public void write(AccountDetails row) throws IOException {
+        if (row.getCurrencyCode() == null)
+            throw new IllegalArgumentException("The currencyCode of account " + row.getAccountId() + " is missing");
+        int scale = MinorUnits.scaleOf(row.getCurrencyCode());
+        int rowFlags = typeFlagsOf(row.getType());
+        long balance = 0;
+        long amount = 0;
+        if (row.getBalance() != null) {
+            rowFlags |= HAS_BALANCE;
+            balance = MinorUnits.toMinor(row.getBalance(), scale);
+        }
+        if (row.getAmount() != null) {
+            rowFlags |= HAS_AMOUNT;
+            amount = MinorUnits.toMinor(row.getAmount(), scale);
+        }
+        add(row.getAccountId(), row.getCurrencyCode(), rowFlags, balance, amount, row.getTransactionDate());
+    }
+
+    /**
+     * Adds a statement row from the fields of a transaction, without going through AccountDetails.
+     *
+     * @param accountId accountId of the account of the statement.
+     * @param currencyCode currency of the account.
+     * @param type type of the transaction.
+     * @param amountMinor amount of the transaction in minor units.
+     * @param transactionDate date of the transaction.
+     * @throws IOException when the stream fails.
+     */
+    public void writeTransaction(int accountId, String currencyCode, TransactionType type, long amountMinor, LocalDateTime transactionDate)
+            throws IOException {
+        add(accountId, currencyCode, HAS_AMOUNT | typeFlagsOf(type), 0, amountMinor, transactionDate);
+    }
+
+    /**
+     * Writes the rows added so far and flushes the stream.
+     *
+     * @throws IOException when the stream fails.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        outputStream.write(buffer, 0, position);
+        position = 0;
+        outputStream.flush();
+    }
+
+    /**
+     * Ends a list or AccountDetails message.
+     *
+     * @throws IOException when the stream fails.
+     */
+    public void end() throws IOException {
+        writeBlock();
+        writeVarint(0);
+        ended = true;
+        flush();
+    }
+
+    /**
+     * Ends a StatementPage message.
+     *
+     * @param nextCursor cursor of the next page, or null on the last page.
+     * @throws IOException when the stream fails.
+     */
+    public void endPage(String nextCursor) throws IOException {
+        writeBlock();
+        writeVarint(0);
+        if (nextCursor == null) {
+            writeVarint(0);
+        } else {
+            byte[] bytes = nextCursor.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1);
+            writeBytes(bytes);
+        }
+        ended = true;
+        flush();
+    }
+
+    private void add(int accountId, String currencyCode, int rowFlags, long balance, long amount, LocalDateTime date) throws IOException {
+        if (ended)
+            throw new IllegalStateException("The message is already ended");
+        if (date != null) {
+            rowFlags |= HAS_DATE;
+            seconds[rows] = date.toEpochSecond(ZoneOffset.UTC);
+            nanos[rows] = date.getNano();
+        }
+        accountIds[rows] = accountId;
+        currencyCodes[rows] = currencyCode;
+        flags[rows] = (byte) rowFlags;
+        balances[rows] = balance;
+        amounts[rows] = amount;
+        if (++rows == accountIds.length) {
+            writeBlock();
+        }
+    }
+
+    private static int typeFlagsOf(TransactionType type) {
+        if (type == null) {
+            return 0;
+        }
+        return type == TransactionType.CREDIT ? HAS_TYPE | CREDIT : HAS_TYPE;
+    }
+
+    private void writeBlock() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        writeVarint(rows);
+        for (int i = 0; i < rows; i++) {
+            writeVarint(zigzag(accountIds[i] - (long) previousAccountId));
+            previousAccountId = accountIds[i];
+        }
+        for (int i = 0; i < rows; i++) {
+            writeCurrency(currencyCodes[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            writeByte(flags[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            if ((flags[i] & HAS_BALANCE) != 0) {
+                writeVarint(zigzag(balances[i]));
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            if ((flags[i] & HAS_AMOUNT) != 0) {
+                writeVarint(zigzag(amounts[i]));
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            if ((flags[i] & HAS_DATE) != 0) {
+                writeVarint(zigzag(seconds[i] - previousSecond));
+                writeVarint(nanos[i]);
+                previousSecond = seconds[i];
+            }
+        }
+        Arrays.fill(currencyCodes, 0, rows, null);
+        rows = 0;
+    }
+
+    private void writeCurrency(String currencyCode) throws IOException {
+        Integer index = currencies.get(currencyCode);
+        if (index != null) {
+            writeVarint(index);
+            return;
+        }
+        int newIndex = currencies.size();
+        currencies.put(currencyCode, newIndex);
+        writeVarint(newIndex);
+        byte[] bytes = currencyCode.getBytes(StandardCharsets.US_ASCII);
+        writeVarint(bytes.length);
+        writeBytes(bytes);
+        writeVarint(MinorUnits.scaleOf(currencyCode));
+    }
+
+    private void writeVarint(long value) throws IOException {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeByte(int value) throws IOException {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        ensureCapacity(bytes.length);
+        if (bytes.length > buffer.length) {
+            outputStream.write(bytes);
+            return;
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (buffer.length - position < length) {
+            outputStream.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+}
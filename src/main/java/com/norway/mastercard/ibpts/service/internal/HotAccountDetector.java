@@ -0,0 +1,86 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * The HotAccountDetector counts the credits every account receives per window and reports an account as hot once
+ * it received creditsPerSecond credits per second in the current or the previous window.
+ * Only the accounts credited recently are tracked, in a bounded cache, so the memory does not grow with the number
+ * of accounts.
+ */
+@Component
+public class HotAccountDetector {
+
+    private final Cache<Integer, CreditWindow> windows;
+    private final boolean                      enabled;
+    private final long                         creditsPerWindow;
+    private final long                         windowNanos;
+    private final LongSupplier                 nanoClock;
+
+    @Autowired
+    public HotAccountDetector(@Value("${ibpts.hot-accounts.enabled:true}") boolean enabled,
+            @Value("${ibpts.hot-accounts.credits-per-second:100}") long creditsPerSecond,
+            @Value("${ibpts.hot-accounts.window:1s}") Duration window,
+            @Value("${ibpts.hot-accounts.tracked-max-size:10000}") long trackedMaxSize) {
+        this(enabled, creditsPerSecond, window, trackedMaxSize, System::nanoTime);
+    }
+
+    public HotAccountDetector(boolean enabled, long creditsPerSecond, Duration window, long trackedMaxSize, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.windowNanos = Math.max(1, window.toNanos());
+        this.creditsPerWindow = Math.max(1, creditsPerSecond * windowNanos / Duration.ofSeconds(1).toNanos());
+        this.nanoClock = nanoClock;
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(trackedMaxSize)
+                .expireAfterAccess(window.multipliedBy(2))
+                .build();
+    }
+
+    /**
+     * Counts a credit to the account.
+     *
+     * @param accountId accountId of the credited account.
+     * @return boolean true when the account is hot.
+     */
+    public boolean recordCredit(int accountId) {
+        if (!enabled) {
+            return false;
+        }
+        long now = nanoClock.getAsLong();
+        return windows.get(accountId, id -> new CreditWindow(now)).record(now, windowNanos) >= creditsPerWindow;
+    }
+
+    /**
+     * The credits of one account in the current window and in the one before.
+     */
+    private static final class CreditWindow {
+
+        private long start;
+        private long count;
+        private long previousCount;
+
+        private CreditWindow(long start) {
+            this.start = start;
+        }
+
+        private synchronized long record(long now, long windowNanos) {
+            long elapsed = now - start;
+            if (elapsed >= windowNanos) {
+                // a window without any credit in between leaves nothing to carry over
+                previousCount = elapsed < 2 * windowNanos ? count : 0;
+                count = 0;
+                start = now - elapsed % windowNanos;
+            }
+            return Math.max(++count, previousCount);
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.norway.mastercard.ibpts.exception.AccountNotFoundException;
+import com.norway.mastercard.ibpts.exception.TransferNotPreparedException;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementFormat;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.StatementSummary;
+import com.norway.mastercard.ibpts.model.TransferLeg;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The HttpAccountShard serves a shard from another node running the shardedService profile.
+ * Reads use the public account endpoints, transfers the participant endpoints of ShardResource. A 404 of the node is
+ * rethrown as AccountNotFoundException and a 400 as IllegalArgumentException with the message of the node, so both
+ * are reported like rejections of a local shard. A 410 of a commit is rethrown as TransferNotPreparedException.
+ */
+@RequiredArgsConstructor
+class HttpAccountShard implements AccountShard {
+
+    private final String       baseUrl;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public AccountDetails getAccountBalance(int accountId) {
+        return call(() -> restTemplate.getForObject(baseUrl + "/accounts/{accountId}/balance", AccountDetails.class, accountId));
+    }
+
+    @Override
+    public AccountDetails getAccountBalance(int accountId, LocalDateTime asOf) {
+        return call(() -> restTemplate.getForObject(baseUrl + "/accounts/{accountId}/balance?asOf={asOf}", AccountDetails.class,
+                accountId, asOf));
+    }
+
+    @Override
+    public List<AccountDetails> getAccountBalances(List<Integer> accountIds) {
+        return call(() -> Arrays.asList(restTemplate.postForObject(baseUrl + "/shards/balances", accountIds, AccountDetails[].class)));
+    }
+
+    @Override
+    public List<AccountDetails> getMiniStatement(int accountId) {
+        return call(() -> Arrays.asList(restTemplate.getForObject(baseUrl + "/accounts/{accountId}/statements/mini",
+                AccountDetails[].class, accountId)));
+    }
+
+    @Override
+    public StatementPage getStatement(int accountId, String cursor, int limit) {
+        if (cursor == null) {
+            return call(() -> restTemplate.getForObject(baseUrl + "/accounts/{accountId}/statements?limit={limit}",
+                    StatementPage.class, accountId, limit));
+        }
+        return call(() -> restTemplate.getForObject(baseUrl + "/accounts/{accountId}/statements?cursor={cursor}&limit={limit}",
+                StatementPage.class, accountId, cursor, limit));
+    }
+
+    @Override
+    public void exportStatement(int accountId, StatementFormat format, OutputStream outputStream) {
+        call(() -> restTemplate.execute(baseUrl + "/accounts/{accountId}/statements/export?format={format}", HttpMethod.GET,
+                null, response -> StreamUtils.copy(response.getBody(), outputStream), accountId, format));
+    }
+
+    @Override
+    public StatementSummary getStatementSummary(int accountId, LocalDate from, LocalDate to) {
+        return call(() -> restTemplate.getForObject(baseUrl + "/accounts/{accountId}/statements/summary?from={from}&to={to}",
+                StatementSummary.class, accountId, from, to));
+    }
+
+    @Override
+    public void transferAmount(int toAccountId, AccountDetails accountDetails) {
+        call(() -> restTemplate.postForLocation(baseUrl + "/shards/accounts/{accountId}/transfers", accountDetails, toAccountId));
+    }
+
+    @Override
+    public void prepare(TransferLeg leg) {
+        call(() -> restTemplate.postForLocation(baseUrl + "/shards/transfers", leg));
+    }
+
+    @Override
+    public Long commit(String transferId, Long counterpartBalance) {
+        if (counterpartBalance == null) {
+            return call(() -> restTemplate.postForObject(baseUrl + "/shards/transfers/{transferId}/commit", null, Long.class, transferId));
+        }
+        return call(() -> restTemplate.postForObject(baseUrl + "/shards/transfers/{transferId}/commit?counterpartBalance={counterpartBalance}",
+                null, Long.class, transferId, counterpartBalance));
+    }
+
+    @Override
+    public void abort(String transferId) {
+        call(() -> restTemplate.postForLocation(baseUrl + "/shards/transfers/{transferId}/abort", null, transferId));
+    }
+
+    private <T> T call(Supplier<T> request) {
+        try {
+            return request.get();
+        } catch (HttpStatusCodeException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND)
+                throw new AccountNotFoundException(messageOf(e));
+            if (e.getStatusCode() == HttpStatus.BAD_REQUEST)
+                throw new IllegalArgumentException(messageOf(e));
+            if (e.getStatusCode() == HttpStatus.GONE)
+                throw new TransferNotPreparedException(messageOf(e));
+            throw e;
+        }
+    }
+
+    private String messageOf(HttpStatusCodeException e) {
+        try {
+            return objectMapper.readTree(e.getResponseBodyAsString()).path("message").asText(e.getStatusText());
+        } catch (JsonProcessingException unreadable) {
+            return e.getStatusText();
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.norway.mastercard.ibpts.dao.IdempotencyRecord;
+import com.norway.mastercard.ibpts.exception.AccountNotFoundException;
+import com.norway.mastercard.ibpts.exception.IdempotencyKeyMismatchException;
+import com.norway.mastercard.ibpts.repo.IdempotencyRecordRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The IdempotencyStore remembers the outcome of requests by their idempotency key, so a repeated request gets the
+ * original outcome without being applied again.
+ * Keys live in a bounded in-memory cache evicting by size and age, a repeat is a single hash lookup. A repeat arriving
+ * while the original is still running waits for its outcome. Only final outcomes are kept: a completed request and a
+ * rejected one (unknown account, failed validation), replayed with the status of the original answer. Transient
+ * failures such as conflicts, and errors, release the key, so the retry is executed again.
+ * With ibpts.idempotency.persistent=true outcomes are also written to the idempotency_record table and looked up there
+ * on a cache miss, which keeps keys across restarts. The record is written right after the request completed, a crash
+ * in between loses the key.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final boolean                     persistent;
+    private final Duration                    timeToLive;
+    private final Cache<String, Entry>        entries;
+
+    public IdempotencyStore(IdempotencyRecordRepository idempotencyRecordRepository,
+            @Value("${ibpts.idempotency.persistent:false}") boolean persistent,
+            @Value("${ibpts.idempotency.max-size:100000}") long maxSize,
+            @Value("${ibpts.idempotency.ttl:24h}") Duration timeToLive) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.persistent = persistent;
+        this.timeToLive = timeToLive;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLive)
+                .build();
+    }
+
+    /**
+     * Runs the request once per idempotency key and replays its outcome for repeats.
+     *
+     * @param idempotencyKey key chosen by the client.
+     * @param fingerprint identity of the request payload, a repeat with a different payload is rejected.
+     * @param request request to run.
+     */
+    public void execute(String idempotencyKey, String fingerprint, Runnable request) {
+        CompletableFuture<Outcome> outcome = new CompletableFuture<>();
+        Entry existing = entries.asMap().putIfAbsent(idempotencyKey, new Entry(fingerprint, outcome));
+        if (existing != null) {
+            verifyFingerprint(idempotencyKey, existing.fingerprint, fingerprint);
+            replay(join(existing.outcome));
+            return;
+        }
+        IdempotencyRecord record = persistent ? run(idempotencyKey, outcome, () -> findRecord(idempotencyKey)) : null;
+        if (record != null) {
+            Outcome stored = new Outcome(record.getStatus(), record.getMessage());
+            entries.put(idempotencyKey, new Entry(record.getFingerprint(), CompletableFuture.completedFuture(stored)));
+            outcome.complete(stored);
+            verifyFingerprint(idempotencyKey, record.getFingerprint(), fingerprint);
+            replay(stored);
+            return;
+        }
+        try {
+            run(idempotencyKey, outcome, () -> {
+                request.run();
+                return null;
+            });
+        } catch (AccountNotFoundException | IllegalArgumentException e) {
+            remember(idempotencyKey, fingerprint, outcome, new Outcome(statusOf(e), e.getMessage()));
+            throw e;
+        }
+        remember(idempotencyKey, fingerprint, outcome, new Outcome(HttpStatus.OK.value(), null));
+    }
+
+    /**
+     * Deletes the persisted records older than the time to live.
+     */
+    @Scheduled(fixedDelayString = "${ibpts.idempotency.purge-interval-ms:600000}")
+    public void purge() {
+        if (persistent) {
+            int deleted = idempotencyRecordRepository.deleteCreatedBefore(LocalDateTime.now(ZoneId.systemDefault()).minus(timeToLive));
+            log.debug("Purged {} idempotency records", deleted);
+        }
+    }
+
+    public long size() {
+        return entries.estimatedSize();
+    }
+
+    private IdempotencyRecord findRecord(String idempotencyKey) {
+        return idempotencyRecordRepository.findById(idempotencyKey).orElse(null);
+    }
+
+    /**
+     * Runs a step of the first request of a key, releasing the key when the step fails for a transient reason.
+     */
+    private <T> T run(String idempotencyKey, CompletableFuture<Outcome> outcome, Supplier<T> step) {
+        try {
+            return step.get();
+        } catch (AccountNotFoundException | IllegalArgumentException e) {
+            throw e;
+        } catch (Throwable e) {
+            // any other failure, errors included, releases the key and wakes up the repeats waiting for it
+            entries.invalidate(idempotencyKey);
+            outcome.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void remember(String idempotencyKey, String fingerprint, CompletableFuture<Outcome> future, Outcome outcome) {
+        future.complete(outcome);
+        if (!persistent) {
+            return;
+        }
+        try {
+            idempotencyRecordRepository.save(IdempotencyRecord.builder()
+                    .idempotencyKey(idempotencyKey)
+                    .fingerprint(fingerprint)
+                    .status(outcome.status)
+                    .message(outcome.message)
+                    .createdAt(LocalDateTime.now(ZoneId.systemDefault()))
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Idempotency key {} was recorded concurrently", idempotencyKey);
+        } catch (RuntimeException e) {
+            log.warn("Idempotency key {} could not be persisted, it is only kept in memory", idempotencyKey, e);
+        }
+    }
+
+    private static void verifyFingerprint(String idempotencyKey, String expected, String actual) {
+        if (!expected.equals(actual))
+            throw new IdempotencyKeyMismatchException("Idempotency key " + idempotencyKey + " was already used for a different request");
+    }
+
+    private static Outcome join(CompletableFuture<Outcome> outcome) {
+        try {
+            return outcome.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private static void replay(Outcome outcome) {
+        if (outcome.status != HttpStatus.OK.value())
+            throw new ResponseStatusException(HttpStatus.valueOf(outcome.status), outcome.message);
+    }
+
+    /**
+     * Reads the status the rejection was answered with, 400 for a failed validation as AccountResource answers it.
+     */
+    private static int statusOf(RuntimeException e) {
+        if (e instanceof IllegalArgumentException) {
+            return HttpStatus.BAD_REQUEST.value();
+        }
+        ResponseStatus responseStatus = AnnotatedElementUtils.findMergedAnnotation(e.getClass(), ResponseStatus.class);
+        return responseStatus != null ? responseStatus.code().value() : HttpStatus.INTERNAL_SERVER_ERROR.value();
+    }
+
+    @RequiredArgsConstructor
+    private static final class Entry {
+
+        private final String                     fingerprint;
+        private final CompletableFuture<Outcome> outcome;
+    }
+
+    @RequiredArgsConstructor
+    private static final class Outcome {
+
+        private final int    status;
+        private final String message;
+    }
+
+}
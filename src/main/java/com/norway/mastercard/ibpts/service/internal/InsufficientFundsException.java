@@ -0,0 +1,14 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+/**
+ * The InsufficientFundsException rejects a transfer whose debited account does not hold enough funds.
+ * It stays an IllegalArgumentException like every other validation failure, the own type only lets the metrics tell
+ * it apart.
+ */
+final class InsufficientFundsException extends IllegalArgumentException {
+
+    InsufficientFundsException() {
+        super("Insufficient funds available");
+    }
+
+}
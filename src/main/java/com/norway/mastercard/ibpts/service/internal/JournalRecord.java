@@ -0,0 +1,78 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32;
+
+import com.norway.mastercard.ibpts.model.TransactionType;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The JournalRecord is one transfer in the TransferJournal.
+ * Records have a fixed size of 41 bytes: sequence, toAccountId, fromAccountId, amount in minor units, type, the
+ * transaction date as UTC epoch second and nano of second, and a CRC32 of the preceding bytes. Sequences start at 1,
+ * a zero sequence marks the unwritten tail of a segment.
+ */
+@Getter
+@RequiredArgsConstructor
+public final class JournalRecord {
+
+    static final int SIZE = 8 + 4 + 4 + 8 + 1 + 8 + 4 + 4;
+
+    private final long            sequence;
+    private final int             toAccountId;
+    private final int             fromAccountId;
+    private final long            amount;
+    private final TransactionType type;
+    private final LocalDateTime   transactionDate;
+
+    void writeTo(ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.putLong(sequence)
+                .putInt(toAccountId)
+                .putInt(fromAccountId)
+                .putLong(amount)
+                .put((byte) type.ordinal())
+                .putLong(transactionDate.toEpochSecond(ZoneOffset.UTC))
+                .putInt(transactionDate.getNano());
+        buffer.putInt(checksum(buffer, start));
+    }
+
+    /**
+     * Reads the record at the position of the buffer.
+     *
+     * @param buffer buffer positioned at a record.
+     * @return JournalRecord the record, or null at the unwritten tail or at a torn record.
+     */
+    static JournalRecord readFrom(ByteBuffer buffer) {
+        if (buffer.remaining() < SIZE) {
+            return null;
+        }
+        int start = buffer.position();
+        long sequence = buffer.getLong();
+        int toAccountId = buffer.getInt();
+        int fromAccountId = buffer.getInt();
+        long amount = buffer.getLong();
+        int type = buffer.get();
+        long epochSecond = buffer.getLong();
+        int nano = buffer.getInt();
+        int expectedChecksum = checksum(buffer, start);
+        if (sequence <= 0 || buffer.getInt() != expectedChecksum || type < 0 || type >= TransactionType.values().length) {
+            return null;
+        }
+        return new JournalRecord(sequence, toAccountId, fromAccountId, amount, TransactionType.values()[type],
+                LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC));
+    }
+
+    private static int checksum(ByteBuffer buffer, int start) {
+        CRC32 crc = new CRC32();
+        ByteBuffer content = buffer.duplicate();
+        content.position(start).limit(buffer.position());
+        crc.update(content);
+        return (int) crc.getValue();
+    }
+
+}
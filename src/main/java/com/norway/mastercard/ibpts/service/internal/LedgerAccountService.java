@@ -0,0 +1,392 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import static com.norway.mastercard.ibpts.service.internal.AccountMapper.mapInstruction;
+import static com.norway.mastercard.ibpts.service.internal.AccountMapper.mapTransferResult;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.amountOf;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.hasAmount;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.setAccountBalance;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.validateCurrencies;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.validateFunds;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.validateRequired;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.norway.mastercard.ibpts.exception.AccountNotFoundException;
+import com.norway.mastercard.ibpts.dao.Account;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementFormat;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.StatementSummary;
+import com.norway.mastercard.ibpts.model.TransferInstruction;
+import com.norway.mastercard.ibpts.model.TransferResult;
+import com.norway.mastercard.ibpts.repo.AccountRepository;
+import com.norway.mastercard.ibpts.service.AccountService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+/**
+ * The LedgerAccountService is a implementation of AccountService interface which performs transfers against the
+ * in-memory AccountLedger and persists them asynchronously through the LedgerWriteBehind.
+ * It assumes to be the only writer of the accounts table, activate it with the profile ledgerService.
+ * With the TransferJournal enabled every transfer is journaled under the account locks before the ledger changes, and
+ * the caller waits for the journal to be durable after the locks are released. On startup the journal after the
+ * LedgerCheckpoint is replayed onto the accounts of the database, skipping the transactions stored by account flushes.
+ * When the journal no longer holds those transfers, as with an in-memory database, the latest balance snapshot is loaded
+ * and the newer part of the journal is replayed onto it instead. The write-behind then persists the recovered state.
+ * Statement reads flush the pending transactions of their account only, transfers of other accounts go on.
+ * With the TransferSequencer enabled the checks on the balances and the changes run on its single writer thread instead
+ * of the request threads.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Profile("ledgerService")
+public class LedgerAccountService implements AccountService {
+
+    private final AccountLedger       accountLedger;
+    private final LedgerWriteBehind   ledgerWriteBehind;
+    private final AccountRepository   accountRepository;
+    private final StatementReader     statementReader;
+    private final StatementExporter   statementExporter;
+    private final TransferJournal     transferJournal;
+    private final BalanceSnapshotter  balanceSnapshotter;
+    private final TransferSequencer   transferSequencer;
+    private final StatementAggregator statementAggregator;
+
+    /**
+     * Replays the transfers of the journal which are not stored in the database yet, starting from the latest balance
+     * snapshot when the journal no longer holds all of them.
+     */
+    @PostConstruct
+    public void recover() {
+        long persistedSequence = ledgerWriteBehind.loadPersistedSequence();
+        long afterSequence = transferJournal.holdsRecordsAfter(persistedSequence) ? persistedSequence : balanceSnapshotter.load();
+        Set<Long> storedTransfers = ledgerWriteBehind.loadTransfersAfter(afterSequence);
+        long recovered = transferJournal.recover(afterSequence, record -> replay(record, !storedTransfers.contains(record.getSequence())));
+        if (recovered > 0) {
+            log.info("Recovered {} transfers from the journal", recovered);
+        }
+        transferSequencer.start(this::execute);
+    }
+
+    /**
+     * Reads account balance from the ledger.
+     *
+     * @param accountId accountId to read.
+     * @return AccountDetails details of the account.
+     */
+    @Override
+    public AccountDetails getAccountBalance(int accountId) {
+        accountLedger.ensureLoaded(accountId);
+        return AccountDetails.builder()
+                .balance(MinorUnits.toDecimal(accountLedger.balance(accountId), accountLedger.scale(accountId)))
+                .accountId(accountId)
+                .currencyCode(accountLedger.currency(accountId))
+                .build();
+    }
+
+    /**
+     * Reads the balances of several accounts from the ledger, loading the missing ones in bulk.
+     *
+     * @param accountIds accountIds to read.
+     * @return List<AccountDetails> details of the known accounts in the order of accountIds, unknown ones are left out.
+     */
+    @Override
+    public List<AccountDetails> getAccountBalances(List<Integer> accountIds) {
+        Set<Integer> distinctIds = new LinkedHashSet<>(accountIds);
+        accountLedger.ensureLoaded(distinctIds);
+        List<AccountDetails> balances = new ArrayList<>(distinctIds.size());
+        for (Integer accountId : distinctIds) {
+            if (accountLedger.contains(accountId)) {
+                balances.add(getAccountBalance(accountId));
+            }
+        }
+        return balances;
+    }
+
+    /**
+     * Persists the pending transactions of the account and reads its balance at the given moment from the running
+     * balances of its transactions.
+     *
+     * @param accountId accountId to read.
+     * @param asOf moment to read the balance at.
+     * @return AccountDetails details of the account.
+     */
+    @Override
+    public AccountDetails getAccountBalance(int accountId, LocalDateTime asOf) {
+        return readPersisted(accountId, account -> statementReader.readBalance(account, asOf));
+    }
+
+    /**
+     * Persists the pending transactions of the account and reads account and its latest transactions.
+     *
+     * @param accountId accountId to read.
+     * @return List<AccountDetails> details of the account transaction.
+     */
+    @Override
+    public List<AccountDetails> getMiniStatement(int accountId) {
+        return readPersisted(accountId, statementReader::readMiniStatement);
+    }
+
+    /**
+     * Persists the pending transactions of the account and reads account and one page of its transactions.
+     *
+     * @param accountId accountId to read.
+     * @param cursor nextCursor of the previous page, or null for the first page.
+     * @param limit maximum number of transactions in the page.
+     * @return StatementPage details of the account transactions and the cursor of the next page.
+     */
+    @Override
+    public StatementPage getStatement(int accountId, String cursor, int limit) {
+        return readPersisted(accountId, account -> statementReader.readStatement(account, cursor, limit));
+    }
+
+    /**
+     * Persists the pending transactions of the account and streams all of its transactions.
+     *
+     * @param accountId accountId to read.
+     * @param format format of the rows.
+     * @param outputStream stream to write the rows to.
+     */
+    @Override
+    public void exportStatement(int accountId, StatementFormat format, OutputStream outputStream) {
+        statementExporter.export(readPersisted(accountId, Function.identity()), format, outputStream);
+    }
+
+    /**
+     * Reads the totals of the debits and credits of the account between two days from the stored buckets and the
+     * bucket changes still pending in the ledger.
+     *
+     * @param accountId accountId to read.
+     * @param from first day of the range.
+     * @param to last day of the range.
+     * @return StatementSummary the totals of the account in the range.
+     */
+    @Override
+    public StatementSummary getStatementSummary(int accountId, LocalDate from, LocalDate to) {
+        val account = findAccount(accountId);
+        return ledgerWriteBehind.readConsistently(() ->
+                statementAggregator.summarize(account, from, to, accountLedger.pendingBucketChanges(accountId)));
+    }
+
+    /**
+     * Flushes the pending transactions of the account and runs a read against the database.
+     */
+    private <T> T readPersisted(int accountId, Function<Account, T> read) {
+        val account = findAccount(accountId);
+        ledgerWriteBehind.flush(accountId);
+        return read.apply(account);
+    }
+
+    private Account findAccount(int accountId) {
+        return accountRepository.findById(accountId)
+                .orElseThrow(() -> new AccountNotFoundException("Invalid Account ID " + accountId));
+    }
+
+    /**
+     * Validates and performs transfer of amount from one account to another while holding the ledger locks of both.
+     *
+     * @param toAccountId accountId to read.
+     * @param accountDetails fromAccount details to read.
+     */
+    @Override
+    public void transferAmount(int toAccountId, AccountDetails accountDetails) {
+        if (transferSequencer.isEnabled()) {
+            join(submitTransfer(toAccountId, accountDetails));
+        } else {
+            transferJournal.awaitDurable(transfer(toAccountId, accountDetails));
+        }
+    }
+
+    /**
+     * Validates the transfer on the calling thread and hands it to the TransferSequencer when it is enabled.
+     *
+     * @param toAccountId accountId to read.
+     * @param accountDetails fromAccount details to read.
+     * @return CompletableFuture<Void> completed once the transfer is applied and durable.
+     */
+    @Override
+    public CompletableFuture<Void> submitTransfer(int toAccountId, AccountDetails accountDetails) {
+        if (!transferSequencer.isEnabled()) {
+            return AccountService.super.submitTransfer(toAccountId, accountDetails);
+        }
+        AccountDetails transaction;
+        long amount;
+        try {
+            transaction = prepare(toAccountId, accountDetails);
+            amount = amountOf(transaction, accountLedger.currency(toAccountId));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return transferSequencer.submit(toAccountId, transaction, amount);
+    }
+
+    /**
+     * Performs the transfer and returns its journal sequence without waiting for it to be durable.
+     */
+    private long transfer(int toAccountId, AccountDetails accountDetails) {
+        val transaction = prepare(toAccountId, accountDetails);
+        return execute(toAccountId, transaction, amountOf(transaction, accountLedger.currency(toAccountId)));
+    }
+
+    /**
+     * Loads both accounts and runs the checks which do not depend on the balances.
+     *
+     * @return AccountDetails the transfer with its transaction date set.
+     */
+    private AccountDetails prepare(int toAccountId, AccountDetails accountDetails) {
+        accountLedger.ensureLoaded(toAccountId);
+        accountLedger.ensureLoaded(accountDetails.getAccountId());
+        validateRequired(accountDetails);
+        validateCurrencies(accountLedger.currency(toAccountId), accountLedger.currency(accountDetails.getAccountId()));
+        return withTransactionDate(accountDetails);
+    }
+
+    /**
+     * Checks the funds, journals and applies a prepared transfer while holding the ledger locks of both accounts.
+     *
+     * @return long the journal sequence of the transfer, 0 when nothing was journaled.
+     */
+    private long execute(int toAccountId, AccountDetails transaction, long amount) {
+        int fromAccountId = transaction.getAccountId();
+        return accountLedger.lockAccounts(toAccountId, fromAccountId, () -> {
+            validateFunds(transaction.getType(), amount, accountLedger.balance(fromAccountId), accountLedger.balance(toAccountId));
+            if (!hasAmount(amount)) {
+                return 0L;
+            }
+            long sequence = transferJournal.append(toAccountId, fromAccountId, amount, transaction.getType(),
+                    transaction.getTransactionDate());
+            apply(toAccountId, fromAccountId, transaction, amount, sequence, true);
+            return sequence;
+        });
+    }
+
+    /**
+     * Applies a journaled transfer, it was validated when it was performed. Its transaction is recorded again unless an
+     * account flush stored it already.
+     */
+    private void replay(JournalRecord record, boolean recordTransaction) {
+        accountLedger.ensureLoaded(record.getToAccountId());
+        accountLedger.ensureLoaded(record.getFromAccountId());
+        val transaction = AccountDetails.builder()
+                .accountId(record.getFromAccountId())
+                .amount(MinorUnits.toDecimal(record.getAmount(), accountLedger.scale(record.getToAccountId())))
+                .currencyCode(accountLedger.currency(record.getToAccountId()))
+                .type(record.getType())
+                .transactionDate(record.getTransactionDate())
+                .build();
+        accountLedger.lockAccounts(record.getToAccountId(), record.getFromAccountId(), () -> {
+            apply(record.getToAccountId(), record.getFromAccountId(), transaction, record.getAmount(), record.getSequence(),
+                    recordTransaction);
+            return null;
+        });
+    }
+
+    /**
+     * Changes the balances and records the transaction, must be called while holding the locks of both accounts.
+     */
+    private void apply(int toAccountId, int fromAccountId, AccountDetails transaction, long amount, long sequence, boolean recordTransaction) {
+        long toBalance = setAccountBalance(transaction.getType(), amount, accountLedger.balance(toAccountId), true);
+        long fromBalance = setAccountBalance(transaction.getType(), amount, accountLedger.balance(fromAccountId), false);
+        accountLedger.addBucketChange(toAccountId, transaction.getTransactionDate(), toBalance - accountLedger.balance(toAccountId));
+        accountLedger.addBucketChange(fromAccountId, transaction.getTransactionDate(), fromBalance - accountLedger.balance(fromAccountId));
+        accountLedger.setBalance(toAccountId, toBalance);
+        accountLedger.setBalance(fromAccountId, fromBalance);
+        if (recordTransaction) {
+            accountLedger.addTransaction(toAccountId, transaction, toBalance, fromBalance, sequence);
+        }
+        accountLedger.markDirty(toAccountId);
+        accountLedger.markDirty(fromAccountId);
+    }
+
+    /**
+     * Fixes the transaction date at transfer time, so the journal and the persisted transaction agree.
+     */
+    private static AccountDetails withTransactionDate(AccountDetails accountDetails) {
+        if (accountDetails.getTransactionDate() != null) {
+            return accountDetails;
+        }
+        return AccountDetails.builder()
+                .accountId(accountDetails.getAccountId())
+                .amount(accountDetails.getAmount())
+                .currencyCode(accountDetails.getCurrencyCode())
+                .type(accountDetails.getType())
+                .transactionDate(LocalDateTime.now(ZoneId.systemDefault()))
+                .build();
+    }
+
+    /**
+     * Performs a batch of transfers one by one against the ledger, the write-behind groups their persistence.
+     * The journal is awaited once for the whole batch.
+     *
+     * @param transfers transfers to perform.
+     * @return List<TransferResult> outcome of every transfer in the order of the batch.
+     */
+    @Override
+    public List<TransferResult> transferAmounts(List<TransferInstruction> transfers) {
+        if (transferSequencer.isEnabled()) {
+            return submitTransfers(transfers);
+        }
+        List<TransferResult> results = new ArrayList<>(transfers.size());
+        long lastSequence = 0;
+        for (int index = 0; index < transfers.size(); index++) {
+            val transfer = transfers.get(index);
+            String rejectionMessage = null;
+            try {
+                lastSequence = Math.max(lastSequence, transfer(transfer.getToAccountId(), mapInstruction(transfer)));
+            } catch (AccountNotFoundException | IllegalArgumentException e) {
+                rejectionMessage = e.getMessage();
+            }
+            results.add(mapTransferResult(index, transfer, rejectionMessage));
+        }
+        transferJournal.awaitDurable(lastSequence);
+        return results;
+    }
+
+    /**
+     * Submits the whole batch to the TransferSequencer before waiting for the first transfer.
+     */
+    private List<TransferResult> submitTransfers(List<TransferInstruction> transfers) {
+        List<CompletableFuture<Void>> submitted = new ArrayList<>(transfers.size());
+        for (TransferInstruction transfer : transfers) {
+            submitted.add(submitTransfer(transfer.getToAccountId(), mapInstruction(transfer)));
+        }
+        List<TransferResult> results = new ArrayList<>(transfers.size());
+        for (int index = 0; index < transfers.size(); index++) {
+            String rejectionMessage = null;
+            try {
+                join(submitted.get(index));
+            } catch (AccountNotFoundException | IllegalArgumentException e) {
+                rejectionMessage = e.getMessage();
+            }
+            results.add(mapTransferResult(index, transfers.get(index), rejectionMessage));
+        }
+        return results;
+    }
+
+    private static void join(CompletableFuture<Void> transfer) {
+        try {
+            transfer.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import static com.norway.mastercard.ibpts.service.internal.AccountMapper.prepareNewTransaction;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.amountOf;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.norway.mastercard.ibpts.dao.LedgerCheckpoint;
+import com.norway.mastercard.ibpts.dao.Transaction;
+import com.norway.mastercard.ibpts.exception.AccountNotFoundException;
+import com.norway.mastercard.ibpts.repo.AccountRepository;
+import com.norway.mastercard.ibpts.repo.LedgerCheckpointRepository;
+import com.norway.mastercard.ibpts.repo.TransactionRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+/**
+ * The LedgerWriteBehind periodically persists the balances and transactions changed in the AccountLedger.
+ * Every flush takes the changes of all accounts at once and persists them in one database transaction together with
+ * the LedgerCheckpoint, so the balances in the database always are the ones of the transfers up to one journal
+ * sequence, the persisted sequence. Recovery replays the journal after it and the BalanceSnapshotter keeps the journal
+ * segments after it. Balances are set with one UPDATE per account and the new transactions inserted on their own, the
+ * transactions already stored are never loaded.
+ * Reads of statements only need the transactions of one account, so flushing an account inserts just the pending
+ * transactions it takes part in, holding the stripe lock of that account only. Account flushes share a read lock
+ * which the flush of all accounts takes exclusively, so a read never misses transactions taken by a running flush.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Profile("ledgerService")
+public class LedgerWriteBehind {
+
+    private static final int ACCOUNT_FLUSH_LOCKS = 64;
+
+    private final AccountLedger              accountLedger;
+    private final AccountRepository          accountRepository;
+    private final TransactionRepository      transactionRepository;
+    private final LedgerCheckpointRepository ledgerCheckpointRepository;
+    private final TransferJournal            transferJournal;
+    private final TransactionOperations      transactionOperations;
+    private final StatementAggregator        statementAggregator;
+    private final ReadWriteLock              flushLock         = new ReentrantReadWriteLock();
+    private final Object[]                   accountFlushLocks = newLocks();
+    private volatile long                    persistedSequence;
+
+    /**
+     * Reads the journal sequence of the LedgerCheckpoint, called on startup before any transfer.
+     *
+     * @return long the persisted sequence, 0 when no flush persisted a journaled transfer yet.
+     */
+    public long loadPersistedSequence() {
+        persistedSequence = ledgerCheckpointRepository.findById(LedgerCheckpoint.LEDGER)
+                .map(LedgerCheckpoint::getJournalSequence)
+                .orElse(0L);
+        return persistedSequence;
+    }
+
+    /**
+     * Reads the journal sequences of the transfers after the given one whose transactions are stored already, because
+     * an account was flushed on its own.
+     *
+     * @param sequence journal sequence to start after.
+     * @return Set<Long> the sequences.
+     */
+    public Set<Long> loadTransfersAfter(long sequence) {
+        return new HashSet<>(transactionRepository.findJournalSequencesAfter(sequence));
+    }
+
+    /**
+     * The journal sequence of the latest transfer persisted, every transfer up to it is persisted as well.
+     */
+    public long getPersistedSequence() {
+        return persistedSequence;
+    }
+
+    /**
+     * Persists every account changed since the last flush. When the database transaction fails all changes are put
+     * back into the ledger and retried on the next flush.
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${ibpts.ledger.flush-interval-ms:200}")
+    public void flush() {
+        flushLock.writeLock().lock();
+        try {
+            val changes = accountLedger.drainAll(transferJournal::getWrittenSequence);
+            if (changes.getSnapshots().isEmpty()) {
+                return;
+            }
+            try {
+                transactionOperations.executeWithoutResult(status -> {
+                    changes.getSnapshots().forEach(this::persist);
+                    persistTransactions(changes.getSnapshots().stream()
+                            .flatMap(snapshot -> snapshot.getTransactions().stream())
+                            .collect(Collectors.toList()));
+                    if (changes.getSequence() > persistedSequence) {
+                        ledgerCheckpointRepository.save(new LedgerCheckpoint(LedgerCheckpoint.LEDGER, changes.getSequence()));
+                    }
+                });
+            } catch (RuntimeException e) {
+                log.warn("Write-behind of {} accounts failed, retrying on next flush", changes.getSnapshots().size(), e);
+                accountLedger.restoreAll(changes);
+                return;
+            }
+            persistedSequence = Math.max(persistedSequence, changes.getSequence());
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Persists the pending transactions the account takes part in, so the database holds every transaction of the
+     * account booked so far. Waits for a running flush of all accounts and for other flushes of the same account, the
+     * balances stay with the next flush of all accounts. When the database transaction fails the transactions are put
+     * back into the ledger.
+     *
+     * @param accountId accountId of the account.
+     */
+    public void flush(int accountId) {
+        flushLock.readLock().lock();
+        try {
+            synchronized (accountFlushLocks[Math.floorMod(accountId, ACCOUNT_FLUSH_LOCKS)]) {
+                val transactions = accountLedger.drainTransactions(accountId);
+                if (transactions.isEmpty()) {
+                    return;
+                }
+                try {
+                    transactionOperations.executeWithoutResult(status -> persistTransactions(transactions));
+                } catch (RuntimeException e) {
+                    log.warn("Write-behind of the transactions of account {} failed, retrying on next flush", accountId, e);
+                    accountLedger.restoreTransactions(accountId, transactions);
+                }
+            }
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a read combining the database with the pending changes of the ledger while no flush of all accounts is
+     * running, so no change is missed or counted twice.
+     *
+     * @param read read to run.
+     * @return T the result of the read.
+     */
+    public <T> T readConsistently(Supplier<T> read) {
+        flushLock.readLock().lock();
+        try {
+            return read.get();
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    private void persist(AccountLedger.Snapshot snapshot) {
+        int accountId = snapshot.getAccountId();
+        if (accountRepository.setBalance(accountId, snapshot.getBalance()) == 0) {
+            throw new AccountNotFoundException("Invalid Account ID " + accountId);
+        }
+        statementAggregator.apply(snapshot.getBucketChanges());
+    }
+
+    /**
+     * Inserts new transactions in the order they were booked, so their transactionIds follow their bookingDates.
+     */
+    private void persistTransactions(List<AccountLedger.PendingTransaction> pending) {
+        val transactions = pending.stream()
+                .sorted(Comparator.comparing(AccountLedger.PendingTransaction::getBookingDate))
+                .map(this::newTransaction)
+                .collect(Collectors.toList());
+        if (!transactions.isEmpty()) {
+            transactionRepository.saveAll(transactions);
+        }
+    }
+
+    private Transaction newTransaction(AccountLedger.PendingTransaction pending) {
+        val transaction = pending.getTransaction();
+        return prepareNewTransaction(transaction, amountOf(transaction, accountLedger.currency(pending.getAccountId())),
+                accountRepository.getOne(pending.getAccountId()), pending.getBalance(), pending.getCounterpartBalance(),
+                pending.getJournalSequence() > 0 ? pending.getJournalSequence() : null, pending.getBookingDate());
+    }
+
+    private static Object[] newLocks() {
+        Object[] locks = new Object[ACCOUNT_FLUSH_LOCKS];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+}
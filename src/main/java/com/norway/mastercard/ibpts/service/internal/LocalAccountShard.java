@@ -0,0 +1,80 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementFormat;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.StatementSummary;
+import com.norway.mastercard.ibpts.model.TransferLeg;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The LocalAccountShard serves a shard from the database of this node.
+ */
+@RequiredArgsConstructor
+class LocalAccountShard implements AccountShard {
+
+    private final AccountServiceImpl  accountService;
+    private final TransferParticipant transferParticipant;
+
+    @Override
+    public AccountDetails getAccountBalance(int accountId) {
+        return accountService.getAccountBalance(accountId);
+    }
+
+    @Override
+    public AccountDetails getAccountBalance(int accountId, LocalDateTime asOf) {
+        return accountService.getAccountBalance(accountId, asOf);
+    }
+
+    @Override
+    public List<AccountDetails> getAccountBalances(List<Integer> accountIds) {
+        return accountService.getAccountBalances(accountIds);
+    }
+
+    @Override
+    public List<AccountDetails> getMiniStatement(int accountId) {
+        return accountService.getMiniStatement(accountId);
+    }
+
+    @Override
+    public StatementPage getStatement(int accountId, String cursor, int limit) {
+        return accountService.getStatement(accountId, cursor, limit);
+    }
+
+    @Override
+    public void exportStatement(int accountId, StatementFormat format, OutputStream outputStream) {
+        accountService.exportStatement(accountId, format, outputStream);
+    }
+
+    @Override
+    public StatementSummary getStatementSummary(int accountId, LocalDate from, LocalDate to) {
+        return accountService.getStatementSummary(accountId, from, to);
+    }
+
+    @Override
+    public void transferAmount(int toAccountId, AccountDetails accountDetails) {
+        accountService.transferAmount(toAccountId, accountDetails);
+    }
+
+    @Override
+    public void prepare(TransferLeg leg) {
+        transferParticipant.prepare(leg);
+    }
+
+    @Override
+    public Long commit(String transferId, Long counterpartBalance) {
+        return transferParticipant.commit(transferId, counterpartBalance);
+    }
+
+    @Override
+    public void abort(String transferId) {
+        transferParticipant.abort(transferId);
+    }
+
+}
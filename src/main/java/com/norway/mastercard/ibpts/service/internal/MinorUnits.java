@@ -0,0 +1,83 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The MinorUnits holds the money arithmetic used inside the services and the repository entities.
+ * Amounts are plain longs counting the minor unit of the account currency (øre for NOK), so the transfer path adds and
+ * compares primitives instead of allocating BigDecimals. Conversions from and to decimals only happen where amounts
+ * enter or leave the system as AccountDetails.
+ */
+public final class MinorUnits {
+
+    private static final ConcurrentMap<String, Integer> SCALES = new ConcurrentHashMap<>();
+
+    private MinorUnits() {
+    }
+
+    /**
+     * Reads the number of decimals of a currency.
+     *
+     * @param currencyCode ISO 4217 code of the currency.
+     * @return int the number of minor unit digits.
+     */
+    public static int scaleOf(String currencyCode) {
+        Integer scale = SCALES.get(currencyCode);
+        return scale != null ? scale : SCALES.computeIfAbsent(currencyCode, MinorUnits::lookupScale);
+    }
+
+    /**
+     * Converts a decimal amount to minor units.
+     *
+     * @param amount decimal amount.
+     * @param scale number of minor unit digits of the currency.
+     * @return long the amount in minor units.
+     */
+    public static long toMinor(BigDecimal amount, int scale) {
+        try {
+            return amount.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " is not a valid amount of the account currency");
+        }
+    }
+
+    /**
+     * Converts minor units to a decimal amount.
+     *
+     * @param minorUnits amount in minor units.
+     * @param scale number of minor unit digits of the currency.
+     * @return BigDecimal the decimal amount.
+     */
+    public static BigDecimal toDecimal(long minorUnits, int scale) {
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+
+    public static long add(long minorUnits, long otherMinorUnits) {
+        try {
+            return Math.addExact(minorUnits, otherMinorUnits);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Balance out of range");
+        }
+    }
+
+    public static long subtract(long minorUnits, long otherMinorUnits) {
+        try {
+            return Math.subtractExact(minorUnits, otherMinorUnits);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Balance out of range");
+        }
+    }
+
+    private static int lookupScale(String currencyCode) {
+        try {
+            return Math.max(0, Currency.getInstance(currencyCode).getDefaultFractionDigits());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Unknown currency " + currencyCode);
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The OffHeapAccountIndex maps accountIds to slots of a direct buffer holding the balance and the currency of the
+ * account, so millions of accounts cost neither heap objects nor boxed keys.
+ * Open addressing with linear probing over slots of 16 bytes: accountId, currency id and balance in minor units. A
+ * currency id of 0 marks a free slot, it is written last with release semantics, so lock-free readers see a slot
+ * only once it is complete. Balances are read and written as volatile longs.
+ * Inserts and growth must be serialized by the caller, and no balance may be written while the index grows. As a
+ * direct buffer holds less than 2GB the index stops growing at 2^26 slots (1GB), about 50 million accounts at the load
+ * factor of 0.75.
+ */
+final class OffHeapAccountIndex {
+
+    static final int MAX_CAPACITY = 1 << 26;
+
+    private static final int       SLOT_SIZE       = 16;
+    private static final int       CURRENCY_OFFSET = 4;
+    private static final int       BALANCE_OFFSET  = 8;
+    private static final VarHandle INT             = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle LONG            = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private volatile ByteBuffer slots;
+    private int                 size;
+
+    OffHeapAccountIndex(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(16, Math.min(MAX_CAPACITY, initialCapacity) - 1) << 1);
+        this.slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int accountId) {
+        return find(slots, accountId) >= 0;
+    }
+
+    /**
+     * Reads the balance of an account.
+     *
+     * @param accountId accountId to read.
+     * @return long balance in minor units.
+     */
+    long balance(int accountId) {
+        ByteBuffer current = slots;
+        return (long) LONG.getVolatile(current, require(current, accountId) + BALANCE_OFFSET);
+    }
+
+    /**
+     * Reads the currency id of an account.
+     *
+     * @param accountId accountId to read.
+     * @return int the id the account was put with.
+     */
+    int currencyId(int accountId) {
+        ByteBuffer current = slots;
+        return (int) INT.get(current, require(current, accountId) + CURRENCY_OFFSET);
+    }
+
+    /**
+     * Writes the balance of an account, the index must not grow meanwhile.
+     *
+     * @param accountId accountId to write.
+     * @param balance balance in minor units.
+     */
+    void setBalance(int accountId, long balance) {
+        ByteBuffer current = slots;
+        LONG.setVolatile(current, require(current, accountId) + BALANCE_OFFSET, balance);
+    }
+
+    /**
+     * Adds an account or replaces its balance, grow first when the index is full.
+     *
+     * @param accountId accountId to add.
+     * @param currencyId id of the currency of the account, greater than 0.
+     * @param balance balance in minor units.
+     */
+    void put(int accountId, int currencyId, long balance) {
+        ByteBuffer current = slots;
+        int offset = find(current, accountId);
+        if (offset >= 0) {
+            LONG.setVolatile(current, offset + BALANCE_OFFSET, balance);
+            return;
+        }
+        if (size >= MAX_CAPACITY - (MAX_CAPACITY >> 2))
+            throw new IllegalStateException("Account index is full with " + size + " accounts");
+        insert(current, accountId, currencyId, balance);
+        size++;
+    }
+
+    /**
+     * Checks whether the next put needs the index to grow first.
+     */
+    boolean isFull() {
+        int capacity = slots.capacity() / SLOT_SIZE;
+        return size + 1 > capacity - (capacity >> 2) && capacity < MAX_CAPACITY;
+    }
+
+    /**
+     * Moves all accounts into a buffer of twice the capacity.
+     */
+    void grow() {
+        ByteBuffer current = slots;
+        ByteBuffer grown = ByteBuffer.allocateDirect(current.capacity() << 1);
+        for (int offset = 0; offset < current.capacity(); offset += SLOT_SIZE) {
+            int currencyId = (int) INT.get(current, offset + CURRENCY_OFFSET);
+            if (currencyId != 0) {
+                insert(grown, (int) INT.get(current, offset), currencyId, (long) LONG.get(current, offset + BALANCE_OFFSET));
+            }
+        }
+        slots = grown;
+    }
+
+    /**
+     * Visits every account in slot order.
+     *
+     * @param visitor receives accountId, currency id and balance.
+     */
+    void forEach(SlotVisitor visitor) {
+        ByteBuffer current = slots;
+        for (int offset = 0; offset < current.capacity(); offset += SLOT_SIZE) {
+            int currencyId = (int) INT.getAcquire(current, offset + CURRENCY_OFFSET);
+            if (currencyId != 0) {
+                visitor.visit((int) INT.get(current, offset), currencyId, (long) LONG.getVolatile(current, offset + BALANCE_OFFSET));
+            }
+        }
+    }
+
+    private static int require(ByteBuffer slots, int accountId) {
+        int offset = find(slots, accountId);
+        if (offset < 0)
+            throw new IllegalStateException("Account " + accountId + " is not in the index");
+        return offset;
+    }
+
+    private static int find(ByteBuffer slots, int accountId) {
+        int mask = slots.capacity() / SLOT_SIZE - 1;
+        for (int index = indexOf(accountId, mask); ; index = (index + 1) & mask) {
+            int offset = index * SLOT_SIZE;
+            if ((int) INT.getAcquire(slots, offset + CURRENCY_OFFSET) == 0) {
+                return -1;
+            }
+            if ((int) INT.get(slots, offset) == accountId) {
+                return offset;
+            }
+        }
+    }
+
+    private static void insert(ByteBuffer slots, int accountId, int currencyId, long balance) {
+        int mask = slots.capacity() / SLOT_SIZE - 1;
+        int index = indexOf(accountId, mask);
+        while ((int) INT.get(slots, index * SLOT_SIZE + CURRENCY_OFFSET) != 0) {
+            index = (index + 1) & mask;
+        }
+        int offset = index * SLOT_SIZE;
+        INT.set(slots, offset, accountId);
+        LONG.set(slots, offset + BALANCE_OFFSET, balance);
+        INT.setRelease(slots, offset + CURRENCY_OFFSET, currencyId);
+    }
+
+    private static int indexOf(int accountId, int mask) {
+        int hash = accountId * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Receives the accounts of the index.
+     */
+    @FunctionalInterface
+    interface SlotVisitor {
+
+        void visit(int accountId, int currencyId, long balance);
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.norway.mastercard.ibpts.exception.TransferConflictException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * The OptimisticTransferExecutor runs a transfer as one database transaction and repeats it when a concurrent transfer
+ * changed one of the versioned accounts in between. Attempts are bounded and separated by a randomized exponential
+ * backoff so competing transfers do not collide again in lockstep.
+ */
+@Component
+public class OptimisticTransferExecutor implements MeterBinder {
+
+    private final TransactionOperations transactionOperations;
+    private final int                   maxAttempts;
+    private final long                  backoffMillis;
+    private final AtomicLong            conflictCount  = new AtomicLong();
+    private final AtomicLong            retryCount     = new AtomicLong();
+    private final AtomicLong            exhaustedCount = new AtomicLong();
+
+    public OptimisticTransferExecutor(TransactionOperations transactionOperations,
+            @Value("${ibpts.transfer.retry.max-attempts:5}") int maxAttempts,
+            @Value("${ibpts.transfer.retry.backoff-ms:5}") long backoffMillis) {
+        this.transactionOperations = transactionOperations;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = Math.max(1, backoffMillis);
+    }
+
+    /**
+     * Executes the unit of work in a transaction, retrying on optimistic locking conflicts.
+     *
+     * @param unitOfWork work to run, must re-read every entity it changes.
+     * @return T the result of the unit of work.
+     */
+    public <T> T execute(Supplier<T> unitOfWork) {
+        for (int attempt = 1;; attempt++) {
+            try {
+                return transactionOperations.execute(status -> unitOfWork.get());
+            } catch (OptimisticLockingFailureException e) {
+                conflictCount.incrementAndGet();
+                if (attempt >= maxAttempts) {
+                    exhaustedCount.incrementAndGet();
+                    throw new TransferConflictException("Transfer conflicted with concurrent updates, please retry", e);
+                }
+                retryCount.incrementAndGet();
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    private void backoff(int attempt, OptimisticLockingFailureException cause) {
+        long ceiling = backoffMillis << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferConflictException("Transfer retry interrupted", cause);
+        }
+    }
+
+    /**
+     * Publishes the conflict, retry and exhausted counters.
+     *
+     * @param meterRegistry registry to publish to.
+     */
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("ibpts.transfer.optimistic.conflicts", conflictCount, AtomicLong::get)
+                .description("Transfer attempts which lost an optimistic locking race")
+                .register(meterRegistry);
+        FunctionCounter.builder("ibpts.transfer.optimistic.retries", retryCount, AtomicLong::get)
+                .description("Transfer attempts repeated after a conflict")
+                .register(meterRegistry);
+        FunctionCounter.builder("ibpts.transfer.optimistic.exhausted", exhaustedCount, AtomicLong::get)
+                .description("Transfers given up after the last attempt conflicted")
+                .register(meterRegistry);
+    }
+
+    public long getConflictCount() {
+        return conflictCount.get();
+    }
+
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    public long getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+}
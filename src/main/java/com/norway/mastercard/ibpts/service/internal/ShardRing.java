@@ -0,0 +1,54 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * The ShardRing assigns accountIds to shards by consistent hashing.
+ * Every shard is placed on the ring at virtualNodes positions derived from its id, an account belongs to the first
+ * shard position at or after the hash of its accountId. Adding or removing a shard therefore only moves the accounts
+ * between the neighbouring positions, about 1/n of them, and the virtual nodes spread them evenly.
+ */
+public final class ShardRing {
+
+    private final TreeMap<Integer, String> positions = new TreeMap<>();
+
+    public ShardRing(Collection<String> shardIds, int virtualNodes) {
+        if (shardIds.isEmpty())
+            throw new IllegalArgumentException("At least one shard is required");
+        for (String shardId : shardIds) {
+            for (int node = 0; node < virtualNodes; node++) {
+                positions.put(hash(shardId + "#" + node), shardId);
+            }
+        }
+    }
+
+    /**
+     * Finds the shard owning an account.
+     *
+     * @param accountId accountId to place.
+     * @return String the id of the shard.
+     */
+    public String shardOf(int accountId) {
+        int hash = mix(accountId);
+        Map.Entry<Integer, String> position = positions.ceilingEntry(hash);
+        return position != null ? position.getValue() : positions.firstEntry().getValue();
+    }
+
+    private static int hash(String key) {
+        CRC32 crc = new CRC32();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        return mix((int) crc.getValue());
+    }
+
+    private static int mix(int value) {
+        int hash = value * 0x9E3779B9;
+        hash ^= hash >>> 15;
+        hash *= 0x85EBCA6B;
+        return hash ^ (hash >>> 13);
+    }
+
+}
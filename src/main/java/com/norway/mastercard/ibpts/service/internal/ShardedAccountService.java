@@ -0,0 +1,333 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import static com.norway.mastercard.ibpts.model.TransactionType.CREDIT;
+import static com.norway.mastercard.ibpts.service.internal.AccountMapper.mapInstruction;
+import static com.norway.mastercard.ibpts.service.internal.AccountMapper.mapTransferResult;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.amountOf;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.hasAmount;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.validateCurrencies;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.validateRequired;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.norway.mastercard.ibpts.config.ShardSecretFilter;
+import com.norway.mastercard.ibpts.exception.AccountNotFoundException;
+import com.norway.mastercard.ibpts.exception.ServiceBusyException;
+import com.norway.mastercard.ibpts.exception.TransferIncompleteException;
+import com.norway.mastercard.ibpts.exception.TransferNotPreparedException;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementFormat;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.StatementSummary;
+import com.norway.mastercard.ibpts.model.TransferInstruction;
+import com.norway.mastercard.ibpts.model.TransferLeg;
+import com.norway.mastercard.ibpts.model.TransferResult;
+import com.norway.mastercard.ibpts.model.TransferStatus;
+import com.norway.mastercard.ibpts.service.AccountService;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+/**
+ * The ShardedAccountService partitions the accounts into shards and routes every operation to the shard owning the
+ * account, see ShardRing.
+ * Shards listed in ibpts.shards.local are served by this node, shards in the map ibpts.shards.remote by the node at
+ * the given URL. Every node runs the same configuration and lists its own shard as local. Calls to other nodes give up
+ * after ibpts.shards.connect-timeout-ms to connect and ibpts.shards.read-timeout-ms to answer, and carry the shared
+ * secret ibpts.shards.secret checked by the ShardSecretFilter of the other node.
+ * Transfers within one shard run on that shard as before. Transfers between shards run in two phases: the leg taking
+ * money from an account is prepared first, holding the amount, then the leg adding money. When both are prepared the
+ * leg of the fromAccount is committed first, then the leg of the toAccount, otherwise the prepared legs are aborted.
+ * Only the toAccount records the transaction, like in AccountServiceImpl, together with the balance the fromAccount
+ * reached.
+ * A fromAccount leg lost by its shard, see TransferParticipant, is aborted on both sides and the transfer fails with
+ * ServiceBusyException, nothing being applied. A toAccount leg which can not be committed after the fromAccount leg
+ * committed fails the transfer with TransferIncompleteException carrying the transferId, and its commit is retried every
+ * ibpts.shards.commit-retry-interval-ms until it succeeds or the shard lost the leg, which is logged for
+ * reconciliation. There is no decision log: the legs awaiting their retry are kept in memory only.
+ */
+@Slf4j
+@Primary
+@Component
+@Profile("shardedService")
+public class ShardedAccountService implements AccountService {
+
+    private static final int COMMIT_ATTEMPTS = 3;
+
+    private final ShardRing                 shardRing;
+    private final Map<String, AccountShard> shards         = new HashMap<>();
+    private final Queue<PendingCommit>      pendingCommits = new ConcurrentLinkedQueue<>();
+    private final int                       maxBatchSize;
+
+    public ShardedAccountService(AccountServiceImpl accountService, TransferParticipant transferParticipant,
+            RestTemplateBuilder restTemplateBuilder, ObjectMapper objectMapper,
+            @Value("${ibpts.shards.local:local}") String[] localShards,
+            @Value("#{${ibpts.shards.remote:{:}}}") Map<String, String> remoteShards,
+            @Value("${ibpts.shards.virtual-nodes:128}") int virtualNodes,
+            @Value("${ibpts.shards.connect-timeout-ms:1000}") long connectTimeoutMillis,
+            @Value("${ibpts.shards.read-timeout-ms:5000}") long readTimeoutMillis,
+            @Value("${ibpts.shards.secret:}") String secret,
+            @Value("${ibpts.transfer.batch.max-size:10000}") int maxBatchSize) {
+        Arrays.stream(localShards).map(String::trim)
+                .forEach(shardId -> shards.put(shardId, new LocalAccountShard(accountService, transferParticipant)));
+        val restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .setReadTimeout(Duration.ofMillis(readTimeoutMillis))
+                .defaultHeader(ShardSecretFilter.HEADER, secret)
+                .build();
+        remoteShards.forEach((shardId, baseUrl) -> shards.put(shardId, new HttpAccountShard(baseUrl, restTemplate, objectMapper)));
+        this.shardRing = new ShardRing(shards.keySet(), virtualNodes);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public AccountDetails getAccountBalance(int accountId) {
+        return shardOf(accountId).getAccountBalance(accountId);
+    }
+
+    @Override
+    public AccountDetails getAccountBalance(int accountId, LocalDateTime asOf) {
+        return shardOf(accountId).getAccountBalance(accountId, asOf);
+    }
+
+    /**
+     * Reads the balances of several accounts with one call per shard.
+     *
+     * @param accountIds accountIds to read.
+     * @return List<AccountDetails> details of the known accounts in the order of accountIds, unknown ones are left out.
+     */
+    @Override
+    public List<AccountDetails> getAccountBalances(List<Integer> accountIds) {
+        Map<AccountShard, List<Integer>> accountIdsPerShard = new HashMap<>();
+        for (Integer accountId : new LinkedHashSet<>(accountIds)) {
+            accountIdsPerShard.computeIfAbsent(shardOf(accountId), shard -> new ArrayList<>()).add(accountId);
+        }
+        Map<Integer, AccountDetails> balances = new HashMap<>();
+        accountIdsPerShard.forEach((shard, shardAccountIds) ->
+                shard.getAccountBalances(shardAccountIds).forEach(balance -> balances.put(balance.getAccountId(), balance)));
+        return accountIds.stream().distinct().map(balances::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<AccountDetails> getMiniStatement(int accountId) {
+        return shardOf(accountId).getMiniStatement(accountId);
+    }
+
+    @Override
+    public StatementPage getStatement(int accountId, String cursor, int limit) {
+        return shardOf(accountId).getStatement(accountId, cursor, limit);
+    }
+
+    @Override
+    public void exportStatement(int accountId, StatementFormat format, OutputStream outputStream) {
+        shardOf(accountId).exportStatement(accountId, format, outputStream);
+    }
+
+    @Override
+    public StatementSummary getStatementSummary(int accountId, LocalDate from, LocalDate to) {
+        return shardOf(accountId).getStatementSummary(accountId, from, to);
+    }
+
+    /**
+     * Performs a transfer on the shard owning both accounts, or in two phases across the shards owning them.
+     *
+     * @param toAccountId accountId to read.
+     * @param accountDetails fromAccount details to read.
+     */
+    @Override
+    public void transferAmount(int toAccountId, AccountDetails accountDetails) {
+        val toShardId = shardRing.shardOf(toAccountId);
+        val fromShardId = shardRing.shardOf(accountDetails.getAccountId());
+        val toShard = shards.get(toShardId);
+        val fromShard = shards.get(fromShardId);
+        if (toShardId.equals(fromShardId)) {
+            toShard.transferAmount(toAccountId, accountDetails);
+            return;
+        }
+        val currency = toShard.getAccountBalance(toAccountId).getCurrencyCode();
+        val fromCurrency = fromShard.getAccountBalance(accountDetails.getAccountId()).getCurrencyCode();
+        validateRequired(accountDetails);
+        validateCurrencies(currency, fromCurrency);
+        long amount = amountOf(accountDetails, currency);
+        if (!hasAmount(amount)) {
+            return;
+        }
+        val transferId = UUID.randomUUID().toString();
+        val transactionDate = accountDetails.getTransactionDate() != null ? accountDetails.getTransactionDate()
+                : LocalDateTime.now(ZoneId.systemDefault());
+        long toChange = CREDIT.equals(accountDetails.getType()) ? amount : -amount;
+        val toLeg = TransferLeg.builder()
+                .transferId(transferId + ":to")
+                .accountId(toAccountId)
+                .counterpartAccountId(accountDetails.getAccountId())
+                .amountMinor(toChange)
+                .currencyCode(currency)
+                .type(accountDetails.getType())
+                .transactionDate(transactionDate)
+                .recordTransaction(true)
+                .build();
+        val fromLeg = TransferLeg.builder()
+                .transferId(transferId + ":from")
+                .accountId(accountDetails.getAccountId())
+                .counterpartAccountId(toAccountId)
+                .amountMinor(-toChange)
+                .currencyCode(currency)
+                .type(accountDetails.getType())
+                .transactionDate(transactionDate)
+                .build();
+        performTwoPhases(transferId, toShard, toLeg, fromShard, fromLeg);
+    }
+
+    /**
+     * Performs a batch of transfers one after the other, every transfer is committed on its own. A transfer which could
+     * not be applied for the time being is reported as FAILED, one applied to its fromAccount only as INCOMPLETE with
+     * its transferId, and the batch goes on.
+     *
+     * @param transfers transfers to perform.
+     * @return List<TransferResult> outcome of every transfer in the order of the batch.
+     */
+    @Override
+    public List<TransferResult> transferAmounts(List<TransferInstruction> transfers) {
+        if (transfers.size() > maxBatchSize)
+            throw new IllegalArgumentException("Batch exceeds the limit of " + maxBatchSize + " transfers");
+        List<TransferResult> results = new ArrayList<>(transfers.size());
+        for (int index = 0; index < transfers.size(); index++) {
+            val transfer = transfers.get(index);
+            TransferResult result;
+            try {
+                transferAmount(transfer.getToAccountId(), mapInstruction(transfer));
+                result = mapTransferResult(index, transfer, null);
+            } catch (AccountNotFoundException | IllegalArgumentException e) {
+                result = mapTransferResult(index, transfer, e.getMessage());
+            } catch (ServiceBusyException e) {
+                result = mapTransferResult(index, transfer, TransferStatus.FAILED, e.getMessage(), null);
+            } catch (TransferIncompleteException e) {
+                result = mapTransferResult(index, transfer, TransferStatus.INCOMPLETE, e.getMessage(), e.getTransferId());
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Retries the commits of the toAccount legs of transfers which failed after their fromAccount leg committed.
+     */
+    @Scheduled(fixedDelayString = "${ibpts.shards.commit-retry-interval-ms:5000}")
+    public void retryPendingCommits() {
+        for (int remaining = pendingCommits.size(); remaining > 0; remaining--) {
+            val pending = pendingCommits.poll();
+            if (pending == null) {
+                return;
+            }
+            val leg = pending.getLeg();
+            try {
+                pending.getShard().commit(leg.getTransferId(), pending.getCounterpartBalance());
+                log.info("Leg {} of account {} is committed on retry", leg.getTransferId(), leg.getAccountId());
+            } catch (TransferNotPreparedException e) {
+                log.error("Leg {} of account {} was lost by its shard and needs reconciliation", leg.getTransferId(), leg.getAccountId(), e);
+            } catch (RuntimeException e) {
+                log.warn("Retry of the commit of leg {} failed", leg.getTransferId(), e);
+                pendingCommits.add(pending);
+            }
+        }
+    }
+
+    private void performTwoPhases(String transferId, AccountShard toShard, TransferLeg toLeg, AccountShard fromShard,
+            TransferLeg fromLeg) {
+        Long fromBalance;
+        try {
+            if (toLeg.getAmountMinor() < 0) {
+                toShard.prepare(toLeg);
+                fromShard.prepare(fromLeg);
+            } else {
+                fromShard.prepare(fromLeg);
+                toShard.prepare(toLeg);
+            }
+            fromBalance = commit(fromShard, fromLeg, null);
+        } catch (TransferNotPreparedException e) {
+            abort(toShard, toLeg);
+            throw new ServiceBusyException("Transfer " + transferId + " was lost by the shard of account " + fromLeg.getAccountId()
+                    + ", retry later");
+        } catch (RuntimeException e) {
+            abort(fromShard, fromLeg);
+            abort(toShard, toLeg);
+            throw e;
+        }
+        try {
+            commit(toShard, toLeg, fromBalance);
+        } catch (TransferNotPreparedException e) {
+            log.error("Leg {} of account {} was lost by its shard and needs reconciliation", toLeg.getTransferId(), toLeg.getAccountId(), e);
+            throw new TransferIncompleteException(transferId, "Transfer " + transferId + " is applied to account "
+                    + fromLeg.getAccountId() + " but was lost for account " + toLeg.getAccountId() + ", it needs reconciliation", e);
+        } catch (RuntimeException e) {
+            log.error("Leg {} of account {} is prepared but not committed, retrying later", toLeg.getTransferId(), toLeg.getAccountId(), e);
+            pendingCommits.add(new PendingCommit(toShard, toLeg, fromBalance));
+            throw new TransferIncompleteException(transferId, "Transfer " + transferId + " is applied to account "
+                    + fromLeg.getAccountId() + " but not yet to account " + toLeg.getAccountId() + ", its commit is retried", e);
+        }
+    }
+
+    private Long commit(AccountShard shard, TransferLeg leg, Long counterpartBalance) {
+        for (int attempt = 1;; attempt++) {
+            try {
+                return shard.commit(leg.getTransferId(), counterpartBalance);
+            } catch (TransferNotPreparedException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                if (attempt == COMMIT_ATTEMPTS)
+                    throw e;
+                log.warn("Commit of leg {} failed, attempt {} of {}", leg.getTransferId(), attempt, COMMIT_ATTEMPTS, e);
+            }
+        }
+    }
+
+    private void abort(AccountShard shard, TransferLeg leg) {
+        try {
+            shard.abort(leg.getTransferId());
+        } catch (RuntimeException e) {
+            log.error("Abort of leg {} of account {} failed", leg.getTransferId(), leg.getAccountId(), e);
+        }
+    }
+
+    private AccountShard shardOf(int accountId) {
+        return shards.get(shardRing.shardOf(accountId));
+    }
+
+    /**
+     * A committed transfer whose leg of the toAccount awaits the retry of its commit.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private static final class PendingCommit {
+
+        private final AccountShard shard;
+        private final TransferLeg  leg;
+        private final Long         counterpartBalance;
+    }
+
+}
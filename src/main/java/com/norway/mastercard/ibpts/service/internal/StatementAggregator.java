@@ -0,0 +1,138 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.time.LocalDate;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.stereotype.Component;
+
+import com.norway.mastercard.ibpts.dao.Account;
+import com.norway.mastercard.ibpts.dao.StatementBucket;
+import com.norway.mastercard.ibpts.exception.InvalidDateRangeException;
+import com.norway.mastercard.ibpts.model.StatementSummary;
+import com.norway.mastercard.ibpts.repo.StatementBucketRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The StatementAggregator maintains the daily and monthly StatementBuckets of the accounts and answers statement
+ * summaries from them instead of from the transactions.
+ * Buckets are changed in the unit of work of the transfer, after the balance of their account was updated, so the row
+ * lock of the account serializes all changes to the buckets of that account and a missing bucket is inserted by one
+ * transfer only. Credits to the slots of a split account change the buckets of their slot after the slot row.
+ * A summary reads the months lying completely in the range and the days of the partial months at both ends, at most
+ * 62 days plus one bucket per month, whatever the number of transactions.
+ */
+@Component
+@RequiredArgsConstructor
+public class StatementAggregator {
+
+    private final StatementBucketRepository statementBucketRepository;
+    private final EntityManager             entityManager;
+
+    /**
+     * Adds the changes to the stored buckets, inserting the buckets which do not exist yet.
+     * Must be called in the transaction which changed the balances of the accounts.
+     *
+     * @param changes changes to add.
+     */
+    public void apply(StatementBucketChanges changes) {
+        for (StatementBucket change : changes.buckets()) {
+            int updated = statementBucketRepository.addToBucket(change.getAccountId(), change.getGranularity(), change.getPeriodStart(),
+                    change.getSlot(), change.getDebitCount(), change.getDebitMinor(), change.getCreditCount(), change.getCreditMinor());
+            if (updated == 0) {
+                entityManager.persist(StatementBucket.builder()
+                        .accountId(change.getAccountId())
+                        .granularity(change.getGranularity())
+                        .periodStart(change.getPeriodStart())
+                        .slot(change.getSlot())
+                        .debitCount(change.getDebitCount())
+                        .debitMinor(change.getDebitMinor())
+                        .creditCount(change.getCreditCount())
+                        .creditMinor(change.getCreditMinor())
+                        .build());
+            }
+        }
+    }
+
+    /**
+     * Sums the buckets of the account between two days.
+     *
+     * @param account account to read.
+     * @param from first day of the range.
+     * @param to last day of the range.
+     * @return StatementSummary the totals of the debits and credits of the account in the range.
+     */
+    public StatementSummary summarize(Account account, LocalDate from, LocalDate to) {
+        return summarize(account, from, to, new StatementBucketChanges());
+    }
+
+    /**
+     * Sums the buckets of the account between two days together with changes not stored yet.
+     *
+     * @param account account to read.
+     * @param from first day of the range.
+     * @param to last day of the range.
+     * @param pendingChanges changes of the account to count as if they were added to the stored buckets.
+     * @return StatementSummary the totals of the debits and credits of the account in the range.
+     */
+    public StatementSummary summarize(Account account, LocalDate from, LocalDate to, StatementBucketChanges pendingChanges) {
+        if (from == null || to == null || to.isBefore(from))
+            throw new InvalidDateRangeException("Invalid date range from " + from + " to " + to);
+        LocalDate until = to.plusDays(1);
+        LocalDate firstFullMonth = from.getDayOfMonth() == 1 ? from : from.withDayOfMonth(1).plusMonths(1);
+        LocalDate untilFullMonths = until.withDayOfMonth(1);
+        Totals totals = new Totals(pendingChanges);
+        int accountId = account.getAccountId();
+        if (firstFullMonth.isBefore(untilFullMonths)) {
+            totals.add(accountId, StatementBucket.DAY, from, firstFullMonth);
+            totals.add(accountId, StatementBucket.MONTH, firstFullMonth, untilFullMonths);
+            totals.add(accountId, StatementBucket.DAY, untilFullMonths, until);
+        } else {
+            totals.add(accountId, StatementBucket.DAY, from, until);
+        }
+        int scale = MinorUnits.scaleOf(account.getCurrency());
+        return StatementSummary.builder()
+                .accountId(accountId)
+                .currencyCode(account.getCurrency())
+                .from(from)
+                .to(to)
+                .transactionCount(totals.debitCount + totals.creditCount)
+                .debitCount(totals.debitCount)
+                .debitAmount(MinorUnits.toDecimal(totals.debitMinor, scale))
+                .creditCount(totals.creditCount)
+                .creditAmount(MinorUnits.toDecimal(totals.creditMinor, scale))
+                .build();
+    }
+
+    @RequiredArgsConstructor
+    private final class Totals {
+
+        private final StatementBucketChanges pendingChanges;
+        private long                         debitCount;
+        private long debitMinor;
+        private long creditCount;
+        private long creditMinor;
+
+        private void add(int accountId, String granularity, LocalDate from, LocalDate until) {
+            if (!from.isBefore(until)) {
+                return;
+            }
+            statementBucketRepository.findBuckets(accountId, granularity, from, until).forEach(this::add);
+            for (StatementBucket bucket : pendingChanges.buckets()) {
+                if (bucket.getAccountId() == accountId && bucket.getGranularity().equals(granularity)
+                        && !bucket.getPeriodStart().isBefore(from) && bucket.getPeriodStart().isBefore(until)) {
+                    add(bucket);
+                }
+            }
+        }
+
+        private void add(StatementBucket bucket) {
+            debitCount += bucket.getDebitCount();
+            debitMinor = MinorUnits.add(debitMinor, bucket.getDebitMinor());
+            creditCount += bucket.getCreditCount();
+            creditMinor = MinorUnits.add(creditMinor, bucket.getCreditMinor());
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.norway.mastercard.ibpts.dao.StatementBucket;
+
+/**
+ * The StatementBucketChanges collects what transfers add to the daily and monthly StatementBuckets of their accounts,
+ * so a unit of work writes every touched bucket once. Not thread safe.
+ */
+public final class StatementBucketChanges {
+
+    private final Map<StatementBucket.Key, StatementBucket> changes = new LinkedHashMap<>();
+
+    /**
+     * Books a change of balance into the day and the month of the transaction.
+     *
+     * @param accountId accountId of the account.
+     * @param transactionDate date of the transaction.
+     * @param change change of the balance in minor units, positive for a credit and negative for a debit.
+     */
+    public void add(int accountId, LocalDateTime transactionDate, long change) {
+        add(accountId, SubLedgers.MAIN, transactionDate, change);
+    }
+
+    /**
+     * Books a change of balance into the day and the month of the transaction of one slot of the account.
+     *
+     * @param accountId accountId of the account.
+     * @param slot slot the change went to, SubLedgers.MAIN for the Account row.
+     * @param transactionDate date of the transaction.
+     * @param change change of the balance in minor units, positive for a credit and negative for a debit.
+     */
+    public void add(int accountId, int slot, LocalDateTime transactionDate, long change) {
+        LocalDate day = transactionDate.toLocalDate();
+        long debitCount = change < 0 ? 1 : 0;
+        long creditCount = change > 0 ? 1 : 0;
+        long debit = Math.max(0, -change);
+        long credit = Math.max(0, change);
+        add(accountId, StatementBucket.DAY, day, slot, debitCount, debit, creditCount, credit);
+        add(accountId, StatementBucket.MONTH, day.withDayOfMonth(1), slot, debitCount, debit, creditCount, credit);
+    }
+
+    /**
+     * Adds all changes of another instance.
+     *
+     * @param other changes to add.
+     */
+    public void addAll(StatementBucketChanges other) {
+        for (StatementBucket bucket : other.changes.values()) {
+            add(bucket.getAccountId(), bucket.getGranularity(), bucket.getPeriodStart(), bucket.getSlot(), bucket.getDebitCount(), bucket.getDebitMinor(),
+                    bucket.getCreditCount(), bucket.getCreditMinor());
+        }
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Reads the changes, every bucket holding the amounts to add to the stored one.
+     */
+    Collection<StatementBucket> buckets() {
+        return changes.values();
+    }
+
+    private void add(int accountId, String granularity, LocalDate periodStart, int slot, long debitCount, long debitMinor,
+            long creditCount, long creditMinor) {
+        StatementBucket bucket = changes.computeIfAbsent(new StatementBucket.Key(accountId, granularity, periodStart, slot),
+                key -> StatementBucket.builder()
+                        .accountId(accountId)
+                        .granularity(granularity)
+                        .periodStart(periodStart)
+                        .slot(slot)
+                        .build());
+        bucket.setDebitCount(bucket.getDebitCount() + debitCount);
+        bucket.setDebitMinor(MinorUnits.add(bucket.getDebitMinor(), debitMinor));
+        bucket.setCreditCount(bucket.getCreditCount() + creditCount);
+        bucket.setCreditMinor(MinorUnits.add(bucket.getCreditMinor(), creditMinor));
+    }
+
+}
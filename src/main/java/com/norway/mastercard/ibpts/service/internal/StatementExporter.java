@@ -0,0 +1,176 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import static com.norway.mastercard.ibpts.service.internal.AccountMapper.mapTransaction;
+import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.norway.mastercard.ibpts.dao.Account;
+import com.norway.mastercard.ibpts.dao.Transaction;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementFormat;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.repo.TransactionRepository;
+
+import lombok.val;
+
+/**
+ * The StatementExporter writes the full transaction history of an account to an output stream as NDJSON, CSV or in
+ * the binary format of the ColumnarWriter, which is written from the transactions without mapping them to
+ * AccountDetails.
+ * Rows are streamed from the database cursor one by one, detached from the persistence context once written and the
+ * output is flushed every few rows, so memory stays constant and a slow client only slows down the database cursor.
+ */
+@Component
+public class StatementExporter {
+
+    private static final String CSV_HEADER = "accountId,currencyCode,transactionDate,type,amount\n";
+
+    private final TransactionRepository transactionRepository;
+    private final EntityManager         entityManager;
+    private final ObjectWriter          rowWriter;
+    private final TransactionTemplate   readOnlyTransaction;
+    private final int                   flushEveryRows;
+
+    public StatementExporter(TransactionRepository transactionRepository, EntityManager entityManager, ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager, @Value("${ibpts.statement.export.flush-every-rows:256}") int flushEveryRows) {
+        this.transactionRepository = transactionRepository;
+        this.entityManager = entityManager;
+        this.rowWriter = objectMapper.writerFor(AccountDetails.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.flushEveryRows = Math.max(1, flushEveryRows);
+    }
+
+    /**
+     * Streams every transaction of the account, oldest first.
+     *
+     * @param account account to export.
+     * @param format format of the rows.
+     * @param outputStream stream to write to, left open.
+     */
+    public void export(Account account, StatementFormat format, OutputStream outputStream) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Transaction> transactions = transactionRepository.streamByAccountId(account.getAccountId())) {
+                Iterator<Transaction> iterator = transactions.iterator();
+                if (format == StatementFormat.COLUMNAR) {
+                    writeColumnar(iterator, account, outputStream);
+                    return;
+                }
+                write(new Iterator<>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public AccountDetails next() {
+                        val transaction = iterator.next();
+                        entityManager.detach(transaction);
+                        return mapTransaction(transaction, account);
+                    }
+                }, format, outputStream);
+            }
+        });
+    }
+
+    /**
+     * Writes the rows in the given format.
+     *
+     * @param rows rows to write.
+     * @param format format of the rows.
+     * @param outputStream stream to write to, left open.
+     */
+    public void write(Iterator<AccountDetails> rows, StatementFormat format, OutputStream outputStream) {
+        try {
+            if (format == StatementFormat.COLUMNAR) {
+                ColumnarWriter writer = new ColumnarWriter(outputStream, ColumnarWriter.KIND_LIST, flushEveryRows);
+                for (int count = 1; rows.hasNext(); count++) {
+                    writer.write(rows.next());
+                    if (count % flushEveryRows == 0) {
+                        writer.flush();
+                    }
+                }
+                writer.end();
+                return;
+            }
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            if (format == StatementFormat.CSV) {
+                writeCsv(rows, writer);
+            } else {
+                writeNdjson(rows, writer);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Statement export interrupted", e);
+        }
+    }
+
+    private void writeColumnar(Iterator<Transaction> transactions, Account account, OutputStream outputStream) {
+        try {
+            ColumnarWriter writer = new ColumnarWriter(outputStream, ColumnarWriter.KIND_LIST, flushEveryRows);
+            for (int count = 1; transactions.hasNext(); count++) {
+                val transaction = transactions.next();
+                entityManager.detach(transaction);
+                writer.writeTransaction(account.getAccountId(), account.getCurrency(), TransactionType.valueOf(transaction.getType()),
+                        transaction.getAmountMinor(), transaction.getTransactionDate());
+                if (count % flushEveryRows == 0) {
+                    writer.flush();
+                }
+            }
+            writer.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Statement export interrupted", e);
+        }
+    }
+
+    private void writeNdjson(Iterator<AccountDetails> rows, Writer writer) throws IOException {
+        try (JsonGenerator generator = rowWriter.getFactory().createGenerator(writer)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            for (int count = 1; rows.hasNext(); count++) {
+                rowWriter.writeValue(generator, rows.next());
+                generator.writeRaw('\n');
+                if (count % flushEveryRows == 0) {
+                    generator.flush();
+                }
+            }
+        }
+    }
+
+    private void writeCsv(Iterator<AccountDetails> rows, Writer writer) throws IOException {
+        writer.write(CSV_HEADER);
+        for (int count = 1; rows.hasNext(); count++) {
+            val row = rows.next();
+            writer.append(String.valueOf(row.getAccountId())).append(',')
+                    .append(row.getCurrencyCode()).append(',')
+                    .append(row.getTransactionDate() == null ? "" : ISO_LOCAL_DATE_TIME.format(row.getTransactionDate())).append(',')
+                    .append(String.valueOf(row.getType())).append(',')
+                    .append(row.getAmount().toPlainString()).append('\n');
+            if (count % flushEveryRows == 0) {
+                writer.flush();
+            }
+        }
+    }
+
+}
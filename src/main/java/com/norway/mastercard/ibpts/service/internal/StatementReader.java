@@ -0,0 +1,195 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import static com.norway.mastercard.ibpts.service.internal.AccountMapper.mapTransaction;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.setAccountBalance;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.norway.mastercard.ibpts.dao.Account;
+import com.norway.mastercard.ibpts.dao.Transaction;
+import com.norway.mastercard.ibpts.exception.InvalidCursorException;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.repo.TransactionRepository;
+
+import lombok.val;
+
+/**
+ * The StatementReader reads the transactions of an account page by page through the (parentAccountId, transactionDate)
+ * index instead of initializing the whole Account.transactions collection.
+ * Pages are ordered newest first and continue from an opaque cursor holding the transactionDate and transactionId of
+ * the last row returned, so every page costs the same regardless of how long the history is.
+ * Historical balances are read from the running balances recorded with the transactions, looked up by the bookingDate
+ * the balances were changed at rather than by the transactionDate given with the transfer, see Transaction.
+ */
+@Component
+public class StatementReader {
+
+    private static final String CURSOR_SEPARATOR = "_";
+
+    private final TransactionRepository transactionRepository;
+    private final int                   miniStatementSize;
+    private final int                   maxPageSize;
+
+    public StatementReader(TransactionRepository transactionRepository,
+            @Value("${ibpts.statement.mini-size:10}") int miniStatementSize,
+            @Value("${ibpts.statement.max-page-size:500}") int maxPageSize) {
+        this.transactionRepository = transactionRepository;
+        this.miniStatementSize = miniStatementSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Reads the latest transactions of the account.
+     *
+     * @param account account to read.
+     * @return List<AccountDetails> details of the latest account transactions, newest first.
+     */
+    public List<AccountDetails> readMiniStatement(Account account) {
+        return mapTransactions(transactionRepository.findLatest(account.getAccountId(), PageRequest.of(0, miniStatementSize)), account);
+    }
+
+    /**
+     * Reads one page of transactions of the account.
+     *
+     * @param account account to read.
+     * @param cursor nextCursor of the previous page, or null for the first page.
+     * @param limit maximum number of transactions in the page.
+     * @return StatementPage details of the account transactions and the cursor of the next page.
+     */
+    public StatementPage readStatement(Account account, String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, maxPageSize));
+        val pageable = PageRequest.of(0, size + 1);
+        List<Transaction> transactions;
+        if (cursor == null || cursor.isEmpty()) {
+            transactions = transactionRepository.findLatest(account.getAccountId(), pageable);
+        } else {
+            val position = decodeCursor(cursor);
+            transactions = transactionRepository.findLatestBefore(account.getAccountId(), position.transactionDate,
+                    position.transactionId, pageable);
+        }
+        boolean hasMore = transactions.size() > size;
+        val page = hasMore ? transactions.subList(0, size) : transactions;
+        return StatementPage.builder()
+                .transactions(mapTransactions(page, account))
+                .nextCursor(hasMore ? encodeCursor(page.get(size - 1)) : null)
+                .build();
+    }
+
+    /**
+     * Reads the balance of the account at the end of the given moment from the running balances of its transactions.
+     * The latest transaction at or before asOf is looked up once where the account received the transfer and once
+     * where it sent it, each an index lookup of one row. Before the first transaction the balance is derived from the
+     * earliest one, without any transaction the current balance applies.
+     *
+     * @param account account to read.
+     * @param asOf moment to read the balance at.
+     * @return AccountDetails details of the account with the balance at asOf.
+     */
+    public AccountDetails readBalance(Account account, LocalDateTime asOf) {
+        val first = PageRequest.of(0, 1);
+        int accountId = account.getAccountId();
+        val received = firstOf(transactionRepository.findLatestUntil(accountId, asOf, first));
+        val sent = firstOf(transactionRepository.findLatestCounterpartUntil(accountId, asOf, first));
+        long balance;
+        if (received != null || sent != null) {
+            balance = isLater(received, sent) ? received.getBalanceMinor() : sent.getCounterpartBalanceMinor();
+        } else {
+            val nextReceived = firstOf(transactionRepository.findEarliestAfter(accountId, asOf, first));
+            val nextSent = firstOf(transactionRepository.findEarliestCounterpartAfter(accountId, asOf, first));
+            // the balance before a transaction is its balance after with the transfer applied the other way round
+            if (nextReceived != null && (nextSent == null || isLater(nextSent, nextReceived))) {
+                balance = setAccountBalance(TransactionType.valueOf(nextReceived.getType()), nextReceived.getAmountMinor(),
+                        nextReceived.getBalanceMinor(), false);
+            } else if (nextSent != null) {
+                balance = setAccountBalance(TransactionType.valueOf(nextSent.getType()), nextSent.getAmountMinor(),
+                        nextSent.getCounterpartBalanceMinor(), true);
+            } else {
+                balance = account.getBalanceMinor();
+            }
+        }
+        return balanceDetails(account, balance, asOf);
+    }
+
+    /**
+     * Reads the balance of a split account at the given moment. Credits to its slots record no running balance, so the
+     * changes booked after the moment are taken off its current balance instead, which costs a scan of those changes.
+     *
+     * @param account account to read.
+     * @param balance current balance of the account, its Account row plus all slots.
+     * @param asOf moment to read the balance at.
+     * @return AccountDetails the account with its balance at that moment.
+     */
+    public AccountDetails readSplitBalance(Account account, long balance, LocalDateTime asOf) {
+        int accountId = account.getAccountId();
+        long changes = MinorUnits.add(transactionRepository.sumChangesAfter(accountId, asOf),
+                transactionRepository.sumCounterpartChangesAfter(accountId, asOf));
+        return balanceDetails(account, MinorUnits.subtract(balance, changes), asOf);
+    }
+
+    private static AccountDetails balanceDetails(Account account, long balance, LocalDateTime asOf) {
+        return AccountDetails.builder()
+                .balance(MinorUnits.toDecimal(balance, MinorUnits.scaleOf(account.getCurrency())))
+                .accountId(account.getAccountId())
+                .currencyCode(account.getCurrency())
+                .transactionDate(asOf)
+                .build();
+    }
+
+    private static Transaction firstOf(List<Transaction> transactions) {
+        return transactions.isEmpty() ? null : transactions.get(0);
+    }
+
+    /**
+     * Checks whether the first transaction was booked after the second one, a missing transaction counts as earliest.
+     */
+    private static boolean isLater(Transaction transaction, Transaction other) {
+        if (transaction == null || other == null) {
+            return other == null;
+        }
+        int byDate = transaction.getBookingDate().compareTo(other.getBookingDate());
+        return byDate != 0 ? byDate > 0 : transaction.getTransactionId() > other.getTransactionId();
+    }
+
+    private List<AccountDetails> mapTransactions(List<Transaction> transactions, Account account) {
+        return transactions.stream().map(transaction -> mapTransaction(transaction, account)).collect(Collectors.toList());
+    }
+
+    private static String encodeCursor(Transaction transaction) {
+        val position = transaction.getTransactionDate() + CURSOR_SEPARATOR + transaction.getTransactionId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static CursorPosition decodeCursor(String cursor) {
+        try {
+            val position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf(CURSOR_SEPARATOR);
+            return new CursorPosition(LocalDateTime.parse(position.substring(0, separator)),
+                    Integer.parseInt(position.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InvalidCursorException("Invalid statement cursor " + cursor);
+        }
+    }
+
+    private static final class CursorPosition {
+
+        private final LocalDateTime transactionDate;
+        private final int           transactionId;
+
+        private CursorPosition(LocalDateTime transactionDate, int transactionId) {
+            this.transactionDate = transactionDate;
+            this.transactionId = transactionId;
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.norway.mastercard.ibpts.dao.AccountSlot;
+import com.norway.mastercard.ibpts.repo.AccountRepository;
+import com.norway.mastercard.ibpts.repo.AccountSlotRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The SubLedgers splits the balance of hot accounts over a number of AccountSlots, so the credits to one account no
+ * longer wait on the lock of a single row. A credit to a split account is added to a random slot, its Account row is
+ * neither updated nor locked. Debits still go through the Account row and its version, and are validated against the
+ * row plus all slots: slots only ever grow, so a sum read after the row never overstates what the account holds.
+ * An account stays split once split, its slots are summed by every read of its balance.
+ * Slot 0 stands for the Account row itself, the slots of a split account are numbered from 1.
+ */
+@Slf4j
+@Component
+@Profile("!mockService & !ledgerService")
+public class SubLedgers implements MeterBinder {
+
+    public static final int MAIN = 0;
+
+    private final AccountSlotRepository accountSlotRepository;
+    private final AccountRepository     accountRepository;
+    private final BalanceCache          balanceCache;
+    private final TransactionTemplate   transactionTemplate;
+    private final int                   slots;
+    private final Set<Integer>          splitAccounts = ConcurrentHashMap.newKeySet();
+
+    public SubLedgers(AccountSlotRepository accountSlotRepository, AccountRepository accountRepository, BalanceCache balanceCache,
+            PlatformTransactionManager transactionManager, @Value("${ibpts.hot-accounts.slots:8}") int slots) {
+        this.accountSlotRepository = accountSlotRepository;
+        this.accountRepository = accountRepository;
+        this.balanceCache = balanceCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.slots = Math.max(1, slots);
+    }
+
+    /**
+     * Reads which accounts were split before a restart.
+     */
+    @PostConstruct
+    public void loadSplitAccounts() {
+        splitAccounts.addAll(accountSlotRepository.findSplitAccountIds());
+    }
+
+    public boolean isSplit(int accountId) {
+        return splitAccounts.contains(accountId);
+    }
+
+    /**
+     * Creates the slots of an account in a transaction of their own, splitting an account twice does nothing.
+     *
+     * @param accountId accountId of the account to split.
+     */
+    public synchronized void split(int accountId) {
+        if (isSplit(accountId)) {
+            return;
+        }
+        Boolean created = transactionTemplate.execute(status -> {
+            if (!accountRepository.existsById(accountId)) {
+                return false;
+            }
+            for (int slot = MAIN + 1; slot <= slots; slot++) {
+                if (!accountSlotRepository.existsById(new AccountSlot.Key(accountId, slot))) {
+                    accountSlotRepository.save(AccountSlot.builder()
+                            .accountId(accountId)
+                            .slot(slot)
+                            .build());
+                }
+            }
+            return true;
+        });
+        if (Boolean.TRUE.equals(created)) {
+            splitAccounts.add(accountId);
+            // the cache only knows the Account row, balances of split accounts are always summed from the database
+            balanceCache.invalidate(accountId);
+            log.info("Split the balance of hot account {} over {} slots", accountId, slots);
+        }
+    }
+
+    /**
+     * Adds a credit to a random slot of a split account, in the transaction of the transfer.
+     *
+     * @param accountId accountId of the credited account.
+     * @param amount amount in minor units.
+     * @return int the slot credited.
+     */
+    public int credit(int accountId, long amount) {
+        int slot = MAIN + 1 + ThreadLocalRandom.current().nextInt(slots);
+        if (accountSlotRepository.addToSlot(accountId, slot, amount) == 0)
+            throw new IllegalStateException("Slot " + slot + " of account " + accountId + " is missing");
+        return slot;
+    }
+
+    /**
+     * Reads the sum of the slots of an account, call it after reading the Account row.
+     *
+     * @param accountId accountId to read.
+     * @return long the sum of the slots in minor units, 0 for an account which is not split.
+     */
+    public long slotBalanceOf(int accountId) {
+        return isSplit(accountId) ? accountSlotRepository.sumBalances(accountId) : 0;
+    }
+
+    /**
+     * Reads the balance of the Account row plus its slots from one snapshot.
+     *
+     * @param accountId accountId to read.
+     * @return Optional<Long> the balance in minor units, empty when the account does not exist.
+     */
+    public Optional<Long> totalBalanceOf(int accountId) {
+        return accountSlotRepository.findTotalBalance(accountId);
+    }
+
+    /**
+     * Publishes the number of split accounts.
+     *
+     * @param meterRegistry registry to publish to.
+     */
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        Gauge.builder("ibpts.accounts.split", splitAccounts, Set::size)
+                .description("Hot accounts whose credits are spread over sub-balance slots")
+                .register(meterRegistry);
+    }
+
+}
@@ -0,0 +1,344 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.norway.mastercard.ibpts.model.TransactionType;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The TransferJournal is an append-only write-ahead log of the transfers performed by the ledger, kept in memory-mapped
+ * segment files of ibpts.journal.segment-size bytes in ibpts.journal.dir.
+ * Appending copies a record into the mapped segment and hands out its sequence. A single flusher thread forces the
+ * segment to disk and publishes the highest durable sequence, so all records appended while one fsync is running are
+ * made durable by the next one (group commit). Callers wait for their sequence without holding any account lock.
+ * Segments older than both the latest balance snapshot and the transfers persisted by the LedgerWriteBehind are
+ * deleted by the BalanceSnapshotter.
+ * An fsync failure stops the journal, every later append fails as the ledger may then hold transfers which never became
+ * durable.
+ * Disabled unless ibpts.journal.enabled=true, appends are then no-ops.
+ */
+@Slf4j
+@Component
+@Profile("ledgerService")
+public class TransferJournal {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final boolean      enabled;
+    private final Path         directory;
+    private final int          segmentSize;
+    private final Object       appendLock     = new Object();
+    private final Object       durableMonitor = new Object();
+    private MappedByteBuffer   segment;
+    private FileChannel        segmentChannel;
+    private long               nextSequence;
+    private volatile long      writtenSequence;
+    private long               durableSequence;
+    private volatile Throwable failure;
+    private volatile boolean   open;
+    private Thread             flusher;
+
+    public TransferJournal(@Value("${ibpts.journal.enabled:false}") boolean enabled, @Value("${ibpts.journal.dir:${user.home}/.ibpts/journal}") String directory,
+            @Value("${ibpts.journal.segment-size:67108864}") int segmentSize) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentSize = Math.max(JournalRecord.SIZE, segmentSize - segmentSize % JournalRecord.SIZE);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reads every record of the existing segments in sequence order and opens the journal for appending.
+     * Reading stops at the first torn record, which can only be the tail of the last segment after a crash.
+     *
+     * @param afterSequence sequence already covered by a snapshot, older records are skipped.
+     * @param replay receives the records newer than afterSequence.
+     * @return long the number of records replayed.
+     */
+    public long recover(long afterSequence, Consumer<JournalRecord> replay) {
+        if (!enabled) {
+            return 0;
+        }
+        long count = 0;
+        nextSequence = 0;
+        try {
+            Files.createDirectories(directory);
+            for (Path path : segments()) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    for (JournalRecord record = JournalRecord.readFrom(buffer); record != null; record = JournalRecord.readFrom(buffer)) {
+                        if (nextSequence == 0 && record.getSequence() <= afterSequence + 1) {
+                            nextSequence = record.getSequence();
+                        }
+                        if (record.getSequence() != nextSequence) {
+                            throw new IllegalStateException("Journal segment " + path + " has sequence " + record.getSequence()
+                                    + " where " + Math.max(nextSequence, afterSequence + 1) + " was expected");
+                        }
+                        if (record.getSequence() > afterSequence) {
+                            replay.accept(record);
+                            count++;
+                        }
+                        nextSequence++;
+                    }
+                }
+            }
+            if (nextSequence == 0) {
+                nextSequence = afterSequence + 1;
+            } else if (nextSequence <= afterSequence) {
+                throw new IllegalStateException("Journal ends at sequence " + (nextSequence - 1) + " before the snapshot at " + afterSequence);
+            }
+            writtenSequence = nextSequence - 1;
+            durableSequence = writtenSequence;
+            synchronized (appendLock) {
+                rollSegment();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal recovery failed in " + directory, e);
+        }
+        flusher = new Thread(this::flushLoop, "transfer-journal-flusher");
+        flusher.setDaemon(true);
+        open = true;
+        flusher.start();
+        return count;
+    }
+
+    /**
+     * Tells whether the journal still holds every record after the sequence, which is not the case when segments were
+     * truncated up to a later sequence. Called before recover.
+     *
+     * @param sequence last sequence the caller already has.
+     * @return boolean true when no record after the sequence was truncated.
+     */
+    public boolean holdsRecordsAfter(long sequence) {
+        if (!enabled) {
+            return true;
+        }
+        try {
+            if (!Files.isDirectory(directory)) {
+                return true;
+            }
+            List<Path> segments = segments();
+            return segments.isEmpty() || firstSequenceOf(segments.get(0)) <= sequence + 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal segments could not be listed in " + directory, e);
+        }
+    }
+
+    /**
+     * Appends a transfer, it is durable once awaitDurable of the returned sequence returned.
+     *
+     * @param toAccountId accountId of the toAccount.
+     * @param fromAccountId accountId of the fromAccount.
+     * @param amount amount in minor units.
+     * @param type type of the transfer.
+     * @param transactionDate date of the transaction.
+     * @return long the sequence of the record, 0 when the journal is disabled.
+     */
+    public long append(int toAccountId, int fromAccountId, long amount, TransactionType type, LocalDateTime transactionDate) {
+        if (!enabled) {
+            return 0;
+        }
+        synchronized (appendLock) {
+            checkWritable();
+            if (segment.remaining() < JournalRecord.SIZE) {
+                rollSegment();
+            }
+            long sequence = nextSequence++;
+            new JournalRecord(sequence, toAccountId, fromAccountId, amount, type, transactionDate).writeTo(segment);
+            writtenSequence = sequence;
+            return sequence;
+        }
+    }
+
+    /**
+     * Waits until the record of the sequence and all before it are on disk.
+     *
+     * @param sequence sequence returned by append.
+     */
+    public void awaitDurable(long sequence) {
+        if (sequence == 0) {
+            return;
+        }
+        synchronized (durableMonitor) {
+            if (durableSequence < sequence) {
+                durableMonitor.notifyAll();
+            }
+            while (durableSequence < sequence) {
+                checkNotFailed();
+                try {
+                    durableMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the journal", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments holding only records up to the sequence, the records being covered by a snapshot and by the
+     * database.
+     * The segment being appended to is always kept.
+     *
+     * @param sequence last sequence covered by the snapshot and the database.
+     * @return int the number of deleted segments.
+     */
+    public int truncate(long sequence) {
+        if (!enabled) {
+            return 0;
+        }
+        int deleted = 0;
+        try {
+            List<Path> segments = segments();
+            for (int i = 0; i + 1 < segments.size() && firstSequenceOf(segments.get(i + 1)) <= sequence + 1; i++) {
+                Files.delete(segments.get(i));
+                deleted++;
+            }
+        } catch (IOException e) {
+            log.warn("Truncating the transfer journal up to {} failed", sequence, e);
+        }
+        return deleted;
+    }
+
+    /**
+     * The sequence of the last appended record, it is not necessarily durable yet.
+     */
+    public long getWrittenSequence() {
+        return writtenSequence;
+    }
+
+    public long getDurableSequence() {
+        synchronized (durableMonitor) {
+            return durableSequence;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        synchronized (durableMonitor) {
+            durableMonitor.notifyAll();
+        }
+        try {
+            flusher.join();
+            synchronized (appendLock) {
+                segment.force();
+                segmentChannel.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Closing the transfer journal failed", e);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            MappedByteBuffer toForce;
+            long target;
+            synchronized (durableMonitor) {
+                while (open && writtenSequence <= durableSequence) {
+                    try {
+                        durableMonitor.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!open && writtenSequence <= durableSequence) {
+                    return;
+                }
+            }
+            synchronized (appendLock) {
+                toForce = segment;
+                target = writtenSequence;
+            }
+            try {
+                toForce.force();
+            } catch (RuntimeException e) {
+                log.error("Transfer journal fsync failed, the journal is stopped", e);
+                failure = e;
+                synchronized (durableMonitor) {
+                    durableMonitor.notifyAll();
+                }
+                return;
+            }
+            synchronized (durableMonitor) {
+                durableSequence = target;
+                durableMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Forces the full segment and starts the next one, named after the sequence of its first record.
+     * Must be called while holding the append lock.
+     */
+    private void rollSegment() {
+        try {
+            if (segment != null) {
+                segment.force();
+                segmentChannel.close();
+            }
+            Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+            segmentChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException("Journal segment could not be created in " + directory, e);
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void checkWritable() {
+        if (!open)
+            throw new IllegalStateException("Transfer journal is not open");
+        checkNotFailed();
+    }
+
+    private void checkNotFailed() {
+        if (failure != null)
+            throw new IllegalStateException("Transfer journal stopped after a write failure", failure);
+    }
+
+}
@@ -0,0 +1,206 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import static com.norway.mastercard.ibpts.service.internal.AccountMapper.prepareNewTransaction;
+import static com.norway.mastercard.ibpts.service.internal.AccountMapper.updatedCopyOf;
+import static com.norway.mastercard.ibpts.service.internal.TransferRules.validateCurrencies;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.norway.mastercard.ibpts.dao.Account;
+import com.norway.mastercard.ibpts.exception.AccountNotFoundException;
+import com.norway.mastercard.ibpts.exception.TransferNotPreparedException;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.TransferLeg;
+import com.norway.mastercard.ibpts.repo.AccountRepository;
+import com.norway.mastercard.ibpts.repo.TransactionRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
+/**
+ * The TransferParticipant executes the legs of transfers between shards on the accounts of this node in two phases.
+ * Prepare validates the account and, for a debit, holds the amount so no other transfer can spend it. Commit applies
+ * the change and releases the hold, abort only releases it. Prepare forces a new version of the account, so a local
+ * transfer racing with it conflicts and is repeated, then seeing the hold.
+ * The balance reached by a committed leg is remembered for COMMITTED_TTL, so a commit repeated by the coordinator after
+ * a lost response returns it again instead of applying the leg twice. Prepare, commit and abort of one transferId
+ * run under one of LEG_LOCKS locks, so a commit repeated while the first one is still running waits for it and returns
+ * its balance.
+ * Prepared legs and their holds are kept in memory only: a restart of the node between prepare and commit drops them
+ * and the commit is rejected with TransferNotPreparedException, which the coordinator handles as a lost leg.
+ */
+@Component
+@RequiredArgsConstructor
+@Profile("!mockService & !ledgerService")
+public class TransferParticipant {
+
+    private static final Duration COMMITTED_TTL      = Duration.ofMinutes(10);
+    private static final long     COMMITTED_MAX_SIZE = 100_000;
+    private static final int      LEG_LOCKS          = 256;
+
+    private final AccountRepository                  accountRepository;
+    private final TransactionRepository              transactionRepository;
+    private final OptimisticTransferExecutor         transferExecutor;
+    private final EntityManager                      entityManager;
+    private final BalanceCache                       balanceCache;
+    private final StatementAggregator                statementAggregator;
+    private final SubLedgers                         subLedgers;
+    private final ConcurrentMap<String, TransferLeg> preparedLegs  = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Long>       heldAmounts   = new ConcurrentHashMap<>();
+    private final Cache<String, Long>                committedLegs = Caffeine.newBuilder()
+            .maximumSize(COMMITTED_MAX_SIZE)
+            .expireAfterWrite(COMMITTED_TTL)
+            .build();
+    private final Object[]                           legLocks      = newLocks();
+
+    /**
+     * Reads the part of the balance which is not held by prepared transfers.
+     *
+     * @param accountId accountId of the account.
+     * @param balance balance of the account in minor units.
+     * @return long the available balance in minor units.
+     */
+    public long available(int accountId, long balance) {
+        return balance - heldAmounts.getOrDefault(accountId, 0L);
+    }
+
+    /**
+     * Validates a leg and holds the amount of a debit.
+     *
+     * @param leg leg to prepare.
+     */
+    public void prepare(TransferLeg leg) {
+        synchronized (lockOf(leg.getTransferId())) {
+            if (preparedLegs.containsKey(leg.getTransferId())) {
+                return;
+            }
+            try {
+                transferExecutor.execute(() -> {
+                    // a repeated attempt first drops the hold of the attempt which conflicted
+                    release(leg.getTransferId());
+                    val account = getAccountById(leg.getAccountId());
+                    validateCurrencies(account.getCurrency(), leg.getCurrencyCode());
+                    entityManager.lock(account, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+                    if (leg.getAmountMinor() < 0) {
+                        hold(account, -leg.getAmountMinor());
+                    }
+                    preparedLegs.put(leg.getTransferId(), leg);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                release(leg.getTransferId());
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Applies a prepared leg, committing a leg again returns the balance of the first commit.
+     *
+     * @param transferId transferId of the leg.
+     * @param counterpartBalance balance of the counterpart account after its leg, recorded with the transaction, or null
+     *        when unknown.
+     * @return Long the balance of the account after the leg.
+     * @throws TransferNotPreparedException when the leg is neither prepared nor recently committed.
+     */
+    public Long commit(String transferId, Long counterpartBalance) {
+        synchronized (lockOf(transferId)) {
+            long balance = transferExecutor.execute(() -> apply(transferId, counterpartBalance));
+            committedLegs.put(transferId, balance);
+            release(transferId);
+            return balance;
+        }
+    }
+
+    /**
+     * Releases a prepared leg without applying it.
+     *
+     * @param transferId transferId of the leg.
+     */
+    public void abort(String transferId) {
+        synchronized (lockOf(transferId)) {
+            release(transferId);
+        }
+    }
+
+    /**
+     * Applies a prepared leg in the unit of work of the commit, unless it was committed already.
+     */
+    private long apply(String transferId, Long counterpartBalance) {
+        Long committedBalance = committedLegs.getIfPresent(transferId);
+        if (committedBalance != null) {
+            return committedBalance;
+        }
+        val leg = preparedLegs.get(transferId);
+        if (leg == null)
+            throw new TransferNotPreparedException("Leg " + transferId + " is not prepared on this node");
+        val account = getAccountById(leg.getAccountId());
+        if (accountRepository.addToBalance(account.getAccountId(), leg.getAmountMinor(), account.getVersion()) == 0)
+            throw new ObjectOptimisticLockingFailureException(Account.class, account.getAccountId());
+        long newBalance = MinorUnits.add(account.getBalanceMinor(), leg.getAmountMinor());
+        long slotBalance = subLedgers.slotBalanceOf(account.getAccountId());
+        val bucketChanges = new StatementBucketChanges();
+        bucketChanges.add(account.getAccountId(), leg.getTransactionDate(), leg.getAmountMinor());
+        statementAggregator.apply(bucketChanges);
+        if (leg.isRecordTransaction()) {
+            transactionRepository.save(prepareNewTransaction(AccountDetails.builder()
+                    .accountId(leg.getCounterpartAccountId())
+                    .type(leg.getType())
+                    .transactionDate(leg.getTransactionDate())
+                    .build(), Math.abs(leg.getAmountMinor()), account, newBalance + slotBalance, counterpartBalance));
+        }
+        if (!subLedgers.isSplit(account.getAccountId())) {
+            balanceCache.updateAfterCommit(updatedCopyOf(account, newBalance));
+        }
+        return newBalance + slotBalance;
+    }
+
+    private void hold(Account account, long amount) {
+        long balance = account.getBalanceMinor() + subLedgers.slotBalanceOf(account.getAccountId());
+        heldAmounts.compute(account.getAccountId(), (accountId, held) -> {
+            long alreadyHeld = held == null ? 0 : held;
+            if (balance - alreadyHeld <= amount)
+                throw new InsufficientFundsException();
+            return alreadyHeld + amount;
+        });
+    }
+
+    private void release(String transferId) {
+        val leg = preparedLegs.remove(transferId);
+        if (leg != null && leg.getAmountMinor() < 0) {
+            heldAmounts.computeIfPresent(leg.getAccountId(), (accountId, held) -> {
+                long remaining = held + leg.getAmountMinor();
+                return remaining == 0 ? null : remaining;
+            });
+        }
+    }
+
+    private Object lockOf(String transferId) {
+        return legLocks[Math.floorMod(transferId.hashCode(), LEG_LOCKS)];
+    }
+
+    private Account getAccountById(int accountId) {
+        return accountRepository.findById(accountId)
+                .orElseThrow(() -> new AccountNotFoundException("Invalid Account ID " + accountId));
+    }
+
+    private static Object[] newLocks() {
+        Object[] locks = new Object[LEG_LOCKS];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import static com.norway.mastercard.ibpts.model.TransactionType.CREDIT;
+import static com.norway.mastercard.ibpts.model.TransactionType.DEBIT;
+
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.TransactionType;
+
+/**
+ * The TransferRules holds the funds validation and balance arithmetic shared by every AccountService implementation.
+ * Balances and amounts are in minor units of the account currency, see MinorUnits.
+ */
+final class TransferRules {
+
+    private TransferRules() {
+    }
+
+    /**
+     * Validates that the debited side of the transfer holds enough funds.
+     *
+     * @param type type of the transfer.
+     * @param amount amount of the transfer.
+     * @param fromBalance current balance of the fromAccount.
+     * @param toBalance current balance of the toAccount.
+     */
+    static void validateFunds(TransactionType type, long amount, long fromBalance, long toBalance) {
+        if (CREDIT.equals(type) && fromBalance <= amount || DEBIT.equals(type) && toBalance <= amount)
+            throw new InsufficientFundsException();
+    }
+
+    /**
+     * Validates that the transfer carries an amount and a transaction type.
+     *
+     * @param accountDetails fromAccount details of the transfer.
+     */
+    static void validateRequired(AccountDetails accountDetails) {
+        if (accountDetails.getAmount() == null || accountDetails.getType() == null)
+            throw new IllegalArgumentException("Amount and type are required");
+    }
+
+    /**
+     * Validates that both accounts hold the same currency, the system does not convert between currencies.
+     *
+     * @param toCurrency currency of the toAccount.
+     * @param fromCurrency currency of the fromAccount.
+     */
+    static void validateCurrencies(String toCurrency, String fromCurrency) {
+        if (!toCurrency.equals(fromCurrency))
+            throw new IllegalArgumentException("Transfers between " + fromCurrency + " and " + toCurrency + " accounts are not supported");
+    }
+
+    /**
+     * Converts the amount of the transfer to minor units of the account currency.
+     *
+     * @param accountDetails fromAccount details of the transfer.
+     * @param currency currency of the accounts.
+     * @return long the amount in minor units.
+     */
+    static long amountOf(AccountDetails accountDetails, String currency) {
+        return MinorUnits.toMinor(accountDetails.getAmount(), MinorUnits.scaleOf(currency));
+    }
+
+    /**
+     * Checks whether the transfer moves any money at all.
+     *
+     * @param amount amount of the transfer.
+     * @return true when the amount is greater than zero.
+     */
+    static boolean hasAmount(long amount) {
+        return amount > 0;
+    }
+
+    /**
+     * Calculates the new balance of one side of the transfer.
+     *
+     * @param type type of the transfer.
+     * @param amount amount of the transfer.
+     * @param balance current balance of the account.
+     * @param isToAccount true when the balance belongs to the toAccount.
+     * @return long the balance after the transfer.
+     */
+    static long setAccountBalance(TransactionType type, long amount, long balance, boolean isToAccount) {
+        if (DEBIT.equals(type))
+            return isToAccount ? MinorUnits.subtract(balance, amount) : MinorUnits.add(balance, amount);
+        else if (CREDIT.equals(type))
+            return isToAccount ? MinorUnits.add(balance, amount) : MinorUnits.subtract(balance, amount);
+        else
+            throw new IllegalArgumentException("Not a valid transaction type");
+    }
+
+}
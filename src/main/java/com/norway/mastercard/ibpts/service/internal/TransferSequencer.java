@@ -0,0 +1,251 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.norway.mastercard.ibpts.exception.ServiceBusyException;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The TransferSequencer runs the transfers of the ledger through a pre-allocated ring buffer of
+ * ibpts.ledger.sequencer.ring-size slots, in the style of a disruptor.
+ * Request threads claim a sequence, fill the slot and publish it. A single writer thread applies the published
+ * transfers one after the other, so hot accounts see no lock contention and no retries, and appends them to the
+ * journal. A second thread follows the writer, waits once per batch for the journal to be durable and completes the
+ * futures of the batch, so request threads never block on the engine. The write-behind persists the transactions in
+ * batches as before.
+ * A full ring rejects the transfer with ServiceBusyException instead of blocking the request thread. Idle stages spin
+ * briefly, then park for ibpts.ledger.sequencer.idle-park-us microseconds.
+ * Stopping first turns new transfers away, then waits for the request threads still claiming a slot and lets both
+ * stages run until every claimed transfer is completed, so no future is left pending.
+ * Disabled unless ibpts.ledger.sequencer.enabled=true, the ledger then applies transfers on the request threads.
+ */
+@Slf4j
+@Component
+@Profile("ledgerService")
+public class TransferSequencer {
+
+    private static final int SPIN_TRIES = 200;
+    private static final int MAX_BATCH  = 1024;
+
+    private final boolean         enabled;
+    private final Slot[]          slots;
+    private final AtomicLongArray published;
+    private final int             mask;
+    private final long            idleParkNanos;
+    private final TransferJournal transferJournal;
+    private final AtomicLong      claimed    = new AtomicLong(-1);
+    private final AtomicInteger   submitters = new AtomicInteger();
+    private volatile long         processed  = -1;
+    private volatile long         completed  = -1;
+    private volatile boolean      running;
+    private volatile boolean      closed;
+    private Thread                writer;
+    private Thread                completer;
+
+    public TransferSequencer(TransferJournal transferJournal, @Value("${ibpts.ledger.sequencer.enabled:false}") boolean enabled,
+            @Value("${ibpts.ledger.sequencer.ring-size:65536}") int ringSize,
+            @Value("${ibpts.ledger.sequencer.idle-park-us:50}") long idleParkMicros) {
+        this.transferJournal = transferJournal;
+        this.enabled = enabled;
+        int size = enabled ? Integer.highestOneBit(Math.max(2, ringSize - 1) << 1) : 0;
+        this.slots = new Slot[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            published.set(i, -1);
+        }
+        this.mask = size - 1;
+        this.idleParkNanos = idleParkMicros * 1_000;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts the writer and the completer.
+     *
+     * @param handler applies one transfer and returns its journal sequence, it runs on the writer thread only.
+     */
+    public synchronized void start(Handler handler) {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        closed = false;
+        writer = new Thread(() -> write(handler), "transfer-sequencer-writer");
+        completer = new Thread(this::complete, "transfer-sequencer-completer");
+        writer.setDaemon(true);
+        completer.setDaemon(true);
+        writer.start();
+        completer.start();
+    }
+
+    /**
+     * Publishes a validated transfer to the ring.
+     *
+     * @param toAccountId accountId of the toAccount.
+     * @param transaction transfer with its transaction date set.
+     * @param amount amount in minor units of the toAccount.
+     * @return CompletableFuture<Void> completed once the transfer is applied and durable, or failed with its rejection.
+     */
+    public CompletableFuture<Void> submit(int toAccountId, AccountDetails transaction, long amount) {
+        submitters.incrementAndGet();
+        try {
+            if (!running) {
+                return CompletableFuture.failedFuture(new ServiceBusyException("Transfer engine is not running"));
+            }
+            return publish(toAccountId, transaction, amount);
+        } finally {
+            submitters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stops accepting transfers and waits until every transfer claimed before is completed.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        while (submitters.get() > 0) {
+            Thread.onSpinWait();
+        }
+        closed = true;
+        writer.join();
+        completer.join();
+    }
+
+    private CompletableFuture<Void> publish(int toAccountId, AccountDetails transaction, long amount) {
+        long sequence;
+        do {
+            sequence = claimed.get() + 1;
+            if (sequence - completed > slots.length) {
+                return CompletableFuture.failedFuture(new ServiceBusyException("Too many transfers in progress, retry later"));
+            }
+        } while (!claimed.compareAndSet(sequence - 1, sequence));
+        Slot slot = slots[(int) sequence & mask];
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        slot.toAccountId = toAccountId;
+        slot.transaction = transaction;
+        slot.amount = amount;
+        slot.journalSequence = 0;
+        slot.failure = null;
+        slot.result = result;
+        published.lazySet((int) sequence & mask, sequence);
+        return result;
+    }
+
+    private void write(Handler handler) {
+        long next = processed + 1;
+        int idle = 0;
+        while (!closed || next <= claimed.get()) {
+            if (published.get((int) next & mask) != next) {
+                idle = idle(idle);
+                continue;
+            }
+            idle = 0;
+            long batchEnd = next + MAX_BATCH;
+            // apply what is published so far before handing the batch to the completer
+            do {
+                Slot slot = slots[(int) next & mask];
+                try {
+                    slot.journalSequence = handler.apply(slot.toAccountId, slot.transaction, slot.amount);
+                } catch (RuntimeException e) {
+                    slot.failure = e;
+                }
+                next++;
+            } while (next < batchEnd && published.get((int) next & mask) == next);
+            processed = next - 1;
+        }
+    }
+
+    private void complete() {
+        long next = completed + 1;
+        int idle = 0;
+        while (!closed || next <= claimed.get()) {
+            long available = processed;
+            if (next > available) {
+                idle = idle(idle);
+                continue;
+            }
+            idle = 0;
+            long journalSequence = 0;
+            for (long sequence = next; sequence <= available; sequence++) {
+                journalSequence = Math.max(journalSequence, slots[(int) sequence & mask].journalSequence);
+            }
+            RuntimeException journalFailure = awaitDurable(journalSequence);
+            for (; next <= available; next++) {
+                Slot slot = slots[(int) next & mask];
+                CompletableFuture<Void> result = slot.result;
+                RuntimeException failure = slot.failure != null ? slot.failure : journalFailure;
+                slot.transaction = null;
+                slot.result = null;
+                slot.failure = null;
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(null);
+                }
+            }
+            completed = available;
+        }
+    }
+
+    private RuntimeException awaitDurable(long journalSequence) {
+        try {
+            transferJournal.awaitDurable(journalSequence);
+            return null;
+        } catch (RuntimeException e) {
+            log.error("Transfers up to journal sequence {} are not durable", journalSequence, e);
+            return e;
+        }
+    }
+
+    private int idle(int idle) {
+        if (idle < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(idleParkNanos);
+        }
+        return idle + 1;
+    }
+
+    /**
+     * Applies one transfer on the writer thread.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        long apply(int toAccountId, AccountDetails transaction, long amount);
+    }
+
+    /**
+     * One pre-allocated entry of the ring, written by the claiming request thread before publishing and by the stages
+     * after it.
+     */
+    private static final class Slot {
+
+        private int                     toAccountId;
+        private AccountDetails          transaction;
+        private long                    amount;
+        private long                    journalSequence;
+        private RuntimeException        failure;
+        private CompletableFuture<Void> result;
+    }
+
+}
@@ -1,6 +1,12 @@
-insert into account values(111, 500, 'NOK');
-insert into transaction values(1,222,100,'2021-10-10','DEBIT',111);
-insert into transaction values(2,222,200,'2021-10-12','CREDIT',111);
-insert into account values(222, 600, 'NOK');
-insert into transaction values(3,111,200,'2021-10-10','DEBIT',222);
-insert into transaction values(4,111,100,'2021-10-12','CREDIT',222);
\ No newline at end of file
+insert into account(account_id, balance_minor, currency, version) values(111, 50000, 'NOK', 0);
+insert into transaction(transaction_id, account_id, amount_minor, balance_minor, counterpart_balance_minor, transaction_date, booking_date, type, parent_account_id) values(1,222,10000,20000,90000,'2021-10-10','2021-10-10','DEBIT',111);
+insert into transaction(transaction_id, account_id, amount_minor, balance_minor, counterpart_balance_minor, transaction_date, booking_date, type, parent_account_id) values(2,222,20000,60000,50000,'2021-10-12','2021-10-12','CREDIT',111);
+insert into account(account_id, balance_minor, currency, version) values(222, 60000, 'NOK', 0);
+insert into transaction(transaction_id, account_id, amount_minor, balance_minor, counterpart_balance_minor, transaction_date, booking_date, type, parent_account_id) values(3,111,20000,70000,40000,'2021-10-10','2021-10-10','DEBIT',222);
+insert into transaction(transaction_id, account_id, amount_minor, balance_minor, counterpart_balance_minor, transaction_date, booking_date, type, parent_account_id) values(4,111,10000,60000,50000,'2021-10-12','2021-10-12','CREDIT',222);
+insert into statement_bucket(account_id, granularity, period_start, slot, debit_count, debit_minor, credit_count, credit_minor) values(111, 'DAY', '2021-10-10', 0, 1, 10000, 1, 20000);
+insert into statement_bucket(account_id, granularity, period_start, slot, debit_count, debit_minor, credit_count, credit_minor) values(111, 'DAY', '2021-10-12', 0, 1, 10000, 1, 20000);
+insert into statement_bucket(account_id, granularity, period_start, slot, debit_count, debit_minor, credit_count, credit_minor) values(111, 'MONTH', '2021-10-01', 0, 2, 20000, 2, 40000);
+insert into statement_bucket(account_id, granularity, period_start, slot, debit_count, debit_minor, credit_count, credit_minor) values(222, 'DAY', '2021-10-10', 0, 1, 20000, 1, 10000);
+insert into statement_bucket(account_id, granularity, period_start, slot, debit_count, debit_minor, credit_count, credit_minor) values(222, 'DAY', '2021-10-12', 0, 1, 20000, 1, 10000);
+insert into statement_bucket(account_id, granularity, period_start, slot, debit_count, debit_minor, credit_count, credit_minor) values(222, 'MONTH', '2021-10-01', 0, 2, 40000, 2, 20000);
@@ -0,0 +1,62 @@
+package com.norway.mastercard.ibpts;
+
+import static com.norway.mastercard.ibpts.model.TransactionType.CREDIT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.TransferInstruction;
+import com.norway.mastercard.ibpts.model.TransferStatus;
+import com.norway.mastercard.ibpts.service.AccountService;
+
+/**
+ * The is integration test class for the highThroughput persistence profile.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = IntraBankPaymentTransferSystem.class, properties = "spring.datasource.url=jdbc:h2:mem:ibpts-high-throughput")
+@ActiveProfiles("highThroughput")
+class IntraBankPaymentTransferSystemHighThroughputTest {
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    JdbcTemplate   jdbcTemplate;
+
+    @Test
+    void transferAmounts_takesTransactionIdsFromTheSequence() {
+        BigDecimal balance = accountService.getAccountBalance(111).getBalance();
+        List<TransferInstruction> transfers = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            transfers.add(TransferInstruction.builder()
+                    .toAccountId(i % 2 == 0 ? 111 : 222)
+                    .accountId(i % 2 == 0 ? 222 : 111)
+                    .amount(BigDecimal.ONE)
+                    .type(CREDIT)
+                    .build());
+        }
+
+        assertThat(accountService.transferAmounts(transfers)).extracting("status").containsOnly(TransferStatus.COMPLETED);
+        accountService.transferAmount(111, AccountDetails.builder()
+                .accountId(222)
+                .amount(BigDecimal.ONE)
+                .type(CREDIT)
+                .build());
+        assertThat(accountService.getAccountBalance(111).getBalance()).isEqualByComparingTo(balance.add(BigDecimal.ONE));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from transaction where transaction_id >= 1001", Integer.class))
+                .isEqualTo(61);
+        assertThat(jdbcTemplate.queryForObject("select count(distinct transaction_id) from transaction", Integer.class))
+                .isEqualTo(65);
+    }
+
+}
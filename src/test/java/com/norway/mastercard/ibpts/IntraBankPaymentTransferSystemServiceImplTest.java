@@ -4,7 +4,12 @@ import static com.norway.mastercard.ibpts.model.TransactionType.CREDIT;
 import static com.norway.mastercard.ibpts.model.TransactionType.DEBIT;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 
 import org.junit.jupiter.api.Test;
@@ -21,8 +26,18 @@ import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementSummary;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.TransferInstruction;
+import com.norway.mastercard.ibpts.model.TransferResult;
+import com.norway.mastercard.ibpts.model.TransferStatus;
+import com.norway.mastercard.ibpts.service.internal.ColumnarReader;
+import com.norway.mastercard.ibpts.service.internal.ColumnarWriter;
+import com.norway.mastercard.ibpts.service.internal.SubLedgers;
 
 import lombok.val;
 
@@ -38,6 +53,8 @@ class IntraBankPaymentTransferSystemServiceImplTest {
     public static final String CURRENCY   = "NOK";
     @Autowired
     MockMvc                    mockMvc;
+    @Autowired
+    SubLedgers                 subLedgers;
 
     @Test
     void getAccountBalance() throws Exception {
@@ -55,6 +72,60 @@ class IntraBankPaymentTransferSystemServiceImplTest {
         assertThat(accountDetails.getBalance().longValue()).isEqualTo(500L);
     }
 
+    @Test
+    void getAccountBalance_asOfDate_readsHistoricalBalance() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        assertThat(readBalanceAsOf(objectMapper, ACCOUNT_ID, "2021-10-01T00:00:00")).isEqualByComparingTo("300.00");
+        assertThat(readBalanceAsOf(objectMapper, ACCOUNT_ID, "2021-10-11T00:00:00")).isEqualByComparingTo("400.00");
+        assertThat(readBalanceAsOf(objectMapper, 222, "2021-10-11T00:00:00")).isEqualByComparingTo("700.00");
+    }
+
+    @Test
+    void getAccountBalance_asOfDate_whenTransferIsBackdated_followsBookingOrder() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        BigDecimal balanceBefore = readBalance(objectMapper, ACCOUNT_ID);
+        LocalDateTime bookedBefore = LocalDateTime.now(ZoneId.systemDefault());
+        // a transfer dated before every other transaction of the account, its running balance still includes them
+        for (TransactionType type : List.of(CREDIT, DEBIT)) {
+            mockMvc.perform(MockMvcRequestBuilders
+                    .post("/accounts/{accountId}", ACCOUNT_ID)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(AccountDetails.builder()
+                            .amount(BigDecimal.ONE)
+                            .type(type)
+                            .accountId(222)
+                            .transactionDate(LocalDateTime.of(2021, 10, 1, 0, 0))
+                            .build())))
+                    .andExpect(MockMvcResultMatchers.status().isOk());
+            if (type == CREDIT) {
+                assertThat(readBalanceAsOf(objectMapper, ACCOUNT_ID, LocalDateTime.now(ZoneId.systemDefault()).toString()))
+                        .isEqualByComparingTo(balanceBefore.add(BigDecimal.ONE));
+            }
+        }
+        assertThat(readBalanceAsOf(objectMapper, ACCOUNT_ID, bookedBefore.toString())).isEqualByComparingTo(balanceBefore);
+        assertThat(readBalanceAsOf(objectMapper, ACCOUNT_ID, LocalDateTime.now(ZoneId.systemDefault()).toString()))
+                .isEqualByComparingTo(balanceBefore);
+        assertThat(readBalanceAsOf(objectMapper, ACCOUNT_ID, "2021-10-01T00:00:00")).isEqualByComparingTo("300.00");
+    }
+
+    @Test
+    void getAccountBalances() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .post("/accounts/balances")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(222, 999, ACCOUNT_ID))))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn();
+        List<AccountDetails> balances = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+        assertThat(balances).extracting(AccountDetails::getAccountId).containsExactly(222, ACCOUNT_ID);
+        assertThat(balances).extracting(AccountDetails::getCurrencyCode).containsOnly(CURRENCY);
+    }
+
     @Test
     void getMiniStatement() throws Exception {
         MvcResult result = mockMvc.perform(MockMvcRequestBuilders
@@ -74,6 +145,185 @@ class IntraBankPaymentTransferSystemServiceImplTest {
                 .contains(ACCOUNT_ID, CURRENCY, CREDIT);
     }
 
+    @Test
+    void getMiniStatement_asColumnar() throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/statements/mini", ACCOUNT_ID)
+                .accept(ColumnarWriter.MEDIA_TYPE))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(ColumnarWriter.MEDIA_TYPE))
+                .andReturn();
+        List<AccountDetails> accountDetails = ColumnarReader.readList(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertThat(accountDetails)
+                .flatExtracting("accountId", "currencyCode", "type")
+                .contains(ACCOUNT_ID, CURRENCY, DEBIT)
+                .contains(ACCOUNT_ID, CURRENCY, CREDIT);
+
+        result = mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/statements", ACCOUNT_ID)
+                .param("limit", "1")
+                .accept(ColumnarWriter.MEDIA_TYPE))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn();
+        val page = ColumnarReader.readPage(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertThat(page.getTransactions()).hasSize(1);
+        assertThat(page.getNextCursor()).isNotNull();
+    }
+
+    @Test
+    void getStatement() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/statements", 222)
+                .param("limit", "1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn();
+        val firstPage = objectMapper.readValue(result.getResponse().getContentAsString(), StatementPage.class);
+        assertThat(firstPage.getTransactions()).hasSize(1);
+        assertThat(firstPage.getNextCursor()).isNotNull();
+
+        result = mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/statements", 222)
+                .param("limit", "1")
+                .param("cursor", firstPage.getNextCursor())
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn();
+        val secondPage = objectMapper.readValue(result.getResponse().getContentAsString(), StatementPage.class);
+        assertThat(secondPage.getTransactions()).hasSize(1);
+        assertThat(secondPage.getTransactions().get(0).getTransactionDate())
+                .isBefore(firstPage.getTransactions().get(0).getTransactionDate());
+    }
+
+    @Test
+    void exportStatement() throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/statements/export", 222))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        String ndjson = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        List<AccountDetails> rows = objectMapper.readerFor(AccountDetails.class)
+                .<AccountDetails> readValues(ndjson).readAll();
+        assertThat(rows).hasSizeGreaterThanOrEqualTo(2);
+        assertThat(rows.get(0).getTransactionDate()).isBefore(rows.get(1).getTransactionDate());
+
+        result = mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/statements/export", 222)
+                .param("format", "CSV"))
+                .andReturn();
+        String csv = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(csv.split("\n")[0]).isEqualTo("accountId,currencyCode,transactionDate,type,amount");
+        assertThat(csv.split("\n")[1]).isEqualTo("222,NOK,2021-10-10T00:00:00,DEBIT,200.00");
+    }
+
+    @Test
+    void exportStatement_outlivesTheAsyncRequestTimeout() throws Exception {
+        MvcResult export = mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/statements/export", 222))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        assertThat(export.getRequest().getAsyncContext().getTimeout()).isEqualTo(Duration.ofHours(1).toMillis());
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(export))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    @Test
+    void getAccountBalance_whenAsyncIsOff_isAnsweredWithoutAsyncDispatch() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/balance", ACCOUNT_ID))
+                .andExpect(MockMvcResultMatchers.request().asyncNotStarted())
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    @Test
+    void exportStatement_asColumnar() throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/statements/export", 222)
+                .param("format", "COLUMNAR"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        byte[] body = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(ColumnarWriter.MEDIA_TYPE))
+                .andReturn().getResponse().getContentAsByteArray();
+        List<AccountDetails> rows = ColumnarReader.readList(new ByteArrayInputStream(body));
+        assertThat(rows).hasSizeGreaterThanOrEqualTo(2);
+        assertThat(rows.get(0))
+                .extracting("accountId", "currencyCode", "type", "amount")
+                .containsExactly(222, CURRENCY, DEBIT, new BigDecimal("200.00"));
+        assertThat(rows.get(0).getTransactionDate()).isEqualTo("2021-10-10T00:00:00");
+    }
+
+    @Test
+    void exportStatement_whenInvalidAccountId() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/statements/export", 999))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+    @Test
+    void getStatementSummary() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        StatementSummary month = readSummary(objectMapper, ACCOUNT_ID, "2021-10-01", "2021-10-31");
+        assertThat(month.getDebitCount()).isEqualTo(2);
+        assertThat(month.getDebitAmount()).isEqualByComparingTo("200.00");
+        assertThat(month.getCreditCount()).isEqualTo(2);
+        assertThat(month.getCreditAmount()).isEqualByComparingTo("400.00");
+        StatementSummary days = readSummary(objectMapper, ACCOUNT_ID, "2021-10-11", "2021-10-12");
+        assertThat(days.getTransactionCount()).isEqualTo(2);
+        assertThat(days.getDebitAmount()).isEqualByComparingTo("100.00");
+        assertThat(days.getCreditAmount()).isEqualByComparingTo("200.00");
+
+        String today = LocalDate.now().toString();
+        StatementSummary before = readSummary(objectMapper, 222, today, today);
+        // a transfer and its reversal leave the balances as they were for the other tests
+        for (TransactionType type : List.of(CREDIT, DEBIT)) {
+            mockMvc.perform(MockMvcRequestBuilders
+                    .post("/accounts/{accountId}", 222)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(AccountDetails.builder()
+                            .amount(BigDecimal.ONE)
+                            .type(type)
+                            .accountId(ACCOUNT_ID)
+                            .build())))
+                    .andExpect(MockMvcResultMatchers.status().isOk());
+        }
+        StatementSummary after = readSummary(objectMapper, 222, today, today);
+        assertThat(after.getCreditCount()).isEqualTo(before.getCreditCount() + 1);
+        assertThat(after.getCreditAmount()).isEqualByComparingTo(before.getCreditAmount().add(BigDecimal.ONE));
+        assertThat(after.getDebitCount()).isEqualTo(before.getDebitCount() + 1);
+        assertThat(after.getDebitAmount()).isEqualByComparingTo(before.getDebitAmount().add(BigDecimal.ONE));
+    }
+
+    @Test
+    void getStatementSummary_whenRangeEndsBeforeStart() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/statements/summary", ACCOUNT_ID)
+                .param("from", "2021-10-12")
+                .param("to", "2021-10-11"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    private StatementSummary readSummary(ObjectMapper objectMapper, int accountId, String from, String to) throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/statements/summary", accountId)
+                .param("from", from)
+                .param("to", to))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn();
+        return objectMapper.readValue(result.getResponse().getContentAsString(), StatementSummary.class);
+    }
+
     @Test
     void transferAmount() throws Exception {
         ObjectMapper objectMapper = new ObjectMapper();
@@ -90,4 +340,135 @@ class IntraBankPaymentTransferSystemServiceImplTest {
                 .andExpect(MockMvcResultMatchers.status().isOk());
     }
 
+    @Test
+    void transferAmount_whenRepeatedWithIdempotencyKey_appliesOnce() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        BigDecimal balanceBefore = readBalance(objectMapper, 222);
+        String jsonString = objectMapper
+                .writeValueAsString(AccountDetails.builder()
+                        .amount(BigDecimal.ONE)
+                        .type(CREDIT)
+                        .accountId(ACCOUNT_ID)
+                        .build());
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mockMvc.perform(MockMvcRequestBuilders
+                    .post("/accounts/{accountId}", 222)
+                    .header("Idempotency-Key", "transfer-once")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(jsonString))
+                    .andExpect(MockMvcResultMatchers.status().isOk());
+        }
+        assertThat(readBalance(objectMapper, 222)).isEqualByComparingTo(balanceBefore.add(BigDecimal.ONE));
+    }
+
+    @Test
+    void transferAmount_whenRejectedWithIdempotencyKey_replaysBadRequest() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        String jsonString = objectMapper
+                .writeValueAsString(AccountDetails.builder()
+                        .amount(BigDecimal.valueOf(1_000_000))
+                        .type(CREDIT)
+                        .accountId(ACCOUNT_ID)
+                        .build());
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mockMvc.perform(MockMvcRequestBuilders
+                    .post("/accounts/{accountId}", 222)
+                    .header("Idempotency-Key", "transfer-rejected")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(jsonString))
+                    .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        }
+    }
+
+    @Test
+    void transferAmount_whenReceiverIsSplit_creditsItsSlots() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        subLedgers.split(222);
+        BigDecimal balanceBefore = readBalance(objectMapper, 222);
+        long slotsBefore = subLedgers.slotBalanceOf(222);
+        // a credit to the split account and its reversal, which debits the account as before
+        for (TransactionType type : List.of(CREDIT, DEBIT)) {
+            mockMvc.perform(MockMvcRequestBuilders
+                    .post("/accounts/{accountId}", 222)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(AccountDetails.builder()
+                            .amount(BigDecimal.ONE)
+                            .type(type)
+                            .accountId(ACCOUNT_ID)
+                            .build())))
+                    .andExpect(MockMvcResultMatchers.status().isOk());
+            if (type == CREDIT) {
+                assertThat(subLedgers.slotBalanceOf(222)).isEqualTo(slotsBefore + 100);
+                assertThat(readBalance(objectMapper, 222)).isEqualByComparingTo(balanceBefore.add(BigDecimal.ONE));
+            }
+        }
+        assertThat(subLedgers.isSplit(222)).isTrue();
+        assertThat(readBalance(objectMapper, 222)).isEqualByComparingTo(balanceBefore);
+    }
+
+    @Test
+    void getAccountBalance_asOfDate_whenAccountIsSplit_includesSlotCredits() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        subLedgers.split(222);
+        BigDecimal balanceBefore = readBalance(objectMapper, 222);
+        LocalDateTime bookedBefore = LocalDateTime.now(ZoneId.systemDefault());
+        for (TransactionType type : List.of(CREDIT, DEBIT)) {
+            mockMvc.perform(MockMvcRequestBuilders
+                    .post("/accounts/{accountId}", 222)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(AccountDetails.builder()
+                            .amount(BigDecimal.ONE)
+                            .type(type)
+                            .accountId(ACCOUNT_ID)
+                            .build())))
+                    .andExpect(MockMvcResultMatchers.status().isOk());
+            if (type == CREDIT) {
+                assertThat(readBalanceAsOf(objectMapper, 222, LocalDateTime.now(ZoneId.systemDefault()).toString()))
+                        .isEqualByComparingTo(balanceBefore.add(BigDecimal.ONE));
+            }
+        }
+        assertThat(readBalanceAsOf(objectMapper, 222, bookedBefore.toString())).isEqualByComparingTo(balanceBefore);
+        assertThat(readBalanceAsOf(objectMapper, 222, LocalDateTime.now(ZoneId.systemDefault()).toString()))
+                .isEqualByComparingTo(balanceBefore);
+        assertThat(readBalanceAsOf(objectMapper, 222, "2021-10-11T00:00:00")).isEqualByComparingTo("700.00");
+    }
+
+    private BigDecimal readBalance(ObjectMapper objectMapper, int accountId) throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/balance", accountId))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn();
+        return objectMapper.readValue(result.getResponse().getContentAsString(), AccountDetails.class).getBalance();
+    }
+
+    private BigDecimal readBalanceAsOf(ObjectMapper objectMapper, int accountId, String asOf) throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/balance", accountId)
+                .param("asOf", asOf))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn();
+        return objectMapper.readValue(result.getResponse().getContentAsString(), AccountDetails.class).getBalance();
+    }
+
+    @Test
+    void transferAmounts() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        String jsonString = objectMapper
+                .writeValueAsString(List.of(
+                        TransferInstruction.builder().toAccountId(222).accountId(ACCOUNT_ID).amount(BigDecimal.ONE).type(CREDIT).build(),
+                        TransferInstruction.builder().toAccountId(222).accountId(999).amount(BigDecimal.ONE).type(CREDIT).build()));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .post("/accounts/transfers/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(jsonString))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn();
+        List<TransferResult> transferResults = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+        assertThat(transferResults)
+                .extracting("status")
+                .containsExactly(TransferStatus.COMPLETED, TransferStatus.REJECTED);
+    }
+
 }
@@ -0,0 +1,108 @@
+package com.norway.mastercard.ibpts;
+
+import static com.norway.mastercard.ibpts.model.TransactionType.CREDIT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.norway.mastercard.ibpts.config.ShardSecretFilter;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.TransferInstruction;
+import com.norway.mastercard.ibpts.model.TransferResult;
+import com.norway.mastercard.ibpts.model.TransferStatus;
+
+/**
+ * The is integration test class for AccountResource and uses ShardedAccountService with two in-process shards, the
+ * accounts 111 and 222 are placed on different shards.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = IntraBankPaymentTransferSystem.class,
+        properties = { "spring.datasource.url=jdbc:h2:mem:ibpts-sharded", "ibpts.shards.local=east,west",
+                "ibpts.shards.secret=test-secret" })
+@AutoConfigureMockMvc
+@ActiveProfiles("shardedService")
+class IntraBankPaymentTransferSystemShardedServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    MockMvc                    mockMvc;
+
+    @Test
+    void transferAmount_betweenShards_movesAmountAndKeepsTotal() throws Exception {
+        BigDecimal toBalance = readBalance(111);
+        BigDecimal fromBalance = readBalance(222);
+        String jsonString = objectMapper
+                .writeValueAsString(AccountDetails.builder()
+                        .amount(BigDecimal.TEN)
+                        .type(CREDIT)
+                        .accountId(222)
+                        .build());
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/accounts/{accountId}", 111)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(jsonString))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        assertThat(readBalance(111)).isEqualByComparingTo(toBalance.add(BigDecimal.TEN));
+        assertThat(readBalance(222)).isEqualByComparingTo(fromBalance.subtract(BigDecimal.TEN));
+    }
+
+    @Test
+    void transferAmounts_betweenShards_whenInsufficientFunds_rejectsAndReleasesHold() throws Exception {
+        BigDecimal fromBalance = readBalance(222);
+        String jsonString = objectMapper
+                .writeValueAsString(List.of(
+                        TransferInstruction.builder().toAccountId(111).accountId(222).amount(fromBalance).type(CREDIT).build(),
+                        TransferInstruction.builder().toAccountId(111).accountId(222).amount(BigDecimal.ONE).type(CREDIT).build()));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .post("/accounts/transfers/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(jsonString))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn();
+        List<TransferResult> results = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+        assertThat(results).extracting(TransferResult::getStatus).containsExactly(TransferStatus.REJECTED, TransferStatus.COMPLETED);
+        assertThat(results.get(0).getMessage()).isEqualTo("Insufficient funds available");
+        assertThat(readBalance(222)).isEqualByComparingTo(fromBalance.subtract(BigDecimal.ONE));
+    }
+
+    @Test
+    void participantEndpoints_withoutShardSecret_areForbidden() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/shards/transfers/{transferId}/commit", "t1:to"))
+                .andExpect(MockMvcResultMatchers.status().isForbidden());
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/shards/transfers/{transferId}/commit", "t1:to")
+                .header(ShardSecretFilter.HEADER, "wrong-secret"))
+                .andExpect(MockMvcResultMatchers.status().isForbidden());
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/shards/transfers/{transferId}/commit", "t1:to")
+                .header(ShardSecretFilter.HEADER, "test-secret"))
+                .andExpect(MockMvcResultMatchers.status().isGone());
+    }
+
+    private BigDecimal readBalance(int accountId) throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/balance", accountId))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn();
+        return objectMapper.readValue(result.getResponse().getContentAsString(), AccountDetails.class).getBalance();
+    }
+
+}
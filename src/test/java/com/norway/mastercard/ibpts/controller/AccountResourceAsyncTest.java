@@ -0,0 +1,77 @@
+package com.norway.mastercard.ibpts.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import com.norway.mastercard.ibpts.exception.AccountNotFoundException;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.service.AccountService;
+import com.norway.mastercard.ibpts.service.internal.IdempotencyStore;
+
+/**
+ * The is test class for AccountResource with the async request execution enabled.
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = { AccountResource.class, RequestExecutor.class, AdmissionControl.class })
+@WebMvcTest
+@TestPropertySource(properties = "ibpts.async.enabled=true")
+class AccountResourceAsyncTest {
+
+    public static final int ACCOUNT_ID = 111;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    AccountService accountService;
+
+    @MockBean
+    IdempotencyStore idempotencyStore;
+
+    @Test
+    void getAccountBalance_runsOnRequestExecutor() throws Exception {
+        AtomicReference<String> serviceThread = new AtomicReference<>();
+        when(accountService.getAccountBalance(ACCOUNT_ID)).thenAnswer(invocation -> {
+            serviceThread.set(Thread.currentThread().getName());
+            return AccountDetails.builder().accountId(ACCOUNT_ID).balance(BigDecimal.TEN).currencyCode("NOK").build();
+        });
+        MvcResult asyncResult = mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/balance", ACCOUNT_ID)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(asyncResult))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.balance").value(10));
+        assertThat(serviceThread.get()).startsWith("account-request-");
+    }
+
+    @Test
+    void getAccountBalance_whenInvalidAccountId() throws Exception {
+        when(accountService.getAccountBalance(ACCOUNT_ID)).thenThrow(new AccountNotFoundException("Invalid Account ID " + ACCOUNT_ID));
+        MvcResult asyncResult = mockMvc.perform(MockMvcRequestBuilders
+                .get("/accounts/{accountId}/balance", ACCOUNT_ID))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(asyncResult))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+}
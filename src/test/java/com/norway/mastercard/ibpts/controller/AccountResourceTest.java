@@ -4,7 +4,10 @@ import static com.norway.mastercard.ibpts.model.TransactionType.DEBIT;
 import static java.math.BigDecimal.ONE;
 import static java.math.BigDecimal.TEN;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -12,6 +15,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,6 +24,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -29,8 +34,13 @@ import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.norway.mastercard.ibpts.config.WebConfig;
 import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.TransferInstruction;
+import com.norway.mastercard.ibpts.model.TransferResult;
+import com.norway.mastercard.ibpts.model.TransferStatus;
 import com.norway.mastercard.ibpts.service.AccountService;
+import com.norway.mastercard.ibpts.service.internal.IdempotencyStore;
 
 import lombok.val;
 
@@ -38,8 +48,9 @@ import lombok.val;
  * The is test class for AccountResource and uses mockito mocks for the service calls.
  */
 @ExtendWith(SpringExtension.class)
-@ContextConfiguration(classes = { AccountResource.class })
+@ContextConfiguration(classes = { AccountResource.class, RequestExecutor.class, AdmissionControl.class, WebConfig.class })
 @WebMvcTest
+@TestPropertySource(properties = { "ibpts.admission.min-limit=1", "ibpts.admission.max-limits={transfer:1}" })
 class AccountResourceTest {
 
     public static final int    ACCOUNT_ID      = 111;
@@ -51,6 +62,9 @@ class AccountResourceTest {
     @MockBean
     AccountService             accountService;
 
+    @MockBean
+    IdempotencyStore           idempotencyStore;
+
     @Test
     void getAccountBalanceTest() throws Exception {
         when(accountService.getAccountBalance(ACCOUNT_ID)).thenReturn(AccountDetails.builder()
@@ -105,6 +119,7 @@ class AccountResourceTest {
 
     @Test
     void transferAmount() throws Exception {
+        when(accountService.submitTransfer(eq(FROM_ACCOUNT_ID), any(AccountDetails.class))).thenReturn(CompletableFuture.completedFuture(null));
         ObjectMapper objectMapper = new ObjectMapper();
         String jsonString = objectMapper
                 .writeValueAsString(AccountDetails.builder()
@@ -118,4 +133,59 @@ class AccountResourceTest {
                 .content(jsonString))
                 .andExpect(MockMvcResultMatchers.status().isOk());
     }
+
+    @Test
+    void transferAmount_whenAtConcurrencyLimit_rejectsWithRetryAfter() throws Exception {
+        CompletableFuture<Void> transfer = new CompletableFuture<>();
+        when(accountService.submitTransfer(eq(FROM_ACCOUNT_ID), any(AccountDetails.class))).thenReturn(transfer);
+        String jsonString = new ObjectMapper()
+                .writeValueAsString(AccountDetails.builder()
+                        .amount(BigDecimal.TEN)
+                        .type(DEBIT)
+                        .accountId(ACCOUNT_ID)
+                        .build());
+        MvcResult asyncResult = mockMvc.perform(MockMvcRequestBuilders
+                .post("/accounts/{accountId}", FROM_ACCOUNT_ID)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(jsonString))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/accounts/{accountId}", FROM_ACCOUNT_ID)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(jsonString))
+                .andExpect(MockMvcResultMatchers.status().isTooManyRequests())
+                .andExpect(MockMvcResultMatchers.header().string("Retry-After", "1"));
+
+        transfer.complete(null);
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(asyncResult))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    @Test
+    void transferAmounts() throws Exception {
+        when(accountService.transferAmounts(anyList())).thenReturn(List.of(TransferResult.builder()
+                .index(0)
+                .toAccountId(FROM_ACCOUNT_ID)
+                .accountId(ACCOUNT_ID)
+                .status(TransferStatus.COMPLETED)
+                .build()));
+        ObjectMapper objectMapper = new ObjectMapper();
+        String jsonString = objectMapper
+                .writeValueAsString(List.of(TransferInstruction.builder()
+                        .toAccountId(FROM_ACCOUNT_ID)
+                        .accountId(ACCOUNT_ID)
+                        .amount(BigDecimal.TEN)
+                        .type(DEBIT)
+                        .build()));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .post("/accounts/transfers/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(jsonString))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn();
+        List<TransferResult> transferResults = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+        assertThat(transferResults).extracting("status").containsExactly(TransferStatus.COMPLETED);
+    }
 }
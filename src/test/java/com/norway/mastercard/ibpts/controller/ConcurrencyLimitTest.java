@@ -0,0 +1,92 @@
+package com.norway.mastercard.ibpts.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The is test class for ConcurrencyLimit and uses a fake clock.
+ */
+class ConcurrencyLimitTest {
+
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong       clock = new AtomicLong();
+    private final ConcurrencyLimit limit = new ConcurrencyLimit(10, 2, 100, 0, clock::get);
+
+    @Test
+    void tryAcquire_whenAtLimit_rejects() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(limit.tryAcquire()).isNotNegative();
+        }
+
+        assertThat(limit.tryAcquire()).isNegative();
+        assertThat(limit.getInFlight()).isEqualTo(10);
+        assertThat(limit.getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void release_whenLatencySteadyAndLimitUsed_growsLimit() {
+        for (int round = 0; round < 20; round++) {
+            runRound(limit.getLimit(), MILLISECOND);
+        }
+
+        assertThat(limit.getLimit()).isGreaterThan(20);
+    }
+
+    @Test
+    void release_whenLatencyRises_shrinksLimit() {
+        for (int round = 0; round < 10; round++) {
+            runRound(limit.getLimit(), MILLISECOND);
+        }
+        int steadyLimit = limit.getLimit();
+        for (int round = 0; round < 20; round++) {
+            runRound(limit.getLimit(), 10 * MILLISECOND);
+        }
+
+        assertThat(limit.getLimit()).isLessThan(steadyLimit * 2 / 3);
+    }
+
+    @Test
+    void release_whenLatencyStepPersists_keepsLimitReduced() {
+        for (int round = 0; round < 10; round++) {
+            runRound(limit.getLimit(), MILLISECOND);
+        }
+        int steadyLimit = limit.getLimit();
+        for (int round = 0; round < 10; round++) {
+            runRound(limit.getLimit(), 5 * MILLISECOND);
+        }
+        int reducedLimit = limit.getLimit();
+        for (int round = 0; round < ConcurrencyLimit.BASELINE_WINDOWS / 2; round++) {
+            runRound(limit.getLimit(), 5 * MILLISECOND);
+
+            assertThat(limit.getLimit()).isLessThanOrEqualTo(reducedLimit);
+        }
+
+        assertThat(reducedLimit).isLessThan(steadyLimit / 2);
+    }
+
+    @Test
+    void release_whenLimitMostlyUnused_keepsLimit() {
+        for (int round = 0; round < 20; round++) {
+            runRound(3, MILLISECOND);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(10);
+    }
+
+    private void runRound(int requests, long latencyNanos) {
+        long[] starts = new long[requests];
+        for (int i = 0; i < requests; i++) {
+            starts[i] = limit.tryAcquire();
+        }
+        clock.addAndGet(latencyNanos);
+        for (long start : starts) {
+            limit.release(start);
+        }
+    }
+
+}
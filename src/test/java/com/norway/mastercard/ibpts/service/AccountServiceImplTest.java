@@ -4,13 +4,19 @@ import static java.math.BigDecimal.ONE;
 import static java.math.BigDecimal.TEN;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.groups.Tuple.tuple;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.List;
@@ -20,16 +26,32 @@ import com.norway.mastercard.ibpts.dao.Account;
 import com.norway.mastercard.ibpts.dao.Transaction;
 import com.norway.mastercard.ibpts.model.AccountDetails;
 import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.model.TransferInstruction;
+import com.norway.mastercard.ibpts.model.TransferStatus;
 import com.norway.mastercard.ibpts.repo.AccountRepository;
+import com.norway.mastercard.ibpts.repo.TransactionRepository;
+import com.norway.mastercard.ibpts.service.internal.AccountMetrics;
 import com.norway.mastercard.ibpts.service.internal.AccountServiceImpl;
+import com.norway.mastercard.ibpts.service.internal.BalanceCache;
+import com.norway.mastercard.ibpts.service.internal.HotAccountDetector;
+import com.norway.mastercard.ibpts.service.internal.OptimisticTransferExecutor;
+import com.norway.mastercard.ibpts.service.internal.StatementAggregator;
+import com.norway.mastercard.ibpts.service.internal.StatementReader;
+import com.norway.mastercard.ibpts.service.internal.SubLedgers;
+import com.norway.mastercard.ibpts.service.internal.TransferParticipant;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.transaction.support.TransactionOperations;
 
 import com.norway.mastercard.ibpts.exception.AccountNotFoundException;
+import com.norway.mastercard.ibpts.exception.TransferConflictException;
 
 import lombok.val;
 
@@ -46,6 +68,35 @@ class AccountServiceImplTest {
     @Mock
     private AccountRepository accountRepository;
 
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private StatementReader statementReader;
+
+    @Spy
+    private OptimisticTransferExecutor transferExecutor = new OptimisticTransferExecutor(TransactionOperations.withoutTransaction(), 3, 1);
+
+    @Spy
+    private BalanceCache balanceCache = new BalanceCache(100, Duration.ofMinutes(1));
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private AccountMetrics accountMetrics = new AccountMetrics(meterRegistry);
+
+    @Mock
+    private StatementAggregator statementAggregator;
+
+    @Mock
+    private SubLedgers subLedgers;
+
+    @Mock
+    private HotAccountDetector hotAccountDetector;
+
+    @Spy
+    private TransferParticipant transferParticipant = new TransferParticipant(null, null, null, null, null, null, null);
+
     @InjectMocks
     private AccountServiceImpl accountService;
 
@@ -54,16 +105,64 @@ class AccountServiceImplTest {
         when(accountRepository.findById(ACCOUNT_ID))
                 .thenReturn(Optional.of(Account.builder()
                         .accountId(ACCOUNT_ID)
-                        .balance(TEN)
+                        .balanceMinor(1000L)
                         .currency(CURRENCY)
                         .build()));
         val accountBalance = accountService.getAccountBalance(ACCOUNT_ID);
         Assertions.assertThat(accountBalance).isNotNull();
         Assertions.assertThat(accountBalance.getAccountId()).isEqualTo(ACCOUNT_ID);
-        Assertions.assertThat(accountBalance.getBalance()).isEqualTo(TEN);
+        Assertions.assertThat(accountBalance.getBalance()).isEqualByComparingTo(TEN);
         Assertions.assertThat(accountBalance.getCurrencyCode()).isEqualTo(CURRENCY);
     }
 
+    @Test
+    void getAccountBalance_whenCached_doesNotReadRepository() {
+        when(accountRepository.findById(ACCOUNT_ID))
+                .thenReturn(Optional.of(Account.builder()
+                        .accountId(ACCOUNT_ID)
+                        .balanceMinor(1000L)
+                        .currency(CURRENCY)
+                        .build()));
+        accountService.getAccountBalance(ACCOUNT_ID);
+        val accountBalance = accountService.getAccountBalance(ACCOUNT_ID);
+        assertThat(accountBalance.getBalance()).isEqualByComparingTo(TEN);
+        verify(accountRepository, times(1)).findById(ACCOUNT_ID);
+        assertThat(balanceCache.stats().hitCount()).isEqualTo(1);
+        assertThat(balanceCache.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getAccountBalances_readsCacheMissesWithOneQuery() {
+        when(accountRepository.findById(ACCOUNT_ID))
+                .thenReturn(Optional.of(Account.builder().accountId(ACCOUNT_ID).balanceMinor(1000L).currency(CURRENCY).build()));
+        when(accountRepository.findAllByIdInChunks(any())).thenCallRealMethod();
+        when(accountRepository.findAllById(List.of(FROM_ACCOUNT_ID, 999)))
+                .thenReturn(List.of(Account.builder().accountId(FROM_ACCOUNT_ID).balanceMinor(100L).currency(CURRENCY).build()));
+        accountService.getAccountBalance(ACCOUNT_ID);
+        val balances = accountService.getAccountBalances(List.of(ACCOUNT_ID, FROM_ACCOUNT_ID, 999, ACCOUNT_ID));
+        assertThat(balances).extracting("accountId").containsExactly(ACCOUNT_ID, FROM_ACCOUNT_ID);
+        assertThat(balances.get(1).getBalance()).isEqualByComparingTo(ONE);
+        verify(accountRepository, times(1)).findAllById(any());
+    }
+
+    @Test
+    void getAccountBalance_afterTransfer_returnsCommittedBalance() {
+        val transactionOne = prepareTransactionsMock(TransactionType.DEBIT.name(), 1000L);
+        mockToAccountDetails(transactionOne, transactionOne);
+        mockFromAccountDetails(transactionOne);
+        assertThat(accountService.getAccountBalance(ACCOUNT_ID).getBalance()).isEqualByComparingTo(TEN);
+        when(accountRepository.addToBalance(anyInt(), anyLong(), any())).thenReturn(1);
+        accountService.transferAmount(ACCOUNT_ID, AccountDetails.builder()
+                .accountId(FROM_ACCOUNT_ID)
+                .amount(ONE)
+                .type(TransactionType.CREDIT)
+                .build());
+
+        assertThat(accountService.getAccountBalance(ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(11));
+        assertThat(accountService.getAccountBalance(FROM_ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(9));
+        verify(accountRepository, times(1)).findById(FROM_ACCOUNT_ID);
+    }
+
     @Test
     void getAccountBalance_whenInvalidAccountId_throwException() {
         when(accountRepository.findById(ACCOUNT_ID))
@@ -71,23 +170,30 @@ class AccountServiceImplTest {
         assertThatThrownBy(() -> accountService.getAccountBalance(ACCOUNT_ID))
                 .isInstanceOf(AccountNotFoundException.class)
                 .hasMessageContaining("Invalid Account ID " + ACCOUNT_ID);
+        assertThat(meterRegistry.get("ibpts.account.not.found").counter().count()).isEqualTo(1);
     }
 
     @Test
     void getMiniStatement_whenValidAccountId() {
-        val transactionOne = prepareTransactionsMock(TransactionType.DEBIT.name(), TEN);
-        val transactionTwo = prepareTransactionsMock(TransactionType.CREDIT.name(), ONE);
+        val account = Account.builder()
+                .accountId(ACCOUNT_ID)
+                .currency(CURRENCY)
+                .build();
         when(accountRepository.findById(ACCOUNT_ID))
-                .thenReturn(Optional.of(Account.builder()
+                .thenReturn(Optional.of(account));
+        when(statementReader.readMiniStatement(account))
+                .thenReturn(List.of(AccountDetails.builder()
                         .accountId(ACCOUNT_ID)
-                        .currency(CURRENCY)
-                        .transactions(List.of(transactionOne, transactionTwo))
+                        .amount(TEN)
+                        .currencyCode(CURRENCY)
+                        .type(TransactionType.DEBIT)
                         .build()));
         List<AccountDetails> accountDetails = accountService.getMiniStatement(ACCOUNT_ID);
         assertThat(accountDetails)
                 .flatExtracting("accountId", "amount", "currencyCode", "type")
-                .contains(ACCOUNT_ID, TEN, CURRENCY, TransactionType.DEBIT)
-                .contains(ACCOUNT_ID, ONE, CURRENCY, TransactionType.CREDIT);
+                .contains(ACCOUNT_ID, TEN, CURRENCY, TransactionType.DEBIT);
+        verify(statementReader).readMiniStatement(account);
+        assertThat(meterRegistry.get("ibpts.statement.mini.rows").summary().totalAmount()).isEqualTo(1);
 
     }
 
@@ -102,10 +208,11 @@ class AccountServiceImplTest {
 
     @Test
     void transferAmount_whenValidAccountId() {
-        val transactionOne = prepareTransactionsMock(TransactionType.DEBIT.name(), TEN);
-        val transactionTwo = prepareTransactionsMock(TransactionType.CREDIT.name(), ONE);
+        val transactionOne = prepareTransactionsMock(TransactionType.DEBIT.name(), 1000L);
+        val transactionTwo = prepareTransactionsMock(TransactionType.CREDIT.name(), 100L);
         mockToAccountDetails(transactionOne, transactionTwo);
         mockFromAccountDetails(transactionOne);
+        when(accountRepository.addToBalance(anyInt(), anyLong(), any())).thenReturn(1);
         accountService.transferAmount(ACCOUNT_ID, AccountDetails.builder()
                 .accountId(FROM_ACCOUNT_ID)
                 .currencyCode(CURRENCY)
@@ -115,8 +222,197 @@ class AccountServiceImplTest {
                 .build());
 
         verify(accountRepository, times(2)).findById(anyInt());
-        verify(accountRepository, times(2)).save(any(Account.class));
+        verify(accountRepository).addToBalance(ACCOUNT_ID, -100L, 0L);
+        verify(accountRepository).addToBalance(FROM_ACCOUNT_ID, 100L, 0L);
+        verify(accountRepository, times(0)).save(any(Account.class));
+        verify(transactionRepository).save(any(Transaction.class));
+        assertThat(meterRegistry.get("ibpts.transfer").tag("outcome", "completed").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("ibpts.repository.account.save").tag("operation", "save").timer().count()).isEqualTo(2);
+
+    }
+
+    @Test
+    void transferAmount_whenReceiverIsSplit_creditsSlotInsteadOfItsRow() {
+        val transactionOne = prepareTransactionsMock(TransactionType.DEBIT.name(), 1000L);
+        mockToAccountDetails(transactionOne, transactionOne);
+        mockFromAccountDetails(transactionOne);
+        when(subLedgers.isSplit(FROM_ACCOUNT_ID)).thenReturn(true);
+        when(subLedgers.credit(FROM_ACCOUNT_ID, 100L)).thenReturn(3);
+        when(accountRepository.addToBalance(anyInt(), anyLong(), any())).thenReturn(1);
+        accountService.transferAmount(ACCOUNT_ID, AccountDetails.builder()
+                .accountId(FROM_ACCOUNT_ID)
+                .amount(ONE)
+                .type(TransactionType.DEBIT)
+                .build());
+
+        verify(accountRepository).addToBalance(ACCOUNT_ID, -100L, 0L);
+        verify(accountRepository, times(0)).addToBalance(eq(FROM_ACCOUNT_ID), anyLong(), any());
+        val saved = ArgumentCaptor.forClass(Transaction.class);
+        verify(transactionRepository).save(saved.capture());
+        assertThat(saved.getValue().getBalanceMinor()).isEqualTo(900L);
+        assertThat(saved.getValue().getCounterpartBalanceMinor()).isNull();
+    }
+
+    @Test
+    void transferAmount_whenPayerIsSplit_validatesAgainstItsSlots() {
+        val transactionOne = prepareTransactionsMock(TransactionType.DEBIT.name(), 1000L);
+        mockToAccountDetails(transactionOne, transactionOne);
+        mockFromAccountDetails(transactionOne);
+        when(subLedgers.slotBalanceOf(ACCOUNT_ID)).thenReturn(5000L);
+        when(accountRepository.addToBalance(anyInt(), anyLong(), any())).thenReturn(1);
+        accountService.transferAmount(ACCOUNT_ID, AccountDetails.builder()
+                .accountId(FROM_ACCOUNT_ID)
+                .amount(BigDecimal.valueOf(20))
+                .type(TransactionType.DEBIT)
+                .build());
 
+        verify(accountRepository).addToBalance(ACCOUNT_ID, -2000L, 0L);
+        val saved = ArgumentCaptor.forClass(Transaction.class);
+        verify(transactionRepository).save(saved.capture());
+        assertThat(saved.getValue().getBalanceMinor()).isEqualTo(4000L);
+    }
+
+    @Test
+    void transferAmount_whenReceiverIsHot_splitsIt() {
+        val transactionOne = prepareTransactionsMock(TransactionType.DEBIT.name(), 1000L);
+        mockToAccountDetails(transactionOne, transactionOne);
+        mockFromAccountDetails(transactionOne);
+        when(hotAccountDetector.recordCredit(ACCOUNT_ID)).thenReturn(true);
+        when(accountRepository.addToBalance(anyInt(), anyLong(), any())).thenReturn(1);
+        accountService.transferAmount(ACCOUNT_ID, AccountDetails.builder()
+                .accountId(FROM_ACCOUNT_ID)
+                .amount(ONE)
+                .type(TransactionType.CREDIT)
+                .build());
+
+        verify(subLedgers).split(ACCOUNT_ID);
+    }
+
+    @Test
+    void transferAmount_whenRejected_doesNotCountTheCredit() {
+        val transactionOne = prepareTransactionsMock(TransactionType.DEBIT.name(), 1000L);
+        mockToAccountDetails(transactionOne, transactionOne);
+        mockFromAccountDetails(transactionOne);
+        AccountDetails fromAccountRequest = AccountDetails.builder()
+                .accountId(FROM_ACCOUNT_ID)
+                .amount(BigDecimal.valueOf(20))
+                .type(TransactionType.CREDIT)
+                .build();
+        assertThatThrownBy(() -> accountService.transferAmount(ACCOUNT_ID, fromAccountRequest))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        verifyNoInteractions(hotAccountDetector);
+        verify(subLedgers, times(0)).split(anyInt());
+    }
+
+    @Test
+    void getAccountBalance_whenSplit_sumsSlotsWithoutCache() {
+        when(subLedgers.isSplit(ACCOUNT_ID)).thenReturn(true);
+        when(accountRepository.findById(ACCOUNT_ID))
+                .thenReturn(Optional.of(Account.builder()
+                        .accountId(ACCOUNT_ID)
+                        .balanceMinor(-500L)
+                        .currency(CURRENCY)
+                        .build()));
+        when(subLedgers.totalBalanceOf(ACCOUNT_ID)).thenReturn(Optional.of(1500L));
+
+        assertThat(accountService.getAccountBalance(ACCOUNT_ID).getBalance()).isEqualByComparingTo("15.00");
+        assertThat(balanceCache.size()).isZero();
+    }
+
+    @Test
+    void transferAmount_whenConcurrentUpdate_retriesWholeTransfer() {
+        val transactionOne = prepareTransactionsMock(TransactionType.DEBIT.name(), 1000L);
+        mockToAccountDetails(transactionOne, transactionOne);
+        mockFromAccountDetails(transactionOne);
+        when(accountRepository.addToBalance(anyInt(), anyLong(), any()))
+                .thenReturn(0, 1);
+        long retries = transferExecutor.getRetryCount();
+        accountService.transferAmount(ACCOUNT_ID, AccountDetails.builder()
+                .accountId(FROM_ACCOUNT_ID)
+                .amount(ONE)
+                .type(TransactionType.DEBIT)
+                .build());
+
+        verify(accountRepository, times(4)).findById(anyInt());
+        assertThat(transferExecutor.getRetryCount()).isEqualTo(retries + 1);
+    }
+
+    @Test
+    void transferAmount_whenConflictPersists_throwException() {
+        val transactionOne = prepareTransactionsMock(TransactionType.DEBIT.name(), 1000L);
+        mockToAccountDetails(transactionOne, transactionOne);
+        mockFromAccountDetails(transactionOne);
+        when(accountRepository.addToBalance(anyInt(), anyLong(), any()))
+                .thenReturn(0);
+        AccountDetails fromAccountRequest = AccountDetails.builder()
+                .accountId(FROM_ACCOUNT_ID)
+                .amount(ONE)
+                .type(TransactionType.DEBIT)
+                .build();
+        assertThatThrownBy(() -> accountService.transferAmount(ACCOUNT_ID, fromAccountRequest))
+                .isInstanceOf(TransferConflictException.class);
+        verify(accountRepository, times(6)).findById(anyInt());
+        assertThat(transferExecutor.getExhaustedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void transferAmounts_netsBalancesAndRejectsPerItem() {
+        when(accountRepository.findAllById(anyIterable()))
+                .thenReturn(List.of(
+                        Account.builder().accountId(ACCOUNT_ID).currency(CURRENCY).balanceMinor(1000L).build(),
+                        Account.builder().accountId(FROM_ACCOUNT_ID).currency(CURRENCY).balanceMinor(100L).build()));
+        val results = accountService.transferAmounts(List.of(
+                batchTransfer(FROM_ACCOUNT_ID, ACCOUNT_ID, BigDecimal.valueOf(5)),
+                batchTransfer(ACCOUNT_ID, FROM_ACCOUNT_ID, BigDecimal.valueOf(3)),
+                batchTransfer(ACCOUNT_ID, FROM_ACCOUNT_ID, BigDecimal.valueOf(5)),
+                batchTransfer(ACCOUNT_ID, 333, ONE)));
+
+        assertThat(results)
+                .extracting("index", "status")
+                .containsExactly(
+                        tuple(0, TransferStatus.COMPLETED),
+                        tuple(1, TransferStatus.COMPLETED),
+                        tuple(2, TransferStatus.REJECTED),
+                        tuple(3, TransferStatus.REJECTED));
+        assertThat(results.get(2).getMessage()).isEqualTo("Insufficient funds available");
+        assertThat(results.get(3).getMessage()).isEqualTo("Invalid Account ID 333");
+        verify(transactionRepository).saveAll(anyIterable());
+        verify(accountRepository).saveAll(anyIterable());
+        verify(accountRepository, times(0)).findById(anyInt());
+        assertThat(meterRegistry.get("ibpts.transfer.insufficient.funds").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("ibpts.account.not.found").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void transferAmounts_whenReceiverIsSplit_creditsSlotInsteadOfItsRow() {
+        val toAccount = Account.builder().accountId(ACCOUNT_ID).currency(CURRENCY).balanceMinor(1000L).build();
+        val fromAccount = Account.builder().accountId(FROM_ACCOUNT_ID).currency(CURRENCY).balanceMinor(1000L).build();
+        when(accountRepository.findAllById(anyIterable())).thenReturn(List.of(toAccount, fromAccount));
+        when(subLedgers.isSplit(ACCOUNT_ID)).thenReturn(true);
+        when(subLedgers.credit(ACCOUNT_ID, 500L)).thenReturn(2);
+        val results = accountService.transferAmounts(List.of(batchTransfer(ACCOUNT_ID, FROM_ACCOUNT_ID, BigDecimal.valueOf(5))));
+
+        assertThat(results).extracting("status").containsExactly(TransferStatus.COMPLETED);
+        assertThat(toAccount.getBalanceMinor()).isEqualTo(1000L);
+        assertThat(fromAccount.getBalanceMinor()).isEqualTo(500L);
+        verify(subLedgers).credit(ACCOUNT_ID, 500L);
+        val savedAccounts = ArgumentCaptor.forClass(Iterable.class);
+        verify(accountRepository).saveAll(savedAccounts.capture());
+        assertThat(savedAccounts.getValue()).containsExactly(fromAccount);
+        val savedTransactions = ArgumentCaptor.forClass(Iterable.class);
+        verify(transactionRepository).saveAll(savedTransactions.capture());
+        assertThat(savedTransactions.getValue()).singleElement()
+                .satisfies(transaction -> assertThat(((Transaction) transaction).getBalanceMinor()).isNull());
+    }
+
+    private TransferInstruction batchTransfer(int toAccountId, int fromAccountId, BigDecimal amount) {
+        return TransferInstruction.builder()
+                .toAccountId(toAccountId)
+                .accountId(fromAccountId)
+                .amount(amount)
+                .type(TransactionType.CREDIT)
+                .build();
     }
 
     private void mockFromAccountDetails(Transaction transactionOne) {
@@ -124,15 +420,16 @@ class AccountServiceImplTest {
                 .thenReturn(Optional.of(Account.builder()
                         .accountId(FROM_ACCOUNT_ID)
                         .currency(CURRENCY)
-                        .balance(TEN)
+                        .balanceMinor(1000L)
+                        .version(0L)
                         .transactions(List.of(transactionOne))
                         .build()));
     }
 
     @Test
     void transferAmount_whenAmountIsGreaterThanBalance() {
-        val transactionOne = prepareTransactionsMock(TransactionType.DEBIT.name(), TEN);
-        val transactionTwo = prepareTransactionsMock(TransactionType.CREDIT.name(), ONE);
+        val transactionOne = prepareTransactionsMock(TransactionType.DEBIT.name(), 1000L);
+        val transactionTwo = prepareTransactionsMock(TransactionType.CREDIT.name(), 100L);
         mockToAccountDetails(transactionOne, transactionTwo);
         mockFromAccountDetails(transactionOne);
         AccountDetails fromAccountRequest = AccountDetails.builder()
@@ -146,6 +443,8 @@ class AccountServiceImplTest {
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessageContaining("Insufficient funds available");
         verify(accountRepository, times(2)).findById(anyInt());
+        assertThat(meterRegistry.get("ibpts.transfer").tag("outcome", "rejected").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("ibpts.transfer.insufficient.funds").counter().count()).isEqualTo(1);
 
     }
 
@@ -154,7 +453,8 @@ class AccountServiceImplTest {
                 .thenReturn(Optional.of(Account.builder()
                         .accountId(ACCOUNT_ID)
                         .currency(CURRENCY)
-                        .balance(TEN)
+                        .balanceMinor(1000L)
+                        .version(0L)
                         .transactions(List.of(transactionOne, transactionTwo))
                         .build()));
     }
@@ -173,7 +473,7 @@ class AccountServiceImplTest {
         when(accountRepository.findById(anyInt()))
                 .thenReturn(Optional.of(Account.builder()
                         .accountId(ACCOUNT_ID)
-                        .balance(TEN)
+                        .balanceMinor(1000L)
                         .currency(CURRENCY)
                         .build()), Optional.empty());
         assertThatThrownBy(() -> accountService.transferAmount(ACCOUNT_ID, AccountDetails.builder().accountId(FROM_ACCOUNT_ID).build()))
@@ -181,10 +481,10 @@ class AccountServiceImplTest {
                 .hasMessageContaining("Invalid Account ID " + FROM_ACCOUNT_ID);
     }
 
-    private Transaction prepareTransactionsMock(String type, BigDecimal amount) {
+    private Transaction prepareTransactionsMock(String type, long amount) {
         return Transaction.builder()
                 .type(type)
-                .amount(amount)
+                .amountMinor(amount)
                 .transactionDate(LocalDateTime.now(ZoneId.systemDefault()))
                 .build();
     }
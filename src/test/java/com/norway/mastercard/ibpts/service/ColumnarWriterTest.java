@@ -0,0 +1,103 @@
+package com.norway.mastercard.ibpts.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.StatementPage;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.service.internal.ColumnarReader;
+import com.norway.mastercard.ibpts.service.internal.ColumnarWriter;
+
+import lombok.val;
+
+/**
+ * The is test class for ColumnarWriter and ColumnarReader.
+ */
+class ColumnarWriterTest {
+
+    @Test
+    void writePage_readsBackTheSameRows() throws IOException {
+        List<AccountDetails> rows = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            rows.add(AccountDetails.builder()
+                    .accountId(111)
+                    .currencyCode(i % 100 == 0 ? "JPY" : "NOK")
+                    .amount(i % 100 == 0 ? BigDecimal.valueOf(i) : BigDecimal.valueOf(i * 7L, 2))
+                    .type(i % 3 == 0 ? TransactionType.CREDIT : TransactionType.DEBIT)
+                    .transactionDate(LocalDateTime.of(2021, 10, 12, 0, 0).minusMinutes(i).withNano(i * 1000))
+                    .build());
+        }
+        val out = new ByteArrayOutputStream();
+        ColumnarWriter.writePage(new StatementPage(rows, "cursor_1"), out);
+
+        val page = ColumnarReader.readPage(new ByteArrayInputStream(out.toByteArray()));
+        assertThat(page.getNextCursor()).isEqualTo("cursor_1");
+        assertThat(page.getTransactions()).usingRecursiveFieldByFieldElementComparator().isEqualTo(rows);
+    }
+
+    @Test
+    void writeList_isSmallerThanJson() throws IOException {
+        List<AccountDetails> rows = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            rows.add(AccountDetails.builder()
+                    .accountId(111)
+                    .currencyCode("NOK")
+                    .amount(BigDecimal.valueOf(10_000 + i, 2))
+                    .type(TransactionType.DEBIT)
+                    .transactionDate(LocalDateTime.of(2021, 10, 10, 0, 0).plusMinutes(i))
+                    .build());
+        }
+        val out = new ByteArrayOutputStream();
+        ColumnarWriter.writeList(rows.iterator(), out);
+        byte[] json = JsonMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build()
+                .writeValueAsBytes(rows);
+
+        assertThat(out.size()).isLessThan(json.length / 10);
+        assertThat(ColumnarReader.readList(new ByteArrayInputStream(out.toByteArray())))
+                .usingRecursiveFieldByFieldElementComparator().isEqualTo(rows);
+    }
+
+    @Test
+    void writeDetails_keepsMissingFieldsMissing() throws IOException {
+        val balance = AccountDetails.builder()
+                .accountId(222)
+                .currencyCode("NOK")
+                .balance(new BigDecimal("-12.30"))
+                .build();
+        val out = new ByteArrayOutputStream();
+        ColumnarWriter.writeDetails(balance, out);
+
+        val read = ColumnarReader.readDetails(new ByteArrayInputStream(out.toByteArray()));
+        assertThat(read).usingRecursiveComparison().isEqualTo(balance);
+        assertThat(read.getAmount()).isNull();
+        assertThat(read.getType()).isNull();
+    }
+
+    @Test
+    void readPage_whenMessageIsAList_throwException() throws IOException {
+        val out = new ByteArrayOutputStream();
+        ColumnarWriter.writeList(List.<AccountDetails> of().iterator(), out);
+
+        assertThatThrownBy(() -> ColumnarReader.readPage(new ByteArrayInputStream(out.toByteArray())))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Expected a message of kind 3");
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.norway.mastercard.ibpts.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.norway.mastercard.ibpts.service.internal.HotAccountDetector;
+
+/**
+ * The is test class for HotAccountDetector and uses a fake clock.
+ */
+class HotAccountDetectorTest {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    private final AtomicLong         clock    = new AtomicLong();
+    private final HotAccountDetector detector = new HotAccountDetector(true, 3, Duration.ofSeconds(1), 100, clock::get);
+
+    @Test
+    void recordCredit_whenRateReached_reportsHot() {
+        assertThat(detector.recordCredit(111)).isFalse();
+        assertThat(detector.recordCredit(111)).isFalse();
+        assertThat(detector.recordCredit(222)).isFalse();
+        assertThat(detector.recordCredit(111)).isTrue();
+    }
+
+    @Test
+    void recordCredit_staysHotForOneMoreWindow() {
+        detector.recordCredit(111);
+        detector.recordCredit(111);
+        detector.recordCredit(111);
+
+        clock.addAndGet(SECOND);
+        assertThat(detector.recordCredit(111)).isTrue();
+        clock.addAndGet(SECOND);
+        assertThat(detector.recordCredit(111)).isFalse();
+    }
+
+    @Test
+    void recordCredit_whenDisabled_neverReportsHot() {
+        HotAccountDetector disabled = new HotAccountDetector(false, 1, Duration.ofSeconds(1), 100, clock::get);
+
+        assertThat(disabled.recordCredit(111)).isFalse();
+        assertThat(disabled.recordCredit(111)).isFalse();
+    }
+
+}
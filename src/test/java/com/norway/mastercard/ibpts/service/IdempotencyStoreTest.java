@@ -0,0 +1,134 @@
+package com.norway.mastercard.ibpts.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.norway.mastercard.ibpts.dao.IdempotencyRecord;
+import com.norway.mastercard.ibpts.exception.AccountNotFoundException;
+import com.norway.mastercard.ibpts.exception.IdempotencyKeyMismatchException;
+import com.norway.mastercard.ibpts.exception.TransferConflictException;
+import com.norway.mastercard.ibpts.repo.IdempotencyRecordRepository;
+import com.norway.mastercard.ibpts.service.internal.IdempotencyStore;
+
+/**
+ * The is test class for IdempotencyStore and uses mockito mocks for the idempotency record repository.
+ */
+@ExtendWith(MockitoExtension.class)
+class IdempotencyStoreTest {
+
+    public static final String KEY         = "key-1";
+    public static final String FINGERPRINT = "111|222|CREDIT|10|null";
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void execute_whenRepeated_runsRequestOnce() {
+        IdempotencyStore store = inMemoryStore();
+        store.execute(KEY, FINGERPRINT, executions::incrementAndGet);
+        store.execute(KEY, FINGERPRINT, executions::incrementAndGet);
+
+        assertThat(executions).hasValue(1);
+        verify(idempotencyRecordRepository, never()).findById(any());
+    }
+
+    @Test
+    void execute_whenRejected_replaysRejection() {
+        IdempotencyStore store = inMemoryStore();
+        Runnable request = () -> {
+            executions.incrementAndGet();
+            throw new AccountNotFoundException("Invalid Account ID 999");
+        };
+        assertThatThrownBy(() -> store.execute(KEY, FINGERPRINT, request))
+                .isInstanceOf(AccountNotFoundException.class);
+        assertThatThrownBy(() -> store.execute(KEY, FINGERPRINT, request))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("Invalid Account ID 999")
+                .extracting("status").isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void execute_whenValidationFails_replaysBadRequest() {
+        IdempotencyStore store = inMemoryStore();
+        Runnable request = () -> {
+            executions.incrementAndGet();
+            throw new IllegalArgumentException("Insufficient funds available");
+        };
+        assertThatThrownBy(() -> store.execute(KEY, FINGERPRINT, request))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> store.execute(KEY, FINGERPRINT, request))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("Insufficient funds available")
+                .extracting("status").isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void execute_whenRequestThrowsError_releasesKey() {
+        IdempotencyStore store = inMemoryStore();
+        assertThatThrownBy(() -> store.execute(KEY, FINGERPRINT, () -> {
+            throw new AssertionError("failed");
+        })).isInstanceOf(AssertionError.class);
+        store.execute(KEY, FINGERPRINT, executions::incrementAndGet);
+
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void execute_whenConflict_releasesKey() {
+        IdempotencyStore store = inMemoryStore();
+        assertThatThrownBy(() -> store.execute(KEY, FINGERPRINT, () -> {
+            throw new TransferConflictException("conflict", null);
+        })).isInstanceOf(TransferConflictException.class);
+        store.execute(KEY, FINGERPRINT, executions::incrementAndGet);
+
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void execute_whenPayloadDiffers_throwException() {
+        IdempotencyStore store = inMemoryStore();
+        store.execute(KEY, FINGERPRINT, executions::incrementAndGet);
+
+        assertThatThrownBy(() -> store.execute(KEY, "111|222|CREDIT|20|null", executions::incrementAndGet))
+                .isInstanceOf(IdempotencyKeyMismatchException.class);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void execute_whenPersistedByEarlierRun_replaysRecord() {
+        IdempotencyStore store = new IdempotencyStore(idempotencyRecordRepository, true, 100, Duration.ofHours(1));
+        when(idempotencyRecordRepository.findById(KEY)).thenReturn(Optional.of(IdempotencyRecord.builder()
+                .idempotencyKey(KEY)
+                .fingerprint(FINGERPRINT)
+                .status(HttpStatus.OK.value())
+                .build()));
+        store.execute(KEY, FINGERPRINT, executions::incrementAndGet);
+
+        assertThat(executions).hasValue(0);
+        verify(idempotencyRecordRepository, never()).save(any());
+    }
+
+    private IdempotencyStore inMemoryStore() {
+        return new IdempotencyStore(idempotencyRecordRepository, false, 100, Duration.ofHours(1));
+    }
+
+}
@@ -0,0 +1,400 @@
+package com.norway.mastercard.ibpts.service;
+
+import static java.math.BigDecimal.ONE;
+import static java.math.BigDecimal.TEN;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.groups.Tuple.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.norway.mastercard.ibpts.dao.Account;
+import com.norway.mastercard.ibpts.dao.LedgerCheckpoint;
+import com.norway.mastercard.ibpts.dao.Transaction;
+import com.norway.mastercard.ibpts.exception.AccountNotFoundException;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.repo.AccountRepository;
+import com.norway.mastercard.ibpts.repo.LedgerCheckpointRepository;
+import com.norway.mastercard.ibpts.repo.TransactionRepository;
+import com.norway.mastercard.ibpts.service.internal.AccountLedger;
+import com.norway.mastercard.ibpts.service.internal.BalanceSnapshotter;
+import com.norway.mastercard.ibpts.service.internal.LedgerAccountService;
+import com.norway.mastercard.ibpts.service.internal.LedgerWriteBehind;
+import com.norway.mastercard.ibpts.service.internal.StatementAggregator;
+import com.norway.mastercard.ibpts.service.internal.StatementExporter;
+import com.norway.mastercard.ibpts.service.internal.StatementReader;
+import com.norway.mastercard.ibpts.service.internal.TransferJournal;
+import com.norway.mastercard.ibpts.service.internal.TransferSequencer;
+
+/**
+ * The is test class for LedgerAccountService and uses mockito mocks for the account repository.
+ */
+@ExtendWith(MockitoExtension.class)
+class LedgerAccountServiceTest {
+
+    public static final int    ACCOUNT_ID      = 111;
+    public static final String CURRENCY        = "NOK";
+    public static final int    FROM_ACCOUNT_ID = 222;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private LedgerCheckpointRepository ledgerCheckpointRepository;
+
+    @Mock
+    private StatementExporter statementExporter;
+
+    @Mock
+    private StatementAggregator statementAggregator;
+
+    private LedgerWriteBehind    ledgerWriteBehind;
+    private BalanceSnapshotter   balanceSnapshotter;
+    private TransferSequencer    transferSequencer;
+    private LedgerAccountService accountService;
+
+    @BeforeEach
+    void setUp() {
+        accountService = newAccountService(new TransferJournal(false, "journal", 4096), "journal", false);
+    }
+
+    @Test
+    void getAccountBalance_whenInvalidAccountId_throwException() {
+        when(accountRepository.findById(ACCOUNT_ID)).thenReturn(Optional.empty());
+        assertThatThrownBy(() -> accountService.getAccountBalance(ACCOUNT_ID))
+                .isInstanceOf(AccountNotFoundException.class)
+                .hasMessageContaining("Invalid Account ID " + ACCOUNT_ID);
+    }
+
+    @Test
+    void transferAmount_updatesLedgerWithoutRepositoryWrites() {
+        mockAccount(ACCOUNT_ID, TEN);
+        mockAccount(FROM_ACCOUNT_ID, TEN);
+        accountService.transferAmount(ACCOUNT_ID, transfer(ONE, TransactionType.CREDIT));
+
+        assertThat(accountService.getAccountBalance(ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(11));
+        assertThat(accountService.getAccountBalance(FROM_ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(9));
+        verify(accountRepository, never()).save(any(Account.class));
+        verify(accountRepository, never()).setBalance(anyInt(), anyLong());
+    }
+
+    @Test
+    void transferAmount_whenAmountIsGreaterThanBalance() {
+        mockAccount(ACCOUNT_ID, TEN);
+        mockAccount(FROM_ACCOUNT_ID, TEN);
+        assertThatThrownBy(() -> accountService.transferAmount(ACCOUNT_ID, transfer(BigDecimal.valueOf(20), TransactionType.DEBIT)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Insufficient funds available");
+        assertThat(accountService.getAccountBalance(ACCOUNT_ID).getBalance()).isEqualByComparingTo(TEN);
+    }
+
+    @Test
+    void flush_persistsBalancesAndTransactions() {
+        mockAccount(ACCOUNT_ID, TEN);
+        mockAccount(FROM_ACCOUNT_ID, TEN);
+        mockPersist();
+        accountService.transferAmount(ACCOUNT_ID, transfer(ONE, TransactionType.CREDIT));
+        accountService.transferAmount(ACCOUNT_ID, transfer(ONE, TransactionType.CREDIT));
+        ledgerWriteBehind.flush();
+
+        verify(accountRepository).setBalance(ACCOUNT_ID, 1200L);
+        verify(accountRepository).setBalance(FROM_ACCOUNT_ID, 800L);
+        verify(accountRepository, never()).save(any(Account.class));
+        assertThat(savedTransactions(1).get(0))
+                .extracting(Transaction::getAccountId, Transaction::getAmountMinor, Transaction::getBalanceMinor)
+                .containsExactly(tuple(FROM_ACCOUNT_ID, 100L, 1100L), tuple(FROM_ACCOUNT_ID, 100L, 1200L));
+    }
+
+    @Test
+    void transferAmount_concurrentTransfersKeepTotalBalance() throws Exception {
+        mockAccount(ACCOUNT_ID, BigDecimal.valueOf(100_000));
+        mockAccount(FROM_ACCOUNT_ID, BigDecimal.valueOf(100_000));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            int toAccountId = i % 2 == 0 ? ACCOUNT_ID : FROM_ACCOUNT_ID;
+            int fromAccountId = i % 2 == 0 ? FROM_ACCOUNT_ID : ACCOUNT_ID;
+            futures.add(executor.submit(() -> accountService.transferAmount(toAccountId, AccountDetails.builder()
+                    .accountId(fromAccountId)
+                    .amount(ONE)
+                    .type(TransactionType.CREDIT)
+                    .build())));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(accountService.getAccountBalance(ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(100_000));
+        assertThat(accountService.getAccountBalance(FROM_ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(100_000));
+    }
+
+    @Test
+    void submitTransfer_whenSequenced_appliesTransfersInOrder(@TempDir Path journalDir) throws Exception {
+        mockAccount(ACCOUNT_ID, TEN);
+        mockAccount(FROM_ACCOUNT_ID, TEN);
+        accountService = newAccountService(journal(journalDir), journalDir.toString(), true);
+        accountService.recover();
+        List<CompletableFuture<Void>> submitted = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            submitted.add(accountService.submitTransfer(ACCOUNT_ID, transfer(ONE, TransactionType.CREDIT)));
+        }
+        for (int i = 0; i < 9; i++) {
+            submitted.get(i).get(5, TimeUnit.SECONDS);
+        }
+        for (int i = 9; i < 15; i++) {
+            assertThatThrownBy(submitted.get(i)::join).hasCauseInstanceOf(IllegalArgumentException.class);
+        }
+        transferSequencer.stop();
+
+        assertThat(accountService.getAccountBalance(ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(19));
+        assertThat(accountService.getAccountBalance(FROM_ACCOUNT_ID).getBalance()).isEqualByComparingTo(ONE);
+    }
+
+    @Test
+    void getAccountBalance_whenLedgerGrows_keepsBalances() {
+        when(accountRepository.findById(anyInt())).thenAnswer(invocation -> Optional.of(Account.builder()
+                .accountId(invocation.getArgument(0))
+                .currency(CURRENCY)
+                .balanceMinor(invocation.<Integer>getArgument(0) * 100L)
+                .build()));
+        for (int accountId = 1; accountId <= 1_000; accountId++) {
+            accountService.getAccountBalance(accountId);
+        }
+        accountService.transferAmount(1, AccountDetails.builder().accountId(999).amount(ONE).type(TransactionType.CREDIT).build());
+
+        assertThat(accountService.getAccountBalance(1).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(2));
+        assertThat(accountService.getAccountBalance(999).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(998));
+        assertThat(accountService.getAccountBalance(500).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(500));
+        verify(accountRepository, times(1_000)).findById(anyInt());
+    }
+
+    @Test
+    void recover_replaysJournaledTransfers(@TempDir Path journalDir) {
+        mockAccount(ACCOUNT_ID, TEN);
+        mockAccount(FROM_ACCOUNT_ID, TEN);
+        TransferJournal transferJournal = journal(journalDir);
+        accountService = newAccountService(transferJournal, journalDir.toString(), false);
+        accountService.recover();
+        accountService.transferAmount(ACCOUNT_ID, transfer(ONE, TransactionType.CREDIT));
+        accountService.transferAmount(ACCOUNT_ID, transfer(BigDecimal.valueOf(3), TransactionType.DEBIT));
+        transferJournal.close();
+
+        accountService = newAccountService(journal(journalDir), journalDir.toString(), false);
+        accountService.recover();
+
+        assertThat(accountService.getAccountBalance(ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(8));
+        assertThat(accountService.getAccountBalance(FROM_ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(12));
+    }
+
+    @Test
+    void recover_loadsSnapshotAndReplaysNewerTransfers(@TempDir Path journalDir) {
+        mockAccount(ACCOUNT_ID, BigDecimal.valueOf(1_000));
+        mockAccount(FROM_ACCOUNT_ID, BigDecimal.valueOf(1_000));
+        mockPersist();
+        TransferJournal transferJournal = journal(journalDir);
+        accountService = newAccountService(transferJournal, journalDir.toString(), false);
+        accountService.recover();
+        for (int i = 0; i < 200; i++) {
+            accountService.transferAmount(ACCOUNT_ID, transfer(ONE, TransactionType.CREDIT));
+        }
+        ledgerWriteBehind.flush();
+        balanceSnapshotter.snapshot();
+        accountService.transferAmount(ACCOUNT_ID, transfer(BigDecimal.valueOf(3), TransactionType.DEBIT));
+        transferJournal.close();
+
+        accountService = newAccountService(journal(journalDir), journalDir.toString(), false);
+        accountService.recover();
+
+        assertThat(journalDir.toFile().list()).containsExactlyInAnyOrder(String.format("snapshot-%020d.bin", 200),
+                String.format("journal-%020d.log", 199), String.format("journal-%020d.log", 202));
+        assertThat(accountService.getAccountBalance(ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(1_197));
+        assertThat(accountService.getAccountBalance(FROM_ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(803));
+    }
+
+    @Test
+    void snapshot_keepsTheJournalOfTransfersNotPersisted(@TempDir Path journalDir) {
+        mockAccount(ACCOUNT_ID, BigDecimal.valueOf(1_000));
+        mockAccount(FROM_ACCOUNT_ID, BigDecimal.valueOf(1_000));
+        mockPersist();
+        TransferJournal transferJournal = journal(journalDir);
+        accountService = newAccountService(transferJournal, journalDir.toString(), false);
+        accountService.recover();
+        for (int i = 0; i < 200; i++) {
+            accountService.transferAmount(ACCOUNT_ID, transfer(ONE, TransactionType.CREDIT));
+        }
+        balanceSnapshotter.snapshot();
+
+        assertThat(journalDir.toFile().list()).contains(String.format("journal-%020d.log", 1));
+
+        ledgerWriteBehind.flush();
+        accountService.transferAmount(ACCOUNT_ID, transfer(ONE, TransactionType.CREDIT));
+        balanceSnapshotter.snapshot();
+
+        assertThat(journalDir.toFile().list()).doesNotContain(String.format("journal-%020d.log", 1));
+        transferJournal.close();
+    }
+
+    @Test
+    void recover_whenDatabaseHoldsTransfers_replaysOnlyTheNewerOnes(@TempDir Path journalDir) {
+        mockAccount(ACCOUNT_ID, TEN);
+        mockAccount(FROM_ACCOUNT_ID, TEN);
+        mockPersist();
+        TransferJournal transferJournal = journal(journalDir);
+        accountService = newAccountService(transferJournal, journalDir.toString(), false);
+        accountService.recover();
+        accountService.transferAmount(ACCOUNT_ID, transfer(ONE, TransactionType.CREDIT));
+        accountService.transferAmount(ACCOUNT_ID, transfer(ONE, TransactionType.CREDIT));
+        ledgerWriteBehind.flush();
+        accountService.transferAmount(ACCOUNT_ID, transfer(BigDecimal.valueOf(3), TransactionType.DEBIT));
+        balanceSnapshotter.snapshot();
+        transferJournal.close();
+
+        mockAccount(ACCOUNT_ID, BigDecimal.valueOf(12));
+        mockAccount(FROM_ACCOUNT_ID, BigDecimal.valueOf(8));
+        when(ledgerCheckpointRepository.findById(LedgerCheckpoint.LEDGER)).thenReturn(Optional.of(new LedgerCheckpoint(LedgerCheckpoint.LEDGER, 2L)));
+        accountService = newAccountService(journal(journalDir), journalDir.toString(), false);
+        accountService.recover();
+
+        assertThat(accountService.getAccountBalance(ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(9));
+        assertThat(accountService.getAccountBalance(FROM_ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(11));
+        ledgerWriteBehind.flush();
+        assertThat(savedTransactions(2).get(1))
+                .extracting(Transaction::getJournalSequence)
+                .containsExactly(3L);
+    }
+
+    @Test
+    void getMiniStatement_persistsOnlyTheTransactionsOfTheAccount() {
+        mockAccount(ACCOUNT_ID, TEN);
+        mockAccount(FROM_ACCOUNT_ID, TEN);
+        mockAccount(333, TEN);
+        mockPersist();
+        accountService.transferAmount(ACCOUNT_ID, transfer(ONE, TransactionType.CREDIT));
+        accountService.transferAmount(333, transfer(ONE, TransactionType.CREDIT));
+        accountService.getMiniStatement(ACCOUNT_ID);
+
+        verify(accountRepository, never()).setBalance(anyInt(), anyLong());
+        assertThat(savedTransactions(1).get(0))
+                .extracting(Transaction::getAccountId, Transaction::getBalanceMinor)
+                .containsExactly(tuple(FROM_ACCOUNT_ID, 1100L));
+
+        accountService.getMiniStatement(FROM_ACCOUNT_ID);
+        ledgerWriteBehind.flush();
+
+        verify(accountRepository).setBalance(FROM_ACCOUNT_ID, 800L);
+        assertThat(savedTransactions(2))
+                .extracting(List::size)
+                .containsExactly(1, 1);
+    }
+
+    @Test
+    void recover_whenAccountFlushStoredTransaction_replaysBalanceOnly(@TempDir Path journalDir) {
+        mockAccount(ACCOUNT_ID, TEN);
+        mockAccount(FROM_ACCOUNT_ID, TEN);
+        mockPersist();
+        TransferJournal transferJournal = journal(journalDir);
+        accountService = newAccountService(transferJournal, journalDir.toString(), false);
+        accountService.recover();
+        accountService.transferAmount(ACCOUNT_ID, transfer(ONE, TransactionType.CREDIT));
+        ledgerWriteBehind.flush();
+        accountService.transferAmount(ACCOUNT_ID, transfer(BigDecimal.valueOf(3), TransactionType.DEBIT));
+        accountService.getMiniStatement(ACCOUNT_ID);
+        transferJournal.close();
+
+        mockAccount(ACCOUNT_ID, BigDecimal.valueOf(11));
+        mockAccount(FROM_ACCOUNT_ID, BigDecimal.valueOf(9));
+        when(ledgerCheckpointRepository.findById(LedgerCheckpoint.LEDGER)).thenReturn(Optional.of(new LedgerCheckpoint(LedgerCheckpoint.LEDGER, 1L)));
+        when(transactionRepository.findJournalSequencesAfter(1L)).thenReturn(List.of(2L));
+        accountService = newAccountService(journal(journalDir), journalDir.toString(), false);
+        accountService.recover();
+
+        assertThat(accountService.getAccountBalance(ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(8));
+        assertThat(accountService.getAccountBalance(FROM_ACCOUNT_ID).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(12));
+        ledgerWriteBehind.flush();
+        verify(accountRepository).setBalance(ACCOUNT_ID, 800L);
+        savedTransactions(2);
+    }
+
+    private LedgerAccountService newAccountService(TransferJournal transferJournal, String journalDir, boolean sequenced) {
+        AccountLedger accountLedger = new AccountLedger(accountRepository, 16, 16);
+        TransactionOperations transactionOperations = TransactionOperations.withoutTransaction();
+        ledgerWriteBehind = new LedgerWriteBehind(accountLedger, accountRepository, transactionRepository, ledgerCheckpointRepository,
+                transferJournal, transactionOperations, statementAggregator);
+        balanceSnapshotter = new BalanceSnapshotter(accountLedger, transferJournal, ledgerWriteBehind, journalDir);
+        StatementReader statementReader = new StatementReader(transactionRepository, 10, 500);
+        transferSequencer = new TransferSequencer(transferJournal, sequenced, 64, 50);
+        return new LedgerAccountService(accountLedger, ledgerWriteBehind, accountRepository, statementReader,
+                statementExporter, transferJournal, balanceSnapshotter, transferSequencer, statementAggregator);
+    }
+
+    private void mockPersist() {
+        when(accountRepository.setBalance(anyInt(), anyLong())).thenReturn(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<Transaction>> savedTransactions(int flushes) {
+        ArgumentCaptor<Iterable<Transaction>> saved = ArgumentCaptor.forClass(Iterable.class);
+        verify(transactionRepository, times(flushes)).saveAll(saved.capture());
+        List<List<Transaction>> transactions = new ArrayList<>();
+        saved.getAllValues().forEach(batch -> {
+            List<Transaction> list = new ArrayList<>();
+            batch.forEach(list::add);
+            transactions.add(list);
+        });
+        return transactions;
+    }
+
+    private static TransferJournal journal(Path journalDir) {
+        return new TransferJournal(true, journalDir.toString(), 4096);
+    }
+
+    private void mockAccount(int accountId, BigDecimal balance) {
+        when(accountRepository.findById(accountId))
+                .thenReturn(Optional.of(Account.builder()
+                        .accountId(accountId)
+                        .currency(CURRENCY)
+                        .balanceMinor(balance.movePointRight(2).longValueExact())
+                        .transactions(new ArrayList<>())
+                        .build()));
+    }
+
+    private AccountDetails transfer(BigDecimal amount, TransactionType type) {
+        return AccountDetails.builder()
+                .accountId(FROM_ACCOUNT_ID)
+                .currencyCode(CURRENCY)
+                .amount(amount)
+                .type(type)
+                .build();
+    }
+
+}
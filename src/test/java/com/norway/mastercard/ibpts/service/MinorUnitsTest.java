@@ -0,0 +1,53 @@
+package com.norway.mastercard.ibpts.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+import com.norway.mastercard.ibpts.service.internal.MinorUnits;
+
+/**
+ * The is test class for MinorUnits.
+ */
+class MinorUnitsTest {
+
+    @Test
+    void toMinor_convertsUsingCurrencyScale() {
+        assertThat(MinorUnits.toMinor(new BigDecimal("12.5"), MinorUnits.scaleOf("NOK"))).isEqualTo(1250L);
+        assertThat(MinorUnits.toMinor(new BigDecimal("12"), MinorUnits.scaleOf("JPY"))).isEqualTo(12L);
+        assertThat(MinorUnits.toDecimal(1250L, MinorUnits.scaleOf("NOK"))).isEqualByComparingTo("12.50");
+    }
+
+    @Test
+    void toMinor_whenAmountHasTooManyDecimals_throwException() {
+        assertThatThrownBy(() -> MinorUnits.toMinor(new BigDecimal("0.001"), 2))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Amount 0.001 is not a valid amount");
+    }
+
+    @Test
+    void toMinor_whenAmountDoesNotFitLong_throwException() {
+        assertThatThrownBy(() -> MinorUnits.toMinor(BigDecimal.valueOf(Long.MAX_VALUE), 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void add_whenBalanceOverflows_throwException() {
+        assertThatThrownBy(() -> MinorUnits.add(Long.MAX_VALUE, 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Balance out of range");
+        assertThatThrownBy(() -> MinorUnits.subtract(Long.MIN_VALUE, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void scaleOf_whenCurrencyIsUnknown_throwException() {
+        assertThatThrownBy(() -> MinorUnits.scaleOf("XYZ"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown currency XYZ");
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.norway.mastercard.ibpts.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.norway.mastercard.ibpts.service.internal.ShardRing;
+
+import lombok.val;
+
+/**
+ * The is test class for ShardRing.
+ */
+class ShardRingTest {
+
+    private static final int ACCOUNTS = 100_000;
+
+    @Test
+    void shardOf_spreadsAccountsOverShards() {
+        val shardRing = new ShardRing(List.of("shard-a", "shard-b", "shard-c"), 128);
+        Map<String, Integer> accountsPerShard = new HashMap<>();
+        for (int accountId = 0; accountId < ACCOUNTS; accountId++) {
+            accountsPerShard.merge(shardRing.shardOf(accountId), 1, Integer::sum);
+        }
+        assertThat(accountsPerShard).hasSize(3);
+        assertThat(accountsPerShard.values()).allSatisfy(accounts -> assertThat(accounts).isBetween(ACCOUNTS / 5, ACCOUNTS / 2));
+    }
+
+    @Test
+    void shardOf_whenShardAdded_movesAccountsOnlyToNewShard() {
+        val before = new ShardRing(List.of("shard-a", "shard-b"), 128);
+        val after = new ShardRing(List.of("shard-a", "shard-b", "shard-c"), 128);
+        for (int accountId = 0; accountId < ACCOUNTS; accountId++) {
+            val shardId = after.shardOf(accountId);
+            assertThat(shardId).isIn(before.shardOf(accountId), "shard-c");
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.norway.mastercard.ibpts.service;
+
+import static java.math.BigDecimal.TEN;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.norway.mastercard.ibpts.exception.ServiceBusyException;
+import com.norway.mastercard.ibpts.exception.TransferIncompleteException;
+import com.norway.mastercard.ibpts.exception.TransferNotPreparedException;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.model.TransferInstruction;
+import com.norway.mastercard.ibpts.model.TransferResult;
+import com.norway.mastercard.ibpts.model.TransferStatus;
+import com.norway.mastercard.ibpts.service.internal.AccountServiceImpl;
+import com.norway.mastercard.ibpts.service.internal.ShardedAccountService;
+import com.norway.mastercard.ibpts.service.internal.TransferParticipant;
+
+/**
+ * The is test class for the transfers between shards of ShardedAccountService, the accounts 111 and 222 are placed on
+ * different in-process shards.
+ */
+@ExtendWith(MockitoExtension.class)
+class ShardedAccountServiceTest {
+
+    public static final int TO_ACCOUNT_ID   = 111;
+    public static final int FROM_ACCOUNT_ID = 222;
+
+    @Mock
+    private AccountServiceImpl accountServiceImpl;
+
+    @Mock
+    private TransferParticipant transferParticipant;
+
+    private ShardedAccountService accountService;
+
+    @BeforeEach
+    void setUp() {
+        accountService = new ShardedAccountService(accountServiceImpl, transferParticipant, new RestTemplateBuilder(), new ObjectMapper(),
+                new String[] { "east", "west" }, Map.of(), 128, 1000, 5000, "", 100);
+        when(accountServiceImpl.getAccountBalance(any(Integer.class))).thenAnswer(invocation -> AccountDetails.builder()
+                .accountId(invocation.getArgument(0))
+                .currencyCode("NOK")
+                .build());
+    }
+
+    @Test
+    void transferAmount_betweenShards_preparesAndCommitsBothLegs() {
+        when(transferParticipant.commit(endsWith(":from"), eq(null))).thenReturn(4_000L);
+
+        accountService.transferAmount(TO_ACCOUNT_ID, transfer());
+
+        verify(transferParticipant, times(2)).prepare(any());
+        verify(transferParticipant).commit(endsWith(":to"), eq(4_000L));
+        verify(transferParticipant, never()).abort(any());
+    }
+
+    @Test
+    void transferAmount_whenToLegCommitFails_throwsIncompleteAndRetriesCommit() {
+        when(transferParticipant.commit(endsWith(":from"), eq(null))).thenReturn(4_000L);
+        when(transferParticipant.commit(endsWith(":to"), eq(4_000L))).thenThrow(new IllegalStateException("database down"));
+
+        assertThatThrownBy(() -> accountService.transferAmount(TO_ACCOUNT_ID, transfer()))
+                .isInstanceOf(TransferIncompleteException.class)
+                .satisfies(e -> assertThat(((TransferIncompleteException) e).getTransferId()).isNotBlank());
+        verify(transferParticipant, never()).abort(any());
+
+        doReturn(6_000L).when(transferParticipant).commit(endsWith(":to"), eq(4_000L));
+        accountService.retryPendingCommits();
+        accountService.retryPendingCommits();
+
+        verify(transferParticipant, times(4)).commit(endsWith(":to"), eq(4_000L));
+    }
+
+    @Test
+    void transferAmount_whenFromLegIsLost_abortsAndThrowsServiceBusy() {
+        when(transferParticipant.commit(endsWith(":from"), eq(null))).thenThrow(new TransferNotPreparedException("lost"));
+
+        assertThatThrownBy(() -> accountService.transferAmount(TO_ACCOUNT_ID, transfer()))
+                .isInstanceOf(ServiceBusyException.class);
+        verify(transferParticipant).abort(endsWith(":to"));
+        verify(transferParticipant, never()).commit(endsWith(":to"), any());
+    }
+
+    @Test
+    void transferAmounts_whenTransfersFailOrStayIncomplete_reportsThemAndGoesOn() {
+        IllegalStateException databaseDown = new IllegalStateException("database down");
+        when(transferParticipant.commit(endsWith(":from"), eq(null)))
+                .thenReturn(4_000L)
+                .thenThrow(new TransferNotPreparedException("lost"))
+                .thenReturn(3_000L);
+        when(transferParticipant.commit(endsWith(":to"), any()))
+                .thenThrow(databaseDown, databaseDown, databaseDown)
+                .thenReturn(6_000L);
+        TransferInstruction instruction = TransferInstruction.builder()
+                .toAccountId(TO_ACCOUNT_ID)
+                .accountId(FROM_ACCOUNT_ID)
+                .amount(TEN)
+                .type(TransactionType.CREDIT)
+                .build();
+
+        List<TransferResult> results = accountService.transferAmounts(List.of(instruction, instruction, instruction));
+
+        assertThat(results).extracting(TransferResult::getStatus)
+                .containsExactly(TransferStatus.INCOMPLETE, TransferStatus.FAILED, TransferStatus.COMPLETED);
+        assertThat(results.get(0).getTransferId()).isNotBlank();
+        assertThat(results.get(0).getMessage()).contains(results.get(0).getTransferId());
+        assertThat(results.get(1).getTransferId()).isNull();
+    }
+
+    private static AccountDetails transfer() {
+        return AccountDetails.builder()
+                .accountId(FROM_ACCOUNT_ID)
+                .amount(TEN)
+                .type(TransactionType.CREDIT)
+                .build();
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.norway.mastercard.ibpts.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.norway.mastercard.ibpts.dao.Account;
+import com.norway.mastercard.ibpts.dao.StatementBucket;
+import com.norway.mastercard.ibpts.exception.InvalidDateRangeException;
+import com.norway.mastercard.ibpts.repo.StatementBucketRepository;
+import com.norway.mastercard.ibpts.service.internal.StatementAggregator;
+import com.norway.mastercard.ibpts.service.internal.StatementBucketChanges;
+
+import lombok.val;
+
+/**
+ * The is test class for StatementAggregator and uses mockito mocks for the statement bucket repository.
+ */
+@ExtendWith(MockitoExtension.class)
+class StatementAggregatorTest {
+
+    public static final int    ACCOUNT_ID = 111;
+    public static final String CURRENCY   = "NOK";
+
+    @Mock
+    private StatementBucketRepository statementBucketRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private StatementAggregator statementAggregator;
+    private Account             account;
+
+    @BeforeEach
+    void setUp() {
+        statementAggregator = new StatementAggregator(statementBucketRepository, entityManager);
+        account = Account.builder().accountId(ACCOUNT_ID).currency(CURRENCY).build();
+    }
+
+    @Test
+    void summarize_readsFullMonthsAndPartialDays() {
+        when(statementBucketRepository.findBuckets(ACCOUNT_ID, StatementBucket.DAY, date(1, 20), date(2, 1)))
+                .thenReturn(List.of(bucket(1, 300, 0, 0)));
+        when(statementBucketRepository.findBuckets(ACCOUNT_ID, StatementBucket.MONTH, date(2, 1), date(4, 1)))
+                .thenReturn(List.of(bucket(2, 1000, 1, 500), bucket(0, 0, 3, 700)));
+        when(statementBucketRepository.findBuckets(ACCOUNT_ID, StatementBucket.DAY, date(4, 1), date(4, 6)))
+                .thenReturn(List.of());
+
+        val summary = statementAggregator.summarize(account, date(1, 20), date(4, 5));
+
+        assertThat(summary.getTransactionCount()).isEqualTo(7);
+        assertThat(summary.getDebitCount()).isEqualTo(3);
+        assertThat(summary.getDebitAmount()).isEqualByComparingTo("13.00");
+        assertThat(summary.getCreditCount()).isEqualTo(4);
+        assertThat(summary.getCreditAmount()).isEqualByComparingTo("12.00");
+        verify(statementBucketRepository).findBuckets(ACCOUNT_ID, StatementBucket.DAY, date(1, 20), date(2, 1));
+        verify(statementBucketRepository).findBuckets(ACCOUNT_ID, StatementBucket.MONTH, date(2, 1), date(4, 1));
+        verify(statementBucketRepository).findBuckets(ACCOUNT_ID, StatementBucket.DAY, date(4, 1), date(4, 6));
+        verifyNoMoreInteractions(statementBucketRepository);
+    }
+
+    @Test
+    void summarize_withinOneMonth_readsDaysOnly() {
+        when(statementBucketRepository.findBuckets(ACCOUNT_ID, StatementBucket.DAY, date(3, 2), date(3, 5)))
+                .thenReturn(List.of(bucket(1, 100, 1, 200)));
+
+        val summary = statementAggregator.summarize(account, date(3, 2), date(3, 4));
+
+        assertThat(summary.getDebitAmount()).isEqualByComparingTo("1.00");
+        assertThat(summary.getCreditAmount()).isEqualByComparingTo("2.00");
+        verifyNoMoreInteractions(statementBucketRepository);
+    }
+
+    @Test
+    void summarize_withPendingChanges_addsTheChangesInTheRange() {
+        when(statementBucketRepository.findBuckets(ACCOUNT_ID, StatementBucket.DAY, date(3, 2), date(3, 5)))
+                .thenReturn(List.of(bucket(1, 100, 1, 200)));
+        val pendingChanges = new StatementBucketChanges();
+        pendingChanges.add(ACCOUNT_ID, date(3, 4).atTime(10, 0), -250);
+        pendingChanges.add(ACCOUNT_ID, date(3, 5).atTime(10, 0), 400);
+
+        val summary = statementAggregator.summarize(account, date(3, 2), date(3, 4), pendingChanges);
+
+        assertThat(summary.getDebitCount()).isEqualTo(2);
+        assertThat(summary.getDebitAmount()).isEqualByComparingTo("3.50");
+        assertThat(summary.getCreditCount()).isEqualTo(1);
+        assertThat(summary.getCreditAmount()).isEqualByComparingTo("2.00");
+    }
+
+    @Test
+    void summarize_whenRangeEndsBeforeStart_throwException() {
+        assertThatThrownBy(() -> statementAggregator.summarize(account, date(3, 2), date(3, 1)))
+                .isInstanceOf(InvalidDateRangeException.class);
+    }
+
+    @Test
+    void apply_insertsMissingBucketsAndUpdatesExistingOnes() {
+        when(statementBucketRepository.addToBucket(anyInt(), anyString(), any(), anyInt(), anyLong(), anyLong(), anyLong(), anyLong()))
+                .thenReturn(1);
+        when(statementBucketRepository.addToBucket(ACCOUNT_ID, StatementBucket.DAY, date(3, 2), 0, 1, 250, 1, 100)).thenReturn(0);
+        val changes = new StatementBucketChanges();
+        changes.add(ACCOUNT_ID, date(3, 2).atTime(10, 0), -250);
+        changes.add(ACCOUNT_ID, LocalDateTime.of(2021, 3, 2, 11, 0), 100);
+        changes.add(ACCOUNT_ID, 3, LocalDateTime.of(2021, 3, 2, 12, 0), 40);
+
+        statementAggregator.apply(changes);
+
+        verify(statementBucketRepository).addToBucket(ACCOUNT_ID, StatementBucket.MONTH, date(3, 1), 0, 1, 250, 1, 100);
+        verify(statementBucketRepository).addToBucket(ACCOUNT_ID, StatementBucket.DAY, date(3, 2), 3, 0, 0, 1, 40);
+        val inserted = ArgumentCaptor.forClass(StatementBucket.class);
+        verify(entityManager).persist(inserted.capture());
+        assertThat(inserted.getValue())
+                .extracting("accountId", "granularity", "periodStart", "debitCount", "debitMinor", "creditCount", "creditMinor")
+                .containsExactly(ACCOUNT_ID, StatementBucket.DAY, date(3, 2), 1L, 250L, 1L, 100L);
+    }
+
+    private static LocalDate date(int month, int day) {
+        return LocalDate.of(2021, month, day);
+    }
+
+    private static StatementBucket bucket(long debitCount, long debitMinor, long creditCount, long creditMinor) {
+        return StatementBucket.builder()
+                .debitCount(debitCount)
+                .debitMinor(debitMinor)
+                .creditCount(creditCount)
+                .creditMinor(creditMinor)
+                .build();
+    }
+
+}
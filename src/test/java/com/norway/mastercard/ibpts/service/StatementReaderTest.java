@@ -0,0 +1,139 @@
+package com.norway.mastercard.ibpts.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.groups.Tuple.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import com.norway.mastercard.ibpts.dao.Account;
+import com.norway.mastercard.ibpts.dao.Transaction;
+import com.norway.mastercard.ibpts.exception.InvalidCursorException;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.repo.TransactionRepository;
+import com.norway.mastercard.ibpts.service.internal.StatementReader;
+
+import lombok.val;
+
+/**
+ * The is test class for StatementReader and uses mockito mocks for the transaction repository.
+ */
+@ExtendWith(MockitoExtension.class)
+class StatementReaderTest {
+
+    public static final int    ACCOUNT_ID = 111;
+    public static final String CURRENCY   = "NOK";
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    private StatementReader statementReader;
+    private Account         account;
+
+    @BeforeEach
+    void setUp() {
+        statementReader = new StatementReader(transactionRepository, 2, 2);
+        account = Account.builder().accountId(ACCOUNT_ID).currency(CURRENCY).build();
+    }
+
+    @Test
+    void readMiniStatement_readsLatestTransactionsOnly() {
+        when(transactionRepository.findLatest(ACCOUNT_ID, PageRequest.of(0, 2)))
+                .thenReturn(List.of(transaction(2, 12), transaction(1, 11)));
+        assertThat(statementReader.readMiniStatement(account))
+                .extracting("accountId", "currencyCode", "transactionDate")
+                .containsExactly(
+                        tuple(ACCOUNT_ID, CURRENCY, date(12)),
+                        tuple(ACCOUNT_ID, CURRENCY, date(11)));
+    }
+
+    @Test
+    void readStatement_returnsCursorWhenMoreTransactionsExist() {
+        when(transactionRepository.findLatest(ACCOUNT_ID, PageRequest.of(0, 3)))
+                .thenReturn(List.of(transaction(5, 15), transaction(4, 14), transaction(3, 13)));
+        val firstPage = statementReader.readStatement(account, null, 10);
+        assertThat(firstPage.getTransactions()).hasSize(2);
+        assertThat(firstPage.getNextCursor()).isNotNull();
+
+        when(transactionRepository.findLatestBefore(eq(ACCOUNT_ID), eq(date(14)), eq(4), any()))
+                .thenReturn(List.of(transaction(3, 13)));
+        val secondPage = statementReader.readStatement(account, firstPage.getNextCursor(), 10);
+        assertThat(secondPage.getTransactions()).extracting("transactionDate").containsExactly(date(13));
+        assertThat(secondPage.getNextCursor()).isNull();
+        verify(transactionRepository).findLatestBefore(ACCOUNT_ID, date(14), 4, PageRequest.of(0, 3));
+    }
+
+    @Test
+    void readStatement_whenCursorIsInvalid_throwException() {
+        assertThatThrownBy(() -> statementReader.readStatement(account, "not-a-cursor", 10))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void readBalance_takesLatestRunningBalanceOfBothSides() {
+        account.setBalanceMinor(900L);
+        when(transactionRepository.findLatestUntil(ACCOUNT_ID, date(13), PageRequest.of(0, 1)))
+                .thenReturn(List.of(transaction(1, 11, 500L, null)));
+        when(transactionRepository.findLatestCounterpartUntil(ACCOUNT_ID, date(13), PageRequest.of(0, 1)))
+                .thenReturn(List.of(transaction(2, 12, 700L, 300L)));
+        val accountDetails = statementReader.readBalance(account, date(13));
+        assertThat(accountDetails.getBalance()).isEqualByComparingTo("3.00");
+        assertThat(accountDetails.getCurrencyCode()).isEqualTo(CURRENCY);
+    }
+
+    @Test
+    void readBalance_beforeFirstTransaction_derivesOpeningBalance() {
+        account.setBalanceMinor(900L);
+        when(transactionRepository.findEarliestAfter(ACCOUNT_ID, date(10), PageRequest.of(0, 1)))
+                .thenReturn(List.of(transaction(1, 11, 500L, null)));
+        assertThat(statementReader.readBalance(account, date(10)).getBalance()).isEqualByComparingTo("4.00");
+    }
+
+    @Test
+    void readSplitBalance_takesChangesBookedLaterOffCurrentBalance() {
+        when(transactionRepository.sumChangesAfter(ACCOUNT_ID, date(10))).thenReturn(300L);
+        when(transactionRepository.sumCounterpartChangesAfter(ACCOUNT_ID, date(10))).thenReturn(-100L);
+        val accountDetails = statementReader.readSplitBalance(account, 900L, date(10));
+        assertThat(accountDetails.getBalance()).isEqualByComparingTo("7.00");
+        assertThat(accountDetails.getTransactionDate()).isEqualTo(date(10));
+    }
+
+    private Transaction transaction(int transactionId, int day, Long balance, Long counterpartBalance) {
+        return Transaction.builder()
+                .transactionId(transactionId)
+                .amountMinor(100L)
+                .balanceMinor(balance)
+                .counterpartBalanceMinor(counterpartBalance)
+                .type(TransactionType.CREDIT.name())
+                .transactionDate(date(day))
+                .bookingDate(date(day))
+                .build();
+    }
+
+    private Transaction transaction(int transactionId, int day) {
+        return Transaction.builder()
+                .transactionId(transactionId)
+                .amountMinor(100L)
+                .type(TransactionType.CREDIT.name())
+                .transactionDate(date(day))
+                .bookingDate(date(day))
+                .build();
+    }
+
+    private LocalDateTime date(int day) {
+        return LocalDateTime.of(2021, 10, day, 0, 0);
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.norway.mastercard.ibpts.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.service.internal.JournalRecord;
+import com.norway.mastercard.ibpts.service.internal.TransferJournal;
+
+/**
+ * The is test class for TransferJournal and writes its segments to a temporary directory.
+ */
+class TransferJournalTest {
+
+    public static final LocalDateTime TRANSACTION_DATE = LocalDateTime.of(2021, 5, 1, 12, 30, 15, 123_000_000);
+
+    @TempDir
+    Path journalDir;
+
+    @Test
+    void recover_returnsDurableRecordsAcrossSegments() {
+        TransferJournal transferJournal = open();
+        transferJournal.recover(0, record -> { });
+        long lastSequence = 0;
+        for (int i = 1; i <= 250; i++) {
+            lastSequence = transferJournal.append(111, 222, i, TransactionType.CREDIT, TRANSACTION_DATE);
+        }
+        transferJournal.awaitDurable(lastSequence);
+        assertThat(transferJournal.getDurableSequence()).isEqualTo(250);
+        transferJournal.close();
+
+        List<JournalRecord> records = recover();
+
+        assertThat(records).hasSize(250);
+        assertThat(records.get(249))
+                .extracting(JournalRecord::getSequence, JournalRecord::getToAccountId, JournalRecord::getFromAccountId,
+                        JournalRecord::getAmount, JournalRecord::getType, JournalRecord::getTransactionDate)
+                .containsExactly(250L, 111, 222, 250L, TransactionType.CREDIT, TRANSACTION_DATE);
+    }
+
+    @Test
+    void recover_ignoresTornRecordAndContinuesSequence() throws IOException {
+        TransferJournal transferJournal = open();
+        transferJournal.recover(0, record -> { });
+        transferJournal.append(111, 222, 10, TransactionType.CREDIT, TRANSACTION_DATE);
+        transferJournal.awaitDurable(transferJournal.append(111, 222, 20, TransactionType.DEBIT, TRANSACTION_DATE));
+        transferJournal.close();
+        tearSecondRecord();
+
+        TransferJournal reopened = open();
+        List<JournalRecord> records = new ArrayList<>();
+        reopened.recover(0, records::add);
+        long sequence = reopened.append(111, 222, 30, TransactionType.CREDIT, TRANSACTION_DATE);
+        reopened.awaitDurable(sequence);
+        reopened.close();
+
+        assertThat(records).extracting(JournalRecord::getSequence, JournalRecord::getAmount).containsExactly(tuple(1L, 10L));
+        assertThat(sequence).isEqualTo(2);
+        assertThat(recover()).extracting(JournalRecord::getAmount).containsExactly(10L, 30L);
+    }
+
+    @Test
+    void append_whenDisabled_isNoOp() {
+        TransferJournal transferJournal = new TransferJournal(false, journalDir.toString(), 4096);
+        long sequence = transferJournal.append(111, 222, 10, TransactionType.CREDIT, TRANSACTION_DATE);
+        transferJournal.awaitDurable(sequence);
+
+        assertThat(sequence).isZero();
+        assertThat(journalDir).isEmptyDirectory();
+    }
+
+    private TransferJournal open() {
+        return new TransferJournal(true, journalDir.toString(), 4096);
+    }
+
+    private List<JournalRecord> recover() {
+        List<JournalRecord> records = new ArrayList<>();
+        TransferJournal transferJournal = open();
+        transferJournal.recover(0, records::add);
+        transferJournal.close();
+        return records;
+    }
+
+    private void tearSecondRecord() throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(journalDir)) {
+            segments = files.sorted().collect(Collectors.toList());
+        }
+        try (FileChannel channel = FileChannel.open(segments.get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x7f, 0x7f }), 41 + 20);
+        }
+    }
+
+}
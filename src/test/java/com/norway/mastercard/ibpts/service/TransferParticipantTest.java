@@ -0,0 +1,202 @@
+package com.norway.mastercard.ibpts.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.norway.mastercard.ibpts.dao.Account;
+import com.norway.mastercard.ibpts.dao.Transaction;
+import com.norway.mastercard.ibpts.exception.TransferNotPreparedException;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.model.TransferLeg;
+import com.norway.mastercard.ibpts.repo.AccountRepository;
+import com.norway.mastercard.ibpts.repo.TransactionRepository;
+import com.norway.mastercard.ibpts.service.internal.BalanceCache;
+import com.norway.mastercard.ibpts.service.internal.OptimisticTransferExecutor;
+import com.norway.mastercard.ibpts.service.internal.StatementAggregator;
+import com.norway.mastercard.ibpts.service.internal.SubLedgers;
+import com.norway.mastercard.ibpts.service.internal.TransferParticipant;
+
+/**
+ * The is test class for TransferParticipant and uses mockito mocks for the repositories.
+ */
+@ExtendWith(MockitoExtension.class)
+class TransferParticipantTest {
+
+    public static final int           ACCOUNT_ID       = 111;
+    public static final int           COUNTERPART_ID   = 222;
+    public static final LocalDateTime TRANSACTION_DATE = LocalDateTime.of(2021, 10, 12, 10, 0);
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private BalanceCache balanceCache;
+
+    @Mock
+    private StatementAggregator statementAggregator;
+
+    @Mock
+    private SubLedgers subLedgers;
+
+    private TransferParticipant transferParticipant;
+
+    @BeforeEach
+    void setUp() {
+        transferParticipant = new TransferParticipant(accountRepository, transactionRepository,
+                new OptimisticTransferExecutor(TransactionOperations.withoutTransaction(), 1, 1), entityManager, balanceCache,
+                statementAggregator, subLedgers);
+    }
+
+    @Test
+    void prepare_whenDebit_holdsAmount() {
+        mockAccount();
+        transferParticipant.prepare(leg("t1:from", -3_000, false));
+
+        assertThat(transferParticipant.available(ACCOUNT_ID, 10_000)).isEqualTo(7_000);
+    }
+
+    @Test
+    void prepare_whenHeldAmountLeavesTooLittle_rejectsLeg() {
+        mockAccount();
+        transferParticipant.prepare(leg("t1:from", -6_000, false));
+
+        assertThatThrownBy(() -> transferParticipant.prepare(leg("t2:from", -6_000, false)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Insufficient funds available");
+        assertThat(transferParticipant.available(ACCOUNT_ID, 10_000)).isEqualTo(4_000);
+    }
+
+    @Test
+    void commit_appliesLegAndReleasesHold() {
+        mockAccount();
+        when(accountRepository.addToBalance(ACCOUNT_ID, -3_000, 0L)).thenReturn(1);
+        transferParticipant.prepare(leg("t1:from", -3_000, false));
+
+        assertThat(transferParticipant.commit("t1:from", null)).isEqualTo(7_000);
+        assertThat(transferParticipant.available(ACCOUNT_ID, 7_000)).isEqualTo(7_000);
+        verify(statementAggregator).apply(any());
+        verify(transactionRepository, never()).save(any());
+    }
+
+    @Test
+    void commit_whenLegRecordsTransaction_savesItWithCounterpartBalance() {
+        mockAccount();
+        when(accountRepository.addToBalance(ACCOUNT_ID, 3_000, 0L)).thenReturn(1);
+        transferParticipant.prepare(leg("t1:to", 3_000, true));
+
+        assertThat(transferParticipant.commit("t1:to", 5_000L)).isEqualTo(13_000);
+        ArgumentCaptor<Transaction> saved = ArgumentCaptor.forClass(Transaction.class);
+        verify(transactionRepository).save(saved.capture());
+        assertThat(saved.getValue())
+                .extracting(Transaction::getAccountId, Transaction::getAmountMinor, Transaction::getBalanceMinor,
+                        Transaction::getCounterpartBalanceMinor)
+                .containsExactly(COUNTERPART_ID, 3_000L, 13_000L, 5_000L);
+    }
+
+    @Test
+    void commit_whenRepeated_returnsBalanceOfFirstCommit() {
+        mockAccount();
+        when(accountRepository.addToBalance(ACCOUNT_ID, -3_000, 0L)).thenReturn(1);
+        transferParticipant.prepare(leg("t1:from", -3_000, false));
+        transferParticipant.commit("t1:from", null);
+
+        assertThat(transferParticipant.commit("t1:from", null)).isEqualTo(7_000);
+        verify(accountRepository, times(1)).addToBalance(ACCOUNT_ID, -3_000, 0L);
+    }
+
+    @Test
+    void commit_whenRepeatedConcurrently_appliesLegOnce() throws Exception {
+        mockAccount();
+        CountDownLatch applying = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        when(accountRepository.addToBalance(ACCOUNT_ID, -3_000, 0L)).thenAnswer(invocation -> {
+            applying.countDown();
+            proceed.await(5, TimeUnit.SECONDS);
+            return 1;
+        });
+        transferParticipant.prepare(leg("t1:from", -3_000, false));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Long> first = executor.submit(() -> transferParticipant.commit("t1:from", null));
+        applying.await(5, TimeUnit.SECONDS);
+        Future<Long> repeated = executor.submit(() -> transferParticipant.commit("t1:from", null));
+        Thread.sleep(100);
+        proceed.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(7_000);
+        assertThat(repeated.get(5, TimeUnit.SECONDS)).isEqualTo(7_000);
+        verify(accountRepository, times(1)).addToBalance(ACCOUNT_ID, -3_000, 0L);
+        executor.shutdown();
+    }
+
+    @Test
+    void commit_whenLegNotPrepared_throwsTransferNotPrepared() {
+        assertThatThrownBy(() -> transferParticipant.commit("unknown:to", null))
+                .isInstanceOf(TransferNotPreparedException.class)
+                .hasMessage("Leg unknown:to is not prepared on this node");
+    }
+
+    @Test
+    void abort_releasesHoldWithoutApplying() {
+        mockAccount();
+        transferParticipant.prepare(leg("t1:from", -3_000, false));
+        transferParticipant.abort("t1:from");
+
+        assertThat(transferParticipant.available(ACCOUNT_ID, 10_000)).isEqualTo(10_000);
+        assertThatThrownBy(() -> transferParticipant.commit("t1:from", null)).isInstanceOf(TransferNotPreparedException.class);
+        verify(accountRepository, never()).addToBalance(anyInt(), anyLong(), any());
+    }
+
+    private void mockAccount() {
+        when(accountRepository.findById(ACCOUNT_ID)).thenReturn(Optional.of(Account.builder()
+                .accountId(ACCOUNT_ID)
+                .currency("NOK")
+                .balanceMinor(10_000)
+                .version(0L)
+                .build()));
+    }
+
+    private static TransferLeg leg(String transferId, long amountMinor, boolean recordTransaction) {
+        return TransferLeg.builder()
+                .transferId(transferId)
+                .accountId(ACCOUNT_ID)
+                .counterpartAccountId(COUNTERPART_ID)
+                .amountMinor(amountMinor)
+                .currencyCode("NOK")
+                .type(TransactionType.CREDIT)
+                .transactionDate(TRANSACTION_DATE)
+                .recordTransaction(recordTransaction)
+                .build();
+    }
+
+}
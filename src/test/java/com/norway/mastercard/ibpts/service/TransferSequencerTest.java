@@ -0,0 +1,96 @@
+package com.norway.mastercard.ibpts.service;
+
+import static java.math.BigDecimal.ONE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.norway.mastercard.ibpts.exception.ServiceBusyException;
+import com.norway.mastercard.ibpts.model.AccountDetails;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.service.internal.TransferJournal;
+import com.norway.mastercard.ibpts.service.internal.TransferSequencer;
+
+/**
+ * The is test class for TransferSequencer and runs it without a journal.
+ */
+class TransferSequencerTest {
+
+    private static final AccountDetails TRANSFER = AccountDetails.builder()
+            .accountId(222)
+            .amount(ONE)
+            .type(TransactionType.CREDIT)
+            .build();
+
+    @Test
+    void submit_appliesTransfersInOrder() throws Exception {
+        TransferSequencer transferSequencer = new TransferSequencer(new TransferJournal(false, "journal", 4096), true, 16, 50);
+        List<Long> applied = new ArrayList<>();
+        transferSequencer.start((toAccountId, transaction, amount) -> {
+            applied.add(amount);
+            return 0;
+        });
+        List<CompletableFuture<Void>> submitted = new ArrayList<>();
+        for (long amount = 1; amount <= 10; amount++) {
+            submitted.add(transferSequencer.submit(111, TRANSFER, amount));
+        }
+        CompletableFuture.allOf(submitted.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        transferSequencer.stop();
+
+        assertThat(applied).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        assertThat(transferSequencer.submit(111, TRANSFER, 1)).isCompletedExceptionally();
+    }
+
+    @Test
+    void stop_whileTransfersAreSubmitted_completesEveryFuture() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            TransferSequencer transferSequencer = new TransferSequencer(new TransferJournal(false, "journal", 4096), true, 64, 50);
+            AtomicLong applied = new AtomicLong();
+            transferSequencer.start((toAccountId, transaction, amount) -> {
+                applied.incrementAndGet();
+                return 0;
+            });
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            CountDownLatch started = new CountDownLatch(4);
+            List<Future<List<CompletableFuture<Void>>>> submitters = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                submitters.add(executor.submit(() -> {
+                    List<CompletableFuture<Void>> submitted = new ArrayList<>();
+                    started.countDown();
+                    for (int j = 0; j < 2_000; j++) {
+                        submitted.add(transferSequencer.submit(111, TRANSFER, 1));
+                    }
+                    return submitted;
+                }));
+            }
+            started.await();
+            transferSequencer.stop();
+
+            long succeeded = 0;
+            for (Future<List<CompletableFuture<Void>>> submitter : submitters) {
+                for (CompletableFuture<Void> future : submitter.get(5, TimeUnit.SECONDS)) {
+                    assertThat(future).isDone();
+                    if (future.isCompletedExceptionally()) {
+                        assertThatThrownBy(future::join).hasCauseInstanceOf(ServiceBusyException.class);
+                    } else {
+                        succeeded++;
+                    }
+                }
+            }
+            executor.shutdown();
+            assertThat(succeeded).isEqualTo(applied.get());
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.norway.mastercard.ibpts.service.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.client.MockMvcClientHttpRequestFactory;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.norway.mastercard.ibpts.controller.ShardResource;
+import com.norway.mastercard.ibpts.exception.TransferNotPreparedException;
+import com.norway.mastercard.ibpts.model.TransactionType;
+import com.norway.mastercard.ibpts.model.TransferLeg;
+
+/**
+ * The is test class for HttpAccountShard, its requests are served by a ShardResource through MockMvc.
+ */
+@ExtendWith(MockitoExtension.class)
+class HttpAccountShardTest {
+
+    public static final LocalDateTime TRANSACTION_DATE = LocalDateTime.of(2021, 10, 12, 10, 0);
+
+    @Mock
+    private AccountServiceImpl accountService;
+
+    @Mock
+    private TransferParticipant transferParticipant;
+
+    private HttpAccountShard accountShard;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate(new MockMvcClientHttpRequestFactory(
+                MockMvcBuilders.standaloneSetup(new ShardResource(accountService, transferParticipant)).build()));
+        accountShard = new HttpAccountShard("", restTemplate, new ObjectMapper());
+    }
+
+    @Test
+    void prepare_sendsLegToParticipant() {
+        accountShard.prepare(TransferLeg.builder()
+                .transferId("t1:to")
+                .accountId(111)
+                .counterpartAccountId(222)
+                .amountMinor(1_000)
+                .currencyCode("NOK")
+                .type(TransactionType.CREDIT)
+                .transactionDate(TRANSACTION_DATE)
+                .recordTransaction(true)
+                .build());
+
+        ArgumentCaptor<TransferLeg> prepared = ArgumentCaptor.forClass(TransferLeg.class);
+        verify(transferParticipant).prepare(prepared.capture());
+        assertThat(prepared.getValue())
+                .extracting(TransferLeg::getTransferId, TransferLeg::getAccountId, TransferLeg::getCounterpartAccountId,
+                        TransferLeg::getAmountMinor, TransferLeg::getType, TransferLeg::getTransactionDate, TransferLeg::isRecordTransaction)
+                .containsExactly("t1:to", 111, 222, 1_000L, TransactionType.CREDIT, TRANSACTION_DATE, true);
+    }
+
+    @Test
+    void prepare_whenRejected_throwsIllegalArgumentWithMessage() {
+        doThrow(new IllegalArgumentException("Insufficient funds available")).when(transferParticipant).prepare(any());
+
+        assertThatThrownBy(() -> accountShard.prepare(TransferLeg.builder().transferId("t1:from").build()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Insufficient funds available");
+    }
+
+    @Test
+    void commit_returnsBalanceOfParticipant() {
+        when(transferParticipant.commit("t1:to", 4_000L)).thenReturn(6_000L);
+
+        assertThat(accountShard.commit("t1:to", 4_000L)).isEqualTo(6_000L);
+    }
+
+    @Test
+    void commit_whenLegNotPrepared_throwsTransferNotPrepared() {
+        when(transferParticipant.commit("t1:from", null)).thenThrow(new TransferNotPreparedException("Leg t1:from is not prepared on this node"));
+
+        assertThatThrownBy(() -> accountShard.commit("t1:from", null)).isInstanceOf(TransferNotPreparedException.class);
+    }
+
+    @Test
+    void abort_releasesLegOnParticipant() {
+        accountShard.abort("t1:from");
+
+        verify(transferParticipant).abort("t1:from");
+    }
+
+}